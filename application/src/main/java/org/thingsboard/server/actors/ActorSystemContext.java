@@ -39,6 +39,7 @@ import org.thingsboard.script.api.tbel.TbelInvokeService;
 import org.thingsboard.server.actors.service.ActorService;
 import org.thingsboard.server.actors.tenant.DebugTbRateLimits;
 import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.event.ErrorEvent;
 import org.thingsboard.server.common.data.event.LifecycleEvent;
 import org.thingsboard.server.common.data.event.RuleChainDebugEvent;
@@ -52,6 +53,7 @@ import org.thingsboard.server.common.msg.notification.NotificationRuleProcessor;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.common.msg.tools.TbRateLimits;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.common.stats.TbApiUsageReportClient;
 import org.thingsboard.server.dao.alarm.AlarmCommentService;
 import org.thingsboard.server.dao.asset.AssetProfileService;
@@ -106,6 +108,8 @@ import org.thingsboard.server.service.profile.TbDeviceProfileCache;
 import org.thingsboard.server.service.rpc.TbCoreDeviceRpcService;
 import org.thingsboard.server.service.rpc.TbRpcService;
 import org.thingsboard.server.service.rpc.TbRuleEngineDeviceRpcService;
+import org.thingsboard.server.service.queue.TbRuleEngineMsgBatcher;
+import org.thingsboard.server.service.rule.TbRuleNodeDebugEventService;
 import org.thingsboard.server.service.session.DeviceSessionCacheService;
 import org.thingsboard.server.service.sms.SmsExecutorService;
 import org.thingsboard.server.service.state.DeviceStateService;
@@ -117,10 +121,13 @@ import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
@@ -137,17 +144,8 @@ public class ActorSystemContext {
             log.error("Could not save debug Event for Rule Chain", th);
         }
     };
-    private static final FutureCallback<Void> RULE_NODE_DEBUG_EVENT_ERROR_CALLBACK = new FutureCallback<>() {
-        @Override
-        public void onSuccess(@Nullable Void event) {
 
-        }
-
-        @Override
-        public void onFailure(Throwable th) {
-            log.error("Could not save debug Event for Node", th);
-        }
-    };
+    private static final int TRUNCATION_MARKER_MAX_LENGTH = "...[truncated 2147483647 symbols]".length();
 
     private final ConcurrentMap<TenantId, DebugTbRateLimits> debugPerTenantLimits = new ConcurrentHashMap<>();
 
@@ -163,6 +161,9 @@ public class ActorSystemContext {
     @Getter
     private TbApiUsageReportClient apiUsageClient;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     @Autowired
     @Getter
     @Setter
@@ -253,6 +254,10 @@ public class ActorSystemContext {
     @Getter
     private TbClusterService clusterService;
 
+    @Autowired
+    @Getter
+    private TbRuleEngineMsgBatcher ruleEngineMsgBatcher;
+
     @Autowired
     @Getter
     private TimeseriesService tsService;
@@ -265,6 +270,10 @@ public class ActorSystemContext {
     @Getter
     private EventService eventService;
 
+    @Autowired
+    @Getter
+    private TbRuleNodeDebugEventService ruleNodeDebugEventService;
+
     @Autowired
     @Getter
     private RelationService relationService;
@@ -457,6 +466,20 @@ public class ActorSystemContext {
     @Getter
     private long syncSessionTimeout;
 
+    @Value("${actors.device.passivation.enabled:false}")
+    @Getter
+    private boolean devicePassivationEnabled;
+
+    @Value("${actors.device.passivation.idle_timeout_ms:600000}")
+    @Getter
+    private long devicePassivationIdleTimeout;
+
+    @Getter
+    private final AtomicInteger liveDeviceActors = new AtomicInteger();
+
+    @Getter
+    private final AtomicInteger passivatedDeviceActors = new AtomicInteger();
+
     @Value("${actors.rule.chain.error_persist_frequency:3000}")
     @Getter
     private long ruleChainErrorPersistFrequency;
@@ -487,6 +510,10 @@ public class ActorSystemContext {
     @PostConstruct
     public void init() {
         this.localCacheType = "caffeine".equals(cacheType);
+        if (devicePassivationEnabled) {
+            statsFactory.createGauge("deviceActors", liveDeviceActors, "state", "live");
+            statsFactory.createGauge("deviceActors", passivatedDeviceActors, "state", "passivated");
+        }
     }
 
     @Scheduled(fixedDelayString = "${actors.statistics.js_print_interval_ms}")
@@ -497,6 +524,9 @@ public class ActorSystemContext {
                         jsInvokeStats.getRequests(), jsInvokeStats.getResponses(), jsInvokeStats.getFailures());
                 jsInvokeStats.reset();
             }
+            if (devicePassivationEnabled) {
+                log.info("Device actors: live [{}] passivated [{}]", liveDeviceActors.get(), passivatedDeviceActors.get());
+            }
         }
     }
 
@@ -528,6 +558,9 @@ public class ActorSystemContext {
     @Getter
     private String debugPerTenantLimitsConfiguration;
 
+    @Value("${event.debug.max-symbols:4096}")
+    private int maxDebugEventSymbols;
+
     @Value("${actors.rpc.submit_strategy:BURST}")
     @Getter
     private String rpcSubmitStrategy;
@@ -639,7 +672,7 @@ public class ActorSystemContext {
     }
 
     private void persistDebugAsync(TenantId tenantId, EntityId entityId, String type, TbMsg tbMsg, String relationType, Throwable error, String failureMessage) {
-        if (checkLimits(tenantId, tbMsg, error)) {
+        if (ruleNodeDebugEventService.isSampled(entityId, tbMsg, () -> checkLimits(tenantId, tbMsg, error))) {
             try {
                 RuleNodeDebugEvent.RuleNodeDebugEventBuilder event = RuleNodeDebugEvent.builder()
                         .tenantId(tenantId)
@@ -651,23 +684,58 @@ public class ActorSystemContext {
                         .msgType(tbMsg.getType())
                         .dataType(tbMsg.getDataType().name())
                         .relationType(relationType)
-                        .data(tbMsg.getData())
-                        .metadata(JacksonUtil.toString(tbMsg.getMetaData().getData()));
+                        .data(truncateDebugField(tbMsg.getData(), maxDebugEventSymbols))
+                        .metadata(toDebugMetadataString(tbMsg.getMetaData().getData()));
 
                 if (error != null) {
-                    event.error(toString(error));
+                    event.error(truncateDebugField(toString(error), maxDebugEventSymbols));
                 } else if (failureMessage != null) {
-                    event.error(failureMessage);
+                    event.error(truncateDebugField(failureMessage, maxDebugEventSymbols));
                 }
 
-                ListenableFuture<Void> future = eventService.saveAsync(event.build());
-                Futures.addCallback(future, RULE_NODE_DEBUG_EVENT_ERROR_CALLBACK, MoreExecutors.directExecutor());
+                ruleNodeDebugEventService.persistAsync(event.build());
             } catch (IllegalArgumentException ex) {
                 log.warn("Failed to persist rule node debug message", ex);
             }
         }
     }
 
+    /**
+     * Truncates the metadata values before the serialization, so the large metadata is not serialized in full to be truncated later.
+     */
+    private String toDebugMetadataString(Map<String, String> metadata) {
+        int length = 2;
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            length += entry.getKey().length() + entry.getValue().length() + 6;
+        }
+        if (length <= maxDebugEventSymbols) {
+            return JacksonUtil.toString(metadata);
+        }
+        Map<String, String> truncated = new LinkedHashMap<>();
+        int remaining = maxDebugEventSymbols - 2;
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            remaining -= entry.getKey().length() + 6;
+            if (remaining <= 0) {
+                break;
+            }
+            String value = truncateDebugField(entry.getValue(), remaining);
+            truncated.put(entry.getKey(), value);
+            remaining -= value.length();
+        }
+        return JacksonUtil.toString(truncated);
+    }
+
+    /**
+     * Keeps the truncated value with the truncation marker within the max length,
+     * so the value is not truncated once again by the event service.
+     */
+    private static String truncateDebugField(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        return StringUtils.truncate(value, Math.max(1, maxLength - TRUNCATION_MARKER_MAX_LENGTH));
+    }
+
     private boolean checkLimits(TenantId tenantId, TbMsg tbMsg, Throwable error) {
         if (debugPerTenantEnabled) {
             DebugTbRateLimits debugTbRateLimits = debugPerTenantLimits.computeIfAbsent(tenantId, id ->
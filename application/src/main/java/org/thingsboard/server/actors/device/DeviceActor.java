@@ -26,6 +26,7 @@ import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.TbActorStopReason;
 import org.thingsboard.server.common.msg.timeout.DeviceActorServerSideRpcTimeoutMsg;
 import org.thingsboard.server.service.rpc.FromDeviceRpcResponseActorMsg;
 import org.thingsboard.server.service.rpc.RemoveRpcActorMsg;
@@ -36,6 +37,7 @@ import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWra
 public class DeviceActor extends ContextAwareActor {
 
     private final DeviceActorMessageProcessor processor;
+    private boolean started;
 
     DeviceActor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
@@ -48,6 +50,8 @@ public class DeviceActor extends ContextAwareActor {
         log.debug("[{}][{}] Starting device actor.", processor.tenantId, processor.deviceId);
         try {
             processor.init(ctx);
+            systemContext.getLiveDeviceActors().incrementAndGet();
+            started = true;
             log.debug("[{}][{}] Device actor started.", processor.tenantId, processor.deviceId);
         } catch (Exception e) {
             log.warn("[{}][{}] Unknown failure", processor.tenantId, processor.deviceId, e);
@@ -55,6 +59,14 @@ public class DeviceActor extends ContextAwareActor {
         }
     }
 
+    @Override
+    public void destroy(TbActorStopReason stopReason, Throwable cause) {
+        if (started) {
+            started = false;
+            systemContext.getLiveDeviceActors().decrementAndGet();
+        }
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
         switch (msg.getMsgType()) {
@@ -88,6 +100,9 @@ public class DeviceActor extends ContextAwareActor {
             case REMOVE_RPC_TO_DEVICE_ACTOR_MSG:
                 processor.processRemoveRpc((RemoveRpcActorMsg) msg);
                 break;
+            case DEVICE_ACTOR_PASSIVATION_CHECK_MSG:
+                processor.processPassivationCheck(ctx, (DeviceActorPassivationCheckMsg) msg);
+                break;
             default:
                 return false;
         }
@@ -1089,4 +1089,20 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
 
     }
 
+    void processPassivationCheck(TbActorCtx context, DeviceActorPassivationCheckMsg msg) {
+        if (!toDeviceRpcPendingMap.isEmpty() || (awaitRpcResponseFuture != null && !awaitRpcResponseFuture.isDone())) {
+            return;
+        }
+        if (!sessions.isEmpty()) {
+            // Sessions are restored from the device sessions cache when the actor is created again
+            boolean hasSyncSessions = sessions.values().stream().anyMatch(md -> md.getSessionInfo().getType() == SessionType.SYNC);
+            if (systemContext.isLocalCacheType() || hasSyncSessions) {
+                return;
+            }
+            dumpSessions();
+        }
+        log.debug("[{}][{}] Device actor is ready for passivation", tenantId, deviceId);
+        context.getParentRef().tell(new DeviceActorPassivationReadyMsg(deviceId, msg.getCheckTs()));
+    }
+
 }
@@ -61,6 +61,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
     @Override
     public void start(TbActorCtx context) throws Exception {
         if (isMyNodePartition()) {
+            systemContext.getRuleNodeDebugEventService().onRuleNodeUpdate(ruleNode);
             tbNode = initComponent(ruleNode);
             if (tbNode != null) {
                 state = ComponentLifecycleState.ACTIVE;
@@ -77,6 +78,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
                     !(ruleNode.getType().equals(newRuleNode.getType()) && ruleNode.getConfiguration().equals(newRuleNode.getConfiguration()));
             this.ruleNode = newRuleNode;
             this.defaultCtx.updateSelf(newRuleNode);
+            systemContext.getRuleNodeDebugEventService().onRuleNodeUpdate(newRuleNode);
             if (restartRequired) {
                 if (tbNode != null) {
                     tbNode.destroy();
@@ -95,6 +97,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
 
     @Override
     public void stop(TbActorCtx context) {
+        systemContext.getRuleNodeDebugEventService().onRuleNodeStop(entityId);
         if (tbNode != null) {
             tbNode.destroy();
             state = ComponentLifecycleState.SUSPENDED;
@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides which messages of a rule node in debug mode are persisted as debug events.
+ * <p>
+ * The default sampling may be overridden per rule node with the "debugSampling" object of the rule node additional info,
+ * e.g. {"mode": "RATE", "rate": 0.1} or {"mode": "FIRST_N", "firstN": 100, "intervalMs": 60000}.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class RuleNodeDebugSampler {
+
+    public static final String ADDITIONAL_INFO_KEY = "debugSampling";
+
+    private static final int RATE_PRECISION = 10000;
+
+    public enum Mode {
+        ALL, RATE, FIRST_N
+    }
+
+    @Getter
+    @ToString.Include
+    private final Mode mode;
+    @Getter
+    @ToString.Include
+    private final double rate;
+    @Getter
+    @ToString.Include
+    private final int firstN;
+    @Getter
+    @ToString.Include
+    private final long intervalMs;
+
+    private final int rateThreshold;
+    private final AtomicLong intervalStartTs = new AtomicLong();
+    private final AtomicInteger intervalCount = new AtomicInteger();
+
+    public RuleNodeDebugSampler(Mode mode, double rate, int firstN, long intervalMs) {
+        this.mode = mode;
+        this.rate = Math.min(1.0, Math.max(0.0, rate));
+        this.firstN = Math.max(0, firstN);
+        this.intervalMs = Math.max(1, intervalMs);
+        this.rateThreshold = (int) Math.round(this.rate * RATE_PRECISION);
+    }
+
+    /**
+     * Returns the new sampler of the rule node, using the settings of this sampler for the values missing in the additional info.
+     */
+    public RuleNodeDebugSampler forAdditionalInfo(JsonNode additionalInfo) {
+        JsonNode settings = additionalInfo != null ? additionalInfo.get(ADDITIONAL_INFO_KEY) : null;
+        if (settings == null || !settings.isObject()) {
+            return new RuleNodeDebugSampler(mode, rate, firstN, intervalMs);
+        }
+        Mode nodeMode = mode;
+        if (settings.hasNonNull("mode")) {
+            try {
+                nodeMode = Mode.valueOf(settings.get("mode").asText());
+            } catch (IllegalArgumentException e) {
+                // keep the default mode
+            }
+        }
+        return new RuleNodeDebugSampler(nodeMode,
+                settings.hasNonNull("rate") ? settings.get("rate").asDouble(rate) : rate,
+                settings.hasNonNull("firstN") ? settings.get("firstN").asInt(firstN) : firstN,
+                settings.hasNonNull("intervalMs") ? settings.get("intervalMs").asLong(intervalMs) : intervalMs);
+    }
+
+    public boolean test(UUID msgId, long ts) {
+        return test(msgId, ts, () -> true);
+    }
+
+    /**
+     * The decision of the RATE mode depends on the message id only,
+     * so the input and output events of the same message are both either persisted or skipped.
+     * The limits are checked only for the events selected by the sampling, and the FIRST_N slot is taken
+     * only when the limits allow the event, so neither of them is spent on the events that are not persisted.
+     */
+    public boolean test(UUID msgId, long ts, BooleanSupplier limits) {
+        switch (mode) {
+            case RATE:
+                return (rateThreshold >= RATE_PRECISION || (rateThreshold > 0 && bucket(msgId) < rateThreshold)) && limits.getAsBoolean();
+            case FIRST_N:
+                long startTs = intervalStartTs.get();
+                if (ts - startTs >= intervalMs && intervalStartTs.compareAndSet(startTs, ts)) {
+                    intervalCount.set(0);
+                }
+                return intervalCount.get() < firstN && limits.getAsBoolean() && intervalCount.incrementAndGet() <= firstN;
+            default:
+                return limits.getAsBoolean();
+        }
+    }
+
+    private static int bucket(UUID msgId) {
+        long hash = (msgId.getMostSignificantBits() ^ msgId.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 33) % RATE_PRECISION);
+    }
+
+}
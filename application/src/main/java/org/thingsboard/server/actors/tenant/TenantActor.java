@@ -26,6 +26,8 @@ import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbEntityActorId;
 import org.thingsboard.server.actors.TbEntityTypeActorIdPredicate;
 import org.thingsboard.server.actors.device.DeviceActorCreator;
+import org.thingsboard.server.actors.device.DeviceActorPassivationCheckMsg;
+import org.thingsboard.server.actors.device.DeviceActorPassivationReadyMsg;
 import org.thingsboard.server.actors.ruleChain.RuleChainManagerActor;
 import org.thingsboard.server.actors.service.ContextBasedCreator;
 import org.thingsboard.server.actors.service.DefaultActorService;
@@ -56,7 +58,11 @@ import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.service.edge.rpc.EdgeRpcService;
 import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWrapper;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 public class TenantActor extends RuleChainManagerActor {
@@ -65,6 +71,11 @@ public class TenantActor extends RuleChainManagerActor {
     private boolean isCore;
     private ApiUsageState apiUsageState;
 
+    // Used only if the device actor passivation is enabled
+    private final Map<DeviceId, Long> deviceActorsLastMsgTs = new HashMap<>();
+    private final Set<DeviceId> passivatedDevices = new HashSet<>();
+    private long lastPassivationCheckTs;
+
     private TenantActor(ActorSystemContext systemContext, TenantId tenantId) {
         super(systemContext, tenantId);
     }
@@ -108,6 +119,8 @@ public class TenantActor extends RuleChainManagerActor {
     @Override
     public void destroy(TbActorStopReason stopReason, Throwable cause) {
         log.info("[{}] Stopping tenant actor.", tenantId);
+        systemContext.getPassivatedDeviceActors().addAndGet(-passivatedDevices.size());
+        passivatedDevices.clear();
     }
 
     @Override
@@ -138,6 +151,13 @@ public class TenantActor extends RuleChainManagerActor {
                         }
                     });
                     deviceActorIds.forEach(id -> ctx.stop(id));
+                    passivatedDevices.removeIf(deviceId -> {
+                        if (isMyPartition(deviceId)) {
+                            return false;
+                        }
+                        systemContext.getPassivatedDeviceActors().decrementAndGet();
+                        return true;
+                    });
                 }
                 break;
             case COMPONENT_LIFE_CYCLE_MSG:
@@ -161,6 +181,12 @@ public class TenantActor extends RuleChainManagerActor {
                 break;
             case SESSION_TIMEOUT_MSG:
                 ctx.broadcastToChildrenByType(msg, EntityType.DEVICE);
+                if (systemContext.isDevicePassivationEnabled()) {
+                    checkIdleDeviceActors();
+                }
+                break;
+            case DEVICE_ACTOR_PASSIVATION_READY_MSG:
+                onDeviceActorPassivationReady((DeviceActorPassivationReadyMsg) msg);
                 break;
             case RULE_CHAIN_INPUT_MSG:
             case RULE_CHAIN_OUTPUT_MSG:
@@ -222,6 +248,12 @@ public class TenantActor extends RuleChainManagerActor {
             log.warn("RECEIVED INVALID MESSAGE: {}", msg);
         }
         TbActorRef deviceActor = getOrCreateDeviceActor(msg.getDeviceId());
+        if (systemContext.isDevicePassivationEnabled()) {
+            deviceActorsLastMsgTs.put(msg.getDeviceId(), System.currentTimeMillis());
+            if (passivatedDevices.remove(msg.getDeviceId())) {
+                systemContext.getPassivatedDeviceActors().decrementAndGet();
+            }
+        }
         if (priority) {
             deviceActor.tellWithHighPriority(msg);
         } else {
@@ -229,6 +261,53 @@ public class TenantActor extends RuleChainManagerActor {
         }
     }
 
+    private void checkIdleDeviceActors() {
+        long ts = System.currentTimeMillis();
+        long idleTimeout = systemContext.getDevicePassivationIdleTimeout();
+        if (ts - lastPassivationCheckTs < idleTimeout / 10) {
+            return;
+        }
+        lastPassivationCheckTs = ts;
+        long idleTs = ts - idleTimeout;
+        DeviceActorPassivationCheckMsg checkMsg = new DeviceActorPassivationCheckMsg(ts);
+        deviceActorsLastMsgTs.entrySet().removeIf(entry -> {
+            if (entry.getValue() >= idleTs) {
+                return false;
+            }
+            try {
+                ctx.tell(new TbEntityActorId(entry.getKey()), checkMsg);
+                return false;
+            } catch (TbActorNotRegisteredException e) {
+                // Device actor was already stopped, for example due to partition change
+                return true;
+            }
+        });
+    }
+
+    private void onDeviceActorPassivationReady(DeviceActorPassivationReadyMsg msg) {
+        DeviceId deviceId = msg.getDeviceId();
+        Long lastMsgTs = deviceActorsLastMsgTs.get(deviceId);
+        // Messages routed after the check may be still in the mailbox of the device actor
+        if (lastMsgTs == null || lastMsgTs >= msg.getCheckTs()) {
+            return;
+        }
+        log.debug("[{}][{}] Passivating idle device actor", tenantId, deviceId);
+        deviceActorsLastMsgTs.remove(deviceId);
+        ctx.stop(new TbEntityActorId(deviceId));
+        if (passivatedDevices.add(deviceId)) {
+            systemContext.getPassivatedDeviceActors().incrementAndGet();
+        }
+    }
+
+    private void onDeviceDeleted(DeviceId deviceId) {
+        // The deleted device will not receive messages anymore, so its actor and passivation state are dropped
+        deviceActorsLastMsgTs.remove(deviceId);
+        ctx.stop(new TbEntityActorId(deviceId));
+        if (passivatedDevices.remove(deviceId)) {
+            systemContext.getPassivatedDeviceActors().decrementAndGet();
+        }
+    }
+
     private void onComponentLifecycleMsg(ComponentLifecycleMsg msg) {
         if (msg.getEntityId().getEntityType().equals(EntityType.API_USAGE_STATE)) {
             ApiUsageState old = getApiUsageState();
@@ -240,6 +319,10 @@ public class TenantActor extends RuleChainManagerActor {
                 log.info("[{}] Received API state update. Going to ENABLE Rule Engine execution.", tenantId);
                 initRuleChains();
             }
+        } else if (msg.getEntityId().getEntityType() == EntityType.DEVICE && msg.getEvent() == ComponentLifecycleEvent.DELETED) {
+            if (systemContext.isDevicePassivationEnabled()) {
+                onDeviceDeleted(new DeviceId(msg.getEntityId().getId()));
+            }
         } else if (msg.getEntityId().getEntityType() == EntityType.EDGE) {
             EdgeId edgeId = new EdgeId(msg.getEntityId().getId());
             EdgeRpcService edgeRpcService = systemContext.getEdgeRpcService();
@@ -28,6 +28,8 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.TenantProfile;
 import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
 import org.thingsboard.server.common.data.id.CustomerId;
@@ -42,6 +44,7 @@ import org.thingsboard.server.queue.util.TbCoreComponent;
 import org.thingsboard.server.service.security.model.SecurityUser;
 import org.thingsboard.server.service.security.model.UserPrincipal;
 import org.thingsboard.server.service.ws.SessionEvent;
+import org.thingsboard.server.service.ws.WebSocketMsgEncoding;
 import org.thingsboard.server.service.ws.WebSocketMsgEndpoint;
 import org.thingsboard.server.service.ws.WebSocketService;
 import org.thingsboard.server.service.ws.WebSocketSessionRef;
@@ -70,6 +73,8 @@ import static org.thingsboard.server.service.ws.DefaultWebSocketService.NUMBER_O
 @Slf4j
 public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocketMsgEndpoint {
 
+    private static final String ENCODING_PARAM = "encoding";
+
     private final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
 
@@ -211,6 +216,10 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
         WebSocketSessionType sessionType = WebSocketSessionType.forName(serviceToken)
                 .orElseThrow(() -> new InvalidParameterException("Can't find plugin with specified token!"));
 
+        String encodingParam = UriComponentsBuilder.fromUri(sessionUri).build().getQueryParams().getFirst(ENCODING_PARAM);
+        WebSocketMsgEncoding msgEncoding = StringUtils.isEmpty(encodingParam) ? WebSocketMsgEncoding.JSON :
+                WebSocketMsgEncoding.forName(encodingParam).orElseThrow(() -> new InvalidParameterException("Unsupported encoding!"));
+
         SecurityUser currentUser = (SecurityUser) ((Authentication) session.getPrincipal()).getPrincipal();
         return WebSocketSessionRef.builder()
                 .sessionId(UUID.randomUUID().toString())
@@ -218,6 +227,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                 .localAddress(session.getLocalAddress())
                 .remoteAddress(session.getRemoteAddress())
                 .sessionType(sessionType)
+                .msgEncoding(msgEncoding)
                 .build();
     }
 
@@ -296,6 +306,10 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
                     TbWebSocketTextMsg textMsg = (TbWebSocketTextMsg) msg;
                     this.asyncRemote.sendText(textMsg.getMsg(), this);
                     // isSending status will be reset in the onResult method by call back
+                } else if (TbWebSocketMsgType.BINARY.equals(msg.getType())) {
+                    TbWebSocketBinaryMsg binaryMsg = (TbWebSocketBinaryMsg) msg;
+                    this.asyncRemote.sendBinary(binaryMsg.getMsg(), this);
+                    // isSending status will be reset in the onResult method by call back
                 } else {
                     TbWebSocketPingMsg pingMsg = (TbWebSocketPingMsg) msg;
                     this.asyncRemote.sendPing(pingMsg.getMsg()); // blocking call
@@ -335,8 +349,18 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements WebSocke
 
     @Override
     public void send(WebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
+        log.debug("[{}] Processing {}", sessionRef.getSessionId(), msg);
+        send(sessionRef, subscriptionId, new TbWebSocketTextMsg(msg));
+    }
+
+    @Override
+    public void send(WebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException {
+        log.debug("[{}] Processing binary msg of {} bytes", sessionRef.getSessionId(), msg.length);
+        send(sessionRef, subscriptionId, new TbWebSocketBinaryMsg(msg));
+    }
+
+    private void send(WebSocketSessionRef sessionRef, int subscriptionId, TbWebSocketMsg<?> msg) {
         String externalId = sessionRef.getSessionId();
-        log.debug("[{}] Processing {}", externalId, msg);
         String internalId = externalSessionMap.get(externalId);
         if (internalId != null) {
             SessionMetaData sessionMd = internalSessionMap.get(internalId);
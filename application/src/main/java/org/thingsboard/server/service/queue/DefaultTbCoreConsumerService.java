@@ -94,10 +94,12 @@ import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWra
 import org.thingsboard.server.service.ws.notification.sub.NotificationRequestUpdate;
 import org.thingsboard.server.service.ws.notification.sub.NotificationUpdate;
 import org.thingsboard.server.service.ws.notification.sub.NotificationsSubscriptionUpdate;
+import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -493,7 +495,17 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
 
     private void forwardToLocalSubMgrService(LocalSubscriptionServiceMsgProto msg, TbCallback callback) {
         if (msg.hasSubUpdate()) {
-            localSubscriptionService.onSubscriptionUpdate(msg.getSubUpdate().getSessionId(), TbSubscriptionUtils.fromProto(msg.getSubUpdate()), callback);
+            TransportProtos.TbSubscriptionUpdateProto subUpdateProto = msg.getSubUpdate();
+            if (subUpdateProto.getTargetsCount() > 0) {
+                Map<String, List<Object>> data = TbSubscriptionUtils.toSubscriptionUpdateData(subUpdateProto);
+                for (TransportProtos.TbSubscriptionTargetProto target : subUpdateProto.getTargetsList()) {
+                    localSubscriptionService.onSubscriptionUpdate(target.getSessionId(),
+                            new TelemetrySubscriptionUpdate(target.getSubscriptionId(), data), TbCallback.EMPTY);
+                }
+                callback.onSuccess();
+            } else {
+                localSubscriptionService.onSubscriptionUpdate(subUpdateProto.getSessionId(), TbSubscriptionUtils.fromProto(subUpdateProto), callback);
+            }
         } else if (msg.hasAlarmSubUpdate()) {
             localSubscriptionService.onSubscriptionUpdate(msg.getAlarmSubUpdate().getSessionId(), TbSubscriptionUtils.fromProto(msg.getAlarmSubUpdate()), callback);
         } else if (msg.hasNotificationsSubUpdate()) {
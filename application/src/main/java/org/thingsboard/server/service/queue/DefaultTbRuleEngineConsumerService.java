@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.service.queue;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.ProtocolStringList;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,6 +29,7 @@ import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.data.id.QueueId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.queue.Queue;
+import org.thingsboard.server.common.data.queue.SubmitStrategyType;
 import org.thingsboard.server.common.data.rpc.RpcError;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.gen.MsgProtos;
@@ -105,6 +107,10 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     boolean prometheusStatsEnabled;
     @Value("${queue.rule-engine.topic-deletion-delay:30}")
     private int topicDeletionDelayInSec;
+    @Value("${queue.rule-engine.pipelining.enabled:false}")
+    private boolean pipeliningEnabled;
+    @Value("${queue.rule-engine.pipelining.max-in-flight-packs:4}")
+    private int maxInFlightPacks;
 
     private final StatsFactory statsFactory;
     private final TbRuleEngineSubmitStrategyFactory submitStrategyFactory;
@@ -120,7 +126,8 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private final ConcurrentMap<QueueKey, Queue> consumerConfigurations = new ConcurrentHashMap<>();
     private final ConcurrentMap<QueueKey, TbRuleEngineConsumerStats> consumerStats = new ConcurrentHashMap<>();
     private final ConcurrentMap<QueueKey, TbTopicWithConsumerPerPartition> topicsConsumerPerPartition = new ConcurrentHashMap<>();
-    final ExecutorService submitExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-submit"));
+    private final ConcurrentMap<QueueKey, ExecutorService> submitExecutors = new ConcurrentHashMap<>();
+    final ExecutorService packExecutor = Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-pack"));
     final ScheduledExecutorService repartitionExecutor = Executors.newScheduledThreadPool(1, ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-repartition"));
 
     public DefaultTbRuleEngineConsumerService(TbRuleEngineProcessingStrategyFactory processingStrategyFactory,
@@ -176,7 +183,8 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     @PreDestroy
     public void stop() {
         super.destroy();
-        submitExecutor.shutdownNow();
+        submitExecutors.values().forEach(ExecutorService::shutdownNow);
+        packExecutor.shutdownNow();
         repartitionExecutor.shutdownNow();
     }
 
@@ -278,7 +286,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     void launchConsumer(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
         if (isReady) {
-            consumersExecutor.execute(() -> consumerLoop(consumer, configuration, stats, threadSuffix));
+            consumersExecutor.execute(() -> startConsumerLoop(consumer, configuration, stats, threadSuffix));
         } else {
             scheduleLaunchConsumer(consumer, configuration, stats, threadSuffix);
         }
@@ -287,13 +295,21 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private void scheduleLaunchConsumer(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
         repartitionExecutor.schedule(() -> {
             if (isReady) {
-                consumersExecutor.execute(() -> consumerLoop(consumer, configuration, stats, threadSuffix));
+                consumersExecutor.execute(() -> startConsumerLoop(consumer, configuration, stats, threadSuffix));
             } else {
                 scheduleLaunchConsumer(consumer, configuration, stats, threadSuffix);
             }
         }, 10, TimeUnit.SECONDS);
     }
 
+    private void startConsumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
+        if (isPipelined(configuration)) {
+            pipelinedConsumerLoop(consumer, configuration, stats, threadSuffix);
+        } else {
+            consumerLoop(consumer, configuration, stats, threadSuffix);
+        }
+    }
+
     void consumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, org.thingsboard.server.common.data.queue.Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
         updateCurrentThreadName(threadSuffix);
         while (!stopped && !consumer.isStopped() && !consumer.isQueueDeleted()) {
@@ -302,39 +318,59 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 if (msgs.isEmpty()) {
                     continue;
                 }
-                final TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(configuration);
-                final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
-                submitStrategy.init(msgs);
-                while (!stopped && !consumer.isStopped()) {
-                    TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
-                    submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
-
-                    final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
-
-                    TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
-                    if (timeout) {
-                        printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
-                    }
-                    if (!ctx.getFailedMap().isEmpty()) {
-                        printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
-                    }
-                    ctx.printProfilerStats();
-
-                    TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-                    if (statsEnabled) {
-                        stats.log(result, decision.isCommit());
+                processMsgs(consumer, configuration, stats, msgs);
+                consumer.commit();
+            } catch (Exception e) {
+                if (!stopped) {
+                    log.warn("Failed to process messages from queue.", e);
+                    try {
+                        Thread.sleep(pollDuration);
+                    } catch (InterruptedException e2) {
+                        log.trace("Failed to wait until the server has capacity to handle new requests", e2);
                     }
+                }
+            }
+        }
 
-                    ctx.cleanup();
+        if (consumer.isQueueDeleted()) {
+            processQueueDeletion(configuration, consumer);
+        }
+        log.info("TB Rule Engine Consumer stopped.");
+    }
 
-                    if (decision.isCommit()) {
-                        submitStrategy.stop();
-                        break;
-                    } else {
-                        submitStrategy.update(decision.getReprocessMap());
+    /**
+     * Keeps up to maxInFlightPacks packs of the consumer in processing, so the slow message delays the commit
+     * but not the processing of the next packs. The consumer commits the position of the last pack processed
+     * together with all the previous ones, or all polled packs if the queue does not support the partial commit.
+     */
+    void pipelinedConsumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
+        updateCurrentThreadName(threadSuffix);
+        TbRuleEnginePackPipeline pipeline = new TbRuleEnginePackPipeline(maxInFlightPacks, stats.getInFlightPacks(), stats.getCommitLag());
+        while (!stopped && !consumer.isStopped() && !consumer.isQueueDeleted()) {
+            try {
+                if (pipeline.canPoll()) {
+                    List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = consumer.poll(configuration.getPollInterval());
+                    if (!msgs.isEmpty()) {
+                        long seq = pipeline.add(msgs.size(), consumer.getCommitPosition());
+                        packExecutor.execute(() -> {
+                            try {
+                                processMsgs(consumer, configuration, stats, msgs);
+                            } catch (Exception e) {
+                                if (!stopped) {
+                                    log.warn("Failed to process messages from queue.", e);
+                                }
+                            } finally {
+                                pipeline.ack(seq);
+                            }
+                        });
                     }
+                } else {
+                    pipeline.await(configuration.getPollInterval());
+                }
+                if (pipeline.isCommitReady()) {
+                    consumer.commit(pipeline.getCommitPosition());
+                    pipeline.onCommit();
                 }
-                consumer.commit();
             } catch (Exception e) {
                 if (!stopped) {
                     log.warn("Failed to process messages from queue.", e);
@@ -346,6 +382,11 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 }
             }
         }
+        if (pipeline.getInFlightPacks() > 0 || pipeline.getUncommittedMsgs() > 0) {
+            log.info("[{}] Consumer stopped with [{}] packs in processing and [{}] uncommitted messages", configuration.getName(),
+                    pipeline.getInFlightPacks(), pipeline.getUncommittedMsgs());
+        }
+        pipeline.close();
 
         if (consumer.isQueueDeleted()) {
             processQueueDeletion(configuration, consumer);
@@ -353,6 +394,58 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         log.info("TB Rule Engine Consumer stopped.");
     }
 
+    private void processMsgs(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats, List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) throws InterruptedException {
+        final TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(configuration);
+        final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
+        final ExecutorService submitExecutor = getSubmitExecutor(configuration);
+        submitStrategy.init(msgs);
+        while (!stopped && !consumer.isStopped()) {
+            TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
+            submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
+
+            final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
+
+            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
+            if (timeout) {
+                printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
+            }
+            if (!ctx.getFailedMap().isEmpty()) {
+                printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
+            }
+            ctx.printProfilerStats();
+
+            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+            if (statsEnabled) {
+                stats.log(result, decision.isCommit());
+            }
+
+            ctx.cleanup();
+
+            if (decision.isCommit()) {
+                submitStrategy.stop();
+                break;
+            } else {
+                submitStrategy.update(decision.getReprocessMap());
+            }
+        }
+    }
+
+    /**
+     * The packs of different originators may be processed concurrently only when the submit strategy does not order them.
+     */
+    boolean isPipelined(Queue configuration) {
+        if (!pipeliningEnabled || maxInFlightPacks <= 1 || configuration.getSubmitStrategy() == null) {
+            return false;
+        }
+        SubmitStrategyType type = configuration.getSubmitStrategy().getType();
+        return type == SubmitStrategyType.BURST || type == SubmitStrategyType.BATCH;
+    }
+
+    private ExecutorService getSubmitExecutor(Queue configuration) {
+        return submitExecutors.computeIfAbsent(new QueueKey(ServiceType.TB_RULE_ENGINE, configuration), key ->
+                Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-submit-" + configuration.getName())));
+    }
+
     void updateCurrentThreadName(String threadSuffix) {
         String name = Thread.currentThread().getName();
         int spliteratorIndex = name.indexOf(THREAD_TOPIC_SEPARATOR);
@@ -379,8 +472,14 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 new TbMsgPackCallback(id, tenantId, ctx, stats.getTimer(tenantId, SUCCESSFUL_STATUS), stats.getTimer(tenantId, FAILED_STATUS)) :
                 new TbMsgPackCallback(id, tenantId, ctx);
         try {
-            if (toRuleEngineMsg.getTbMsg() != null && !toRuleEngineMsg.getTbMsg().isEmpty()) {
-                forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, callback);
+            if (toRuleEngineMsg.getTbMsgsCount() > 0) {
+                TbMsgBatchCallback batchCallback = new TbMsgBatchCallback(callback, toRuleEngineMsg.getTbMsgsCount());
+                ctx.addBatchCallback(id, batchCallback);
+                for (int i = 0; i < toRuleEngineMsg.getTbMsgsCount(); i++) {
+                    forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, toRuleEngineMsg.getTbMsgs(i), batchCallback.getMsgCallback(i));
+                }
+            } else if (toRuleEngineMsg.getTbMsg() != null && !toRuleEngineMsg.getTbMsg().isEmpty()) {
+                forwardToRuleEngineActor(configuration.getName(), tenantId, toRuleEngineMsg, toRuleEngineMsg.getTbMsg(), callback);
             } else {
                 callback.onSuccess();
             }
@@ -394,7 +493,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         log.info("{} to process [{}] messages", prefix, map.size());
         for (Map.Entry<UUID, TbProtoQueueMsg<ToRuleEngineMsg>> pending : map.entrySet()) {
             ToRuleEngineMsg tmp = pending.getValue().getValue();
-            TbMsg tmpMsg = TbMsg.fromBytes(configuration.getName(), tmp.getTbMsg().toByteArray(), TbMsgCallback.EMPTY);
+            TbMsg tmpMsg = TbMsg.fromBytes(configuration.getName(), tmp.getTbMsgsCount() > 0 ? tmp.getTbMsgs(0) : tmp.getTbMsg(), TbMsgCallback.EMPTY);
             RuleNodeInfo ruleNodeInfo = ctx.getLastVisitedRuleNode(pending.getKey());
             if (printAll) {
                 log.trace("[{}] {} to process message: {}, Last Rule Node: {}", TenantId.fromUUID(new UUID(tmp.getTenantIdMSB(), tmp.getTenantIdLSB())), prefix, tmpMsg, ruleNodeInfo);
@@ -501,11 +600,15 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                     consumer.onQueueDelete();
                 }
             }
+            ExecutorService submitExecutor = submitExecutors.remove(queueKey);
+            if (submitExecutor != null) {
+                submitExecutor.shutdown();
+            }
         }
     }
 
-    private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback) {
-        TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg().toByteArray(), callback);
+    private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, ByteString tbMsgBytes, TbMsgCallback callback) {
+        TbMsg tbMsg = TbMsg.fromBytes(queueName, tbMsgBytes, callback);
         QueueToRuleEngineMsg msg;
         ProtocolStringList relationTypesList = toRuleEngineMsg.getRelationTypesList();
         Set<String> relationTypes = null;
@@ -531,7 +634,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 }
                 for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
                     try {
-                        MsgProtos.TbMsgProto tbMsgProto = MsgProtos.TbMsgProto.parseFrom(msg.getValue().getTbMsg().toByteArray());
+                        ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
+                        ByteString tbMsgBytes = toRuleEngineMsg.getTbMsgsCount() > 0 ? toRuleEngineMsg.getTbMsgs(0) : toRuleEngineMsg.getTbMsg();
+                        MsgProtos.TbMsgProto tbMsgProto = MsgProtos.TbMsgProto.parseFrom(tbMsgBytes);
                         EntityId originator = EntityIdFactory.getByTypeAndUuid(tbMsgProto.getEntityType(), new UUID(tbMsgProto.getEntityIdMSB(), tbMsgProto.getEntityIdLSB()));
 
                         TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_RULE_ENGINE, queue.getName(), TenantId.SYS_TENANT_ID, originator);
@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.RuleNodeInfo;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Callback of the messages from one batched queue message.
+ * The outcome of each message is tracked separately: the queue message is processed successfully when all of its messages
+ * are processed, and failed with the first failure once all of its messages are done. A failed message doesn't stop its siblings,
+ * and {@link #retainUnprocessed} leaves only the failed and unfinished messages in the queue message to retry.
+ */
+public class TbMsgBatchCallback {
+
+    private static final int PENDING = 0;
+    private static final int PROCESSED = 1;
+    private static final int FAILED = 2;
+
+    private final TbMsgCallback callback;
+    private final AtomicIntegerArray statuses;
+    private final AtomicInteger pending;
+    private final AtomicReference<RuleEngineException> failure = new AtomicReference<>();
+    private final AtomicReference<RuleEngineException> rateLimit = new AtomicReference<>();
+
+    public TbMsgBatchCallback(TbMsgCallback callback, int size) {
+        this.callback = callback;
+        this.statuses = new AtomicIntegerArray(size);
+        this.pending = new AtomicInteger(size);
+    }
+
+    /**
+     * Returns the callback of the message with the given index in the queue message.
+     */
+    public TbMsgCallback getMsgCallback(int index) {
+        return new MsgCallback(index);
+    }
+
+    /**
+     * Returns the queue message without the messages that were processed successfully,
+     * or the same queue message if all of its messages are to be processed again.
+     */
+    public ToRuleEngineMsg retainUnprocessed(ToRuleEngineMsg msg) {
+        if (msg.getTbMsgsCount() != statuses.length()) {
+            return msg;
+        }
+        if (pending.get() == statuses.length()) {
+            return msg;
+        }
+        ToRuleEngineMsg.Builder builder = msg.toBuilder().clearTbMsgs();
+        for (int i = 0; i < statuses.length(); i++) {
+            if (statuses.get(i) != PROCESSED) {
+                builder.addTbMsgs(msg.getTbMsgs(i));
+            }
+        }
+        return builder.build();
+    }
+
+    private void onDone(int index, int status) {
+        if (statuses.compareAndSet(index, PENDING, status) && pending.decrementAndGet() == 0) {
+            RuleEngineException e = failure.get();
+            if (e != null) {
+                callback.onFailure(e);
+                return;
+            }
+            e = rateLimit.get();
+            if (e != null) {
+                callback.onRateLimit(e);
+            } else {
+                callback.onSuccess();
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class MsgCallback implements TbMsgCallback {
+
+        private final int index;
+
+        @Override
+        public void onSuccess() {
+            onDone(index, PROCESSED);
+        }
+
+        @Override
+        public void onRateLimit(RuleEngineException e) {
+            rateLimit.compareAndSet(null, e);
+            onDone(index, PROCESSED);
+        }
+
+        @Override
+        public void onFailure(RuleEngineException e) {
+            failure.compareAndSet(null, e);
+            onDone(index, FAILED);
+        }
+
+        @Override
+        public boolean isMsgValid() {
+            return callback.isMsgValid();
+        }
+
+        @Override
+        public void onProcessingStart(RuleNodeInfo ruleNodeInfo) {
+            callback.onProcessingStart(ruleNodeInfo);
+        }
+
+        @Override
+        public void onProcessingEnd(RuleNodeId ruleNodeId) {
+            callback.onProcessingEnd(ruleNodeId);
+        }
+
+    }
+
+}
@@ -55,6 +55,8 @@ public class TbMsgPackProcessingContext {
 
     private final ConcurrentMap<UUID, RuleNodeInfo> lastRuleNodeMap = new ConcurrentHashMap<>();
 
+    private final ConcurrentMap<UUID, TbMsgBatchCallback> batchCallbacks = new ConcurrentHashMap<>();
+
     private volatile boolean canceled = false;
 
     public TbMsgPackProcessingContext(String queueName, TbRuleEngineSubmitStrategy submitStrategy, boolean skipTimeoutMsgsPossible) {
@@ -74,6 +76,22 @@ public class TbMsgPackProcessingContext {
         return success;
     }
 
+    public void addBatchCallback(UUID id, TbMsgBatchCallback batchCallback) {
+        batchCallbacks.put(id, batchCallback);
+    }
+
+    /**
+     * Returns the queue message without its batched messages that were processed successfully, so they are not processed twice on retry.
+     */
+    public TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> retainUnprocessed(UUID id, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg) {
+        TbMsgBatchCallback batchCallback = batchCallbacks.get(id);
+        if (batchCallback == null) {
+            return msg;
+        }
+        TransportProtos.ToRuleEngineMsg value = batchCallback.retainUnprocessed(msg.getValue());
+        return value == msg.getValue() ? msg : new TbProtoQueueMsg<>(msg.getKey(), value, msg.getHeaders());
+    }
+
     public void onSuccess(UUID id) {
         TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg;
         boolean empty = false;
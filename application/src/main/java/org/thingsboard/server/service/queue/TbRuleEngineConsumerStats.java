@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class TbRuleEngineConsumerStats {
@@ -44,6 +45,8 @@ public class TbRuleEngineConsumerStats {
     public static final String FAILED_MSGS = "failedMsgs";
     public static final String SUCCESSFUL_ITERATIONS = "successfulIterations";
     public static final String FAILED_ITERATIONS = "failedIterations";
+    public static final String IN_FLIGHT_PACKS = "inFlightPacks";
+    public static final String COMMIT_LAG = "commitLag";
 
     private final StatsFactory statsFactory;
 
@@ -58,6 +61,9 @@ public class TbRuleEngineConsumerStats {
     private final StatsCounter successIterationsCounter;
     private final StatsCounter failedIterationsCounter;
 
+    private final AtomicInteger inFlightPacks = new AtomicInteger();
+    private final AtomicInteger commitLag = new AtomicInteger();
+
     private final List<StatsCounter> counters = new ArrayList<>();
     private final ConcurrentMap<UUID, TbTenantRuleEngineStats> tenantStats = new ConcurrentHashMap<>();
     private final ConcurrentMap<TenantId, Timer> tenantMsgProcessTimers = new ConcurrentHashMap<>();
@@ -80,6 +86,8 @@ public class TbRuleEngineConsumerStats {
         this.tmpFailedMsgCounter = statsFactory.createStatsCounter(statsKey, TMP_FAILED);
         this.successIterationsCounter = statsFactory.createStatsCounter(statsKey, SUCCESSFUL_ITERATIONS);
         this.failedIterationsCounter = statsFactory.createStatsCounter(statsKey, FAILED_ITERATIONS);
+        statsFactory.createGauge(statsKey, inFlightPacks, "statsName", IN_FLIGHT_PACKS);
+        statsFactory.createGauge(statsKey, commitLag, "statsName", COMMIT_LAG);
 
         counters.add(totalMsgCounter);
         counters.add(successMsgCounter);
@@ -152,6 +160,14 @@ public class TbRuleEngineConsumerStats {
         return tenantExceptions;
     }
 
+    public AtomicInteger getInFlightPacks() {
+        return inFlightPacks;
+    }
+
+    public AtomicInteger getCommitLag() {
+        return commitLag;
+    }
+
     public void printStats() {
         int total = totalMsgCounter.get();
         if (total > 0) {
@@ -159,6 +175,10 @@ public class TbRuleEngineConsumerStats {
             counters.forEach(counter -> {
                 stats.append(counter.getName()).append(" = [").append(counter.get()).append("] ");
             });
+            if (inFlightPacks.get() > 0 || commitLag.get() > 0) {
+                stats.append(IN_FLIGHT_PACKS).append(" = [").append(inFlightPacks.get()).append("] ");
+                stats.append(COMMIT_LAG).append(" = [").append(commitLag.get()).append("] ");
+            }
             if (tenantId.isSysTenantId()) {
                 log.info("[{}] Stats: {}", queueName, stats);
             } else {
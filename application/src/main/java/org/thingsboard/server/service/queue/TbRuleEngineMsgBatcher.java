@@ -0,0 +1,312 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the messages that rule chains push to the rule engine queues.
+ * The messages of the same partition and originator are collected during the linger window
+ * and sent as one queue message, so the order of the messages of the originator is preserved.
+ * A closed batch is detached from the map and sent after the map lock is released. The closed batches of the same key
+ * are sent one at a time by the thread that closed the first of them, so the next batch of the originator can't overtake it.
+ * The result of the send is reported to the callback of each message of the batch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TbRuleEngineMsgBatcher {
+
+    private static final String STATS_KEY = "ruleEngineBatchSubmit";
+    private static final int[] SIZE_BUCKETS = {1, 4, 16, 64};
+
+    private final TbClusterService clusterService;
+    private final StatsFactory statsFactory;
+
+    @Value("${queue.rule-engine.batch-submit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${queue.rule-engine.batch-submit.linger-ms:5}")
+    private long lingerMs;
+
+    @Value("${queue.rule-engine.batch-submit.max-size:100}")
+    private int maxSize;
+
+    @Value("${queue.rule-engine.stats.enabled:true}")
+    private boolean statsEnabled;
+
+    private final ConcurrentMap<BatchKey, KeyBatches> batches = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    private StatsCounter[] sizeCounters;
+    private StatsCounter totalMsgs;
+    private StatsCounter failedBatches;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("tb-rule-engine-batch-submit"));
+        }
+        sizeCounters = new StatsCounter[SIZE_BUCKETS.length + 1];
+        for (int i = 0; i < sizeCounters.length; i++) {
+            sizeCounters[i] = statsFactory.createStatsCounter(STATS_KEY, getBucketName(i));
+        }
+        totalMsgs = statsFactory.createStatsCounter(STATS_KEY, "totalMsgs");
+        failedBatches = statsFactory.createStatsCounter(STATS_KEY, "failedBatches");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (BatchKey key : batches.keySet()) {
+            List<List<BatchEntry>> toSend = new ArrayList<>(1);
+            batches.computeIfPresent(key, (k, keyBatches) -> {
+                if (keyBatches.pending != null) {
+                    keyBatches.pending.flushFuture.cancel(false);
+                    keyBatches.close();
+                }
+                keyBatches.takeClosed(toSend);
+                return keyBatches;
+            });
+            sendInOrder(key, toSend);
+        }
+    }
+
+    public void push(TopicPartitionInfo tpi, TenantId tenantId, TbMsg msg, TbQueueCallback callback) {
+        if (!enabled || maxSize <= 1) {
+            send(tpi, tenantId, List.of(new BatchEntry(msg, callback)));
+            return;
+        }
+        BatchKey key = new BatchKey(tpi, tenantId, msg.getOriginator());
+        List<List<BatchEntry>> toSend = new ArrayList<>(1);
+        batches.compute(key, (k, keyBatches) -> {
+            if (keyBatches == null) {
+                keyBatches = new KeyBatches();
+            }
+            Batch batch = keyBatches.pending;
+            if (batch == null) {
+                Batch newBatch = new Batch(maxSize);
+                newBatch.flushFuture = scheduler.schedule(() -> flush(k, newBatch), lingerMs, TimeUnit.MILLISECONDS);
+                keyBatches.pending = batch = newBatch;
+            }
+            batch.entries.add(new BatchEntry(msg, callback));
+            if (batch.entries.size() >= maxSize) {
+                batch.flushFuture.cancel(false);
+                keyBatches.close();
+            }
+            keyBatches.takeClosed(toSend);
+            return keyBatches;
+        });
+        sendInOrder(key, toSend);
+    }
+
+    /**
+     * Closes the batch if it is still pending, so the scheduled flush of a batch that was closed when full
+     * does not flush the next batch of the same key early.
+     */
+    private void flush(BatchKey key, Batch batch) {
+        List<List<BatchEntry>> toSend = new ArrayList<>(1);
+        batches.computeIfPresent(key, (k, keyBatches) -> {
+            if (keyBatches.pending == batch) {
+                keyBatches.close();
+                keyBatches.takeClosed(toSend);
+            }
+            return keyBatches;
+        });
+        sendInOrder(key, toSend);
+    }
+
+    /**
+     * Sends the taken batches and the batches of the key closed in the meantime, then releases the key,
+     * so only one thread at a time sends the batches of the key.
+     */
+    private void sendInOrder(BatchKey key, List<List<BatchEntry>> toSend) {
+        while (!toSend.isEmpty()) {
+            for (List<BatchEntry> entries : toSend) {
+                send(key.getTpi(), key.getTenantId(), entries);
+            }
+            toSend.clear();
+            batches.computeIfPresent(key, (k, keyBatches) -> {
+                keyBatches.sending = false;
+                keyBatches.takeClosed(toSend);
+                return keyBatches.isEmpty() ? null : keyBatches;
+            });
+        }
+    }
+
+    private void send(TopicPartitionInfo tpi, TenantId tenantId, List<BatchEntry> entries) {
+        try {
+            ToRuleEngineMsg.Builder builder = ToRuleEngineMsg.newBuilder()
+                    .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                    .setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+            TbQueueCallback callback;
+            if (entries.size() == 1) {
+                builder.setTbMsg(TbMsg.toByteString(entries.get(0).getMsg()));
+                callback = entries.get(0).getCallback();
+            } else {
+                for (BatchEntry entry : entries) {
+                    builder.addTbMsgs(TbMsg.toByteString(entry.getMsg()));
+                }
+                callback = new BatchCallback(entries);
+            }
+            clusterService.pushMsgToRuleEngine(tpi, entries.get(0).getMsg().getId(), builder.build(), callback);
+            sizeCounters[getBucket(entries.size())].increment();
+            totalMsgs.add(entries.size());
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to push {} messages to the rule engine", tenantId, tpi.getFullTopicName(), entries.size(), e);
+            for (BatchEntry entry : entries) {
+                entry.getCallback().onFailure(e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${queue.rule-engine.stats.print-interval-ms:60000}")
+    public void printStats() {
+        if (enabled && statsEnabled) {
+            int total = totalMsgs.get();
+            if (total > 0) {
+                StringBuilder sizes = new StringBuilder();
+                for (int i = 0; i < sizeCounters.length; i++) {
+                    sizes.append(" [").append(getBucketName(i)).append(":").append(sizeCounters[i].get()).append("]");
+                }
+                log.info("Rule engine batch submit: totalMsgs [{}] failedBatches [{}] batch sizes{}", total, failedBatches.get(), sizes);
+            }
+            for (StatsCounter counter : sizeCounters) {
+                counter.clear();
+            }
+            totalMsgs.clear();
+            failedBatches.clear();
+        }
+    }
+
+    private static int getBucket(int size) {
+        for (int i = 0; i < SIZE_BUCKETS.length; i++) {
+            if (size <= SIZE_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return SIZE_BUCKETS.length;
+    }
+
+    private static String getBucketName(int bucket) {
+        if (bucket == SIZE_BUCKETS.length) {
+            return "size_" + (SIZE_BUCKETS[bucket - 1] + 1) + "+";
+        }
+        int from = bucket == 0 ? 1 : SIZE_BUCKETS[bucket - 1] + 1;
+        int to = SIZE_BUCKETS[bucket];
+        return from == to ? "size_" + to : "size_" + from + "-" + to;
+    }
+
+    @Data
+    private static class BatchKey {
+        private final TopicPartitionInfo tpi;
+        private final TenantId tenantId;
+        private final EntityId originator;
+    }
+
+    @Data
+    private static class BatchEntry {
+        private final TbMsg msg;
+        private final TbQueueCallback callback;
+    }
+
+    private static class Batch {
+        private final List<BatchEntry> entries;
+        private ScheduledFuture<?> flushFuture;
+
+        Batch(int maxSize) {
+            this.entries = new ArrayList<>(Math.min(maxSize, 16));
+        }
+    }
+
+    /**
+     * The batches of one key, guarded by the lock of the key in the map.
+     */
+    private static class KeyBatches {
+        private final Deque<List<BatchEntry>> closed = new ArrayDeque<>();
+        private Batch pending;
+        private boolean sending;
+
+        void close() {
+            closed.add(pending.entries);
+            pending = null;
+        }
+
+        void takeClosed(List<List<BatchEntry>> toSend) {
+            if (!sending && !closed.isEmpty()) {
+                toSend.addAll(closed);
+                closed.clear();
+                sending = true;
+            }
+        }
+
+        boolean isEmpty() {
+            return pending == null && closed.isEmpty() && !sending;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class BatchCallback implements TbQueueCallback {
+        private final List<BatchEntry> entries;
+
+        @Override
+        public void onSuccess(TbQueueMsgMetadata metadata) {
+            for (BatchEntry entry : entries) {
+                entry.getCallback().onSuccess(metadata);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            failedBatches.increment();
+            for (BatchEntry entry : entries) {
+                entry.getCallback().onFailure(t);
+            }
+        }
+    }
+
+}
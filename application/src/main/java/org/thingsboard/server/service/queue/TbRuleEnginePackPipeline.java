@@ -0,0 +1,170 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the message packs of one consumer that are processed concurrently.
+ * The packs are acknowledged in any order, while the watermark moves only over the contiguous acknowledged packs.
+ * If the consumer reports the commit position of each poll, the consumer keeps polling while fewer than maxInFlightPacks packs
+ * are in processing and commits the position of the watermark pack, so a slow message delays only the commit.
+ * Otherwise, the consumer may only commit the whole polled position, so the new packs are not accepted after the pipeline is full
+ * until all of its packs are acknowledged.
+ */
+public class TbRuleEnginePackPipeline {
+
+    private final int maxInFlightPacks;
+    private final AtomicInteger inFlightPacksGauge;
+    private final AtomicInteger commitLagGauge;
+
+    private final Deque<Pack> packs = new ArrayDeque<>();
+    private long nextSeq;
+    private long watermark = -1;
+    private Object commitPosition;
+    private int inFlightPacks;
+    private int uncommittedMsgs;
+    private int committableMsgs;
+    private boolean partialCommit;
+    private boolean draining;
+
+    public TbRuleEnginePackPipeline(int maxInFlightPacks, AtomicInteger inFlightPacksGauge, AtomicInteger commitLagGauge) {
+        this.maxInFlightPacks = Math.max(1, maxInFlightPacks);
+        this.inFlightPacksGauge = inFlightPacksGauge;
+        this.commitLagGauge = commitLagGauge;
+    }
+
+    /**
+     * Returns 'true' if the consumer may poll the next pack, 'false' if it should wait for the acknowledgements.
+     */
+    public synchronized boolean canPoll() {
+        if (partialCommit) {
+            return inFlightPacks < maxInFlightPacks;
+        }
+        if (packs.isEmpty()) {
+            draining = false;
+        } else if (packs.size() >= maxInFlightPacks) {
+            draining = true;
+        }
+        return !draining;
+    }
+
+    public synchronized long add(int size) {
+        return add(size, null);
+    }
+
+    /**
+     * Adds the polled pack. The commit position is the consumer position after the pack was polled,
+     * or null if the consumer can only commit the whole polled position.
+     */
+    public synchronized long add(int size, Object position) {
+        Pack pack = new Pack(nextSeq++, size, position);
+        packs.addLast(pack);
+        partialCommit = position != null;
+        inFlightPacks++;
+        uncommittedMsgs += size;
+        inFlightPacksGauge.incrementAndGet();
+        commitLagGauge.addAndGet(size);
+        return pack.seq;
+    }
+
+    public synchronized void ack(long seq) {
+        for (Pack pack : packs) {
+            if (pack.seq == seq) {
+                if (!pack.acked) {
+                    pack.acked = true;
+                    inFlightPacks--;
+                    inFlightPacksGauge.decrementAndGet();
+                }
+                break;
+            }
+        }
+        while (!packs.isEmpty() && packs.peekFirst().acked) {
+            Pack pack = packs.pollFirst();
+            watermark = pack.seq;
+            commitPosition = pack.position;
+            committableMsgs += pack.size;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns 'true' if the packs up to the watermark are not committed yet and the consumer is able to commit them.
+     */
+    public synchronized boolean isCommitReady() {
+        return committableMsgs > 0 && (commitPosition != null || packs.isEmpty());
+    }
+
+    /**
+     * Returns the position to commit, or null if the whole polled position should be committed.
+     */
+    public synchronized Object getCommitPosition() {
+        return commitPosition;
+    }
+
+    public synchronized void onCommit() {
+        commitLagGauge.addAndGet(-committableMsgs);
+        uncommittedMsgs -= committableMsgs;
+        committableMsgs = 0;
+    }
+
+    public synchronized void await(long timeoutMs) throws InterruptedException {
+        if (inFlightPacks > 0) {
+            TimeUnit.MILLISECONDS.timedWait(this, timeoutMs);
+        }
+    }
+
+    /**
+     * Releases the gauges of the packs that will not be committed by this consumer.
+     */
+    public synchronized void close() {
+        inFlightPacksGauge.addAndGet(-inFlightPacks);
+        commitLagGauge.addAndGet(-uncommittedMsgs);
+        inFlightPacks = 0;
+        uncommittedMsgs = 0;
+        committableMsgs = 0;
+        packs.clear();
+    }
+
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    public synchronized int getInFlightPacks() {
+        return inFlightPacks;
+    }
+
+    public synchronized int getUncommittedMsgs() {
+        return uncommittedMsgs;
+    }
+
+    private static class Pack {
+        private final long seq;
+        private final int size;
+        private final Object position;
+        private boolean acked;
+
+        Pack(long seq, int size, Object position) {
+            this.seq = seq;
+            this.size = size;
+            this.position = position;
+        }
+    }
+
+}
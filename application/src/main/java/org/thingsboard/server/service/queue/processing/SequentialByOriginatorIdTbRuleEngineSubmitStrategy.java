@@ -34,7 +34,8 @@ public class SequentialByOriginatorIdTbRuleEngineSubmitStrategy extends Sequenti
     @Override
     protected EntityId getEntityId(TransportProtos.ToRuleEngineMsg msg) {
         try {
-            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(msg.getTbMsg());
+            // all messages of the batched queue message have the same originator
+            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(msg.getTbMsgsCount() > 0 ? msg.getTbMsgs(0) : msg.getTbMsg());
             return EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
         } catch (InvalidProtocolBufferException e) {
             log.warn("[{}] Failed to parse TbMsg: {}", queueName, msg);
@@ -58,4 +58,8 @@ public class TbRuleEngineProcessingResult {
     public ConcurrentMap<TenantId, RuleEngineException> getExceptionsMap() {
         return ctx.getExceptionsMap();
     }
+
+    public TbProtoQueueMsg<ToRuleEngineMsg> retainUnprocessed(UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+        return ctx.retainUnprocessed(id, msg);
+    }
 }
@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.rule;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.actors.ruleChain.RuleNodeDebugSampler;
+import org.thingsboard.server.common.data.event.RuleNodeDebugEvent;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.event.EventService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Persists the rule node debug events with a predictable cost: the events are sampled per rule node,
+ * buffered in a bounded queue that drops the new events when full, and saved by a single thread with batch inserts.
+ * The next batch is taken only when the previous one is saved, so the slow database fills the queue instead of the memory.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DefaultTbRuleNodeDebugEventService implements TbRuleNodeDebugEventService {
+
+    private static final String STATS_KEY = "ruleNodeDebugEvents";
+
+    private final EventService eventService;
+    private final StatsFactory statsFactory;
+
+    @Value("${actors.rule.node.debug.sampling.mode:ALL}")
+    private RuleNodeDebugSampler.Mode samplingMode;
+
+    @Value("${actors.rule.node.debug.sampling.rate:1.0}")
+    private double samplingRate;
+
+    @Value("${actors.rule.node.debug.sampling.first_n:100}")
+    private int samplingFirstN;
+
+    @Value("${actors.rule.node.debug.sampling.interval_ms:60000}")
+    private long samplingIntervalMs;
+
+    @Value("${actors.rule.node.debug.queue.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${actors.rule.node.debug.queue.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${actors.statistics.enabled:true}")
+    private boolean statisticsEnabled;
+
+    private final ConcurrentMap<EntityId, RuleNodeDebugSampler> samplers = new ConcurrentHashMap<>();
+    private RuleNodeDebugSampler defaultSampler;
+    private BlockingQueue<RuleNodeDebugEvent> queue;
+    private ExecutorService executor;
+    private volatile boolean stopped;
+
+    private StatsCounter skipped;
+    private StatsCounter queued;
+    private StatsCounter dropped;
+    private StatsCounter saved;
+    private StatsCounter failed;
+
+    @PostConstruct
+    public void init() {
+        defaultSampler = new RuleNodeDebugSampler(samplingMode, samplingRate, samplingFirstN, samplingIntervalMs);
+        skipped = statsFactory.createStatsCounter(STATS_KEY, "skipped");
+        queued = statsFactory.createStatsCounter(STATS_KEY, "queued");
+        dropped = statsFactory.createStatsCounter(STATS_KEY, "dropped");
+        saved = statsFactory.createStatsCounter(STATS_KEY, "saved");
+        failed = statsFactory.createStatsCounter(STATS_KEY, "failed");
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("rule-node-debug-events"));
+        executor.submit(this::persistLoop);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void onRuleNodeUpdate(RuleNode ruleNode) {
+        samplers.put(ruleNode.getId(), defaultSampler.forAdditionalInfo(ruleNode.getAdditionalInfo()));
+    }
+
+    @Override
+    public void onRuleNodeStop(RuleNodeId ruleNodeId) {
+        samplers.remove(ruleNodeId);
+    }
+
+    @Override
+    public boolean isSampled(EntityId ruleNodeId, TbMsg msg, BooleanSupplier limits) {
+        RuleNodeDebugSampler sampler = samplers.computeIfAbsent(ruleNodeId, id -> defaultSampler.forAdditionalInfo(null));
+        if (sampler.test(msg.getId(), System.currentTimeMillis(), limits)) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    @Override
+    public void persistAsync(RuleNodeDebugEvent event) {
+        if (queue.offer(event)) {
+            queued.increment();
+        } else {
+            dropped.increment();
+            log.trace("[{}] Debug events queue is full, dropping the event of the rule node [{}]", event.getTenantId(), event.getEntityId());
+        }
+    }
+
+    private void persistLoop() {
+        List<RuleNodeDebugEvent> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                eventService.saveAll(batch);
+                saved.add(batch.size());
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable t) {
+                failed.add(batch.size());
+                log.warn("Failed to persist the batch of {} rule node debug events", batch.size(), t);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${actors.statistics.js_print_interval_ms}")
+    public void printStats() {
+        if (statisticsEnabled) {
+            int queuedCount = queued.get();
+            int droppedCount = dropped.get();
+            if (queuedCount > 0 || droppedCount > 0) {
+                log.info("Rule node debug events: skipped [{}] queued [{}] dropped [{}] saved [{}] failed [{}] pending [{}]",
+                        skipped.get(), queuedCount, droppedCount, saved.get(), failed.get(), queue.size());
+            }
+            skipped.clear();
+            queued.clear();
+            dropped.clear();
+            saved.clear();
+            failed.clear();
+        }
+    }
+
+}
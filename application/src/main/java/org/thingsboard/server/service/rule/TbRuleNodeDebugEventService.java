@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.rule;
+
+import org.thingsboard.server.common.data.event.RuleNodeDebugEvent;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.msg.TbMsg;
+
+import java.util.function.BooleanSupplier;
+
+public interface TbRuleNodeDebugEventService {
+
+    void onRuleNodeUpdate(RuleNode ruleNode);
+
+    void onRuleNodeStop(RuleNodeId ruleNodeId);
+
+    /**
+     * Returns true if the debug event of the message at the rule node should be persisted according to the sampling of the rule node.
+     * The limits are checked only for the events selected by the sampling.
+     */
+    boolean isSampled(EntityId ruleNodeId, TbMsg msg, BooleanSupplier limits);
+
+    /**
+     * Puts the event to the bounded queue of the events to persist. The event is dropped if the queue is full.
+     */
+    void persistAsync(RuleNodeDebugEvent event);
+
+}
@@ -26,7 +26,9 @@ import org.thingsboard.script.api.RuleNodeScriptFactory;
 import org.thingsboard.script.api.tbel.TbelInvokeService;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgKvPayload;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 
 import javax.script.ScriptException;
@@ -35,6 +37,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -123,16 +126,48 @@ public class RuleNodeTbelScriptEngine extends RuleNodeScriptEngine<TbelInvokeSer
     @Override
     protected Object[] prepareArgs(TbMsg msg) {
         Object[] args = new Object[3];
-        if (msg.getData() != null) {
+        if (msg.getKvPayload() != null) {
+            args[0] = toMap(msg.getKvPayload());
+        } else if (msg.getData() != null) {
             args[0] = JacksonUtil.fromString(msg.getData(), Object.class);
         } else {
             args[0] = new HashMap<>();
         }
-        args[1] = new HashMap<>(msg.getMetaData().getData());
+        Map<String, String> metadata = new HashMap<>();
+        msg.getMetaData().forEach(metadata::put);
+        args[1] = metadata;
         args[2] = msg.getType();
         return args;
     }
 
+    /*
+     * Binds the typed payload without rendering and parsing the JSON of the message.
+     * The values are of the same types as the ones of the parsed JSON.
+     */
+    private static Map<String, Object> toMap(TbMsgKvPayload payload) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (KvEntry entry : payload.getEntries()) {
+            Object value;
+            switch (entry.getDataType()) {
+                case LONG:
+                    long longValue = entry.getLongValue().get();
+                    if (longValue == (int) longValue) {
+                        value = (int) longValue;
+                    } else {
+                        value = longValue;
+                    }
+                    break;
+                case JSON:
+                    value = JacksonUtil.fromString(entry.getJsonValue().get(), Object.class);
+                    break;
+                default:
+                    value = entry.getValue();
+            }
+            map.put(entry.getKey(), value);
+        }
+        return map;
+    }
+
     private static TbMsg unbindMsg(Map msgData, TbMsg msg) {
         String data = null;
         Map<String, String> metadata = null;
@@ -15,8 +15,10 @@
  */
 package org.thingsboard.server.service.subscription;
 
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.DonAsynchron;
 import org.thingsboard.common.util.JacksonUtil;
@@ -45,9 +47,8 @@ import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
 import org.thingsboard.server.gen.transport.TransportProtos.LocalSubscriptionServiceMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbAlarmSubscriptionUpdateProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionTargetProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateProto;
-import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateTsValue;
-import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateValueListProto;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
@@ -69,18 +70,19 @@ import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpda
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Slf4j
 @TbCoreComponent
@@ -98,6 +100,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     private final DeviceStateService deviceStateService;
     private final TbClusterService clusterService;
 
+    @Value("${server.ws.remote_updates_fan_out:false}")
+    private boolean remoteUpdatesFanOut;
+
     private final Map<EntityId, Set<TbSubscription>> subscriptionsByEntityId = new ConcurrentHashMap<>();
     private final Map<String, Map<Integer, TbSubscription>> subscriptionsByWsSessionId = new ConcurrentHashMap<>();
     private final ConcurrentMap<TopicPartitionInfo, Set<TbSubscription>> partitionedSubscriptions = new ConcurrentHashMap<>();
@@ -432,18 +437,31 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                                                                       boolean ignoreEmptyUpdates) {
         Set<TbSubscription> entitySubscriptions = subscriptionsByEntityId.get(entityId);
         if (entitySubscriptions != null) {
+            Map<String, Map<List<String>, RemoteTelemetryUpdate>> remoteUpdates = remoteUpdatesFanOut ? new HashMap<>() : null;
             entitySubscriptions.stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
                 List<TsKvEntry> subscriptionUpdate = processFunction.apply(s);
                 if (subscriptionUpdate != null && !subscriptionUpdate.isEmpty()) {
                     if (serviceId.equals(s.getServiceId())) {
                         TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(s.getSubscriptionId(), subscriptionUpdate);
                         localSubscriptionService.onSubscriptionUpdate(s.getSessionId(), update, TbCallback.EMPTY);
+                    } else if (remoteUpdates != null) {
+                        // the updates of the subscriptions with the same keys are the same, so they are encoded once per target service
+                        List<String> keys = subscriptionUpdate.stream().map(KvEntry::getKey).collect(Collectors.toList());
+                        remoteUpdates.computeIfAbsent(s.getServiceId(), id -> new HashMap<>())
+                                .computeIfAbsent(keys, k -> new RemoteTelemetryUpdate(subscriptionUpdate)).getSubscriptions().add(s);
                     } else {
                         TopicPartitionInfo tpi = notificationsTopicService.getNotificationsTopic(ServiceType.TB_CORE, s.getServiceId());
                         toCoreNotificationsProducer.send(tpi, toProto(s, subscriptionUpdate, ignoreEmptyUpdates), null);
                     }
                 }
             });
+            if (remoteUpdates != null) {
+                remoteUpdates.forEach((targetServiceId, serviceUpdates) -> {
+                    TopicPartitionInfo tpi = notificationsTopicService.getNotificationsTopic(ServiceType.TB_CORE, targetServiceId);
+                    serviceUpdates.values().forEach(update ->
+                            toCoreNotificationsProducer.send(tpi, toProto(update.getSubscriptions(), update.getUpdates(), ignoreEmptyUpdates), null));
+                });
+            }
         } else {
             log.debug("[{}] No device subscriptions to process!", entityId);
         }
@@ -565,35 +583,30 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
         builder.setSessionId(subscription.getSessionId());
         builder.setSubscriptionId(subscription.getSubscriptionId());
+        builder.addAllData(TbSubscriptionUtils.toSubscriptionUpdateDataProto(updates, ignoreEmptyUpdates));
 
-        Map<String, List<Object>> data = new TreeMap<>();
-        for (TsKvEntry tsEntry : updates) {
-            List<Object> values = data.computeIfAbsent(tsEntry.getKey(), k -> new ArrayList<>());
-            Object[] value = new Object[2];
-            value[0] = tsEntry.getTs();
-            value[1] = tsEntry.getValueAsString();
-            values.add(value);
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(
+                LocalSubscriptionServiceMsgProto.newBuilder().setSubUpdate(builder.build()).build())
+                .build();
+        return new TbProtoQueueMsg<>(subscription.getEntityId().getId(), toCoreMsg);
+    }
+
+    private TbProtoQueueMsg<ToCoreNotificationMsg> toProto(List<TbSubscription> subscriptions, List<TsKvEntry> updates, boolean ignoreEmptyUpdates) {
+        TbSubscription subscription = subscriptions.get(0);
+        if (subscriptions.size() == 1) {
+            return toProto(subscription, updates, ignoreEmptyUpdates);
         }
+        TbSubscriptionUpdateProto.Builder builder = TbSubscriptionUpdateProto.newBuilder();
 
-        data.forEach((key, value) -> {
-            TbSubscriptionUpdateValueListProto.Builder dataBuilder = TbSubscriptionUpdateValueListProto.newBuilder();
-            dataBuilder.setKey(key);
-            boolean hasData = false;
-            for (Object v : value) {
-                Object[] array = (Object[]) v;
-                TbSubscriptionUpdateTsValue.Builder tsValueBuilder = TbSubscriptionUpdateTsValue.newBuilder();
-                tsValueBuilder.setTs((long) array[0]);
-                String strVal = (String) array[1];
-                if (strVal != null) {
-                    hasData = true;
-                    tsValueBuilder.setValue(strVal);
-                }
-                dataBuilder.addTsValue(tsValueBuilder.build());
-            }
-            if (!ignoreEmptyUpdates || hasData) {
-                builder.addData(dataBuilder.build());
-            }
-        });
+        builder.setSessionId(subscription.getSessionId());
+        builder.setSubscriptionId(subscription.getSubscriptionId());
+        for (TbSubscription target : subscriptions) {
+            builder.addTargets(TbSubscriptionTargetProto.newBuilder()
+                    .setSessionId(target.getSessionId())
+                    .setSubscriptionId(target.getSubscriptionId())
+                    .build());
+        }
+        builder.addAllData(TbSubscriptionUtils.toSubscriptionUpdateDataProto(updates, ignoreEmptyUpdates));
 
         ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(
                 LocalSubscriptionServiceMsgProto.newBuilder().setSubUpdate(builder.build()).build())
@@ -639,4 +652,10 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
         }
     }
 
+    @Data
+    private static class RemoteTelemetryUpdate {
+        private final List<TsKvEntry> updates;
+        private final List<TbSubscription> subscriptions = new ArrayList<>();
+    }
+
 }
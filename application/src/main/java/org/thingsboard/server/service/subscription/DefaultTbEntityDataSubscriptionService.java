@@ -129,6 +129,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private long dynamicPageLinkRefreshInterval;
     @Value("${server.ws.dynamic_page_link.refresh_pool_size:1}")
     private int dynamicPageLinkRefreshPoolSize;
+    @Value("${server.ws.dynamic_page_link.shared_queries:false}")
+    private boolean dynamicPageLinkSharedQueries;
     @Value("${server.ws.max_entities_per_data_subscription:1000}")
     private int maxEntitiesPerDataSubscription;
     @Value("${server.ws.max_entities_per_alarm_subscription:1000}")
@@ -142,6 +144,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private boolean tsInSqlDB;
     private String serviceId;
     private SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+    private TbEntityDataQueryResultCache queryResultCache;
 
     @PostConstruct
     public void initExecutor() {
@@ -154,6 +157,11 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         } else {
             scheduler = Executors.newScheduledThreadPool(dynamicPageLinkRefreshPoolSize, tbThreadFactory);
         }
+        if (dynamicPageLinkSharedQueries) {
+            long refreshIntervalMs = TimeUnit.SECONDS.toMillis(dynamicPageLinkRefreshInterval);
+            queryResultCache = new TbEntityDataQueryResultCache(entityService, refreshIntervalMs / 2);
+            scheduler.scheduleWithFixedDelay(queryResultCache::cleanUp, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
@@ -206,9 +214,16 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             if (ctx.getQuery().getPageLink().isDynamic()) {
                 //TODO: validate number of dynamic page links against rate limits. Ignore dynamic flag if limit is reached.
                 TbEntityDataSubCtx finalCtx = ctx;
-                ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
-                        () -> refreshDynamicQuery(finalCtx),
-                        dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
+                ScheduledFuture<?> task;
+                if (finalCtx.isQueryResultShared()) {
+                    long refreshIntervalMs = TimeUnit.SECONDS.toMillis(dynamicPageLinkRefreshInterval);
+                    task = scheduler.scheduleAtFixedRate(() -> refreshDynamicQuery(finalCtx),
+                            getSharedQueryRefreshDelay(finalCtx, refreshIntervalMs), refreshIntervalMs, TimeUnit.MILLISECONDS);
+                } else {
+                    task = scheduler.scheduleWithFixedDelay(
+                            () -> refreshDynamicQuery(finalCtx),
+                            dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
+                }
                 finalCtx.setRefreshTask(task);
             }
         }
@@ -462,6 +477,16 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         }
     }
 
+    /**
+     * The contexts with the same query are refreshed at the same moments of the interval, so the query is executed once for all of them,
+     * while the moments of the different queries are spread across the interval by the hash of the query.
+     */
+    private long getSharedQueryRefreshDelay(TbEntityDataSubCtx ctx, long refreshIntervalMs) {
+        int queryHash = TbEntityDataQueryResultCache.toKey(ctx.getTenantId(), ctx.getCustomerId(), ctx.getQuery()).hashCode();
+        long refreshPhase = Math.floorMod(queryHash, refreshIntervalMs);
+        return refreshIntervalMs + Math.floorMod(refreshPhase - System.currentTimeMillis(), refreshIntervalMs);
+    }
+
     private void refreshAlarmQuery(TbAlarmDataSubCtx finalCtx) {
         if (validate(finalCtx)) {
             finalCtx.checkAndResetInvocationCounter();
@@ -478,13 +503,14 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         long regularQueryInvocationTimeValue = stats.getRegularQueryTimeSpent().getAndSet(0);
         int dynamicQueryInvocationCntValue = stats.getDynamicQueryInvocationCnt().getAndSet(0);
         long dynamicQueryInvocationTimeValue = stats.getDynamicQueryTimeSpent().getAndSet(0);
+        int sharedQueryHitCntValue = stats.getSharedQueryHitCnt().getAndSet(0);
         long dynamicQueryCnt = subscriptionsBySessionId.values().stream().mapToLong(m -> m.values().stream().filter(TbAbstractSubCtx::isDynamic).count()).sum();
         if (regularQueryInvocationCntValue > 0 || dynamicQueryInvocationCntValue > 0 || dynamicQueryCnt > 0 || alarmQueryInvocationCntValue > 0) {
             log.info("Stats: regularQueryInvocationCnt = [{}], regularQueryInvocationTime = [{}], " +
-                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], " +
+                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], sharedQueryHitCnt = [{}], " +
                             "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}]",
                     regularQueryInvocationCntValue, regularQueryInvocationTimeValue,
-                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue,
+                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue, sharedQueryHitCntValue,
                     alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue);
         }
     }
@@ -492,7 +518,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private TbEntityDataSubCtx createSubCtx(WebSocketSessionRef sessionRef, EntityDataCmd cmd) {
         Map<Integer, TbAbstractSubCtx> sessionSubs = subscriptionsBySessionId.computeIfAbsent(sessionRef.getSessionId(), k -> new HashMap<>());
         TbEntityDataSubCtx ctx = new TbEntityDataSubCtx(serviceId, wsService, entityService, localSubscriptionService,
-                attributesService, stats, sessionRef, cmd.getCmdId(), maxEntitiesPerDataSubscription);
+                attributesService, stats, sessionRef, cmd.getCmdId(), maxEntitiesPerDataSubscription, queryResultCache);
         if (cmd.getQuery() != null) {
             ctx.setAndResolveQuery(cmd.getQuery());
         }
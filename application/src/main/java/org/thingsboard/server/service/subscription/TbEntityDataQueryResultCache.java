@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Data;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.dao.entity.EntityService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the results of the identical entity data queries refreshed by the dynamic subscriptions of the WebSocket sessions.
+ * The queries are identical when they have the same tenant, customer and JSON representation, so each distinct query
+ * is executed once per refresh interval and every subscription gets its own copy of the result.
+ */
+public class TbEntityDataQueryResultCache {
+
+    private final EntityService entityService;
+    private final long maxAgeMs;
+    private final ConcurrentMap<QueryKey, CachedResult> results = new ConcurrentHashMap<>();
+
+    public TbEntityDataQueryResultCache(EntityService entityService, long maxAgeMs) {
+        this.entityService = entityService;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public static QueryKey toKey(TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
+        return new QueryKey(tenantId, customerId, JacksonUtil.toString(query));
+    }
+
+    /**
+     * Returns the copy of the result cached for the same query, executing the query if the result is missing or expired.
+     * The concurrent callers with the same query wait for the single execution.
+     */
+    public PageData<EntityData> findEntityDataByQuery(TenantId tenantId, CustomerId customerId, EntityDataQuery query, SubscriptionServiceStatistics stats) {
+        QueryKey key = toKey(tenantId, customerId, query);
+        long ts = System.currentTimeMillis();
+        CachedResult cached = results.compute(key, (k, v) -> v == null || ts - v.getCreatedTs() >= maxAgeMs ? new CachedResult(ts) : v);
+        PageData<EntityData> result;
+        synchronized (cached) {
+            result = cached.getResult();
+            if (result == null) {
+                result = entityService.findEntityDataByQuery(tenantId, customerId, query);
+                cached.setResult(result);
+            } else {
+                stats.getSharedQueryHitCnt().incrementAndGet();
+            }
+        }
+        return copyOf(result);
+    }
+
+    public void cleanUp() {
+        long ts = System.currentTimeMillis();
+        results.values().removeIf(cached -> ts - cached.getCreatedTs() >= maxAgeMs);
+    }
+
+    static PageData<EntityData> copyOf(PageData<EntityData> pageData) {
+        List<EntityData> data = new ArrayList<>(pageData.getData().size());
+        for (EntityData entityData : pageData.getData()) {
+            Map<EntityKeyType, Map<String, TsValue>> latest = null;
+            if (entityData.getLatest() != null) {
+                latest = new HashMap<>();
+                for (Map.Entry<EntityKeyType, Map<String, TsValue>> entry : entityData.getLatest().entrySet()) {
+                    latest.put(entry.getKey(), new HashMap<>(entry.getValue()));
+                }
+            }
+            data.add(new EntityData(entityData.getEntityId(), latest,
+                    entityData.getTimeseries() != null ? new HashMap<>(entityData.getTimeseries()) : null,
+                    entityData.getAggLatest() != null ? new HashMap<>(entityData.getAggLatest()) : null));
+        }
+        return new PageData<>(data, pageData.getTotalPages(), pageData.getTotalElements(), pageData.hasNext());
+    }
+
+    @Data
+    public static class QueryKey {
+        private final TenantId tenantId;
+        private final CustomerId customerId;
+        private final String query;
+    }
+
+    @Data
+    private static class CachedResult {
+        private final long createdTs;
+        private PageData<EntityData> result;
+    }
+
+}
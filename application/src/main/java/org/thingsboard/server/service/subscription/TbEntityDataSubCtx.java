@@ -58,12 +58,15 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
     @Getter
     private final int maxEntitiesPerDataSubscription;
     private Map<EntityId, Map<String, TsValue>> latestTsEntityData;
+    private final TbEntityDataQueryResultCache queryResultCache;
 
     public TbEntityDataSubCtx(String serviceId, WebSocketService wsService, EntityService entityService,
                               TbLocalSubscriptionService localSubscriptionService, AttributesService attributesService,
-                              SubscriptionServiceStatistics stats, WebSocketSessionRef sessionRef, int cmdId, int maxEntitiesPerDataSubscription) {
+                              SubscriptionServiceStatistics stats, WebSocketSessionRef sessionRef, int cmdId, int maxEntitiesPerDataSubscription,
+                              TbEntityDataQueryResultCache queryResultCache) {
         super(serviceId, wsService, entityService, localSubscriptionService, attributesService, stats, sessionRef, cmdId);
         this.maxEntitiesPerDataSubscription = maxEntitiesPerDataSubscription;
+        this.queryResultCache = queryResultCache;
     }
 
     @Override
@@ -87,6 +90,21 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
         }
     }
 
+    /**
+     * The result of the query with the dynamic values depends on the values resolved for the current user, so it is not shared.
+     */
+    public boolean isQueryResultShared() {
+        return queryResultCache != null && dynamicValues.isEmpty();
+    }
+
+    @Override
+    protected PageData<EntityData> refreshEntityData() {
+        if (isQueryResultShared()) {
+            return queryResultCache.findEntityDataByQuery(getTenantId(), getCustomerId(), buildEntityDataQuery(), stats);
+        }
+        return super.refreshEntityData();
+    }
+
     @Override
     protected Aggregation getCurrentAggregation() {
         return (this.curTsCmd == null || this.curTsCmd.getAgg() == null) ? Aggregation.NONE : this.curTsCmd.getAgg();
@@ -46,6 +46,7 @@ import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionKetSta
 import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateTsValue;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateValueListProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesDeleteProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesSubscriptionProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesUpdateProto;
@@ -62,8 +63,10 @@ import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpda
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 
@@ -210,21 +213,50 @@ public class TbSubscriptionUtils {
         if (proto.getErrorCode() > 0) {
             return new TelemetrySubscriptionUpdate(proto.getSubscriptionId(), SubscriptionErrorCode.forCode(proto.getErrorCode()), proto.getErrorMsg());
         } else {
-            Map<String, List<Object>> data = new TreeMap<>();
-            proto.getDataList().forEach(v -> {
-                List<Object> values = data.computeIfAbsent(v.getKey(), k -> new ArrayList<>());
-                for (int i = 0; i < v.getTsValueCount(); i++) {
-                    Object[] value = new Object[2];
-                    TbSubscriptionUpdateTsValue tsValue = v.getTsValue(i);
-                    value[0] = tsValue.getTs();
-                    value[1] = tsValue.hasValue() ? tsValue.getValue() : null;
-                    values.add(value);
-                }
-            });
-            return new TelemetrySubscriptionUpdate(proto.getSubscriptionId(), data);
+            return new TelemetrySubscriptionUpdate(proto.getSubscriptionId(), toSubscriptionUpdateData(proto));
         }
     }
 
+    public static Map<String, List<Object>> toSubscriptionUpdateData(TbSubscriptionUpdateProto proto) {
+        Map<String, List<Object>> data = new TreeMap<>();
+        proto.getDataList().forEach(v -> {
+            List<Object> values = data.computeIfAbsent(v.getKey(), k -> new ArrayList<>());
+            for (int i = 0; i < v.getTsValueCount(); i++) {
+                Object[] value = new Object[2];
+                TbSubscriptionUpdateTsValue tsValue = v.getTsValue(i);
+                value[0] = tsValue.getTs();
+                value[1] = tsValue.hasValue() ? tsValue.getValue() : null;
+                values.add(value);
+            }
+        });
+        return data;
+    }
+
+    /**
+     * Encodes the values of the subscription update grouped by key. With ignoreEmptyUpdates, the keys without values are skipped.
+     */
+    public static List<TbSubscriptionUpdateValueListProto> toSubscriptionUpdateDataProto(List<TsKvEntry> updates, boolean ignoreEmptyUpdates) {
+        Map<String, TbSubscriptionUpdateValueListProto.Builder> keyBuilders = new TreeMap<>();
+        Set<String> keysWithValues = new HashSet<>();
+        for (TsKvEntry tsEntry : updates) {
+            TbSubscriptionUpdateTsValue.Builder tsValueBuilder = TbSubscriptionUpdateTsValue.newBuilder().setTs(tsEntry.getTs());
+            String strVal = tsEntry.getValueAsString();
+            if (strVal != null) {
+                keysWithValues.add(tsEntry.getKey());
+                tsValueBuilder.setValue(strVal);
+            }
+            keyBuilders.computeIfAbsent(tsEntry.getKey(), key -> TbSubscriptionUpdateValueListProto.newBuilder().setKey(key))
+                    .addTsValue(tsValueBuilder);
+        }
+        List<TbSubscriptionUpdateValueListProto> data = new ArrayList<>(keyBuilders.size());
+        keyBuilders.forEach((key, keyBuilder) -> {
+            if (!ignoreEmptyUpdates || keysWithValues.contains(key)) {
+                data.add(keyBuilder.build());
+            }
+        });
+        return data;
+    }
+
     public static AlarmSubscriptionUpdate fromProto(TransportProtos.TbAlarmSubscriptionUpdateProto proto) {
         if (proto.getErrorCode() > 0) {
             return new AlarmSubscriptionUpdate(proto.getSubscriptionId(), SubscriptionErrorCode.forCode(proto.getErrorCode()), proto.getErrorMsg());
@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.dao.timeseries.TsHotWindowCache;
+import org.thingsboard.server.gen.transport.TransportProtos.ServiceInfo;
+import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
+import org.thingsboard.server.queue.discovery.event.ServiceListChangedEvent;
+
+/**
+ * Enables the timeseries hot window only while this node is the single core and rule engine service of the cluster.
+ * The window is fed by the saves of this node only, so with other nodes saving or removing the telemetry of the same entities
+ * the window would answer the reads with stale data.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "database.ts_hot_window", value = "enabled", havingValue = "true")
+public class TsHotWindowDiscoveryListener extends TbApplicationEventListener<ServiceListChangedEvent> {
+
+    private final TsHotWindowCache hotWindowCache;
+
+    @Override
+    protected void onTbApplicationEvent(ServiceListChangedEvent event) {
+        boolean singleNode = event.getOtherServices().stream().noneMatch(TsHotWindowDiscoveryListener::isTelemetryWriter);
+        if (singleNode != hotWindowCache.isEnabled()) {
+            log.info("Timeseries hot window is {}", singleNode ? "enabled" : "disabled, other core or rule engine services found");
+        }
+        hotWindowCache.setEnabled(singleNode);
+    }
+
+    private static boolean isTelemetryWriter(ServiceInfo serviceInfo) {
+        return serviceInfo.getServiceTypesList().contains(ServiceType.TB_CORE.name())
+                || serviceInfo.getServiceTypesList().contains(ServiceType.TB_RULE_ENGINE.name());
+    }
+
+}
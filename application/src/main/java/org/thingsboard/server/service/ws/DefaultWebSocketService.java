@@ -16,6 +16,8 @@
 package org.thingsboard.server.service.ws;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -125,6 +127,9 @@ public class DefaultWebSocketService implements WebSocketService {
     private static final String SESSION_META_DATA_NOT_FOUND = "Session meta-data not found!";
     private static final String FAILED_TO_PARSE_WS_COMMAND = "Failed to parse websocket command!";
 
+    private static final ObjectWriter JSON_WRITER = JacksonUtil.OBJECT_MAPPER.writer();
+    private static final ObjectWriter CBOR_WRITER = new CBORMapper().writer();
+
     private final ConcurrentMap<String, WsSessionMetaData> wsSessionsMap = new ConcurrentHashMap<>();
 
     private final TbLocalSubscriptionService oldSubService;
@@ -139,6 +144,8 @@ public class DefaultWebSocketService implements WebSocketService {
 
     @Value("${server.ws.ping_timeout:30000}")
     private long pingTimeout;
+    @Value("${server.ws.coalescing.frame_interval_ms:0}")
+    private long frameIntervalMs;
 
     private final ConcurrentMap<TenantId, Set<String>> tenantSubscriptionsMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<CustomerId, Set<String>> customerSubscriptionsMap = new ConcurrentHashMap<>();
@@ -147,6 +154,7 @@ public class DefaultWebSocketService implements WebSocketService {
 
     private ExecutorService executor;
     private ScheduledExecutorService pingExecutor;
+    private ScheduledExecutorService frameExecutor;
     private String serviceId;
 
     private List<WsCmdListHandler<TelemetryPluginCmdsWrapper, ?>> telemetryCmdsHandlers;
@@ -160,6 +168,10 @@ public class DefaultWebSocketService implements WebSocketService {
         pingExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("telemetry-web-socket-ping"));
         pingExecutor.scheduleWithFixedDelay(this::sendPing, pingTimeout / NUMBER_OF_PING_ATTEMPTS, pingTimeout / NUMBER_OF_PING_ATTEMPTS, TimeUnit.MILLISECONDS);
 
+        if (frameIntervalMs > 0) {
+            frameExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("telemetry-web-socket-frames"));
+        }
+
         telemetryCmdsHandlers = List.of(
                 newCmdsHandler(TelemetryPluginCmdsWrapper::getAttrSubCmds, this::handleWsAttributesSubscriptionCmd),
                 newCmdsHandler(TelemetryPluginCmdsWrapper::getTsSubCmds, this::handleWsTimeseriesSubscriptionCmd),
@@ -188,6 +200,10 @@ public class DefaultWebSocketService implements WebSocketService {
             pingExecutor.shutdownNow();
         }
 
+        if (frameExecutor != null) {
+            frameExecutor.shutdownNow();
+        }
+
         if (executor != null) {
             executor.shutdownNow();
         }
@@ -321,6 +337,18 @@ public class DefaultWebSocketService implements WebSocketService {
 
     @Override
     public void sendWsMsg(String sessionId, CmdUpdate update) {
+        if (update instanceof EntityDataUpdate) {
+            EntityDataUpdate entityDataUpdate = (EntityDataUpdate) update;
+            // only the updates of the subscribed values are coalesced, the pages of data and the errors are sent at once
+            if (frameExecutor != null && entityDataUpdate.getErrorCode() == 0
+                    && entityDataUpdate.getData() == null && entityDataUpdate.getUpdate() != null) {
+                WsSessionMetaData md = wsSessionsMap.get(sessionId);
+                if (md != null && md.getUpdateCoalescer().add(entityDataUpdate)) {
+                    frameExecutor.schedule(() -> sendCoalescedUpdates(md), frameIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
         sendWsMsg(sessionId, update.getCmdId(), update);
     }
 
@@ -331,6 +359,22 @@ public class DefaultWebSocketService implements WebSocketService {
         }
     }
 
+    private void sendWsMsg(String sessionId, TelemetrySubscriptionUpdate update, WsSessionUpdateCoalescer.Mode mode) {
+        WsSessionMetaData md = wsSessionsMap.get(sessionId);
+        if (md == null) {
+            return;
+        }
+        if (frameExecutor == null || update.getErrorCode() != 0 || update.getData() == null) {
+            sendWsMsg(md.getSessionRef(), update.getSubscriptionId(), update);
+        } else if (md.getUpdateCoalescer().add(update, mode)) {
+            frameExecutor.schedule(() -> sendCoalescedUpdates(md), frameIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sendCoalescedUpdates(WsSessionMetaData md) {
+        md.getUpdateCoalescer().drain((cmdId, update) -> doSendWsMsg(md.getSessionRef(), cmdId, update));
+    }
+
     @Override
     public void close(String sessionId, CloseStatus status) {
         WsSessionMetaData md = wsSessionsMap.get(sessionId);
@@ -501,7 +545,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendWsMsg(subscription.getSessionId(), update);
+                                sendWsMsg(subscription.getSessionId(), update, WsSessionUpdateCoalescer.Mode.LATEST);
                             } finally {
                                 subLock.unlock();
                             }
@@ -614,7 +658,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendWsMsg(subscription.getSessionId(), update);
+                                sendWsMsg(subscription.getSessionId(), update, WsSessionUpdateCoalescer.Mode.LATEST);
                             } finally {
                                 subLock.unlock();
                             }
@@ -714,7 +758,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendWsMsg(subscription.getSessionId(), update);
+                                sendWsMsg(subscription.getSessionId(), update, WsSessionUpdateCoalescer.Mode.LATEST);
                             } finally {
                                 subLock.unlock();
                             }
@@ -756,6 +800,8 @@ public class DefaultWebSocketService implements WebSocketService {
                 Map<String, Long> subState = new HashMap<>(keys.size());
                 keys.forEach(key -> subState.put(key, startTs));
                 data.forEach(v -> subState.put(v.getKey(), v.getTs()));
+                WsSessionUpdateCoalescer.Mode coalescingMode = cmd.getTimeWindow() > 0 ?
+                        WsSessionUpdateCoalescer.Mode.APPEND : WsSessionUpdateCoalescer.Mode.LATEST;
 
                 Lock subLock = new ReentrantLock();
                 TbTimeseriesSubscription sub = TbTimeseriesSubscription.builder()
@@ -767,7 +813,7 @@ public class DefaultWebSocketService implements WebSocketService {
                         .updateProcessor((subscription, update) -> {
                             subLock.lock();
                             try {
-                                sendWsMsg(subscription.getSessionId(), update);
+                                sendWsMsg(subscription.getSessionId(), update, coalescingMode);
                             } finally {
                                 subLock.unlock();
                             }
@@ -897,15 +943,38 @@ public class DefaultWebSocketService implements WebSocketService {
     }
 
     private void sendWsMsg(WebSocketSessionRef sessionRef, int cmdId, Object update) {
+        if (frameExecutor != null) {
+            // the pending updates of the session go first and are submitted under the same session lock to keep the order of the updates
+            WsSessionMetaData md = wsSessionsMap.get(sessionRef.getSessionId());
+            if (md != null) {
+                md.getUpdateCoalescer().send((id, msg) -> doSendWsMsg(sessionRef, id, msg), cmdId, update);
+                return;
+            }
+        }
+        doSendWsMsg(sessionRef, cmdId, update);
+    }
+
+    private void doSendWsMsg(WebSocketSessionRef sessionRef, int cmdId, Object update) {
         try {
-            String msg = JacksonUtil.OBJECT_MAPPER.writeValueAsString(update);
-            executor.submit(() -> {
-                try {
-                    msgEndpoint.send(sessionRef, cmdId, msg);
-                } catch (IOException e) {
-                    log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
-                }
-            });
+            if (sessionRef.isBinary()) {
+                byte[] msg = CBOR_WRITER.writeValueAsBytes(update);
+                executor.submit(() -> {
+                    try {
+                        msgEndpoint.send(sessionRef, cmdId, msg);
+                    } catch (IOException e) {
+                        log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                    }
+                });
+            } else {
+                String msg = JSON_WRITER.writeValueAsString(update);
+                executor.submit(() -> {
+                    try {
+                        msgEndpoint.send(sessionRef, cmdId, msg);
+                    } catch (IOException e) {
+                        log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                    }
+                });
+            }
         } catch (JsonProcessingException e) {
             log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
         }
@@ -39,8 +39,13 @@ public class WebSocketSessionRef {
     private final InetSocketAddress localAddress;
     private final InetSocketAddress remoteAddress;
     private final WebSocketSessionType sessionType;
+    private final WebSocketMsgEncoding msgEncoding;
     private final AtomicInteger sessionSubIdSeq = new AtomicInteger();
 
+    public boolean isBinary() {
+        return WebSocketMsgEncoding.CBOR.equals(msgEncoding);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -61,6 +66,7 @@ public class WebSocketSessionRef {
                 ", localAddress=" + localAddress +
                 ", remoteAddress=" + remoteAddress +
                 ", sessionType=" + sessionType +
+                ", msgEncoding=" + msgEncoding +
                 '}';
     }
 }
@@ -22,6 +22,7 @@ package org.thingsboard.server.service.ws;
 public class WsSessionMetaData {
     private WebSocketSessionRef sessionRef;
     private long lastActivityTime;
+    private final WsSessionUpdateCoalescer updateCoalescer = new WsSessionUpdateCoalescer();
 
     public WsSessionMetaData(WebSocketSessionRef sessionRef) {
         super();
@@ -45,6 +46,10 @@ public class WsSessionMetaData {
         this.lastActivityTime = lastActivityTime;
     }
 
+    public WsSessionUpdateCoalescer getUpdateCoalescer() {
+        return updateCoalescer;
+    }
+
     @Override
     public String toString() {
         return "WsSessionMetaData [sessionRef=" + sessionRef + ", lastActivityTime=" + lastActivityTime + "]";
@@ -0,0 +1,216 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ws;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.query.ComparisonTsValue;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.service.ws.telemetry.cmd.v2.EntityDataUpdate;
+import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the telemetry subscription updates and the entity data updates of the WebSocket session until the next frame is sent
+ * and merges the updates of the same subscription or command: the latest values keep only the latest value of each entity and key,
+ * while the time series keep all the values in the order of arrival.
+ * <p>
+ * The lock of the coalescer is the send lock of the session: the pending updates are drained and handed over to the sender
+ * while it is held, so an update sent with {@link #send} can't overtake the pending updates.
+ */
+public class WsSessionUpdateCoalescer {
+
+    public enum Mode {
+        LATEST, APPEND
+    }
+
+    private final Map<PendingKey, PendingUpdate> pending = new LinkedHashMap<>();
+
+    /**
+     * Returns true if the update is the first one since the last {@link #drain}, so the caller should schedule the next frame.
+     */
+    public synchronized boolean add(TelemetrySubscriptionUpdate update, Mode mode) {
+        boolean first = pending.isEmpty();
+        PendingKey key = new PendingKey(false, update.getSubscriptionId());
+        ((PendingTelemetryUpdate) pending.computeIfAbsent(key, k -> new PendingTelemetryUpdate(k.getId(), mode))).add(update.getData());
+        return first;
+    }
+
+    /**
+     * Adds the entity data update without the page of data, see {@link #add(TelemetrySubscriptionUpdate, Mode)}.
+     */
+    public synchronized boolean add(EntityDataUpdate update) {
+        boolean first = pending.isEmpty();
+        PendingKey key = new PendingKey(true, update.getCmdId());
+        ((PendingEntityDataUpdate) pending.computeIfAbsent(key, k -> new PendingEntityDataUpdate(k.getId()))).add(update);
+        return first;
+    }
+
+    /**
+     * Hands the pending updates over to the sender in the order of arrival.
+     */
+    public synchronized void drain(BiConsumer<Integer, Object> sender) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<PendingUpdate> updates = new ArrayList<>(pending.values());
+        pending.clear();
+        for (PendingUpdate update : updates) {
+            sender.accept(update.getCmdId(), update.build());
+        }
+    }
+
+    /**
+     * Hands the pending updates and then the given update over to the sender.
+     */
+    public synchronized void send(BiConsumer<Integer, Object> sender, int cmdId, Object update) {
+        drain(sender);
+        sender.accept(cmdId, update);
+    }
+
+    @Data
+    private static class PendingKey {
+        private final boolean entityData;
+        private final int id;
+    }
+
+    private interface PendingUpdate {
+
+        int getCmdId();
+
+        Object build();
+
+    }
+
+    private static class PendingTelemetryUpdate implements PendingUpdate {
+
+        private final int subscriptionId;
+        private final Mode mode;
+        private final Map<String, List<Object>> data = new TreeMap<>();
+
+        PendingTelemetryUpdate(int subscriptionId, Mode mode) {
+            this.subscriptionId = subscriptionId;
+            this.mode = mode;
+        }
+
+        void add(Map<String, List<Object>> values) {
+            if (Mode.APPEND.equals(mode)) {
+                values.forEach((key, keyValues) -> data.computeIfAbsent(key, k -> new ArrayList<>()).addAll(keyValues));
+            } else {
+                data.putAll(values);
+            }
+        }
+
+        @Override
+        public int getCmdId() {
+            return subscriptionId;
+        }
+
+        @Override
+        public Object build() {
+            return new TelemetrySubscriptionUpdate(subscriptionId, data);
+        }
+    }
+
+    private static class PendingEntityDataUpdate implements PendingUpdate {
+
+        private final int cmdId;
+        private final Map<EntityId, PendingEntityData> entities = new LinkedHashMap<>();
+        private long allowedEntities;
+
+        PendingEntityDataUpdate(int cmdId) {
+            this.cmdId = cmdId;
+        }
+
+        void add(EntityDataUpdate update) {
+            allowedEntities = update.getAllowedEntities();
+            for (EntityData entityData : update.getUpdate()) {
+                entities.computeIfAbsent(entityData.getEntityId(), PendingEntityData::new).add(entityData);
+            }
+        }
+
+        @Override
+        public int getCmdId() {
+            return cmdId;
+        }
+
+        @Override
+        public Object build() {
+            List<EntityData> update = new ArrayList<>(entities.size());
+            entities.values().forEach(entityData -> update.add(entityData.build()));
+            return new EntityDataUpdate(cmdId, null, update, allowedEntities);
+        }
+    }
+
+    /**
+     * The merged updates of one entity. The maps are created on the first update that has them,
+     * so the merged update has the same shape as the updates it was merged from.
+     */
+    private static class PendingEntityData {
+
+        private final EntityId entityId;
+        private Map<EntityKeyType, Map<String, TsValue>> latest;
+        private Map<String, List<TsValue>> timeseries;
+        private Map<Integer, ComparisonTsValue> aggLatest;
+
+        PendingEntityData(EntityId entityId) {
+            this.entityId = entityId;
+        }
+
+        void add(EntityData entityData) {
+            if (entityData.getLatest() != null) {
+                if (latest == null) {
+                    latest = new HashMap<>();
+                }
+                entityData.getLatest().forEach((keyType, values) -> latest.computeIfAbsent(keyType, k -> new HashMap<>()).putAll(values));
+            }
+            if (entityData.getTimeseries() != null) {
+                if (timeseries == null) {
+                    timeseries = new HashMap<>();
+                }
+                entityData.getTimeseries().forEach((key, values) -> timeseries.computeIfAbsent(key, k -> new ArrayList<>()).addAll(Arrays.asList(values)));
+            }
+            if (entityData.getAggLatest() != null) {
+                if (aggLatest == null) {
+                    aggLatest = new HashMap<>();
+                }
+                aggLatest.putAll(entityData.getAggLatest());
+            }
+        }
+
+        EntityData build() {
+            Map<String, TsValue[]> tsMap = null;
+            if (timeseries != null) {
+                tsMap = new HashMap<>();
+                for (Map.Entry<String, List<TsValue>> entry : timeseries.entrySet()) {
+                    tsMap.put(entry.getKey(), entry.getValue().toArray(new TsValue[0]));
+                }
+            }
+            return new EntityData(entityId, latest, tsMap, aggLatest);
+        }
+    }
+
+}
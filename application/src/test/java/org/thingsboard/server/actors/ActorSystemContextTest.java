@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.dao.event.EventService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.service.rule.TbRuleNodeDebugEventService;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ActorSystemContextTest {
+
+    TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    RuleNodeId ruleNodeId = new RuleNodeId(UUID.randomUUID());
+
+    ActorSystemContext systemContext;
+    TbRuleNodeDebugEventService ruleNodeDebugEventService;
+    EventService eventService;
+    AtomicBoolean sampled = new AtomicBoolean(true);
+
+    @BeforeEach
+    void setUp() {
+        systemContext = new ActorSystemContext();
+        ruleNodeDebugEventService = mock(TbRuleNodeDebugEventService.class);
+        when(ruleNodeDebugEventService.isSampled(any(), any(), any()))
+                .thenAnswer(invocation -> sampled.get() && invocation.<BooleanSupplier>getArgument(2).getAsBoolean());
+        eventService = mock(EventService.class);
+        when(eventService.saveAsync(any())).thenReturn(Futures.immediateFuture(null));
+        ReflectionTestUtils.setField(systemContext, "ruleNodeDebugEventService", ruleNodeDebugEventService);
+        ReflectionTestUtils.setField(systemContext, "eventService", eventService);
+        ReflectionTestUtils.setField(systemContext, "serviceInfoProvider", mock(TbServiceInfoProvider.class));
+        ReflectionTestUtils.setField(systemContext, "maxDebugEventSymbols", 4096);
+        ReflectionTestUtils.setField(systemContext, "debugPerTenantEnabled", true);
+        ReflectionTestUtils.setField(systemContext, "debugPerTenantLimitsConfiguration", "2:3600");
+    }
+
+    @Test
+    void givenEventsNotSampled_whenPersistDebugOutput_thenTenantLimitNotConsumed() {
+        sampled.set(false);
+        persistDebugOutputs(5);
+        verify(ruleNodeDebugEventService, never()).persistAsync(any());
+
+        sampled.set(true);
+        persistDebugOutputs(2);
+        verify(ruleNodeDebugEventService, times(2)).persistAsync(any());
+        verify(eventService, never()).saveAsync(any());
+    }
+
+    @Test
+    void givenTenantDebugLimitReached_whenPersistDebugOutput_thenEventsDropped() {
+        persistDebugOutputs(5);
+
+        verify(ruleNodeDebugEventService, times(5)).isSampled(eq(ruleNodeId), any(), any());
+        verify(ruleNodeDebugEventService, times(2)).persistAsync(any());
+        // the rule chain event about the reached limit
+        verify(eventService, times(1)).saveAsync(any());
+    }
+
+    private void persistDebugOutputs(int count) {
+        for (int i = 0; i < count; i++) {
+            TbMsg msg = TbMsg.newMsg(null, TbMsgType.POST_TELEMETRY_REQUEST, new DeviceId(UUID.randomUUID()), TbMsgMetaData.EMPTY, "{}",
+                    new RuleChainId(UUID.randomUUID()), ruleNodeId);
+            systemContext.persistDebugOutput(tenantId, ruleNodeId, msg, "Success");
+        }
+    }
+
+}
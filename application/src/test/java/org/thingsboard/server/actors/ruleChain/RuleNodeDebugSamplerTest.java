@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import org.junit.Test;
+import org.thingsboard.common.util.JacksonUtil;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RuleNodeDebugSamplerTest {
+
+    private final RuleNodeDebugSampler defaultSampler = new RuleNodeDebugSampler(RuleNodeDebugSampler.Mode.ALL, 1.0, 100, 60000);
+
+    @Test
+    public void givenNoSamplingInAdditionalInfo_whenForAdditionalInfo_thenDefaultSettingsUsed() {
+        RuleNodeDebugSampler sampler = defaultSampler.forAdditionalInfo(JacksonUtil.newObjectNode().put("description", "test"));
+        assertThat(sampler.getMode()).isEqualTo(RuleNodeDebugSampler.Mode.ALL);
+        assertThat(sampler.test(UUID.randomUUID(), 0)).isTrue();
+    }
+
+    @Test
+    public void givenRateMode_whenTest_thenShareOfMessagesPersistedAndDecisionStablePerMessage() {
+        RuleNodeDebugSampler sampler = defaultSampler.forAdditionalInfo(JacksonUtil.toJsonNode("{\"debugSampling\":{\"mode\":\"RATE\",\"rate\":0.1}}"));
+        assertThat(sampler.getMode()).isEqualTo(RuleNodeDebugSampler.Mode.RATE);
+        long sampled = IntStream.range(0, 100000).filter(i -> sampler.test(UUID.randomUUID(), 0)).count();
+        assertThat(sampled).isBetween(9000L, 11000L);
+
+        UUID msgId = UUID.randomUUID();
+        boolean first = sampler.test(msgId, 0);
+        for (int i = 0; i < 10; i++) {
+            assertThat(sampler.test(msgId, i)).isEqualTo(first);
+        }
+    }
+
+    @Test
+    public void givenFirstNMode_whenTest_thenFirstMessagesOfIntervalPersisted() {
+        RuleNodeDebugSampler sampler = defaultSampler.forAdditionalInfo(JacksonUtil.toJsonNode("{\"debugSampling\":{\"mode\":\"FIRST_N\",\"firstN\":3,\"intervalMs\":1000}}"));
+        long ts = 10000;
+        assertThat(IntStream.range(0, 10).filter(i -> sampler.test(UUID.randomUUID(), ts + i)).count()).isEqualTo(3);
+        assertThat(sampler.test(UUID.randomUUID(), ts + 999)).isFalse();
+        assertThat(IntStream.range(0, 10).filter(i -> sampler.test(UUID.randomUUID(), ts + 1000 + i)).count()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenFirstNMode_whenLimitsRejectEvent_thenSlotNotTaken() {
+        RuleNodeDebugSampler sampler = defaultSampler.forAdditionalInfo(JacksonUtil.toJsonNode("{\"debugSampling\":{\"mode\":\"FIRST_N\",\"firstN\":2,\"intervalMs\":1000}}"));
+        long ts = 10000;
+        assertThat(sampler.test(UUID.randomUUID(), ts, () -> false)).isFalse();
+        assertThat(sampler.test(UUID.randomUUID(), ts, () -> false)).isFalse();
+        assertThat(IntStream.range(0, 10).filter(i -> sampler.test(UUID.randomUUID(), ts + i, () -> true)).count()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenRateMode_whenMessageNotSampled_thenLimitsNotChecked() {
+        RuleNodeDebugSampler sampler = defaultSampler.forAdditionalInfo(JacksonUtil.toJsonNode("{\"debugSampling\":{\"mode\":\"RATE\",\"rate\":0.01}}"));
+        AtomicInteger checks = new AtomicInteger();
+        long sampled = IntStream.range(0, 10000).filter(i -> sampler.test(UUID.randomUUID(), 0, () -> checks.incrementAndGet() > 0)).count();
+        assertThat(checks.get()).isEqualTo((int) sampled);
+    }
+
+    @Test
+    public void givenInvalidMode_whenForAdditionalInfo_thenDefaultModeUsed() {
+        RuleNodeDebugSampler sampler = defaultSampler.forAdditionalInfo(JacksonUtil.toJsonNode("{\"debugSampling\":{\"mode\":\"SOME\",\"rate\":0.5}}"));
+        assertThat(sampler.getMode()).isEqualTo(RuleNodeDebugSampler.Mode.ALL);
+        assertThat(sampler.getRate()).isEqualTo(0.5);
+    }
+
+}
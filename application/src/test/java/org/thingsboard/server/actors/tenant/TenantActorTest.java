@@ -0,0 +1,286 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.tenant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.rule.engine.api.msg.DeviceNameOrTypeUpdateMsg;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.DefaultTbActorSystem;
+import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.actors.TbActorSystem;
+import org.thingsboard.server.actors.TbActorSystemSettings;
+import org.thingsboard.server.actors.TbEntityActorId;
+import org.thingsboard.server.actors.device.SessionTimeoutCheckMsg;
+import org.thingsboard.server.actors.service.DefaultActorService;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RpcId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.rpc.Rpc;
+import org.thingsboard.server.common.data.rpc.RpcStatus;
+import org.thingsboard.server.common.data.rpc.ToDeviceRpcRequestBody;
+import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TbCallback;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.msg.rpc.ToDeviceRpcRequest;
+import org.thingsboard.server.dao.device.DeviceService;
+import org.thingsboard.server.dao.tenant.TenantService;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceSessionsCacheEntry;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionEvent;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionEventMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionType;
+import org.thingsboard.server.gen.transport.TransportProtos.TransportToDeviceActorMsg;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.service.rpc.TbRpcService;
+import org.thingsboard.server.service.session.DeviceSessionCacheService;
+import org.thingsboard.server.service.state.DeviceStateService;
+import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWrapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class TenantActorTest {
+
+    static final long IDLE_TIMEOUT_MS = 100;
+
+    TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    UUID sessionId = UUID.randomUUID();
+
+    ActorSystemContext systemContext;
+    TbRpcService rpcService;
+    DeviceSessionCacheService sessionCacheService;
+    Map<DeviceId, DeviceSessionsCacheEntry> sessionsCache = new ConcurrentHashMap<>();
+    AtomicInteger liveDeviceActors = new AtomicInteger();
+    AtomicInteger passivatedDeviceActors = new AtomicInteger();
+    AtomicBoolean myPartition = new AtomicBoolean(true);
+
+    TbActorSystem actorSystem;
+    TbActorRef tenantActor;
+
+    @BeforeEach
+    void setUp() {
+        systemContext = mock(ActorSystemContext.class);
+        TenantService tenantService = mock(TenantService.class);
+        willReturn(new Tenant(tenantId)).given(tenantService).findTenantById(tenantId);
+        willReturn(tenantService).given(systemContext).getTenantService();
+        TbServiceInfoProvider serviceInfoProvider = mock(TbServiceInfoProvider.class);
+        willReturn(true).given(serviceInfoProvider).isService(ServiceType.TB_CORE);
+        willReturn(serviceInfoProvider).given(systemContext).getServiceInfoProvider();
+        willAnswer(invocation -> new TopicPartitionInfo("tb_core", tenantId, 0, myPartition.get()))
+                .given(systemContext).resolve(eq(ServiceType.TB_CORE), eq(tenantId), any(EntityId.class));
+
+        willReturn(true).given(systemContext).isDevicePassivationEnabled();
+        willReturn(IDLE_TIMEOUT_MS).given(systemContext).getDevicePassivationIdleTimeout();
+        willReturn(liveDeviceActors).given(systemContext).getLiveDeviceActors();
+        willReturn(passivatedDeviceActors).given(systemContext).getPassivatedDeviceActors();
+
+        willReturn("BURST").given(systemContext).getRpcSubmitStrategy();
+        willReturn(10L).given(systemContext).getMaxConcurrentSessionsPerDevice();
+        willReturn(TimeUnit.HOURS.toMillis(1)).given(systemContext).getSessionInactivityTimeout();
+        DeviceService deviceService = mock(DeviceService.class);
+        Device device = new Device(deviceId);
+        device.setName("device");
+        device.setType("default");
+        willReturn(device).given(deviceService).findDeviceById(tenantId, deviceId);
+        willReturn(deviceService).given(systemContext).getDeviceService();
+        willReturn(mock(DeviceStateService.class)).given(systemContext).getDeviceStateService();
+        rpcService = mock(TbRpcService.class);
+        willReturn(PageData.emptyPageData()).given(rpcService).findAllByDeviceIdAndStatus(any(), any(), any(), any());
+        willReturn(rpcService).given(systemContext).getTbRpcService();
+        sessionCacheService = mock(DeviceSessionCacheService.class);
+        willAnswer(invocation -> sessionsCache.getOrDefault(invocation.getArgument(0), DeviceSessionsCacheEntry.getDefaultInstance()))
+                .given(sessionCacheService).get(any());
+        willAnswer(invocation -> sessionsCache.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .given(sessionCacheService).put(any(), any());
+        willReturn(sessionCacheService).given(systemContext).getDeviceSessionCacheService();
+
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42));
+        actorSystem.createDispatcher(DefaultActorService.TENANT_DISPATCHER_NAME, Executors.newSingleThreadExecutor());
+        actorSystem.createDispatcher(DefaultActorService.DEVICE_DISPATCHER_NAME, Executors.newSingleThreadExecutor());
+        tenantActor = actorSystem.createRootActor(DefaultActorService.TENANT_DISPATCHER_NAME, new TenantActor.ActorCreator(systemContext, tenantId));
+    }
+
+    @AfterEach
+    void tearDown() {
+        actorSystem.stop();
+    }
+
+    @Test
+    void givenIdleDeviceActor_whenIdleCheck_thenPassivated() throws InterruptedException {
+        tenantActor.tell(newDeviceMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+
+        passivateIdleDevices();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 1);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 0);
+        assertThat(actorSystem.getActor(new TbEntityActorId(deviceId))).isNull();
+    }
+
+    @Test
+    void givenPassivatedDeviceActor_whenMsgReceived_thenActorCreatedAndSessionsRestored() throws InterruptedException {
+        tenantActor.tell(newSessionOpenMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sessionsCache.containsKey(deviceId));
+        passivateIdleDevices();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 1 && liveDeviceActors.get() == 0);
+        // the snapshot of the sessions is kept only in the device sessions cache
+        assertThat(getCachedSessionIds()).containsExactly(sessionId);
+
+        tenantActor.tell(newDeviceMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+        assertThat(passivatedDeviceActors.get()).isZero();
+        assertThat(actorSystem.getActor(new TbEntityActorId(deviceId))).isNotNull();
+
+        // the restored session is dumped again on the next passivation
+        sessionsCache.remove(deviceId);
+        passivateIdleDevices();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 1);
+        assertThat(getCachedSessionIds()).containsExactly(sessionId);
+        verify(sessionCacheService, atLeast(2)).get(deviceId);
+    }
+
+    @Test
+    void givenDeviceActorWithPendingRpc_whenIdleCheck_thenNotPassivated() throws InterruptedException {
+        ToDeviceRpcRequest request = new ToDeviceRpcRequest(UUID.randomUUID(), tenantId, deviceId, false,
+                System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1), new ToDeviceRpcRequestBody("method", "{}"), true, 0, null);
+        Rpc rpc = new Rpc(new RpcId(request.getId()));
+        rpc.setStatus(RpcStatus.QUEUED);
+        rpc.setExpirationTime(request.getExpirationTime());
+        rpc.setRequest(JacksonUtil.valueToTree(request));
+        willReturn(new PageData<>(List.of(rpc), 1, 1, false)).given(rpcService).findAllByDeviceIdAndStatus(any(), any(), eq(RpcStatus.QUEUED), any());
+
+        tenantActor.tell(newDeviceMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+        passivateIdleDevices();
+
+        Thread.sleep(IDLE_TIMEOUT_MS * 3);
+        assertThat(passivatedDeviceActors.get()).isZero();
+        assertThat(liveDeviceActors.get()).isEqualTo(1);
+        assertThat(actorSystem.getActor(new TbEntityActorId(deviceId))).isNotNull();
+    }
+
+    @Test
+    void givenDeviceActorWithSessionAndLocalCache_whenIdleCheck_thenNotPassivated() throws InterruptedException {
+        willReturn(true).given(systemContext).isLocalCacheType();
+
+        tenantActor.tell(newSessionOpenMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+        passivateIdleDevices();
+
+        Thread.sleep(IDLE_TIMEOUT_MS * 3);
+        assertThat(passivatedDeviceActors.get()).isZero();
+        assertThat(liveDeviceActors.get()).isEqualTo(1);
+    }
+
+    @Test
+    void givenPassivatedAndLiveDeviceActors_whenPartitionChanged_thenGaugesCountOnlyLocalActors() throws InterruptedException {
+        DeviceId liveDeviceId = new DeviceId(UUID.randomUUID());
+        tenantActor.tell(newDeviceMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+        passivateIdleDevices();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 1 && liveDeviceActors.get() == 0);
+        tenantActor.tell(new DeviceNameOrTypeUpdateMsg(tenantId, liveDeviceId, "device", "default"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+
+        myPartition.set(false);
+        tenantActor.tell(new PartitionChangeMsg(ServiceType.TB_CORE));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 0 && liveDeviceActors.get() == 0);
+        assertThat(actorSystem.getActor(new TbEntityActorId(liveDeviceId))).isNull();
+    }
+
+    @Test
+    void givenPassivatedAndLiveDeviceActors_whenDevicesDeleted_thenActorsStoppedAndPassivatedDevicesForgotten() throws InterruptedException {
+        DeviceId liveDeviceId = new DeviceId(UUID.randomUUID());
+        tenantActor.tell(newDeviceMsg());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+        passivateIdleDevices();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 1 && liveDeviceActors.get() == 0);
+        tenantActor.tell(new DeviceNameOrTypeUpdateMsg(tenantId, liveDeviceId, "device", "default"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> liveDeviceActors.get() == 1);
+
+        tenantActor.tellWithHighPriority(new ComponentLifecycleMsg(tenantId, deviceId, ComponentLifecycleEvent.DELETED));
+        tenantActor.tellWithHighPriority(new ComponentLifecycleMsg(tenantId, liveDeviceId, ComponentLifecycleEvent.DELETED));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> passivatedDeviceActors.get() == 0 && liveDeviceActors.get() == 0);
+        assertThat(actorSystem.getActor(new TbEntityActorId(liveDeviceId))).isNull();
+        // the deleted device is not passivated again by the next idle check
+        passivateIdleDevices();
+        Thread.sleep(IDLE_TIMEOUT_MS);
+        assertThat(passivatedDeviceActors.get()).isZero();
+    }
+
+    private void passivateIdleDevices() throws InterruptedException {
+        Thread.sleep(IDLE_TIMEOUT_MS * 2);
+        tenantActor.tell(SessionTimeoutCheckMsg.instance());
+    }
+
+    private DeviceNameOrTypeUpdateMsg newDeviceMsg() {
+        return new DeviceNameOrTypeUpdateMsg(tenantId, deviceId, "device", "default");
+    }
+
+    private TransportToDeviceActorMsgWrapper newSessionOpenMsg() {
+        SessionInfoProto sessionInfo = SessionInfoProto.newBuilder()
+                .setNodeId("node")
+                .setSessionIdMSB(sessionId.getMostSignificantBits())
+                .setSessionIdLSB(sessionId.getLeastSignificantBits())
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                .build();
+        TransportToDeviceActorMsg msg = TransportToDeviceActorMsg.newBuilder()
+                .setSessionInfo(sessionInfo)
+                .setSessionEvent(SessionEventMsg.newBuilder().setSessionType(SessionType.ASYNC).setEvent(SessionEvent.OPEN))
+                .build();
+        return new TransportToDeviceActorMsgWrapper(msg, TbCallback.EMPTY);
+    }
+
+    private List<UUID> getCachedSessionIds() {
+        return sessionsCache.get(deviceId).getSessionsList().stream()
+                .map(session -> new UUID(session.getSessionInfo().getSessionIdMSB(), session.getSessionInfo().getSessionIdLSB()))
+                .collect(Collectors.toList());
+    }
+
+}
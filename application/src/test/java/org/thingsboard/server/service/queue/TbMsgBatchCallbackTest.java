@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TbMsgBatchCallbackTest {
+
+    TbMsgCallback callback;
+    TbMsgBatchCallback batchCallback;
+
+    @BeforeEach
+    void setUp() {
+        callback = mock(TbMsgCallback.class);
+        when(callback.isMsgValid()).thenReturn(true);
+        batchCallback = new TbMsgBatchCallback(callback, 3);
+    }
+
+    @Test
+    void givenAllMessagesProcessed_whenOnSuccess_thenCallbackSucceededOnce() {
+        batchCallback.getMsgCallback(0).onSuccess();
+        batchCallback.getMsgCallback(1).onSuccess();
+        batchCallback.getMsgCallback(1).onSuccess();
+        verify(callback, never()).onSuccess();
+
+        batchCallback.getMsgCallback(2).onSuccess();
+        verify(callback, times(1)).onSuccess();
+        verify(callback, never()).onFailure(any());
+    }
+
+    @Test
+    void givenFailedMessage_whenSiblingsDone_thenCallbackFailedOnceWithFirstFailure() {
+        RuleEngineException e = new RuleEngineException("failed");
+        batchCallback.getMsgCallback(0).onSuccess();
+        batchCallback.getMsgCallback(1).onFailure(e);
+        // the siblings of the failed message keep processing
+        assertThat(batchCallback.getMsgCallback(2).isMsgValid()).isTrue();
+        verify(callback, never()).onFailure(any());
+
+        batchCallback.getMsgCallback(2).onSuccess();
+        verify(callback, times(1)).onFailure(e);
+        verify(callback, never()).onSuccess();
+    }
+
+    @Test
+    void givenRateLimitedMessage_whenAllProcessed_thenCallbackRateLimited() {
+        RuleEngineException e = new RuleEngineException("rate limit");
+        batchCallback.getMsgCallback(0).onSuccess();
+        batchCallback.getMsgCallback(1).onRateLimit(e);
+        batchCallback.getMsgCallback(2).onSuccess();
+
+        verify(callback, times(1)).onRateLimit(e);
+        verify(callback, never()).onSuccess();
+        verify(callback, never()).onFailure(any());
+    }
+
+    @Test
+    void givenProcessedFailedAndPendingMessages_whenRetainUnprocessed_thenOnlyProcessedMessagesRemoved() {
+        ToRuleEngineMsg msg = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(1).setTenantIdLSB(2)
+                .addTbMsgs(ByteString.copyFromUtf8("0"))
+                .addTbMsgs(ByteString.copyFromUtf8("1"))
+                .addTbMsgs(ByteString.copyFromUtf8("2"))
+                .build();
+        assertThat(batchCallback.retainUnprocessed(msg)).isSameAs(msg);
+
+        batchCallback.getMsgCallback(0).onSuccess();
+        batchCallback.getMsgCallback(1).onFailure(new RuleEngineException("failed"));
+
+        ToRuleEngineMsg retained = batchCallback.retainUnprocessed(msg);
+        assertThat(retained.getTbMsgsList()).containsExactly(ByteString.copyFromUtf8("1"), ByteString.copyFromUtf8("2"));
+        assertThat(retained.getTenantIdMSB()).isEqualTo(1);
+        assertThat(retained.getTenantIdLSB()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TbRuleEngineMsgBatcherTest {
+
+    static final long LINGER_MS = 300;
+    static final int MAX_SIZE = 3;
+
+    TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    TopicPartitionInfo tpi = new TopicPartitionInfo("tb_rule_engine.main", tenantId, 0, true);
+
+    TbClusterService clusterService;
+    TbRuleEngineMsgBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        clusterService = mock(TbClusterService.class);
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createStatsCounter(anyString(), anyString())).thenAnswer(invocation -> mock(StatsCounter.class));
+        batcher = new TbRuleEngineMsgBatcher(clusterService, statsFactory);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "lingerMs", LINGER_MS);
+        ReflectionTestUtils.setField(batcher, "maxSize", MAX_SIZE);
+        batcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.destroy();
+    }
+
+    @Test
+    void givenLessMsgsThanMaxSize_whenLingerExpires_thenMsgsSentAsOneBatch() {
+        List<TbMsg> msgs = pushMsgs(2);
+        verify(clusterService, never()).pushMsgToRuleEngine(any(TopicPartitionInfo.class), any(), any(ToRuleEngineMsg.class), any());
+
+        ArgumentCaptor<ToRuleEngineMsg> msgCaptor = ArgumentCaptor.forClass(ToRuleEngineMsg.class);
+        verify(clusterService, timeout(LINGER_MS * 5)).pushMsgToRuleEngine(eq(tpi), eq(msgs.get(0).getId()), msgCaptor.capture(), any());
+        assertThat(msgCaptor.getValue().getTbMsgsCount()).isEqualTo(2);
+        assertThat(TbMsg.fromBytes(null, msgCaptor.getValue().getTbMsgs(1).toByteArray(), null).getId()).isEqualTo(msgs.get(1).getId());
+    }
+
+    @Test
+    void givenMaxSizeReached_whenPush_thenBatchSentAtOnceAndNextBatchNotFlushedEarly() throws InterruptedException {
+        pushMsgs(MAX_SIZE);
+        ArgumentCaptor<ToRuleEngineMsg> msgCaptor = ArgumentCaptor.forClass(ToRuleEngineMsg.class);
+        verify(clusterService).pushMsgToRuleEngine(eq(tpi), any(), msgCaptor.capture(), any());
+        assertThat(msgCaptor.getValue().getTbMsgsCount()).isEqualTo(MAX_SIZE);
+
+        Thread.sleep(LINGER_MS * 2 / 3);
+        pushMsgs(1);
+        // the flush scheduled for the first batch is due, the one of the second batch is not
+        Thread.sleep(LINGER_MS * 2 / 3);
+        verify(clusterService, times(1)).pushMsgToRuleEngine(any(TopicPartitionInfo.class), any(), any(ToRuleEngineMsg.class), any());
+
+        verify(clusterService, timeout(LINGER_MS * 5).times(2)).pushMsgToRuleEngine(eq(tpi), any(), msgCaptor.capture(), any());
+        assertThat(msgCaptor.getValue().getTbMsgsCount()).isZero();
+        assertThat(msgCaptor.getValue().getTbMsg().isEmpty()).isFalse();
+    }
+
+    @Test
+    void givenBatchSent_whenQueueCallbackCalled_thenCallbackOfEachMsgCalled() {
+        List<TbQueueCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < MAX_SIZE; i++) {
+            TbQueueCallback callback = mock(TbQueueCallback.class);
+            callbacks.add(callback);
+            batcher.push(tpi, tenantId, newMsg(), callback);
+        }
+        ArgumentCaptor<TbQueueCallback> callbackCaptor = ArgumentCaptor.forClass(TbQueueCallback.class);
+        verify(clusterService).pushMsgToRuleEngine(eq(tpi), any(), any(), callbackCaptor.capture());
+
+        TbQueueMsgMetadata metadata = mock(TbQueueMsgMetadata.class);
+        callbackCaptor.getValue().onSuccess(metadata);
+        RuntimeException error = new RuntimeException("failed");
+        callbackCaptor.getValue().onFailure(error);
+        for (TbQueueCallback callback : callbacks) {
+            verify(callback).onSuccess(metadata);
+            verify(callback).onFailure(error);
+        }
+    }
+
+    @Test
+    void givenPushFailed_whenMaxSizeReached_thenCallbackOfEachMsgFailed() {
+        RuntimeException error = new RuntimeException("failed");
+        doThrow(error).when(clusterService).pushMsgToRuleEngine(any(TopicPartitionInfo.class), any(), any(ToRuleEngineMsg.class), any());
+        List<TbQueueCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < MAX_SIZE; i++) {
+            TbQueueCallback callback = mock(TbQueueCallback.class);
+            callbacks.add(callback);
+            batcher.push(tpi, tenantId, newMsg(), callback);
+        }
+        for (TbQueueCallback callback : callbacks) {
+            verify(callback).onFailure(error);
+        }
+    }
+
+    @Test
+    void givenSendInProgress_whenNextBatchOfSameKeyClosed_thenPushNotBlockedAndBatchesSentInOrder() throws Exception {
+        CountDownLatch sendStarted = new CountDownLatch(1);
+        CountDownLatch releaseSend = new CountDownLatch(1);
+        List<UUID> sentIds = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            sentIds.add(invocation.getArgument(1));
+            sendStarted.countDown();
+            releaseSend.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(clusterService).pushMsgToRuleEngine(any(TopicPartitionInfo.class), any(), any(ToRuleEngineMsg.class), any());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<TbMsg>> firstBatch = executor.submit(() -> pushMsgs(MAX_SIZE));
+            assertThat(sendStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the first batch is being sent by the other thread, the second one is handed over to it
+            List<TbMsg> secondBatch = pushMsgs(MAX_SIZE);
+            assertThat(sentIds).hasSize(1);
+
+            releaseSend.countDown();
+            List<TbMsg> first = firstBatch.get(5, TimeUnit.SECONDS);
+            assertThat(sentIds).containsExactly(first.get(0).getId(), secondBatch.get(0).getId());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<TbMsg> pushMsgs(int count) {
+        List<TbMsg> msgs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TbMsg msg = newMsg();
+            msgs.add(msg);
+            batcher.push(tpi, tenantId, msg, mock(TbQueueCallback.class));
+        }
+        return msgs;
+    }
+
+    private TbMsg newMsg() {
+        return TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{}");
+    }
+
+}
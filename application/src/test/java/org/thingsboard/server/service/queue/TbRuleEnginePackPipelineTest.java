@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TbRuleEnginePackPipelineTest {
+
+    AtomicInteger inFlightPacks;
+    AtomicInteger commitLag;
+    TbRuleEnginePackPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        inFlightPacks = new AtomicInteger();
+        commitLag = new AtomicInteger();
+        pipeline = new TbRuleEnginePackPipeline(3, inFlightPacks, commitLag);
+    }
+
+    @Test
+    void givenPacksAckedOutOfOrder_whenAck_thenWatermarkMovesOverContiguousPacksOnly() {
+        long first = pipeline.add(10);
+        long second = pipeline.add(5);
+        long third = pipeline.add(1);
+
+        pipeline.ack(second);
+        assertThat(pipeline.getWatermark()).isEqualTo(-1);
+        assertThat(pipeline.isCommitReady()).isFalse();
+
+        pipeline.ack(first);
+        assertThat(pipeline.getWatermark()).isEqualTo(second);
+        assertThat(pipeline.isCommitReady()).isFalse();
+
+        pipeline.ack(third);
+        assertThat(pipeline.getWatermark()).isEqualTo(third);
+        assertThat(pipeline.isCommitReady()).isTrue();
+        assertThat(commitLag.get()).isEqualTo(16);
+
+        pipeline.onCommit();
+        assertThat(pipeline.isCommitReady()).isFalse();
+        assertThat(commitLag.get()).isZero();
+        assertThat(inFlightPacks.get()).isZero();
+    }
+
+    @Test
+    void givenFullPipeline_whenCanPoll_thenDrainsBeforeNextPoll() {
+        long first = pipeline.add(1);
+        long second = pipeline.add(1);
+        assertThat(pipeline.canPoll()).isTrue();
+        long third = pipeline.add(1);
+        assertThat(pipeline.canPoll()).isFalse();
+        assertThat(inFlightPacks.get()).isEqualTo(3);
+
+        pipeline.ack(first);
+        pipeline.ack(second);
+        assertThat(pipeline.canPoll()).isFalse();
+
+        pipeline.ack(third);
+        assertThat(pipeline.canPoll()).isTrue();
+    }
+
+    @Test
+    void givenPartialCommitSupported_whenNextPackAckedFirst_thenNoCommitPastWatermarkAndPollingContinues() {
+        long first = pipeline.add(10, "offset-10");
+        long second = pipeline.add(5, "offset-15");
+
+        pipeline.ack(second);
+        assertThat(pipeline.getWatermark()).isEqualTo(-1);
+        assertThat(pipeline.isCommitReady()).isFalse();
+        assertThat(pipeline.canPoll()).isTrue();
+
+        long third = pipeline.add(1, "offset-16");
+        assertThat(pipeline.canPoll()).isTrue();
+        long fourth = pipeline.add(1, "offset-17");
+        // the slow first pack and the two new ones fill the window
+        assertThat(pipeline.canPoll()).isFalse();
+
+        pipeline.ack(third);
+        assertThat(pipeline.canPoll()).isTrue();
+        assertThat(pipeline.isCommitReady()).isFalse();
+
+        pipeline.ack(first);
+        assertThat(pipeline.getWatermark()).isEqualTo(third);
+        assertThat(pipeline.isCommitReady()).isTrue();
+        assertThat(pipeline.getCommitPosition()).isEqualTo("offset-16");
+
+        pipeline.onCommit();
+        assertThat(pipeline.isCommitReady()).isFalse();
+        assertThat(commitLag.get()).isEqualTo(1);
+        assertThat(pipeline.getUncommittedMsgs()).isEqualTo(1);
+
+        pipeline.ack(fourth);
+        assertThat(pipeline.isCommitReady()).isTrue();
+        assertThat(pipeline.getCommitPosition()).isEqualTo("offset-17");
+        pipeline.onCommit();
+        assertThat(commitLag.get()).isZero();
+        assertThat(inFlightPacks.get()).isZero();
+    }
+
+    @Test
+    void givenClosedPipeline_whenLateAck_thenGaugesNotChanged() {
+        long first = pipeline.add(7);
+        pipeline.add(3);
+        pipeline.close();
+        assertThat(inFlightPacks.get()).isZero();
+        assertThat(commitLag.get()).isZero();
+
+        pipeline.ack(first);
+        assertThat(inFlightPacks.get()).isZero();
+        assertThat(commitLag.get()).isZero();
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.DeviceTypeFilter;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.dao.entity.EntityService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbEntityDataQueryResultCacheTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final EntityService entityService = mock(EntityService.class);
+
+    @Test
+    public void givenIdenticalQueries_whenFind_thenQueryExecutedOnceAndResultCopied() {
+        when(entityService.findEntityDataByQuery(eq(tenantId), any(), any())).thenReturn(pageData());
+        TbEntityDataQueryResultCache cache = new TbEntityDataQueryResultCache(entityService, 60000);
+        SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+
+        PageData<EntityData> first = cache.findEntityDataByQuery(tenantId, null, query("thermostat"), stats);
+        PageData<EntityData> second = cache.findEntityDataByQuery(tenantId, null, query("thermostat"), stats);
+
+        verify(entityService, times(1)).findEntityDataByQuery(eq(tenantId), any(), any());
+        assertThat(stats.getSharedQueryHitCnt().get()).isEqualTo(1);
+        assertThat(second.getData()).hasSize(1);
+        first.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES).put("temperature", new TsValue(2, "25"));
+        assertThat(second.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES).get("temperature").getValue()).isEqualTo("20");
+    }
+
+    @Test
+    public void givenDifferentQueriesOrCustomers_whenFind_thenEachQueryExecuted() {
+        when(entityService.findEntityDataByQuery(eq(tenantId), any(), any())).thenReturn(pageData());
+        TbEntityDataQueryResultCache cache = new TbEntityDataQueryResultCache(entityService, 60000);
+        SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+
+        cache.findEntityDataByQuery(tenantId, null, query("thermostat"), stats);
+        cache.findEntityDataByQuery(tenantId, null, query("sensor"), stats);
+        cache.findEntityDataByQuery(tenantId, new CustomerId(UUID.randomUUID()), query("thermostat"), stats);
+
+        verify(entityService, times(3)).findEntityDataByQuery(eq(tenantId), any(), any());
+        assertThat(stats.getSharedQueryHitCnt().get()).isZero();
+    }
+
+    @Test
+    public void givenExpiredResult_whenFind_thenQueryExecutedAgain() {
+        when(entityService.findEntityDataByQuery(eq(tenantId), any(), any())).thenReturn(pageData());
+        TbEntityDataQueryResultCache cache = new TbEntityDataQueryResultCache(entityService, 0);
+        SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+
+        cache.findEntityDataByQuery(tenantId, null, query("thermostat"), stats);
+        cache.findEntityDataByQuery(tenantId, null, query("thermostat"), stats);
+        cache.cleanUp();
+
+        verify(entityService, times(2)).findEntityDataByQuery(eq(tenantId), any(), any());
+    }
+
+    private static EntityDataQuery query(String deviceType) {
+        DeviceTypeFilter filter = new DeviceTypeFilter(List.of(deviceType), null);
+        EntityDataPageLink pageLink = new EntityDataPageLink(10, 0, null, null, true);
+        return new EntityDataQuery(filter, pageLink, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static PageData<EntityData> pageData() {
+        Map<String, TsValue> values = new HashMap<>();
+        values.put("temperature", new TsValue(1, "20"));
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.TIME_SERIES, values);
+        EntityData entityData = new EntityData(new DeviceId(UUID.randomUUID()), latest, null);
+        return new PageData<>(List.of(entityData), 1, 1, false);
+    }
+
+}
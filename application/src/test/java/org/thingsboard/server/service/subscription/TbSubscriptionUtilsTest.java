@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateValueListProto;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbSubscriptionUtilsTest {
+
+    @Test
+    public void givenTsUpdates_whenEncodeAndDecode_thenValuesGroupedByKey() {
+        List<TsKvEntry> updates = List.of(
+                new BasicTsKvEntry(1, new LongDataEntry("temperature", 20L)),
+                new BasicTsKvEntry(1, new StringDataEntry("state", "on")),
+                new BasicTsKvEntry(2, new LongDataEntry("temperature", 21L)));
+
+        List<TbSubscriptionUpdateValueListProto> dataProto = TbSubscriptionUtils.toSubscriptionUpdateDataProto(updates, true);
+        assertThat(dataProto).extracting(TbSubscriptionUpdateValueListProto::getKey).containsExactly("state", "temperature");
+
+        Map<String, List<Object>> data = TbSubscriptionUtils.toSubscriptionUpdateData(TbSubscriptionUpdateProto.newBuilder().addAllData(dataProto).build());
+        assertThat(data.get("temperature")).hasSize(2);
+        assertThat((Object[]) data.get("temperature").get(1)).containsExactly(2L, "21");
+        assertThat((Object[]) data.get("state").get(0)).containsExactly(1L, "on");
+    }
+
+    @Test
+    public void givenKeyWithoutValue_whenEncode_thenKeySkippedOnlyIfEmptyUpdatesIgnored() {
+        List<TsKvEntry> updates = List.of(new BasicTsKvEntry(0, new StringDataEntry("state", null)));
+
+        assertThat(TbSubscriptionUtils.toSubscriptionUpdateDataProto(updates, true)).isEmpty();
+        List<TbSubscriptionUpdateValueListProto> dataProto = TbSubscriptionUtils.toSubscriptionUpdateDataProto(updates, false);
+        assertThat(dataProto).hasSize(1);
+        assertThat(dataProto.get(0).getTsValue(0).hasValue()).isFalse();
+    }
+
+}
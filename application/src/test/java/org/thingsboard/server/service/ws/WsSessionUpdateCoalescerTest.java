@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ws;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.service.ws.telemetry.cmd.v2.EntityDataUpdate;
+import org.thingsboard.server.service.ws.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsSessionUpdateCoalescerTest {
+
+    @Test
+    public void givenLatestUpdates_whenDrain_thenLatestValuePerKey() {
+        WsSessionUpdateCoalescer coalescer = new WsSessionUpdateCoalescer();
+        assertThat(coalescer.add(update(1, Map.of("temperature", values(value(1, "20")), "humidity", values(value(1, "50")))), WsSessionUpdateCoalescer.Mode.LATEST)).isTrue();
+        assertThat(coalescer.add(update(1, Map.of("temperature", values(value(2, "21")))), WsSessionUpdateCoalescer.Mode.LATEST)).isFalse();
+
+        List<TelemetrySubscriptionUpdate> updates = drain(coalescer);
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0).getSubscriptionId()).isEqualTo(1);
+        assertThat(updates.get(0).getLatestValues()).containsEntry("temperature", 2L).containsEntry("humidity", 1L);
+        assertThat(updates.get(0).getData().get("temperature")).hasSize(1);
+    }
+
+    @Test
+    public void givenTimeseriesUpdates_whenDrain_thenValuesAppended() {
+        WsSessionUpdateCoalescer coalescer = new WsSessionUpdateCoalescer();
+        coalescer.add(update(1, Map.of("temperature", values(value(1, "20")))), WsSessionUpdateCoalescer.Mode.APPEND);
+        coalescer.add(update(1, Map.of("temperature", values(value(2, "21"), value(3, "22")))), WsSessionUpdateCoalescer.Mode.APPEND);
+
+        List<Object> values = drain(coalescer).get(0).getData().get("temperature");
+        assertThat(values).hasSize(3);
+        assertThat(values).extracting(v -> ((Object[]) v)[0]).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void givenSeveralSubscriptions_whenDrain_thenArrivalOrderKeptAndCoalescerReset() {
+        WsSessionUpdateCoalescer coalescer = new WsSessionUpdateCoalescer();
+        coalescer.add(update(2, Map.of("a", values(value(1, "1")))), WsSessionUpdateCoalescer.Mode.LATEST);
+        coalescer.add(update(1, Map.of("b", values(value(1, "2")))), WsSessionUpdateCoalescer.Mode.APPEND);
+        coalescer.add(update(2, Map.of("a", values(value(2, "3")))), WsSessionUpdateCoalescer.Mode.LATEST);
+
+        assertThat(drain(coalescer)).extracting(TelemetrySubscriptionUpdate::getSubscriptionId).containsExactly(2, 1);
+        assertThat(drain(coalescer)).isEmpty();
+        assertThat(coalescer.add(update(1, Map.of("b", values(value(3, "4")))), WsSessionUpdateCoalescer.Mode.APPEND)).isTrue();
+    }
+
+    @Test
+    public void givenEntityDataUpdates_whenDrain_thenLatestValuesReplacedAndTimeseriesAppendedPerEntity() {
+        WsSessionUpdateCoalescer coalescer = new WsSessionUpdateCoalescer();
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        assertThat(coalescer.add(entityDataUpdate(5, latest(device1, "temperature", new TsValue(1, "20"))))).isTrue();
+        assertThat(coalescer.add(entityDataUpdate(5, latest(device2, "temperature", new TsValue(1, "30"))))).isFalse();
+        coalescer.add(entityDataUpdate(5, latest(device1, "temperature", new TsValue(2, "21"))));
+        coalescer.add(entityDataUpdate(6, timeseries(device1, "humidity", new TsValue(1, "50"))));
+        coalescer.add(entityDataUpdate(6, timeseries(device1, "humidity", new TsValue(2, "51"), new TsValue(3, "52"))));
+
+        List<Object> updates = new ArrayList<>();
+        coalescer.drain((cmdId, update) -> updates.add(update));
+        assertThat(updates).hasSize(2);
+
+        EntityDataUpdate latestUpdate = (EntityDataUpdate) updates.get(0);
+        assertThat(latestUpdate.getCmdId()).isEqualTo(5);
+        assertThat(latestUpdate.getData()).isNull();
+        assertThat(latestUpdate.getUpdate()).extracting(EntityData::getEntityId).containsExactly(device1, device2);
+        assertThat(latestUpdate.getUpdate().get(0).getLatest().get(EntityKeyType.TIME_SERIES).get("temperature")).isEqualTo(new TsValue(2, "21"));
+        assertThat(latestUpdate.getUpdate().get(0).getTimeseries()).isNull();
+
+        EntityDataUpdate tsUpdate = (EntityDataUpdate) updates.get(1);
+        assertThat(tsUpdate.getCmdId()).isEqualTo(6);
+        assertThat(tsUpdate.getUpdate()).hasSize(1);
+        assertThat(tsUpdate.getUpdate().get(0).getTimeseries().get("humidity")).extracting(TsValue::getTs).containsExactly(1L, 2L, 3L);
+        assertThat(tsUpdate.getUpdate().get(0).getLatest()).isNull();
+    }
+
+    @Test
+    public void givenPendingUpdates_whenSend_thenPendingUpdatesHandedOverFirst() {
+        WsSessionUpdateCoalescer coalescer = new WsSessionUpdateCoalescer();
+        coalescer.add(update(1, Map.of("a", values(value(1, "1")))), WsSessionUpdateCoalescer.Mode.LATEST);
+        Object direct = new Object();
+
+        List<Integer> cmdIds = new ArrayList<>();
+        List<Object> updates = new ArrayList<>();
+        coalescer.send((cmdId, update) -> {
+            cmdIds.add(cmdId);
+            updates.add(update);
+        }, 7, direct);
+
+        assertThat(cmdIds).containsExactly(1, 7);
+        assertThat(updates.get(0)).isInstanceOf(TelemetrySubscriptionUpdate.class);
+        assertThat(updates.get(1)).isSameAs(direct);
+        assertThat(drain(coalescer)).isEmpty();
+    }
+
+    private static List<TelemetrySubscriptionUpdate> drain(WsSessionUpdateCoalescer coalescer) {
+        List<TelemetrySubscriptionUpdate> updates = new ArrayList<>();
+        coalescer.drain((cmdId, update) -> updates.add((TelemetrySubscriptionUpdate) update));
+        return updates;
+    }
+
+    private static EntityDataUpdate entityDataUpdate(int cmdId, EntityData entityData) {
+        return new EntityDataUpdate(cmdId, null, List.of(entityData), 100);
+    }
+
+    private static EntityData latest(DeviceId deviceId, String key, TsValue value) {
+        return new EntityData(deviceId, Map.of(EntityKeyType.TIME_SERIES, Map.of(key, value)), null);
+    }
+
+    private static EntityData timeseries(DeviceId deviceId, String key, TsValue... values) {
+        return new EntityData(deviceId, null, Map.of(key, values));
+    }
+
+    private static TelemetrySubscriptionUpdate update(int subscriptionId, Map<String, List<Object>> data) {
+        return new TelemetrySubscriptionUpdate(subscriptionId, data);
+    }
+
+    private static List<Object> values(Object[]... values) {
+        return List.of((Object[]) values);
+    }
+
+    private static Object[] value(long ts, String value) {
+        return new Object[]{ts, value};
+    }
+
+}
@@ -18,6 +18,8 @@ package org.thingsboard.server.actors;
 import lombok.Data;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Data
 class Dispatcher {
@@ -25,4 +27,19 @@ class Dispatcher {
     private final String dispatcherId;
     private final ExecutorService executor;
 
+    /**
+     * Used by the mailboxes to keep processing their messages while there is no other work for the dispatcher,
+     * instead of yielding the thread after every throughput slice. Unknown executors are considered busy.
+     */
+    boolean hasQueuedTasks() {
+        if (executor instanceof ForkJoinPool) {
+            ForkJoinPool pool = (ForkJoinPool) executor;
+            return pool.hasQueuedSubmissions() || pool.getQueuedTaskCount() > 0;
+        } else if (executor instanceof ThreadPoolExecutor) {
+            return !((ThreadPoolExecutor) executor).getQueue().isEmpty();
+        } else {
+            return true;
+        }
+    }
+
 }
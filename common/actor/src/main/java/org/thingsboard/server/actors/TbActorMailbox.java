@@ -25,7 +25,6 @@ import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbActorStopReason;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -50,8 +49,8 @@ public final class TbActorMailbox implements TbActorCtx {
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
-    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final TbActorMailboxQueue<TbActorMsg> highPriorityMsgs = new TbActorMailboxQueue<>();
+    private final TbActorMailboxQueue<TbActorMsg> normalPriorityMsgs = new TbActorMailboxQueue<>();
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
@@ -106,9 +105,9 @@ public final class TbActorMailbox implements TbActorCtx {
     private void enqueue(TbActorMsg msg, boolean highPriority) {
         if (!destroyInProgress.get()) {
             if (highPriority) {
-                highPriorityMsgs.add(msg);
+                highPriorityMsgs.offer(msg);
             } else {
-                normalPriorityMsgs.add(msg);
+                normalPriorityMsgs.offer(msg);
             }
             tryProcessQueue(true);
         } else {
@@ -130,7 +129,7 @@ public final class TbActorMailbox implements TbActorCtx {
 
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
-            if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
+            if (newMsg || !isQueueEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
                     dispatcher.getExecutor().execute(this::processMailbox);
                 } else {
@@ -145,37 +144,63 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void processMailbox() {
-        boolean noMoreElements = false;
-        for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
-            if (msg == null) {
-                msg = normalPriorityMsgs.poll();
-            }
-            if (msg != null) {
-                try {
-                    log.debug("[{}] Going to process message: {}", selfId, msg);
-                    actor.process(msg);
-                } catch (TbRuleNodeUpdateException updateException) {
-                    stopReason = TbActorStopReason.INIT_FAILED;
-                    destroy(updateException.getCause());
-                } catch (Throwable t) {
-                    log.debug("[{}] Failed to process message: {}", selfId, msg, t);
-                    ProcessFailureStrategy strategy = actor.onProcessFailure(t);
-                    if (strategy.isStop()) {
-                        system.stop(selfId);
+        while (true) {
+            boolean noMoreElements = false;
+            for (int i = 0; i < settings.getActorThroughput(); i++) {
+                if (ready.get() == NOT_READY) {
+                    break;
+                }
+                TbActorMsg msg = highPriorityMsgs.poll();
+                if (msg == null) {
+                    msg = normalPriorityMsgs.poll();
+                }
+                if (msg != null) {
+                    try {
+                        log.debug("[{}] Going to process message: {}", selfId, msg);
+                        actor.process(msg);
+                    } catch (TbRuleNodeUpdateException updateException) {
+                        stopReason = TbActorStopReason.INIT_FAILED;
+                        destroy(updateException.getCause());
+                    } catch (Throwable t) {
+                        log.debug("[{}] Failed to process message: {}", selfId, msg, t);
+                        ProcessFailureStrategy strategy = actor.onProcessFailure(t);
+                        if (strategy.isStop()) {
+                            system.stop(selfId);
+                        }
                     }
+                } else {
+                    noMoreElements = true;
+                    break;
                 }
-            } else {
-                noMoreElements = true;
-                break;
+            }
+            if (ready.get() == NOT_READY) {
+                // The actor was destroyed while the mailbox was busy, so the queues are released here instead of the destroy task.
+                if (destroyInProgress.get()) {
+                    releaseQueues();
+                }
+                busy.set(FREE);
+                return;
+            }
+            if (noMoreElements) {
+                busy.set(FREE);
+                // The producers that found the mailbox busy rely on this check, since they didn't schedule the processing.
+                if (isQueueEmpty() || !busy.compareAndSet(FREE, BUSY)) {
+                    return;
+                }
+            } else if (dispatcher.hasQueuedTasks()) {
+                dispatcher.getExecutor().execute(this::processMailbox);
+                return;
             }
         }
-        if (noMoreElements) {
-            busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
-        } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
-        }
+    }
+
+    private boolean isQueueEmpty() {
+        return highPriorityMsgs.isEmpty() && normalPriorityMsgs.isEmpty();
+    }
+
+    private void releaseQueues() {
+        highPriorityMsgs.drain(msg -> msg.onTbActorStopped(stopReason));
+        normalPriorityMsgs.drain(msg -> msg.onTbActorStopped(stopReason));
     }
 
     @Override
@@ -232,8 +257,11 @@ public final class TbActorMailbox implements TbActorCtx {
             try {
                 ready.set(NOT_READY);
                 actor.destroy(stopReason, cause);
-                highPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
-                normalPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
+                // Only the owner of the mailbox may poll the queues. If the mailbox is busy, it releases them itself.
+                if (busy.compareAndSet(FREE, BUSY)) {
+                    releaseQueues();
+                    busy.set(FREE);
+                }
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor: {}", selfId, t);
             }
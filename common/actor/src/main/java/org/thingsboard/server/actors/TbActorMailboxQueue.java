@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Unbounded lock-free multi-producer single-consumer queue of the actor mailbox.
+ * Producers only swap the tail reference and link the previous node, so the offer never retries.
+ * Poll may be called only by the thread that currently owns the mailbox, for other threads isEmpty is just a hint.
+ */
+final class TbActorMailboxQueue<E> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TbActorMailboxQueue, Node> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(TbActorMailboxQueue.class, Node.class, "tail");
+
+    private volatile Node<E> tail;
+    private Node<E> head;
+
+    TbActorMailboxQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = stub;
+    }
+
+    @SuppressWarnings("unchecked")
+    void offer(E value) {
+        Node<E> node = new Node<>(value);
+        Node<E> prev = TAIL.getAndSet(this, node);
+        prev.next = node;
+    }
+
+    E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        E value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    /**
+     * May return true while a producer is between the tail swap and the link of the node.
+     * Such producer is still going to wake the mailbox after the link, so the message is not lost.
+     */
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+    void drain(Consumer<E> consumer) {
+        E value;
+        while ((value = poll()) != null) {
+            consumer.accept(value);
+        }
+    }
+
+    private static final class Node<E> {
+        private E value;
+        private volatile Node<E> next;
+
+        private Node(E value) {
+            this.value = value;
+        }
+    }
+
+}
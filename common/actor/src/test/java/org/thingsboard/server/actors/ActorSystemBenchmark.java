@@ -0,0 +1,180 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Timed harness for the actor mailbox. The class name does not match the surefire includes, so it is not part of the build.
+ * Run it manually, e.g. 'mvn test -Dtest=ActorSystemBenchmark', and compare the logged throughput between the revisions.
+ */
+@Slf4j
+public class ActorSystemBenchmark {
+
+    private static final String DISPATCHER = "benchmark-dispatcher";
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private final int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private TbActorSystem actorSystem;
+    private ExecutorService submitPool;
+    private ExecutorService executor;
+
+    @After
+    public void shutdown() {
+        if (actorSystem != null) {
+            actorSystem.stop();
+        }
+        if (submitPool != null) {
+            submitPool.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void benchmarkMailboxQueue() throws Exception {
+        int producers = parallelism;
+        int msgsPerProducer = 1_000_000;
+        this.<Queue<Integer>>runQueue("ConcurrentLinkedQueue", producers, msgsPerProducer, ConcurrentLinkedQueue::new, Queue::offer, (queue, consumer) -> {
+            Integer value;
+            while ((value = queue.poll()) != null) {
+                consumer.accept(value);
+            }
+        });
+        this.<TbActorMailboxQueue<Integer>>runQueue("TbActorMailboxQueue", producers, msgsPerProducer, TbActorMailboxQueue::new,
+                TbActorMailboxQueue::offer, TbActorMailboxQueue::drain);
+    }
+
+    @Test
+    public void benchmarkWorkStealingDispatcherWithFewActors() throws Exception {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        runActors("work stealing, few actors", 10, 500_000);
+    }
+
+    @Test
+    public void benchmarkWorkStealingDispatcherWithManyActors() throws Exception {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        runActors("work stealing, many actors", 10_000, 200);
+    }
+
+    @Test
+    public void benchmarkFixedDispatcherWithManyActors() throws Exception {
+        executor = Executors.newFixedThreadPool(parallelism);
+        runActors("fixed thread pool, many actors", 10_000, 200);
+    }
+
+    private <Q> void runQueue(String name, int producers, int msgsPerProducer, Supplier<Q> queueFactory,
+                              QueueOffer<Q> offer, QueueDrain<Q> drain) throws Exception {
+        ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+        try {
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                Q queue = queueFactory.get();
+                CountDownLatch startLatch = new CountDownLatch(1);
+                for (int p = 0; p < producers; p++) {
+                    producerPool.submit(() -> {
+                        startLatch.await();
+                        for (int i = 0; i < msgsPerProducer; i++) {
+                            offer.offer(queue, i);
+                        }
+                        return null;
+                    });
+                }
+                long total = (long) producers * msgsPerProducer;
+                long[] received = new long[1];
+                long start = System.nanoTime();
+                startLatch.countDown();
+                while (received[0] < total) {
+                    drain.drain(queue, value -> received[0]++);
+                }
+                report(name, round, total, System.nanoTime() - start);
+            }
+        } finally {
+            producerPool.shutdownNow();
+        }
+    }
+
+    private void runActors(String name, int actorsCount, int msgsPerActor) throws Exception {
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, parallelism, 42));
+        actorSystem.createDispatcher(DISPATCHER, executor);
+        submitPool = Executors.newFixedThreadPool(parallelism);
+
+        List<ActorTestCtx> testCtxes = new ArrayList<>();
+        List<TbActorRef> actorRefs = new ArrayList<>();
+        for (int i = 0; i < actorsCount; i++) {
+            ActorTestCtx testCtx = new ActorTestCtx(new CountDownLatch(1), new AtomicInteger(), msgsPerActor, new AtomicLong());
+            actorRefs.add(actorSystem.createRootActor(DISPATCHER, new TestRootActor.TestRootActorCreator(
+                    new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx)));
+            testCtxes.add(testCtx);
+        }
+        int chunk = (actorsCount + parallelism - 1) / parallelism;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int from = 0; from < actorsCount; from += chunk) {
+                List<TbActorRef> producerActors = actorRefs.subList(from, Math.min(actorsCount, from + chunk));
+                submitPool.execute(() -> {
+                    for (int i = 0; i < msgsPerActor; i++) {
+                        IntTbActorMsg msg = new IntTbActorMsg(i);
+                        producerActors.forEach(actorRef -> actorRef.tell(msg));
+                    }
+                });
+            }
+            for (ActorTestCtx testCtx : testCtxes) {
+                Assert.assertTrue(testCtx.getLatch().await(1, TimeUnit.MINUTES));
+            }
+            report(name, round, (long) actorsCount * msgsPerActor, System.nanoTime() - start);
+            testCtxes.forEach(ActorTestCtx::clear);
+        }
+    }
+
+    private void report(String name, int round, long msgs, long durationNs) {
+        if (round < WARMUP_ROUNDS) {
+            return;
+        }
+        log.info("[{}] round {}: {} msgs in {} ms, {} msgs/s", name, round - WARMUP_ROUNDS + 1, msgs,
+                TimeUnit.NANOSECONDS.toMillis(durationNs), msgs * TimeUnit.SECONDS.toNanos(1) / Math.max(1, durationNs));
+    }
+
+    private interface QueueOffer<Q> {
+        void offer(Q queue, Integer value);
+    }
+
+    private interface QueueDrain<Q> {
+        void drain(Q queue, Consumer<Integer> consumer);
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TbActorMailboxQueueTest {
+
+    @Test
+    public void testSingleProducerOrder() {
+        TbActorMailboxQueue<Integer> queue = new TbActorMailboxQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testManyProducersKeepPerProducerOrder() throws InterruptedException {
+        int producers = 4;
+        int msgsPerProducer = 100_000;
+        TbActorMailboxQueue<int[]> queue = new TbActorMailboxQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                executor.submit(() -> {
+                    startLatch.await();
+                    for (int i = 0; i < msgsPerProducer; i++) {
+                        queue.offer(new int[]{producer, i});
+                    }
+                    return null;
+                });
+            }
+            startLatch.countDown();
+
+            List<Integer> lastSeq = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                lastSeq.add(-1);
+            }
+            int received = 0;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (received < producers * msgsPerProducer && System.currentTimeMillis() < deadline) {
+                int[] msg = queue.poll();
+                if (msg != null) {
+                    assertEquals(lastSeq.get(msg[0]) + 1, msg[1]);
+                    lastSeq.set(msg[0], msg[1]);
+                    received++;
+                }
+            }
+            assertEquals(producers * msgsPerProducer, received);
+            assertTrue(queue.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -21,4 +21,9 @@ import lombok.Data;
 public class CacheSpecs {
     private Integer timeToLiveInMinutes;
     private Integer maxSize;
+    /**
+     * Max size of the local near cache in front of the Redis cache. Null or 0 - near cache is disabled
+     */
+    private Integer nearCacheMaxSize;
+    private Integer nearCacheTimeToLiveInSeconds;
 }
@@ -17,7 +17,9 @@ package org.thingsboard.server.cache;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
 
 import java.io.Serializable;
 import java.util.Collection;
@@ -47,6 +49,20 @@ public abstract class CaffeineTbTransactionalCache<K extends Serializable, V ext
         return SimpleTbCacheValueWrapper.wrap(cacheManager.getCache(cacheName).get(key));
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<K, TbCacheValueWrapper<V>> getAll(Collection<K> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+            return TbTransactionalCache.super.getAll(keys);
+        }
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+        Map<K, TbCacheValueWrapper<V>> result = new HashMap<>();
+        nativeCache.getAllPresent(keys).forEach((key, value) ->
+                result.put((K) key, SimpleTbCacheValueWrapper.wrap(value instanceof NullValue ? null : (V) value)));
+        return result;
+    }
+
     @Override
     public void put(K key, V value) {
         lock.lock();
@@ -15,8 +15,11 @@
  */
 package org.thingsboard.server.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.support.NullValue;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -27,16 +30,24 @@ import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.thingsboard.server.common.stats.DefaultCounter;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.util.JedisClusterCRC16;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Slf4j
 public abstract class RedisTbTransactionalCache<K extends Serializable, V extends Serializable> implements TbTransactionalCache<K, V> {
@@ -51,6 +62,14 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
     private final TbRedisSerializer<K, V> valueSerializer;
     private final Expiration evictExpiration;
     private final Expiration cacheTtl;
+    private final CacheSpecs cacheSpecs;
+
+    private TbRedisNearCacheService nearCacheService;
+    private Cache<String, TbCacheValueWrapper<V>> nearCache;
+    private final AtomicLong nearCacheInvalidationSeq = new AtomicLong();
+    private DefaultCounter nearCacheHits;
+    private DefaultCounter redisHits;
+    private DefaultCounter redisMisses;
 
     public RedisTbTransactionalCache(String cacheName,
                                      CacheSpecsMap cacheSpecsMap,
@@ -61,35 +80,132 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
         this.connectionFactory = (JedisConnectionFactory) connectionFactory;
         this.valueSerializer = valueSerializer;
         this.evictExpiration = Expiration.from(configuration.getEvictTtlInMs(), TimeUnit.MILLISECONDS);
-        this.cacheTtl = Optional.ofNullable(cacheSpecsMap)
+        this.cacheSpecs = Optional.ofNullable(cacheSpecsMap)
                 .map(CacheSpecsMap::getSpecs)
                 .map(x -> x.get(cacheName))
+                .orElse(null);
+        this.cacheTtl = Optional.ofNullable(cacheSpecs)
                 .map(CacheSpecs::getTimeToLiveInMinutes)
                 .map(t -> Expiration.from(t, TimeUnit.MINUTES))
                 .orElseGet(Expiration::persistent);
     }
 
+    /**
+     * Enables the local near cache if it is configured for this cache with 'nearCacheMaxSize'.
+     * Values of the near cache are shared between the callers the same way as the values of the Caffeine cache.
+     */
+    @Autowired(required = false)
+    public void setNearCacheService(TbRedisNearCacheService nearCacheService) {
+        if (cacheSpecs == null || cacheSpecs.getNearCacheMaxSize() == null || cacheSpecs.getNearCacheMaxSize() <= 0) {
+            return;
+        }
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(cacheSpecs.getNearCacheMaxSize())
+                .expireAfterWrite(Optional.ofNullable(cacheSpecs.getNearCacheTimeToLiveInSeconds()).orElse(60), TimeUnit.SECONDS)
+                .build();
+        this.nearCacheService = nearCacheService;
+        this.nearCacheHits = nearCacheService.createStatsCounter(cacheName, "nearHit");
+        this.redisHits = nearCacheService.createStatsCounter(cacheName, "redisHit");
+        this.redisMisses = nearCacheService.createStatsCounter(cacheName, "miss");
+        nearCacheService.register(this);
+        log.info("[{}] Near cache enabled with max size {}", cacheName, cacheSpecs.getNearCacheMaxSize());
+    }
+
     @Override
     public TbCacheValueWrapper<V> get(K key) {
+        if (nearCache != null) {
+            TbCacheValueWrapper<V> nearValue = nearCache.getIfPresent(key.toString());
+            if (nearValue != null) {
+                nearCacheHits.increment();
+                return nearValue;
+            }
+        }
+        long invalidationSeq = nearCacheInvalidationSeq.get();
+        TbCacheValueWrapper<V> value;
         try (var connection = connectionFactory.getConnection()) {
             byte[] rawKey = getRawKey(key);
             byte[] rawValue = connection.get(rawKey);
-            if (rawValue == null) {
-                return null;
-            } else if (Arrays.equals(rawValue, BINARY_NULL_VALUE)) {
-                return SimpleTbCacheValueWrapper.empty();
-            } else {
-                V value = valueSerializer.deserialize(key, rawValue);
-                return SimpleTbCacheValueWrapper.wrap(value);
+            value = toValueWrapper(key, rawValue);
+        }
+        putToNearCache(key, value, invalidationSeq);
+        return value;
+    }
+
+    /**
+     * Fetches the keys with a single MGET. In cluster mode MGET is allowed only for the keys from the same slot,
+     * so the keys are grouped by slot and each group is fetched with a single MGET from the node of the slot.
+     */
+    @Override
+    public Map<K, TbCacheValueWrapper<V>> getAll(Collection<K> keys) {
+        Map<K, TbCacheValueWrapper<V>> result = new HashMap<>();
+        if (nearCache != null) {
+            List<K> redisKeys = new ArrayList<>(keys.size());
+            for (K key : keys) {
+                TbCacheValueWrapper<V> nearValue = nearCache.getIfPresent(key.toString());
+                if (nearValue != null) {
+                    nearCacheHits.increment();
+                    result.put(key, nearValue);
+                } else {
+                    redisKeys.add(key);
+                }
+            }
+            keys = redisKeys;
+        }
+        if (keys.isEmpty()) {
+            return result;
+        }
+        long invalidationSeq = nearCacheInvalidationSeq.get();
+        if (!connectionFactory.isRedisClusterAware()) {
+            try (var connection = connectionFactory.getConnection()) {
+                mGet(connection, new ArrayList<>(keys), result);
+            }
+        } else {
+            Map<Integer, List<K>> keysBySlot = new LinkedHashMap<>();
+            for (K key : keys) {
+                keysBySlot.computeIfAbsent(JedisClusterCRC16.getSlot(getRawKey(key)), slot -> new ArrayList<>()).add(key);
+            }
+            for (List<K> slotKeys : keysBySlot.values()) {
+                try (var connection = getConnection(getRawKey(slotKeys.get(0)))) {
+                    mGet(connection, slotKeys, result);
+                }
+            }
+        }
+        for (K key : keys) {
+            putToNearCache(key, result.get(key), invalidationSeq);
+        }
+        return result;
+    }
+
+    private void mGet(RedisConnection connection, List<K> keys, Map<K, TbCacheValueWrapper<V>> result) {
+        List<byte[]> rawValues = connection.mGet(keys.stream().map(this::getRawKey).toArray(byte[][]::new));
+        if (rawValues == null) {
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            TbCacheValueWrapper<V> value = toValueWrapper(keys.get(i), rawValues.get(i));
+            if (value != null) {
+                result.put(keys.get(i), value);
             }
         }
     }
 
+    private TbCacheValueWrapper<V> toValueWrapper(K key, byte[] rawValue) {
+        if (rawValue == null) {
+            return null;
+        } else if (Arrays.equals(rawValue, BINARY_NULL_VALUE)) {
+            return SimpleTbCacheValueWrapper.empty();
+        } else {
+            V value = valueSerializer.deserialize(key, rawValue);
+            return SimpleTbCacheValueWrapper.wrap(value);
+        }
+    }
+
     @Override
     public void put(K key, V value) {
         try (var connection = connectionFactory.getConnection()) {
             put(connection, key, value, RedisStringCommands.SetOption.UPSERT);
         }
+        invalidateNearCacheCluster(Collections.singletonList(key));
     }
 
     @Override
@@ -104,6 +220,7 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
         try (var connection = connectionFactory.getConnection()) {
             connection.del(getRawKey(key));
         }
+        invalidateNearCacheCluster(Collections.singletonList(key));
     }
 
     @Override
@@ -115,6 +232,7 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
         try (var connection = connectionFactory.getConnection()) {
             connection.del(keys.stream().map(this::getRawKey).toArray(byte[][]::new));
         }
+        invalidateNearCacheCluster(keys);
     }
 
     @Override
@@ -127,6 +245,7 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
                 connection.set(rawKey, getRawValue(value), evictExpiration, RedisStringCommands.SetOption.UPSERT);
             }
         }
+        invalidateNearCacheCluster(Collections.singletonList(key));
     }
 
     @Override
@@ -142,6 +261,52 @@ public abstract class RedisTbTransactionalCache<K extends Serializable, V extend
         return new RedisTbCacheTransaction<>(this, connection);
     }
 
+    void invalidateNearCache(Collection<String> keys) {
+        if (nearCache != null) {
+            // the sequence is changed before the removal, so the concurrent reads of the old value are not put back to the near cache
+            nearCacheInvalidationSeq.incrementAndGet();
+            keys.forEach(nearCache.asMap()::remove);
+        }
+    }
+
+    void printNearCacheStats() {
+        if (nearCache == null) {
+            return;
+        }
+        long nearHits = nearCacheHits.get();
+        long hits = redisHits.get();
+        long misses = redisMisses.get();
+        nearCacheHits.clear();
+        redisHits.clear();
+        redisMisses.clear();
+        long total = nearHits + hits + misses;
+        if (total > 0) {
+            log.info("[{}] Near cache hits [{}] ({}%), redis hits [{}] ({}%), misses [{}], near cache size [{}]", cacheName,
+                    nearHits, nearHits * 100 / total, hits, hits * 100 / total, misses, nearCache.estimatedSize());
+        }
+    }
+
+    private void invalidateNearCacheCluster(Collection<K> keys) {
+        if (nearCache != null) {
+            List<String> keyStrings = keys.stream().map(Object::toString).collect(Collectors.toList());
+            invalidateNearCache(keyStrings);
+            nearCacheService.publishInvalidation(cacheName, keyStrings);
+        }
+    }
+
+    private void putToNearCache(K key, TbCacheValueWrapper<V> value, long invalidationSeq) {
+        if (nearCache == null) {
+            return;
+        }
+        if (value == null) {
+            redisMisses.increment();
+            return;
+        }
+        redisHits.increment();
+        nearCache.asMap().compute(key.toString(), (k, oldValue) ->
+                nearCacheInvalidationSeq.get() == invalidationSeq ? value : oldValue);
+    }
+
     private RedisConnection getConnection(byte[] rawKey) {
         if (!connectionFactory.isRedisClusterAware()) {
             return connectionFactory.getConnection();
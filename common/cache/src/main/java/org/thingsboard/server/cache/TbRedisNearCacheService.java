@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local near caches of {@link RedisTbTransactionalCache} consistent across the cluster.
+ * Evicted keys are broadcast over Redis pub/sub and removed from the near caches of all the nodes.
+ * The pub/sub channel is subscribed when the first near cache is registered.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "cache", value = "type", havingValue = "redis")
+public class TbRedisNearCacheService {
+
+    private static final String INVALIDATION_CHANNEL = "tb:near-cache:invalidate";
+    private static final String STATS_KEY = "redisNearCache";
+
+    private final RedisConnectionFactory connectionFactory;
+    private final StatsFactory statsFactory;
+    private final Map<String, RedisTbTransactionalCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    @Value("${redis.near_cache.stats_print_interval_ms:60000}")
+    private long statsPrintIntervalMs;
+
+    private RedisMessageListenerContainer listenerContainer;
+    private ScheduledExecutorService statsExecutor;
+
+    public TbRedisNearCacheService(RedisConnectionFactory connectionFactory, StatsFactory statsFactory) {
+        this.connectionFactory = connectionFactory;
+        this.statsFactory = statsFactory;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() throws Exception {
+        if (statsExecutor != null) {
+            statsExecutor.shutdownNow();
+        }
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    synchronized void register(RedisTbTransactionalCache<?, ?> cache) {
+        caches.put(cache.getCacheName(), cache);
+        if (listenerContainer == null) {
+            subscribe();
+        }
+    }
+
+    void subscribe() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener((message, pattern) -> onInvalidation(message), new ChannelTopic(INVALIDATION_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        if (statsPrintIntervalMs > 0) {
+            statsExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "redis-near-cache-stats"));
+            statsExecutor.scheduleWithFixedDelay(this::printStats, statsPrintIntervalMs, statsPrintIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    DefaultCounter createStatsCounter(String cacheName, String result) {
+        return statsFactory.createDefaultCounter(STATS_KEY, "cacheName", cacheName, "result", result);
+    }
+
+    void publishInvalidation(String cacheName, Collection<String> keys) {
+        try (var connection = connectionFactory.getConnection()) {
+            connection.publish(INVALIDATION_CHANNEL.getBytes(), encode(cacheName, keys));
+        } catch (Exception e) {
+            log.warn("[{}] Failed to publish near cache invalidation of keys: {}", cacheName, keys, e);
+        }
+    }
+
+    void onInvalidation(Message message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBody()))) {
+            String cacheName = in.readUTF();
+            int count = in.readInt();
+            List<String> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keys.add(in.readUTF());
+            }
+            RedisTbTransactionalCache<?, ?> cache = caches.get(cacheName);
+            if (cache != null) {
+                cache.invalidateNearCache(keys);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to process near cache invalidation message", e);
+        }
+    }
+
+    private void printStats() {
+        caches.values().forEach(RedisTbTransactionalCache::printNearCacheStats);
+    }
+
+    private static byte[] encode(String cacheName, Collection<String> keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(cacheName);
+            out.writeInt(keys.size());
+            for (String key : keys) {
+                out.writeUTF(key);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+}
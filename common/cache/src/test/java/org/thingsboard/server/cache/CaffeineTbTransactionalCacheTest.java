@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CaffeineTbTransactionalCacheTest {
+
+    private static final String CACHE_NAME = "test";
+
+    private CaffeineTbTransactionalCache<String, String> cache;
+
+    @BeforeEach
+    public void setUp() {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(new CaffeineCache(CACHE_NAME, Caffeine.newBuilder().build())));
+        cacheManager.initializeCaches();
+        cache = new CaffeineTbTransactionalCache<>(cacheManager, CACHE_NAME) {};
+    }
+
+    @Test
+    public void givenCachedValuesAndNulls_whenGetAll_thenOnlyPresentKeysReturned() {
+        cache.put("a", "valueA");
+        cache.put("b", null);
+
+        Map<String, TbCacheValueWrapper<String>> result = cache.getAll(List.of("a", "b", "c"));
+
+        assertThat(result).containsOnlyKeys("a", "b");
+        assertThat(result.get("a").get()).isEqualTo("valueA");
+        assertThat(result.get("b").get()).isNull();
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.cache;
+
+import io.micrometer.core.instrument.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RedisTbTransactionalCacheTest {
+
+    private static final String CACHE_NAME = "test";
+    private static final byte[] RAW_VALUE = "value".getBytes(StandardCharsets.UTF_8);
+
+    private RedisConnection connection;
+    private TbRedisNearCacheService nearCacheService;
+    private RedisTbTransactionalCache<String, String> cache;
+    private final AtomicInteger nearHits = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        connection = mock(RedisConnection.class);
+        JedisConnectionFactory connectionFactory = mock(JedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        StatsFactory statsFactory = mock(StatsFactory.class, invocation -> new DefaultCounter(
+                "nearHit".equals(invocation.getArgument(4)) ? nearHits : new AtomicInteger(), mock(Counter.class)));
+        nearCacheService = spy(new TbRedisNearCacheService(connectionFactory, statsFactory));
+        doNothing().when(nearCacheService).subscribe();
+
+        CacheSpecs specs = new CacheSpecs();
+        specs.setNearCacheMaxSize(100);
+        CacheSpecsMap specsMap = new CacheSpecsMap();
+        specsMap.setSpecs(Map.of(CACHE_NAME, specs));
+        TBRedisCacheConfiguration configuration = mock(TBRedisCacheConfiguration.class);
+        when(configuration.getEvictTtlInMs()).thenReturn(60000);
+
+        cache = new RedisTbTransactionalCache<>(CACHE_NAME, specsMap, connectionFactory, configuration, new TbRedisSerializer<String, String>() {
+            @Override
+            public byte[] serialize(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String deserialize(String key, byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }) {};
+        cache.setNearCacheService(nearCacheService);
+    }
+
+    @Test
+    public void givenNearCacheEnabled_whenRegistered_thenSubscribedOnce() {
+        verify(nearCacheService, times(1)).subscribe();
+    }
+
+    @Test
+    public void givenValueInRedis_whenGetTwice_thenSecondGetServedByNearCache() {
+        when(connection.get(any())).thenReturn(RAW_VALUE);
+
+        assertThat(cache.get("key").get()).isEqualTo("value");
+        assertThat(cache.get("key").get()).isEqualTo("value");
+
+        verify(connection, times(1)).get(any());
+        assertThat(nearHits.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenNearCachedValue_whenEvict_thenNearCacheInvalidatedAndBroadcast() {
+        when(connection.get(any())).thenReturn(RAW_VALUE);
+        cache.get("key");
+
+        cache.evict("key");
+        cache.get("key");
+
+        verify(connection, times(2)).get(any());
+        verify(connection).publish(any(), any());
+    }
+
+    @Test
+    public void givenNearCachedValue_whenRemoteInvalidationReceived_thenNearCacheInvalidated() {
+        when(connection.get(any())).thenReturn(RAW_VALUE);
+        cache.get("key");
+
+        cache.put("key", "newValue");
+        ArgumentCaptor<byte[]> messageCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(connection).publish(any(), messageCaptor.capture());
+        cache.get("key");
+        verify(connection, times(2)).get(any());
+
+        // the invalidation published by the other node
+        nearCacheService.onInvalidation(new DefaultMessage(new byte[0], messageCaptor.getValue()));
+        cache.get("key");
+
+        verify(connection, times(3)).get(any());
+    }
+
+    @Test
+    public void givenEvictDuringRedisRead_whenGet_thenStaleValueNotPutToNearCache() {
+        when(connection.get(any())).thenAnswer(invocation -> {
+            // the key is evicted on the other node after the value was read from Redis
+            cache.invalidateNearCache(List.of("key"));
+            return RAW_VALUE;
+        });
+
+        assertThat(cache.get("key").get()).isEqualTo("value");
+        cache.get("key");
+
+        verify(connection, times(2)).get(any());
+        assertThat(nearHits.get()).isZero();
+    }
+
+}
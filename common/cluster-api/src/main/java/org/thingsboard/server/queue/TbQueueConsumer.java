@@ -34,6 +34,21 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * Returns the position after the records polled so far, to commit it later with {@link #commit(Object)}.
+     * The position is opaque to the caller. Returns null if the consumer can only commit the whole polled position.
+     */
+    default Object getCommitPosition() {
+        return null;
+    }
+
+    /**
+     * Commits the position returned by {@link #getCommitPosition()}, or the whole polled position if it is null.
+     */
+    default void commit(Object position) {
+        commit();
+    }
+
     boolean isStopped();
 
     void onQueueDelete();
@@ -31,6 +31,8 @@ public interface EventService {
 
     ListenableFuture<Void> saveAsync(Event event);
 
+    void saveAll(List<? extends Event> events);
+
     PageData<EventInfo> findEvents(TenantId tenantId, EntityId entityId, EventType eventType, TimePageLink pageLink);
 
     List<EventInfo> findLatestEvents(TenantId tenantId, EntityId entityId, EventType eventType, int limit);
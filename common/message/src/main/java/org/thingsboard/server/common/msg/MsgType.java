@@ -111,6 +111,12 @@ public enum MsgType {
 
     SESSION_TIMEOUT_MSG(true),
 
+    /**
+     * Messages that are sent from the Tenant Actor to an idle Device Actor and back to passivate the Device Actor
+     */
+    DEVICE_ACTOR_PASSIVATION_CHECK_MSG(true),
+    DEVICE_ACTOR_PASSIVATION_READY_MSG,
+
     STATS_PERSIST_TICK_MSG,
 
     STATS_PERSIST_MSG,
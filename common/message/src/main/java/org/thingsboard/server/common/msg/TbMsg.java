@@ -20,7 +20,10 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.StringUtils;
@@ -55,9 +58,16 @@ public final class TbMsg implements Serializable {
     private final TbMsgType internalType;
     private final EntityId originator;
     private final CustomerId customerId;
+    @Getter(value = AccessLevel.NONE)
+    // Decoded from the source on the first access, if the message was received from the queue
     private final TbMsgMetaData metaData;
     private final TbMsgDataType dataType;
-    private final String data;
+    @Getter(value = AccessLevel.NONE)
+    @Setter(value = AccessLevel.NONE)
+    // Rendered from the kvPayload on the first access, if the message was created with the typed key-values
+    private volatile String data;
+    @JsonIgnore
+    private final TbMsgKvPayload kvPayload;
     private final RuleChainId ruleChainId;
     private final RuleNodeId ruleNodeId;
     @Getter(value = AccessLevel.NONE)
@@ -69,6 +79,12 @@ public final class TbMsg implements Serializable {
     @JsonIgnore
     transient private final TbMsgCallback callback;
 
+    @Getter(value = AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @JsonIgnore
+    transient private final ProtoSource source;
+
     public int getAndIncrementRuleNodeCounter() {
         return ctx.getAndIncrementRuleNodeCounter();
     }
@@ -131,6 +147,16 @@ public final class TbMsg implements Serializable {
                 metaData.copy(), TbMsgDataType.JSON, data, null, null, null, TbMsgCallback.EMPTY);
     }
 
+    /**
+     * Creates a new TbMsg instance with the body defined by the typed key-values.
+     * The JSON data of the message is rendered from the key-values only when some consumer requests it.
+     */
+    public static TbMsg newMsgWithKvPayload(String queueName, TbMsgType type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData,
+                                           TbMsgKvPayload kvPayload, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
+        return new TbMsg(queueName, UUID.randomUUID(), System.currentTimeMillis(), type, type.name(), originator, customerId,
+                metaData.copy(), TbMsgDataType.JSON, null, kvPayload, ruleChainId, ruleNodeId, null, TbMsgCallback.EMPTY);
+    }
+
     // REALLY NEW MSG
 
     /**
@@ -266,54 +292,54 @@ public final class TbMsg implements Serializable {
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, TbMsgType type, EntityId originator, TbMsgMetaData metaData, String data) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, type, originator, tbMsg.customerId, metaData.copy(), tbMsg.dataType,
-                data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.callback);
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, type, type.name(), originator, tbMsg.customerId, metaData.copy(), tbMsg.dataType,
+                data, tbMsg.kvPayloadFor(data), tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.callback);
     }
 
     public static TbMsg transformMsgOriginator(TbMsg tbMsg, EntityId originatorId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, originatorId, tbMsg.getCustomerId(), tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.kvPayload, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.source);
     }
 
     public static TbMsg transformMsgData(TbMsg tbMsg, String data) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.getMetaData(), tbMsg.dataType,
+                data, tbMsg.kvPayloadFor(data), tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsgMetadata(TbMsg tbMsg, TbMsgMetaData metadata) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata.copy(), tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.getRawData(), tbMsg.kvPayload, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, TbMsgMetaData metadata, String data) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata, tbMsg.dataType,
-                data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                data, tbMsg.kvPayloadFor(data), tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsgCustomerId(TbMsg tbMsg, CustomerId customerId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.kvPayload, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.source);
     }
 
     public static TbMsg transformMsgRuleChainId(TbMsg tbMsg, RuleChainId ruleChainId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.kvPayload, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.source);
     }
 
     public static TbMsg transformMsgQueueName(TbMsg tbMsg, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.kvPayload, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.source);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.internalType, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.kvPayload, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.source);
     }
 
     //used for enqueueForTellNext
     public static TbMsg newMsg(TbMsg tbMsg, String queueName, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
         return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getInternalType(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId, tbMsg.getMetaData().copy(),
-                tbMsg.getDataType(), tbMsg.getData(), ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY);
+                tbMsg.getDataType(), tbMsg.getRawData(), tbMsg.kvPayload, ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY, tbMsg.source);
     }
 
     private TbMsg(String queueName, UUID id, long ts, TbMsgType internalType, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
@@ -323,6 +349,16 @@ public final class TbMsg implements Serializable {
 
     private TbMsg(String queueName, UUID id, long ts, TbMsgType internalType, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
                   RuleChainId ruleChainId, RuleNodeId ruleNodeId, TbMsgProcessingCtx ctx, TbMsgCallback callback) {
+        this(queueName, id, ts, internalType, type, originator, customerId, metaData, dataType, data, null, ruleChainId, ruleNodeId, ctx, callback);
+    }
+
+    private TbMsg(String queueName, UUID id, long ts, TbMsgType internalType, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
+                  TbMsgKvPayload kvPayload, RuleChainId ruleChainId, RuleNodeId ruleNodeId, TbMsgProcessingCtx ctx, TbMsgCallback callback) {
+        this(queueName, id, ts, internalType, type, originator, customerId, metaData, dataType, data, kvPayload, ruleChainId, ruleNodeId, ctx, callback, null);
+    }
+
+    private TbMsg(String queueName, UUID id, long ts, TbMsgType internalType, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
+                  TbMsgKvPayload kvPayload, RuleChainId ruleChainId, RuleNodeId ruleNodeId, TbMsgProcessingCtx ctx, TbMsgCallback callback, ProtoSource source) {
         this.id = id;
         this.queueName = queueName;
         if (ts > 0) {
@@ -345,17 +381,23 @@ public final class TbMsg implements Serializable {
         this.metaData = metaData;
         this.dataType = dataType;
         this.data = data;
+        this.kvPayload = kvPayload;
         this.ruleChainId = ruleChainId;
         this.ruleNodeId = ruleNodeId;
         this.ctx = ctx != null ? ctx : new TbMsgProcessingCtx();
         this.callback = Objects.requireNonNullElse(callback, TbMsgCallback.EMPTY);
+        this.source = source;
     }
 
     public static ByteString toByteString(TbMsg msg) {
-        return ByteString.copyFrom(toByteArray(msg));
+        return toProto(msg).toByteString();
     }
 
     public static byte[] toByteArray(TbMsg msg) {
+        return toProto(msg).toByteArray();
+    }
+
+    private static MsgProtos.TbMsgProto toProto(TbMsg msg) {
         MsgProtos.TbMsgProto.Builder builder = MsgProtos.TbMsgProto.newBuilder();
         builder.setId(msg.getId().toString());
         builder.setTs(msg.getTs());
@@ -379,68 +421,139 @@ public final class TbMsg implements Serializable {
             builder.setRuleNodeIdLSB(msg.getRuleNodeId().getId().getLeastSignificantBits());
         }
 
-        if (msg.getMetaData() != null) {
-            builder.setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(msg.getMetaData().getData()).build());
+        ProtoSource source = msg.source;
+        if (source != null && source.isMetaDataUnchanged(msg.metaData)) {
+            builder.setMetaData(source.proto.getMetaData());
+        } else if (msg.getMetaData() != null) {
+            MsgProtos.TbMsgMetaDataProto.Builder metaDataBuilder = MsgProtos.TbMsgMetaDataProto.newBuilder();
+            msg.getMetaData().forEach(metaDataBuilder::putData);
+            builder.setMetaData(metaDataBuilder.build());
         }
 
         builder.setDataType(msg.getDataType().ordinal());
-        builder.setData(msg.getData());
+        if (msg.kvPayload != null) {
+            if (source != null && msg.kvPayload == source.kvPayload) {
+                builder.setKvPayload(source.proto.getKvPayload());
+            } else {
+                builder.setKvPayload(msg.kvPayload.toProto());
+            }
+        } else if (source != null && source.isDataUnchanged(msg.data)) {
+            builder.setDataBytes(source.proto.getDataBytes());
+        } else {
+            builder.setData(msg.getData());
+        }
 
         builder.setCtx(msg.ctx.toProto());
-        return builder.build().toByteArray();
+        return builder.build();
     }
 
     public static TbMsg fromBytes(String queueName, byte[] data, TbMsgCallback callback) {
         try {
-            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(data);
-            TbMsgMetaData metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
-            EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
-            CustomerId customerId = null;
-            RuleChainId ruleChainId = null;
-            RuleNodeId ruleNodeId = null;
-            if (proto.getCustomerIdMSB() != 0L && proto.getCustomerIdLSB() != 0L) {
-                customerId = new CustomerId(new UUID(proto.getCustomerIdMSB(), proto.getCustomerIdLSB()));
-            }
-            if (proto.getRuleChainIdMSB() != 0L && proto.getRuleChainIdLSB() != 0L) {
-                ruleChainId = new RuleChainId(new UUID(proto.getRuleChainIdMSB(), proto.getRuleChainIdLSB()));
-            }
-            if (proto.getRuleNodeIdMSB() != 0L && proto.getRuleNodeIdLSB() != 0L) {
-                ruleNodeId = new RuleNodeId(new UUID(proto.getRuleNodeIdMSB(), proto.getRuleNodeIdLSB()));
-            }
-
-            TbMsgProcessingCtx ctx;
-            if (proto.hasCtx()) {
-                ctx = TbMsgProcessingCtx.fromProto(proto.getCtx());
-            } else {
-                // Backward compatibility with unprocessed messages fetched from queue after update.
-                ctx = new TbMsgProcessingCtx(proto.getRuleNodeExecCounter());
-            }
+            return fromProto(queueName, MsgProtos.TbMsgProto.parseFrom(data), callback);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
+        }
+    }
 
-            TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
-            return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), null, proto.getType(), entityId, customerId,
-                    metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, ctx, callback);
+    /**
+     * Decodes the header fields of the message only. The metadata and data are decoded on the first access,
+     * and the copies of the message that are pushed to the queue again reuse their original bytes if they were not changed.
+     */
+    public static TbMsg fromBytes(String queueName, ByteString data, TbMsgCallback callback) {
+        try {
+            return fromProto(queueName, MsgProtos.TbMsgProto.parseFrom(data), callback);
         } catch (InvalidProtocolBufferException e) {
             throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
         }
     }
 
+    private static TbMsg fromProto(String queueName, MsgProtos.TbMsgProto proto, TbMsgCallback callback) {
+        EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+        CustomerId customerId = null;
+        RuleChainId ruleChainId = null;
+        RuleNodeId ruleNodeId = null;
+        if (proto.getCustomerIdMSB() != 0L && proto.getCustomerIdLSB() != 0L) {
+            customerId = new CustomerId(new UUID(proto.getCustomerIdMSB(), proto.getCustomerIdLSB()));
+        }
+        if (proto.getRuleChainIdMSB() != 0L && proto.getRuleChainIdLSB() != 0L) {
+            ruleChainId = new RuleChainId(new UUID(proto.getRuleChainIdMSB(), proto.getRuleChainIdLSB()));
+        }
+        if (proto.getRuleNodeIdMSB() != 0L && proto.getRuleNodeIdLSB() != 0L) {
+            ruleNodeId = new RuleNodeId(new UUID(proto.getRuleNodeIdMSB(), proto.getRuleNodeIdLSB()));
+        }
+
+        TbMsgProcessingCtx ctx;
+        if (proto.hasCtx()) {
+            ctx = TbMsgProcessingCtx.fromProto(proto.getCtx());
+        } else {
+            // Backward compatibility with unprocessed messages fetched from queue after update.
+            ctx = new TbMsgProcessingCtx(proto.getRuleNodeExecCounter());
+        }
+
+        TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
+        TbMsgKvPayload kvPayload = proto.hasKvPayload() ? TbMsgKvPayload.fromProto(proto.getKvPayload()) : null;
+        return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), null, proto.getType(), entityId, customerId,
+                null, dataType, null, kvPayload, ruleChainId, ruleNodeId, ctx, callback, new ProtoSource(proto, kvPayload));
+    }
+
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId) {
         return copyWithRuleChainId(ruleChainId, this.id);
     }
 
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.internalType, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, null, this.ctx, callback);
+                this.metaData, this.dataType, this.data, this.kvPayload, ruleChainId, null, this.ctx, callback, source);
     }
 
     public TbMsg copyWithRuleNodeId(RuleChainId ruleChainId, RuleNodeId ruleNodeId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.internalType, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx, callback);
+                this.metaData, this.dataType, this.data, this.kvPayload, ruleChainId, ruleNodeId, this.ctx, callback, source);
     }
 
     public TbMsg copyWithNewCtx() {
         return new TbMsg(this.queueName, this.id, this.ts, this.internalType, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx.copy(), TbMsgCallback.EMPTY);
+                this.metaData, this.dataType, this.data, this.kvPayload, ruleChainId, ruleNodeId, this.ctx.copy(), TbMsgCallback.EMPTY, source);
+    }
+
+    public TbMsgMetaData getMetaData() {
+        return metaData == null && source != null ? source.getMetaData() : metaData;
+    }
+
+    public String getData() {
+        String data = this.data;
+        if (data == null && kvPayload != null) {
+            data = kvPayload.toJson();
+            this.data = data;
+        } else if (data == null && source != null) {
+            data = source.proto.getData();
+            this.data = data;
+        }
+        return data;
+    }
+
+    /**
+     * The serialized message carries the decoded metadata and data instead of its source.
+     */
+    private Object writeReplace() {
+        if (source == null) {
+            return this;
+        }
+        return new TbMsg(queueName, id, ts, internalType, type, originator, customerId, getMetaData(), dataType, getRawData(),
+                kvPayload, ruleChainId, ruleNodeId, ctx, callback);
+    }
+
+    /**
+     * Returns the data without rendering it from the key-values.
+     */
+    private String getRawData() {
+        return data == null && kvPayload == null && source != null ? getData() : data;
+    }
+
+    /**
+     * The key-values stay valid for the transformed message only if its data was not changed.
+     */
+    private TbMsgKvPayload kvPayloadFor(String newData) {
+        return kvPayload != null && newData != null && newData == this.data ? kvPayload : null;
     }
 
     public TbMsgCallback getCallback() {
@@ -465,7 +578,7 @@ public final class TbMsg implements Serializable {
     }
 
     public long getMetaDataTs() {
-        String tsStr = metaData.getValue("ts");
+        String tsStr = getMetaData().getValue("ts");
         if (!StringUtils.isEmpty(tsStr)) {
             try {
                 return Long.parseLong(tsStr);
@@ -496,4 +609,48 @@ public final class TbMsg implements Serializable {
         return false;
     }
 
+    /**
+     * The proto of the message received from the queue, shared by the copies of the message.
+     */
+    private static final class ProtoSource {
+
+        private final MsgProtos.TbMsgProto proto;
+        private final TbMsgKvPayload kvPayload;
+        private volatile TbMsgMetaData metaData;
+        private volatile TbMsgMetaData decodedMetaData;
+
+        ProtoSource(MsgProtos.TbMsgProto proto, TbMsgKvPayload kvPayload) {
+            this.proto = proto;
+            this.kvPayload = kvPayload;
+        }
+
+        TbMsgMetaData getMetaData() {
+            TbMsgMetaData metaData = this.metaData;
+            if (metaData == null) {
+                synchronized (this) {
+                    metaData = this.metaData;
+                    if (metaData == null) {
+                        metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
+                        decodedMetaData = metaData.copy();
+                        this.metaData = metaData;
+                    }
+                }
+            }
+            return metaData;
+        }
+
+        /**
+         * The metadata of the message is either not decoded yet or has the same entries as just after decoding.
+         */
+        boolean isMetaDataUnchanged(TbMsgMetaData msgMetaData) {
+            TbMsgMetaData current = msgMetaData != null ? msgMetaData : this.metaData;
+            return current == null || current.hasSameEntries(decodedMetaData);
+        }
+
+        boolean isDataUnchanged(String msgData) {
+            return msgData == null || msgData == proto.getData();
+        }
+
+    }
+
 }
@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.gen.MsgProtos;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Typed key-value body of the {@link TbMsg}, e.g. the telemetry or attributes posted by a device.
+ * Nodes that work with the key-values read them directly, while the JSON body is rendered only on demand.
+ * The same key posted twice keeps the position of the first entry and the value of the last one, like a JSON object.
+ */
+@EqualsAndHashCode
+@ToString
+public final class TbMsgKvPayload implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, KvEntry> entries;
+
+    private TbMsgKvPayload(Map<String, KvEntry> entries) {
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    public static TbMsgKvPayload of(List<? extends KvEntry> entries) {
+        Map<String, KvEntry> map = new LinkedHashMap<>();
+        for (KvEntry entry : entries) {
+            map.put(entry.getKey(), entry);
+        }
+        return new TbMsgKvPayload(map);
+    }
+
+    public List<KvEntry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public Optional<KvEntry> get(String key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    public Set<String> getKeys() {
+        return entries.keySet();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public String toJson() {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            for (KvEntry entry : entries.values()) {
+                switch (entry.getDataType()) {
+                    case BOOLEAN:
+                        generator.writeBooleanField(entry.getKey(), entry.getBooleanValue().get());
+                        break;
+                    case LONG:
+                        generator.writeNumberField(entry.getKey(), entry.getLongValue().get());
+                        break;
+                    case DOUBLE:
+                        generator.writeNumberField(entry.getKey(), entry.getDoubleValue().get());
+                        break;
+                    case STRING:
+                        generator.writeStringField(entry.getKey(), entry.getStrValue().get());
+                        break;
+                    case JSON:
+                        generator.writeFieldName(entry.getKey());
+                        generator.writeRawValue(entry.getJsonValue().get());
+                        break;
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    MsgProtos.TbMsgKvPayloadProto toProto() {
+        MsgProtos.TbMsgKvPayloadProto.Builder builder = MsgProtos.TbMsgKvPayloadProto.newBuilder();
+        for (KvEntry entry : entries.values()) {
+            MsgProtos.TbMsgKvProto.Builder kv = MsgProtos.TbMsgKvProto.newBuilder().setKey(entry.getKey());
+            switch (entry.getDataType()) {
+                case BOOLEAN:
+                    kv.setType(MsgProtos.TbMsgKvType.BOOLEAN_V).setBoolV(entry.getBooleanValue().get());
+                    break;
+                case LONG:
+                    kv.setType(MsgProtos.TbMsgKvType.LONG_V).setLongV(entry.getLongValue().get());
+                    break;
+                case DOUBLE:
+                    kv.setType(MsgProtos.TbMsgKvType.DOUBLE_V).setDoubleV(entry.getDoubleValue().get());
+                    break;
+                case STRING:
+                    kv.setType(MsgProtos.TbMsgKvType.STRING_V).setStringV(entry.getStrValue().get());
+                    break;
+                case JSON:
+                    kv.setType(MsgProtos.TbMsgKvType.JSON_V).setJsonV(entry.getJsonValue().get());
+                    break;
+            }
+            builder.addKv(kv);
+        }
+        return builder.build();
+    }
+
+    static TbMsgKvPayload fromProto(MsgProtos.TbMsgKvPayloadProto proto) {
+        Map<String, KvEntry> map = new LinkedHashMap<>();
+        for (MsgProtos.TbMsgKvProto kv : proto.getKvList()) {
+            KvEntry entry;
+            switch (kv.getType()) {
+                case BOOLEAN_V:
+                    entry = new BooleanDataEntry(kv.getKey(), kv.getBoolV());
+                    break;
+                case LONG_V:
+                    entry = new LongDataEntry(kv.getKey(), kv.getLongV());
+                    break;
+                case DOUBLE_V:
+                    entry = new DoubleDataEntry(kv.getKey(), kv.getDoubleV());
+                    break;
+                case STRING_V:
+                    entry = new StringDataEntry(kv.getKey(), kv.getStringV());
+                    break;
+                case JSON_V:
+                    entry = new JsonDataEntry(kv.getKey(), kv.getJsonV());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported key-value type: " + kv.getType());
+            }
+            map.put(kv.getKey(), entry);
+        }
+        return new TbMsgKvPayload(map);
+    }
+
+}
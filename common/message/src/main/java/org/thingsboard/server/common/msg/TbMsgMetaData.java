@@ -15,55 +15,271 @@
  */
 package org.thingsboard.server.common.msg;
 
-import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.io.Serializable;
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Created by ashvayka on 13.01.18.
  */
-@Data
 public final class TbMsgMetaData implements Serializable {
 
+    private static final String[] NO_ENTRIES = new String[0];
+
     public static final TbMsgMetaData EMPTY = new TbMsgMetaData(0);
 
-    private final Map<String, String> data;
+    /**
+     * Flat array of the keys and values sorted by key: [key0, value0, key1, value1, ...]. The array is never modified,
+     * every change replaces it with a new one, so the copies of the metadata share it until one of them is changed.
+     */
+    private volatile String[] entries;
+    private final boolean immutable;
 
     public TbMsgMetaData() {
-        this.data = new ConcurrentHashMap<>();
+        this.entries = NO_ENTRIES;
+        this.immutable = false;
     }
 
     public TbMsgMetaData(Map<String, String> data) {
-        this.data = new ConcurrentHashMap<>();
-        data.forEach(this::putValue);
+        String[] keys = new String[data.size()];
+        int size = 0;
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                keys[size++] = entry.getKey();
+            }
+        }
+        Arrays.sort(keys, 0, size);
+        String[] entries = new String[size * 2];
+        for (int i = 0; i < size; i++) {
+            entries[i * 2] = keys[i];
+            entries[i * 2 + 1] = data.get(keys[i]);
+        }
+        this.entries = entries;
+        this.immutable = false;
+    }
+
+    private TbMsgMetaData(String[] entries) {
+        this.entries = entries;
+        this.immutable = false;
     }
 
     /**
      * Internal constructor to create immutable TbMsgMetaData.EMPTY
      * */
     private TbMsgMetaData(int ignored) {
-        this.data = Collections.emptyMap();
+        this.entries = NO_ENTRIES;
+        this.immutable = true;
     }
 
     public String getValue(String key) {
-        return this.data.get(key);
+        String[] entries = this.entries;
+        int idx = indexOf(entries, key);
+        return idx >= 0 ? entries[idx + 1] : null;
     }
 
     public void putValue(String key, String value) {
         if (key != null && value != null) {
-            this.data.put(key, value);
+            checkMutable();
+            synchronized (this) {
+                String[] entries = this.entries;
+                int idx = search(entries, key);
+                if (idx >= 0) {
+                    if (!value.equals(entries[idx + 1])) {
+                        String[] newEntries = entries.clone();
+                        newEntries[idx + 1] = value;
+                        this.entries = newEntries;
+                    }
+                } else {
+                    int insertIdx = -(idx + 1);
+                    String[] newEntries = new String[entries.length + 2];
+                    System.arraycopy(entries, 0, newEntries, 0, insertIdx);
+                    newEntries[insertIdx] = key;
+                    newEntries[insertIdx + 1] = value;
+                    System.arraycopy(entries, insertIdx, newEntries, insertIdx + 2, entries.length - insertIdx);
+                    this.entries = newEntries;
+                }
+            }
         }
     }
 
+    public void removeValue(String key) {
+        checkMutable();
+        synchronized (this) {
+            String[] entries = this.entries;
+            int idx = indexOf(entries, key);
+            if (idx >= 0) {
+                String[] newEntries = new String[entries.length - 2];
+                System.arraycopy(entries, 0, newEntries, 0, idx);
+                System.arraycopy(entries, idx + 2, newEntries, idx, entries.length - idx - 2);
+                this.entries = newEntries;
+            }
+        }
+    }
+
+    public void forEach(BiConsumer<String, String> consumer) {
+        String[] entries = this.entries;
+        for (int i = 0; i < entries.length; i += 2) {
+            consumer.accept(entries[i], entries[i + 1]);
+        }
+    }
+
+    public int size() {
+        return entries.length / 2;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    /**
+     * @return read-only view of the current metadata snapshot.
+     */
+    public Map<String, String> getData() {
+        return new SnapshotMap(entries);
+    }
+
     public Map<String, String> values() {
-        return new HashMap<>(this.data);
+        String[] entries = this.entries;
+        Map<String, String> values = new HashMap<>(entries.length);
+        for (int i = 0; i < entries.length; i += 2) {
+            values.put(entries[i], entries[i + 1]);
+        }
+        return values;
     }
 
     public TbMsgMetaData copy() {
-        return new TbMsgMetaData(this.data);
+        return new TbMsgMetaData(this.entries);
+    }
+
+    /**
+     * Returns 'true' if both metadata have the same entries without comparing them, e.g. if one is the unchanged copy of the other.
+     */
+    boolean hasSameEntries(TbMsgMetaData other) {
+        return other != null && this.entries == other.entries;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return getData().equals(((TbMsgMetaData) o).getData());
+    }
+
+    @Override
+    public int hashCode() {
+        return getData().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TbMsgMetaData(data=" + getData() + ")";
+    }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("Metadata is immutable");
+        }
+    }
+
+    private static int indexOf(String[] entries, Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        int idx = search(entries, (String) key);
+        return idx >= 0 ? idx : -1;
+    }
+
+    /**
+     * Binary search of the key in the flat array.
+     * @return index of the key if found, otherwise (-(insertion index) - 1).
+     */
+    private static int search(String[] entries, String key) {
+        int low = 0;
+        int high = entries.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = entries[mid * 2].compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid * 2;
+            }
+        }
+        return -(low * 2) - 1;
+    }
+
+    private static class SnapshotMap extends AbstractMap<String, String> {
+
+        private final String[] entries;
+
+        SnapshotMap(String[] entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public int size() {
+            return entries.length / 2;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(entries, key) >= 0;
+        }
+
+        @Override
+        public String get(Object key) {
+            int idx = indexOf(entries, key);
+            return idx >= 0 ? entries[idx + 1] : null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int idx = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return idx < entries.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (idx >= entries.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(entries[idx], entries[idx + 1]);
+                            idx += 2;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return entries.length / 2;
+                }
+            };
+        }
+
+    }
+
 }
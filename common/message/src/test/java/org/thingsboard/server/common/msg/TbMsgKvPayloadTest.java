@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TbMsgKvPayloadTest {
+
+    private final TbMsgKvPayload payload = TbMsgKvPayload.of(List.of(
+            new LongDataEntry("temperature", 20L),
+            new BooleanDataEntry("active", true),
+            new StringDataEntry("status", "on \"line\""),
+            new DoubleDataEntry("humidity", 55.5),
+            new JsonDataEntry("config", "{\"a\":[1,2]}"),
+            new LongDataEntry("temperature", 21L)));
+
+    @Test
+    void givenDuplicatedKeys_whenToJson_thenLastValueInFirstPosition() {
+        assertThat(payload.getKeys()).containsExactly("temperature", "active", "status", "humidity", "config");
+        assertThat(payload.toJson()).isEqualTo("{\"temperature\":21,\"active\":true,\"status\":\"on \\\"line\\\"\",\"humidity\":55.5,\"config\":{\"a\":[1,2]}}");
+    }
+
+    @Test
+    void givenMsgWithKvPayload_whenSerializedAndTransformed_thenPayloadKeptWhileDataNotChanged() {
+        TbMsg msg = TbMsg.newMsgWithKvPayload("Main", TbMsgType.POST_TELEMETRY_REQUEST, new DeviceId(UUID.randomUUID()), null,
+                new TbMsgMetaData(), payload, null, null);
+
+        TbMsg decoded = TbMsg.fromBytes("Main", TbMsg.toByteArray(msg), TbMsgCallback.EMPTY);
+        assertThat(decoded.getKvPayload()).isEqualTo(payload);
+        assertThat(decoded.getData()).isEqualTo(payload.toJson());
+
+        assertThat(TbMsg.transformMsgMetadata(decoded, new TbMsgMetaData()).getKvPayload()).isEqualTo(payload);
+        assertThat(TbMsg.transformMsgData(decoded, decoded.getData()).getKvPayload()).isEqualTo(payload);
+        TbMsg changed = TbMsg.transformMsgData(decoded, "{\"temperature\":1}");
+        assertThat(changed.getKvPayload()).isNull();
+        assertThat(changed.getData()).isEqualTo("{\"temperature\":1}");
+    }
+
+}
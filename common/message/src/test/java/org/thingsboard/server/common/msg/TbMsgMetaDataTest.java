@@ -24,6 +24,7 @@ import org.junit.Test;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class TbMsgMetaDataTest {
 
@@ -53,4 +54,28 @@ public class TbMsgMetaDataTest {
         Map<String, String> dataActual = tbMsgMetaData.copy().getData();
         assertEquals(metadataExpected.size() - 1, dataActual.size());
     }
+
+    @Test
+    public void testCopy_whenOriginalOrCopyChanged_thenOtherNotChanged() {
+        TbMsgMetaData original = new TbMsgMetaData(metadataExpected);
+        TbMsgMetaData copy = original.copy();
+        assertEquals(original, copy);
+
+        copy.putValue("deviceType", "thermostat");
+        copy.removeValue("ts");
+        original.putValue("key", "value");
+
+        assertEquals("default", original.getValue("deviceType"));
+        assertEquals("1645112691407", original.getValue("ts"));
+        assertEquals("thermostat", copy.getValue("deviceType"));
+        assertNull(copy.getValue("ts"));
+        assertNull(copy.getValue("key"));
+        assertEquals(4, original.size());
+        assertEquals(2, copy.getData().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEmpty_whenPutValue_thenUnsupported() {
+        TbMsgMetaData.EMPTY.putValue("key", "value");
+    }
 }
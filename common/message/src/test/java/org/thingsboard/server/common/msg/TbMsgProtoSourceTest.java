@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.gen.MsgProtos;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TbMsgProtoSourceTest {
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    private TbMsg newDecodedMsg() {
+        TbMsg msg = TbMsg.newMsg("Main", TbMsgType.POST_TELEMETRY_REQUEST, deviceId,
+                new TbMsgMetaData(Map.of("deviceName", "Device A", "ts", "100")), "{\"temperature\":21}");
+        return TbMsg.fromBytes("Main", TbMsg.toByteString(msg), TbMsgCallback.EMPTY);
+    }
+
+    private static MsgProtos.TbMsgProto toProto(TbMsg msg) {
+        return ReflectionTestUtils.invokeMethod(TbMsg.class, "toProto", msg);
+    }
+
+    private static MsgProtos.TbMsgProto sourceProto(TbMsg msg) {
+        return (MsgProtos.TbMsgProto) ReflectionTestUtils.getField(ReflectionTestUtils.getField(msg, "source"), "proto");
+    }
+
+    @Test
+    void givenMsgFromBytes_whenGetFields_thenSameAsOriginal() {
+        TbMsg decoded = newDecodedMsg();
+        assertThat(decoded.getOriginator()).isEqualTo(deviceId);
+        assertThat(decoded.getType()).isEqualTo(TbMsgType.POST_TELEMETRY_REQUEST.name());
+        assertThat(decoded.getMetaData().getValue("deviceName")).isEqualTo("Device A");
+        assertThat(decoded.getMetaDataTs()).isEqualTo(100L);
+        assertThat(decoded.getData()).isEqualTo("{\"temperature\":21}");
+    }
+
+    @Test
+    void givenUnchangedCopy_whenToBytes_thenPayloadReusedAndHeaderUpdated() throws Exception {
+        TbMsg decoded = newDecodedMsg();
+        RuleChainId ruleChainId = new RuleChainId(UUID.randomUUID());
+        RuleNodeId ruleNodeId = new RuleNodeId(UUID.randomUUID());
+        TbMsg copy = decoded.copyWithRuleNodeId(ruleChainId, ruleNodeId, UUID.randomUUID());
+
+        TbMsg result = TbMsg.fromBytes("Main", TbMsg.toByteString(copy), TbMsgCallback.EMPTY);
+        assertThat(result.getId()).isEqualTo(copy.getId());
+        assertThat(result.getRuleChainId()).isEqualTo(ruleChainId);
+        assertThat(result.getRuleNodeId()).isEqualTo(ruleNodeId);
+        assertThat(result.getMetaData()).isEqualTo(decoded.getMetaData());
+        assertThat(result.getData()).isEqualTo(decoded.getData());
+
+        MsgProtos.TbMsgProto proto = toProto(copy);
+        MsgProtos.TbMsgProto source = sourceProto(decoded);
+        assertThat(proto.getMetaData()).isSameAs(source.getMetaData());
+        assertThat(proto.getDataBytes()).isSameAs(source.getDataBytes());
+    }
+
+    @Test
+    void givenMsgEnqueuedForTellNext_whenToBytes_thenPayloadReused() {
+        TbMsg decoded = newDecodedMsg();
+        RuleChainId ruleChainId = new RuleChainId(UUID.randomUUID());
+        RuleNodeId ruleNodeId = new RuleNodeId(UUID.randomUUID());
+        TbMsg newMsg = TbMsg.newMsg(decoded, "HighPriority", ruleChainId, ruleNodeId);
+
+        MsgProtos.TbMsgProto proto = toProto(newMsg);
+        MsgProtos.TbMsgProto source = sourceProto(decoded);
+        assertThat(proto.getId()).isEqualTo(newMsg.getId().toString());
+        assertThat(proto.getRuleNodeIdMSB()).isEqualTo(ruleNodeId.getId().getMostSignificantBits());
+        assertThat(proto.getMetaData()).isSameAs(source.getMetaData());
+        assertThat(proto.getDataBytes()).isSameAs(source.getDataBytes());
+    }
+
+    @Test
+    void givenMetaDataChangedInPlace_whenToBytes_thenChangesSerialized() throws Exception {
+        TbMsg decoded = newDecodedMsg();
+        TbMsg copy = decoded.copyWithRuleChainId(new RuleChainId(UUID.randomUUID()), UUID.randomUUID());
+        copy.getMetaData().putValue("deviceType", "thermostat");
+
+        MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(TbMsg.toByteString(copy));
+        assertThat(proto.getMetaData().getDataMap()).containsEntry("deviceType", "thermostat").containsEntry("deviceName", "Device A");
+        // the copies share the metadata, the same as for the messages created in memory
+        assertThat(decoded.getMetaData().getValue("deviceType")).isEqualTo("thermostat");
+    }
+
+    @Test
+    void givenTransformedData_whenToBytes_thenNewDataAndSameMetaDataSerialized() throws Exception {
+        TbMsg decoded = newDecodedMsg();
+        TbMsg transformed = TbMsg.transformMsgData(decoded, "{\"temperature\":22}");
+
+        MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(TbMsg.toByteString(transformed));
+        assertThat(proto.getData()).isEqualTo("{\"temperature\":22}");
+        assertThat(proto.getMetaData().getDataMap()).containsEntry("deviceName", "Device A");
+    }
+
+}
@@ -163,6 +163,20 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void commit(Object position) {
+        if (position == null) {
+            commit();
+            return;
+        }
+        consumerLock.lock();
+        try {
+            doCommit(position);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public void unsubscribe() {
         log.info("Unsubscribing from topics and stopping consumer for topics {}", partitions.stream()
@@ -190,6 +204,10 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit();
 
+    protected void doCommit(Object position) {
+        doCommit();
+    }
+
     abstract protected void doUnsubscribe();
 
     @Override
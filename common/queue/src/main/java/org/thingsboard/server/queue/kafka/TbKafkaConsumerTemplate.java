@@ -21,6 +21,8 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueMsg;
@@ -30,7 +32,9 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -46,6 +50,10 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
 
+    // Offsets after the records polled since the last subscription, used for the commit of the partial position
+    private final Map<TopicPartition, OffsetAndMetadata> polledOffsets = new HashMap<>();
+    private int subscriptionGeneration;
+
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
                                     String clientId, String groupId, String topic,
@@ -71,6 +79,8 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
 
     @Override
     protected void doSubscribe(List<String> topicNames) {
+        subscriptionGeneration++;
+        polledOffsets.clear();
         if (!topicNames.isEmpty()) {
             topicNames.forEach(admin::createTopicIfNotExists);
             log.info("subscribe topics {}", topicNames);
@@ -97,7 +107,10 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
             return Collections.emptyList();
         } else {
             List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
-            records.forEach(recordList::add);
+            records.forEach(record -> {
+                recordList.add(record);
+                polledOffsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+            });
             return recordList;
         }
     }
@@ -112,6 +125,29 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         consumer.commitSync();
     }
 
+    @Override
+    public Object getCommitPosition() {
+        consumerLock.lock();
+        try {
+            return new CommitPosition(subscriptionGeneration, new HashMap<>(polledOffsets));
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    protected void doCommit(Object position) {
+        CommitPosition commitPosition = (CommitPosition) position;
+        if (commitPosition.generation != subscriptionGeneration) {
+            // the partitions could be consumed by another node in between, the position of the later records will be committed
+            log.debug("[{}] Skipping commit of the position polled before the resubscription", getTopic());
+            return;
+        }
+        if (!commitPosition.offsets.isEmpty()) {
+            consumer.commitSync(commitPosition.offsets);
+        }
+    }
+
     @Override
     protected void doUnsubscribe() {
         if (consumer != null) {
@@ -128,4 +164,14 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         return true;
     }
 
+    private static class CommitPosition {
+        private final int generation;
+        private final Map<TopicPartition, OffsetAndMetadata> offsets;
+
+        CommitPosition(int generation, Map<TopicPartition, OffsetAndMetadata> offsets) {
+            this.generation = generation;
+            this.offsets = offsets;
+        }
+    }
+
 }
@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TbKafkaConsumerTemplateTest {
+
+    static final String TOPIC = "tb_rule_engine.main";
+
+    KafkaConsumer<String, byte[]> kafkaConsumer;
+    TbKafkaConsumerTemplate<TbQueueMsg> consumerTemplate;
+
+    @BeforeEach
+    void setUp() {
+        TbKafkaSettings settings = mock(TbKafkaSettings.class);
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        willReturn(props).given(settings).toConsumerProps(TOPIC);
+        TbKafkaDecoder<TbQueueMsg> decoder = msg -> mock(TbQueueMsg.class);
+        consumerTemplate = TbKafkaConsumerTemplate.<TbQueueMsg>builder()
+                .settings(settings)
+                .decoder(decoder)
+                .clientId("test-client")
+                .topic(TOPIC)
+                .admin(mock(TbQueueAdmin.class))
+                .build();
+        KafkaConsumer<String, byte[]> realConsumer = (KafkaConsumer<String, byte[]>) ReflectionTestUtils.getField(consumerTemplate, "consumer");
+        realConsumer.close();
+        kafkaConsumer = mock(KafkaConsumer.class);
+        ReflectionTestUtils.setField(consumerTemplate, "consumer", kafkaConsumer);
+        consumerTemplate.subscribe(Set.of(new TopicPartitionInfo(TOPIC, null, 0, true)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumerTemplate.unsubscribe();
+    }
+
+    @Test
+    void givenSeveralPolls_whenCommitPositionOfFirstPoll_thenOnlyRecordsOfFirstPollCommitted() {
+        TopicPartition partition = new TopicPartition(TOPIC + ".0", 0);
+        poll(partition, 10, 11);
+        Object firstPosition = consumerTemplate.getCommitPosition();
+        poll(partition, 12, 13);
+        Object secondPosition = consumerTemplate.getCommitPosition();
+
+        consumerTemplate.commit(firstPosition);
+        verify(kafkaConsumer).commitSync(Map.of(partition, new OffsetAndMetadata(12)));
+
+        consumerTemplate.commit(secondPosition);
+        verify(kafkaConsumer).commitSync(Map.of(partition, new OffsetAndMetadata(14)));
+        verify(kafkaConsumer, never()).commitSync();
+    }
+
+    @Test
+    void givenResubscribed_whenCommitPositionPolledBefore_thenNotCommitted() {
+        TopicPartition partition = new TopicPartition(TOPIC + ".0", 0);
+        poll(partition, 10);
+        Object position = consumerTemplate.getCommitPosition();
+
+        consumerTemplate.subscribe(Set.of(new TopicPartitionInfo(TOPIC, null, 1, true)));
+        poll(new TopicPartition(TOPIC + ".1", 0), 20);
+        consumerTemplate.commit(position);
+
+        verify(kafkaConsumer, never()).commitSync(anyMap());
+    }
+
+    @Test
+    void givenNoPosition_whenCommit_thenWholePolledPositionCommitted() {
+        poll(new TopicPartition(TOPIC + ".0", 0), 10);
+
+        consumerTemplate.commit(null);
+
+        verify(kafkaConsumer).commitSync();
+    }
+
+    private void poll(TopicPartition partition, long... offsets) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (long offset : offsets) {
+            records.add(new ConsumerRecord<>(partition.topic(), partition.partition(), offset, UUID.randomUUID().toString(), new byte[0]));
+        }
+        willReturn(new ConsumerRecords<>(Map.of(partition, records))).given(kafkaConsumer).poll(any());
+        assertThat(consumerTemplate.poll(1)).hasSize(offsets.length);
+    }
+
+}
@@ -146,8 +146,7 @@ public abstract class AbstractScriptInvokeService implements ScriptInvokeService
                 var task = doInvokeFunction(scriptId, args);
 
                 var resultFuture = Futures.transformAsync(task.getResultFuture(), output -> {
-                    String result = JacksonUtil.toString(output);
-                    if (resultSizeExceeded(result)) {
+                    if (resultSizeExceeded(output)) {
                         throw new TbScriptException(scriptId, TbScriptException.ErrorCode.OTHER, null, new RuntimeException(
                                 format("Script invocation result exceeds maximum allowed size of %s symbols", getMaxResultSize())
                         ));
@@ -259,18 +258,23 @@ public abstract class AbstractScriptInvokeService implements ScriptInvokeService
             if (arg instanceof CharSequence) {
                 totalArgsSize += ((CharSequence) arg).length();
             } else {
-                var str = JacksonUtil.toString(arg);
-                if (str != null) {
-                    totalArgsSize += str.length();
-                }
+                totalArgsSize += getSerializedSize(arg);
             }
         }
         return totalArgsSize > getMaxTotalArgsSize();
     }
 
-    private boolean resultSizeExceeded(String result) {
+    private boolean resultSizeExceeded(Object result) {
         if (getMaxResultSize() <= 0) return false;
-        return result != null && result.length() > getMaxResultSize();
+        return result != null && getSerializedSize(result) > getMaxResultSize();
+    }
+
+    /**
+     * Returns the length of the JSON representation of the script argument or result.
+     */
+    protected long getSerializedSize(Object value) {
+        var str = JacksonUtil.toString(value);
+        return str != null ? str.length() : 0;
     }
 
     private <T> ListenableFuture<T> error(String message) {
@@ -19,6 +19,7 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -37,6 +38,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.script.api.AbstractScriptInvokeService;
 import org.thingsboard.script.api.ScriptType;
 import org.thingsboard.script.api.TbScriptException;
@@ -58,6 +60,12 @@ import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -68,6 +76,7 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
 
     protected final Map<UUID, String> scriptIdToHash = new ConcurrentHashMap<>();
     protected final Map<String, TbelScript> scriptMap = new ConcurrentHashMap<>();
+    protected final Map<String, TbelScriptStats> scriptStatsMap = new ConcurrentHashMap<>();
     protected Cache<String, Serializable> compiledScriptsCache;
 
     private SandboxedParserConfiguration parserConfig;
@@ -109,7 +118,14 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
     @Value("${tbel.compiled_scripts_cache_size:1000}")
     private int compiledScriptsCacheSize;
 
+    @Value("${tbel.inline_execution.enabled:false}")
+    private boolean inlineExecutionEnabled;
+
+    @Value("${tbel.inline_execution.max_time_ms:20}")
+    private long inlineExecutionMaxTimeMs;
+
     private ListeningExecutorService executor;
+    private ScheduledThreadPoolExecutor inlineTimeoutExecutor;
 
     private final Lock lock = new ReentrantLock();
 
@@ -121,6 +137,20 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
     @Scheduled(fixedDelayString = "${tbel.stats.print_interval_ms:10000}")
     public void printStats() {
         super.printStats();
+        if (statsEnabled) {
+            scriptStatsMap.forEach((scriptHash, scriptStats) -> {
+                long[] counts = scriptStats.reset();
+                long invocations = 0;
+                for (long count : counts) {
+                    invocations += count;
+                }
+                if (invocations > 0) {
+                    log.info("TBEL script [{}] latency: invocations [{}] p50 [{}us] p99 [{}us] max [{}us] inline [{}]", scriptHash, invocations,
+                            TbelScriptStats.percentileUs(counts, 50), TbelScriptStats.percentileUs(counts, 99),
+                            TbelScriptStats.percentileUs(counts, 100), scriptStats.isInline());
+                }
+            });
+        }
     }
 
     @SneakyThrows
@@ -136,6 +166,10 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
         parserConfig.registerDataType("Calendar", Calendar.class, date -> 8L);
         TbUtils.register(parserConfig);
         executor = MoreExecutors.listeningDecorator(ThingsBoardExecutors.newWorkStealingPool(threadPoolSize, "tbel-executor"));
+        if (inlineExecutionEnabled) {
+            inlineTimeoutExecutor = new ScheduledThreadPoolExecutor(1, ThingsBoardThreadFactory.forName("tbel-inline-timeout"));
+            inlineTimeoutExecutor.setRemoveOnCancelPolicy(true);
+        }
         try {
             // Special command to warm up TBEL engine
             Serializable script = compileScript("var warmUp = {}; warmUp");
@@ -155,6 +189,9 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
         if (executor != null) {
             executor.shutdownNow();
         }
+        if (inlineTimeoutExecutor != null) {
+            inlineTimeoutExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -192,6 +229,7 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
                 try {
                     scriptIdToHash.put(scriptId, scriptHash);
                     scriptMap.computeIfAbsent(scriptHash, k -> new TbelScript(scriptBody, argNames));
+                    scriptStatsMap.computeIfAbsent(scriptHash, k -> new TbelScriptStats());
                 } finally {
                     lock.unlock();
                 }
@@ -204,22 +242,90 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
 
     @Override
     protected TbelScriptExecutionTask doInvokeFunction(UUID scriptId, Object[] args) {
-        ExecutionContext executionContext = new ExecutionContext(this.parserConfig, maxMemoryLimitMb * 1024 * 1024);
-        return new TbelScriptExecutionTask(executionContext, executor.submit(() -> {
+        if (inlineExecutionEnabled) {
             String scriptHash = scriptIdToHash.get(scriptId);
-            if (scriptHash == null) {
-                throw new TbScriptException(scriptId, TbScriptException.ErrorCode.OTHER, null, new RuntimeException("Script not found!"));
+            TbelScriptStats scriptStats = scriptHash != null ? scriptStatsMap.get(scriptHash) : null;
+            if (scriptStats != null && scriptStats.isInline()) {
+                return doInvokeFunctionInline(scriptId, args, scriptStats);
             }
-            TbelScript script = scriptMap.get(scriptHash);
-            Serializable compiledScript = compiledScriptsCache.get(scriptHash, k -> compileScript(script.getScriptBody()));
-            try {
-                return MVEL.executeTbExpression(compiledScript, executionContext, script.createVars(args));
-            } catch (ScriptMemoryOverflowException e) {
-                throw new TbScriptException(scriptId, TbScriptException.ErrorCode.OTHER, script.getScriptBody(), new RuntimeException("Script memory overflow!"));
-            } catch (Exception e) {
-                throw new TbScriptException(scriptId, TbScriptException.ErrorCode.RUNTIME, script.getScriptBody(), e);
+        }
+        ExecutionContext executionContext = createExecutionContext();
+        return new TbelScriptExecutionTask(executionContext, executor.submit(() -> executeScript(scriptId, executionContext, args)));
+    }
+
+    /**
+     * Executes the script in the thread of the caller, which saves the hand off to the executor for the short scripts.
+     * If the script does not complete within the time budget, all the following invocations of the script go to the executor.
+     * The running invocation is never executed again, so its side effects on the arguments are not repeated. It completes
+     * in the thread of the caller and is stopped only when it exceeds the invocation timeout, the same as on the executor.
+     */
+    private TbelScriptExecutionTask doInvokeFunctionInline(UUID scriptId, Object[] args, TbelScriptStats scriptStats) {
+        ExecutionContext executionContext = createExecutionContext();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        AtomicReference<ScheduledFuture<?>> timeoutFuture = new AtomicReference<>();
+        ScheduledFuture<?> budgetFuture = inlineTimeoutExecutor.schedule(() -> {
+            log.debug("[{}] Script exceeded inline execution time of {}ms, switching to the executor", scriptId, inlineExecutionMaxTimeMs);
+            scriptStats.setInline(false);
+            if (maxInvokeRequestsTimeout > 0) {
+                timeoutFuture.set(inlineTimeoutExecutor.schedule(() -> {
+                    if (!done.get()) {
+                        timedOut.set(true);
+                        executionContext.stop();
+                    }
+                }, Math.max(0, maxInvokeRequestsTimeout - inlineExecutionMaxTimeMs), TimeUnit.MILLISECONDS));
+                if (done.get()) {
+                    timeoutFuture.get().cancel(false);
+                }
+            }
+        }, inlineExecutionMaxTimeMs, TimeUnit.MILLISECONDS);
+        try {
+            Object result = executeScript(scriptId, executionContext, args);
+            return new TbelScriptExecutionTask(executionContext, Futures.immediateFuture(result));
+        } catch (Exception e) {
+            Exception error = timedOut.get() ? new TbScriptException(scriptId, TbScriptException.ErrorCode.TIMEOUT, null, new TimeoutException("Script timeout!")) : e;
+            return new TbelScriptExecutionTask(executionContext, Futures.immediateFailedFuture(error));
+        } finally {
+            done.set(true);
+            budgetFuture.cancel(false);
+            ScheduledFuture<?> future = timeoutFuture.get();
+            if (future != null) {
+                future.cancel(false);
             }
-        }));
+        }
+    }
+
+    private ExecutionContext createExecutionContext() {
+        return new ExecutionContext(this.parserConfig, maxMemoryLimitMb * 1024 * 1024);
+    }
+
+    private Object executeScript(UUID scriptId, ExecutionContext executionContext, Object[] args) throws TbScriptException {
+        String scriptHash = scriptIdToHash.get(scriptId);
+        if (scriptHash == null) {
+            throw new TbScriptException(scriptId, TbScriptException.ErrorCode.OTHER, null, new RuntimeException("Script not found!"));
+        }
+        TbelScript script = scriptMap.get(scriptHash);
+        Serializable compiledScript = compiledScriptsCache.get(scriptHash, k -> compileScript(script.getScriptBody()));
+        long startTs = statsEnabled ? System.nanoTime() : 0;
+        try {
+            return MVEL.executeTbExpression(compiledScript, executionContext, script.createVars(args));
+        } catch (ScriptMemoryOverflowException e) {
+            throw new TbScriptException(scriptId, TbScriptException.ErrorCode.OTHER, script.getScriptBody(), new RuntimeException("Script memory overflow!"));
+        } catch (Exception e) {
+            throw new TbScriptException(scriptId, TbScriptException.ErrorCode.RUNTIME, script.getScriptBody(), e);
+        } finally {
+            if (statsEnabled) {
+                TbelScriptStats scriptStats = scriptStatsMap.get(scriptHash);
+                if (scriptStats != null) {
+                    scriptStats.record(System.nanoTime() - startTs);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected long getSerializedSize(Object value) {
+        return value != null ? TbelSerializedSize.of(value) : 0;
     }
 
     @Override
@@ -230,6 +336,7 @@ public class DefaultTbelInvokeService extends AbstractScriptInvokeService implem
             try {
                 if (!scriptIdToHash.containsValue(scriptHash)) {
                     scriptMap.remove(scriptHash);
+                    scriptStatsMap.remove(scriptHash);
                     compiledScriptsCache.invalidate(scriptHash);
                 }
             } finally {
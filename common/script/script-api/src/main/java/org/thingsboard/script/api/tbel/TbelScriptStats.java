@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.script.api.tbel;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Execution stats of the compiled TBEL script: latency histogram with power of two microsecond buckets
+ * and the flag whether the script may be executed in the thread of the caller.
+ */
+class TbelScriptStats {
+
+    static final int BUCKETS_COUNT = 24;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_COUNT);
+
+    @Getter
+    @Setter
+    private volatile boolean inline = true;
+
+    void record(long durationNanos) {
+        long durationUs = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        int bucket = durationUs > 0 ? Math.min(BUCKETS_COUNT - 1, 64 - Long.numberOfLeadingZeros(durationUs)) : 0;
+        buckets.incrementAndGet(bucket);
+    }
+
+    long[] reset() {
+        long[] counts = new long[BUCKETS_COUNT];
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] = buckets.getAndSet(i, 0);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the upper bound in microseconds of the bucket that contains the given percentile of the invocations.
+     */
+    static long percentileUs(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            if (sum > 0 && sum >= threshold) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.script.api.tbel;
+
+import org.thingsboard.common.util.JacksonUtil;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Computes the length of the JSON representation of the TBEL script arguments and results
+ * by walking the maps and collections instead of serializing them.
+ * Escaping of the special characters in strings is not taken into account.
+ */
+final class TbelSerializedSize {
+
+    private TbelSerializedSize() {
+    }
+
+    static long of(Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() + 2;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 4 : 5;
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Double) {
+            return value.toString().length();
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long size = 2 + Math.max(0, map.size() - 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 3 + of(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            long size = 2 + Math.max(0, collection.size() - 1);
+            for (Object element : collection) {
+                size += of(element);
+            }
+            return size;
+        } else {
+            String str = JacksonUtil.toString(value);
+            return str != null ? str.length() : 0;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.script.api.tbel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.script.api.ScriptType;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DefaultTbelInvokeServiceTest {
+
+    private static final String SLOW_LOOP = "var i = 0; while (i < 300000) { i = i + 1; } ";
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+
+    private DefaultTbelInvokeService invokeService;
+
+    @BeforeEach
+    public void setUp() {
+        invokeService = new DefaultTbelInvokeService(Optional.empty(), Optional.empty());
+        ReflectionTestUtils.setField(invokeService, "maxTotalArgsSize", 100000L);
+        ReflectionTestUtils.setField(invokeService, "maxResultSize", 100000L);
+        ReflectionTestUtils.setField(invokeService, "maxScriptBodySize", 50000L);
+        ReflectionTestUtils.setField(invokeService, "maxErrors", 3);
+        ReflectionTestUtils.setField(invokeService, "maxBlackListDurationSec", 60);
+        ReflectionTestUtils.setField(invokeService, "maxInvokeRequestsTimeout", 2000L);
+        ReflectionTestUtils.setField(invokeService, "threadPoolSize", 2);
+        ReflectionTestUtils.setField(invokeService, "maxMemoryLimitMb", 8L);
+        ReflectionTestUtils.setField(invokeService, "compiledScriptsCacheSize", 100);
+        ReflectionTestUtils.setField(invokeService, "inlineExecutionEnabled", true);
+        ReflectionTestUtils.setField(invokeService, "inlineExecutionMaxTimeMs", 1L);
+        invokeService.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        invokeService.stop();
+    }
+
+    @Test
+    public void givenScriptExceedingInlineBudget_whenInvoke_thenExecutedOnceAndNextInvocationsOnExecutor() throws Exception {
+        UUID scriptId = eval("msg.count = msg.count + 1; " + SLOW_LOOP + "return msg.count;");
+        Map<String, Object> msg = new HashMap<>(Map.of("count", 0));
+
+        assertThat(invoke(scriptId, msg)).isEqualTo(1);
+        assertThat(msg.get("count")).isEqualTo(1);
+        assertThat(getScriptStats(scriptId).isInline()).isFalse();
+
+        assertThat(invoke(scriptId, msg)).isEqualTo(2);
+        assertThat(msg.get("count")).isEqualTo(2);
+    }
+
+    @Test
+    public void givenShortScript_whenInvoke_thenStaysInline() throws Exception {
+        UUID scriptId = eval("return msg.count + 1;");
+
+        assertThat(invoke(scriptId, new HashMap<>(Map.of("count", 0)))).isEqualTo(1);
+        assertThat(getScriptStats(scriptId).isInline()).isTrue();
+    }
+
+    @Test
+    public void givenEndlessScript_whenInvokeTimeoutExceeded_thenStoppedInlineWithTimeout() throws Exception {
+        ReflectionTestUtils.setField(invokeService, "maxInvokeRequestsTimeout", 200L);
+        UUID scriptId = eval("msg.count = msg.count + 1; while (true) { msg.i = 1; }");
+        Map<String, Object> msg = new HashMap<>(Map.of("count", 0));
+
+        long startTs = System.currentTimeMillis();
+        assertThatThrownBy(() -> invoke(scriptId, msg)).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(System.currentTimeMillis() - startTs).isLessThan(TimeUnit.SECONDS.toMillis(5));
+        assertThat(msg.get("count")).isEqualTo(1);
+    }
+
+    private UUID eval(String script) throws Exception {
+        return invokeService.eval(tenantId, ScriptType.RULE_NODE_SCRIPT, script, "msg").get(5, TimeUnit.SECONDS);
+    }
+
+    private Object invoke(UUID scriptId, Map<String, Object> msg) throws Exception {
+        return invokeService.invokeScript(tenantId, null, scriptId, msg).get(5, TimeUnit.SECONDS);
+    }
+
+    private TbelScriptStats getScriptStats(UUID scriptId) {
+        return invokeService.scriptStatsMap.get(invokeService.scriptIdToHash.get(scriptId));
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.script.api.tbel;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.common.util.JacksonUtil;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbelScriptStatsTest {
+
+    @Test
+    public void givenScriptValues_whenSerializedSize_thenSameAsJsonLength() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("enabled", true);
+        nested.put("ratio", 0.25);
+        nested.put("missing", null);
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("temperature", 42);
+        value.put("ts", 1700000000000L);
+        value.put("name", "Device A");
+        value.put("nested", nested);
+        value.put("list", Arrays.asList(1, "two", false));
+        value.put("empty", List.of());
+
+        assertThat(TbelSerializedSize.of(value)).isEqualTo(JacksonUtil.toString(value).length());
+        assertThat(TbelSerializedSize.of(Map.of())).isEqualTo(2);
+        assertThat(TbelSerializedSize.of("text")).isEqualTo(6);
+    }
+
+    @Test
+    public void givenRecordedLatencies_whenPercentile_thenUpperBoundOfBucketReturned() {
+        TbelScriptStats stats = new TbelScriptStats();
+        for (int i = 0; i < 98; i++) {
+            stats.record(TimeUnit.MICROSECONDS.toNanos(3));
+        }
+        stats.record(TimeUnit.MICROSECONDS.toNanos(100));
+        stats.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        long[] counts = stats.reset();
+        assertThat(TbelScriptStats.percentileUs(counts, 50)).isEqualTo(4);
+        assertThat(TbelScriptStats.percentileUs(counts, 99)).isEqualTo(128);
+        assertThat(TbelScriptStats.percentileUs(counts, 100)).isEqualTo(8192);
+        assertThat(TbelScriptStats.percentileUs(stats.reset(), 50)).isEqualTo(0);
+    }
+
+}
@@ -49,6 +49,12 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.RuleChainId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.id.TenantProfileId;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.limit.LimitedApi;
 import org.thingsboard.server.common.data.notification.rule.trigger.RateLimitsTrigger;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
@@ -56,6 +62,7 @@ import org.thingsboard.server.common.data.msg.TbMsgType;
 import org.thingsboard.server.common.data.notification.rule.trigger.RateLimitsTrigger;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgKvPayload;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.notification.NotificationRuleProcessor;
 import org.thingsboard.server.common.msg.queue.ServiceType;
@@ -107,6 +114,7 @@ import org.thingsboard.server.queue.util.TbTransportComponent;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -161,6 +169,8 @@ public class DefaultTransportService implements TransportService {
     private int notificationsPollDuration;
     @Value("${transport.stats.enabled:false}")
     private boolean statsEnabled;
+    @Value("${transport.typed_payload.enabled:false}")
+    private boolean typedPayloadEnabled;
 
     @Autowired
     @Lazy
@@ -590,8 +600,7 @@ public class DefaultTransportService implements TransportService {
                 metaData.putValue("deviceName", sessionInfo.getDeviceName());
                 metaData.putValue("deviceType", sessionInfo.getDeviceType());
                 metaData.putValue("ts", tsKv.getTs() + "");
-                JsonObject json = JsonUtils.getJsonObject(tsKv.getKvList());
-                sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, json, metaData, TbMsgType.POST_TELEMETRY_REQUEST, packCallback);
+                sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, tsKv.getKvList(), metaData, TbMsgType.POST_TELEMETRY_REQUEST, packCallback);
             }
         }
     }
@@ -607,7 +616,6 @@ public class DefaultTransportService implements TransportService {
             reportActivityInternal(sessionInfo);
             TenantId tenantId = getTenantId(sessionInfo);
             DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
-            JsonObject json = JsonUtils.getJsonObject(msg.getKvList());
             TbMsgMetaData metaData = md != null ? md.copy() : new TbMsgMetaData();
             metaData.putValue("deviceName", sessionInfo.getDeviceName());
             metaData.putValue("deviceType", sessionInfo.getDeviceType());
@@ -616,7 +624,7 @@ public class DefaultTransportService implements TransportService {
             }
             metaData.putValue(DataConstants.NOTIFY_DEVICE_METADATA_KEY, "false");
             CustomerId customerId = getCustomerId(sessionInfo);
-            sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, json, metaData, TbMsgType.POST_ATTRIBUTES_REQUEST,
+            sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, msg.getKvList(), metaData, TbMsgType.POST_ATTRIBUTES_REQUEST,
                     new TransportTbQueueCallback(new ApiStatsProxyCallback<>(tenantId, customerId, msg.getKvList().size(), callback)));
         }
     }
@@ -1182,8 +1190,22 @@ public class DefaultTransportService implements TransportService {
         ruleEngineMsgProducer.send(tpi, new TbProtoQueueMsg<>(tbMsg.getId(), msg), wrappedCallback);
     }
 
+    private void sendToRuleEngine(TenantId tenantId, DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo,
+                                  List<TransportProtos.KeyValueProto> kvList, TbMsgMetaData metaData, TbMsgType tbMsgType, TbQueueCallback callback) {
+        if (typedPayloadEnabled) {
+            sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, null, toKvPayload(kvList), metaData, tbMsgType, callback);
+        } else {
+            sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, JsonUtils.getJsonObject(kvList), metaData, tbMsgType, callback);
+        }
+    }
+
     private void sendToRuleEngine(TenantId tenantId, DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, JsonObject json,
                                   TbMsgMetaData metaData, TbMsgType tbMsgType, TbQueueCallback callback) {
+        sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, gson.toJson(json), null, metaData, tbMsgType, callback);
+    }
+
+    private void sendToRuleEngine(TenantId tenantId, DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, String data,
+                                  TbMsgKvPayload kvPayload, TbMsgMetaData metaData, TbMsgType tbMsgType, TbQueueCallback callback) {
         DeviceProfileId deviceProfileId = new DeviceProfileId(new UUID(sessionInfo.getDeviceProfileIdMSB(), sessionInfo.getDeviceProfileIdLSB()));
         DeviceProfile deviceProfile = deviceProfileCache.get(deviceProfileId);
         RuleChainId ruleChainId;
@@ -1198,10 +1220,39 @@ public class DefaultTransportService implements TransportService {
             queueName = deviceProfile.getDefaultQueueName();
         }
 
-        TbMsg tbMsg = TbMsg.newMsg(queueName, tbMsgType, deviceId, customerId, metaData, gson.toJson(json), ruleChainId, null);
+        TbMsg tbMsg;
+        if (kvPayload != null) {
+            tbMsg = TbMsg.newMsgWithKvPayload(queueName, tbMsgType, deviceId, customerId, metaData, kvPayload, ruleChainId, null);
+        } else {
+            tbMsg = TbMsg.newMsg(queueName, tbMsgType, deviceId, customerId, metaData, data, ruleChainId, null);
+        }
         sendToRuleEngine(tenantId, tbMsg, callback);
     }
 
+    private static TbMsgKvPayload toKvPayload(List<TransportProtos.KeyValueProto> kvList) {
+        List<KvEntry> entries = new ArrayList<>(kvList.size());
+        for (TransportProtos.KeyValueProto kv : kvList) {
+            switch (kv.getType()) {
+                case BOOLEAN_V:
+                    entries.add(new BooleanDataEntry(kv.getKey(), kv.getBoolV()));
+                    break;
+                case LONG_V:
+                    entries.add(new LongDataEntry(kv.getKey(), kv.getLongV()));
+                    break;
+                case DOUBLE_V:
+                    entries.add(new DoubleDataEntry(kv.getKey(), kv.getDoubleV()));
+                    break;
+                case STRING_V:
+                    entries.add(new StringDataEntry(kv.getKey(), kv.getStringV()));
+                    break;
+                case JSON_V:
+                    entries.add(new JsonDataEntry(kv.getKey(), kv.getJsonV()));
+                    break;
+            }
+        }
+        return TbMsgKvPayload.of(entries);
+    }
+
     private class TransportTbQueueCallback implements TbQueueCallback {
         private final TransportServiceCallback<Void> callback;
 
@@ -191,12 +191,14 @@ public class CachedAttributesService implements AttributesService {
     }
 
     private Map<String, TbCacheValueWrapper<AttributeKvEntry>> findCachedAttributes(EntityId entityId, String scope, Collection<String> attributeKeys) {
+        List<AttributeCacheKey> cacheKeys = attributeKeys.stream().map(k -> new AttributeCacheKey(scope, entityId, k)).collect(Collectors.toList());
+        Map<AttributeCacheKey, TbCacheValueWrapper<AttributeKvEntry>> cachedValues = cache.getAll(cacheKeys);
         Map<String, TbCacheValueWrapper<AttributeKvEntry>> cachedAttributes = new HashMap<>();
-        for (String attributeKey : attributeKeys) {
-            var cachedAttributeValue = cache.get(new AttributeCacheKey(scope, entityId, attributeKey));
+        for (AttributeCacheKey cacheKey : cacheKeys) {
+            var cachedAttributeValue = cachedValues.get(cacheKey);
             if (cachedAttributeValue != null) {
                 hitCounter.increment();
-                cachedAttributes.put(attributeKey, cachedAttributeValue);
+                cachedAttributes.put(cacheKey.getKey(), cachedAttributeValue);
             } else {
                 missCounter.increment();
             }
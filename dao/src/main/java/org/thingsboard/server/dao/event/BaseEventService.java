@@ -66,6 +66,15 @@ public class BaseEventService implements EventService {
         return eventDao.saveAsync(event);
     }
 
+    @Override
+    public void saveAll(List<? extends Event> events) {
+        for (Event event : events) {
+            eventValidator.validate(event, Event::getTenantId);
+            checkAndTruncateDebugEvent(event);
+        }
+        eventDao.saveAll(events);
+    }
+
     private void checkAndTruncateDebugEvent(Event event) {
         switch (event.getType()) {
             case DEBUG_RULE_NODE:
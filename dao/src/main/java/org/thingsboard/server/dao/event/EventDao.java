@@ -38,6 +38,13 @@ public interface EventDao {
      */
     ListenableFuture<Void> saveAsync(Event event);
 
+    /**
+     * Save the batch of new events in the calling thread, with one batch insert per event type
+     *
+     * @param events the event objects
+     */
+    void saveAll(List<? extends Event> events);
+
     /**
      * Find events by tenantId, entityId, eventType and pageLink.
      *
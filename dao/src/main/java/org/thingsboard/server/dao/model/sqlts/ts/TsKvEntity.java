@@ -19,15 +19,97 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
 
+import javax.persistence.ColumnResult;
+import javax.persistence.ConstructorResult;
 import javax.persistence.Entity;
 import javax.persistence.IdClass;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.SqlResultSetMapping;
+import javax.persistence.SqlResultSetMappings;
 import javax.persistence.Table;
 
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_AVG_BY_BUCKETS;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_AVG_BY_BUCKETS_QUERY;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_COUNT_BY_BUCKETS;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_COUNT_BY_BUCKETS_QUERY;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_MAX_BY_BUCKETS;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_MAX_BY_BUCKETS_QUERY;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_MIN_BY_BUCKETS;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_MIN_BY_BUCKETS_QUERY;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_SUM_BY_BUCKETS;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FIND_SUM_BY_BUCKETS_QUERY;
+import static org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository.FROM_WHERE_CLAUSE;
+
 @EqualsAndHashCode(callSuper = true)
 @Data
 @Entity
 @Table(name = "ts_kv")
 @IdClass(TsKvCompositeKey.class)
+@SqlResultSetMappings({
+        @SqlResultSetMapping(
+                name = "tsKvBucketAggregationMapping",
+                classes = {
+                        @ConstructorResult(
+                                targetClass = TsKvEntity.class,
+                                columns = {
+                                        @ColumnResult(name = "tsBucket", type = Long.class),
+                                        @ColumnResult(name = "interval", type = Long.class),
+                                        @ColumnResult(name = "longValue", type = Long.class),
+                                        @ColumnResult(name = "doubleValue", type = Double.class),
+                                        @ColumnResult(name = "longCountValue", type = Long.class),
+                                        @ColumnResult(name = "doubleCountValue", type = Long.class),
+                                        @ColumnResult(name = "strValue", type = String.class),
+                                        @ColumnResult(name = "aggType", type = String.class),
+                                        @ColumnResult(name = "maxAggTs", type = Long.class),
+                                }
+                        ),
+                }),
+        @SqlResultSetMapping(
+                name = "tsKvBucketCountMapping",
+                classes = {
+                        @ConstructorResult(
+                                targetClass = TsKvEntity.class,
+                                columns = {
+                                        @ColumnResult(name = "tsBucket", type = Long.class),
+                                        @ColumnResult(name = "interval", type = Long.class),
+                                        @ColumnResult(name = "booleanValueCount", type = Long.class),
+                                        @ColumnResult(name = "strValueCount", type = Long.class),
+                                        @ColumnResult(name = "longValueCount", type = Long.class),
+                                        @ColumnResult(name = "doubleValueCount", type = Long.class),
+                                        @ColumnResult(name = "jsonValueCount", type = Long.class),
+                                        @ColumnResult(name = "maxAggTs", type = Long.class),
+                                }
+                        )
+                }),
+})
+@NamedNativeQueries({
+        @NamedNativeQuery(
+                name = FIND_AVG_BY_BUCKETS,
+                query = FIND_AVG_BY_BUCKETS_QUERY + FROM_WHERE_CLAUSE,
+                resultSetMapping = "tsKvBucketAggregationMapping"
+        ),
+        @NamedNativeQuery(
+                name = FIND_MAX_BY_BUCKETS,
+                query = FIND_MAX_BY_BUCKETS_QUERY + FROM_WHERE_CLAUSE,
+                resultSetMapping = "tsKvBucketAggregationMapping"
+        ),
+        @NamedNativeQuery(
+                name = FIND_MIN_BY_BUCKETS,
+                query = FIND_MIN_BY_BUCKETS_QUERY + FROM_WHERE_CLAUSE,
+                resultSetMapping = "tsKvBucketAggregationMapping"
+        ),
+        @NamedNativeQuery(
+                name = FIND_SUM_BY_BUCKETS,
+                query = FIND_SUM_BY_BUCKETS_QUERY + FROM_WHERE_CLAUSE,
+                resultSetMapping = "tsKvBucketAggregationMapping"
+        ),
+        @NamedNativeQuery(
+                name = FIND_COUNT_BY_BUCKETS,
+                query = FIND_COUNT_BY_BUCKETS_QUERY + FROM_WHERE_CLAUSE,
+                resultSetMapping = "tsKvBucketCountMapping"
+        )
+})
 public final class TsKvEntity extends AbstractTsKvEntity {
 
     public TsKvEntity() {
@@ -94,6 +176,27 @@ public final class TsKvEntity extends AbstractTsKvEntity {
         }
     }
 
+    public TsKvEntity(Long tsBucket, Long interval, Long longValue, Double doubleValue, Long longCountValue, Long doubleCountValue, String strValue, String aggType, Long aggValuesLastTs) {
+        this(longValue, doubleValue, longCountValue, doubleCountValue, aggType, aggValuesLastTs);
+        if ((MIN.equals(aggType) || MAX.equals(aggType)) && isNullOrZero(longCountValue) && isNullOrZero(doubleCountValue)) {
+            this.strValue = strValue;
+        }
+        if (tsBucket != null && interval != null) {
+            this.ts = tsBucket + interval / 2;
+        }
+    }
+
+    public TsKvEntity(Long tsBucket, Long interval, Long booleanValueCount, Long strValueCount, Long longValueCount, Long doubleValueCount, Long jsonValueCount, Long aggValuesLastTs) {
+        this(booleanValueCount, strValueCount, longValueCount, doubleValueCount, jsonValueCount, aggValuesLastTs);
+        if (tsBucket != null && interval != null) {
+            this.ts = tsBucket + interval / 2;
+        }
+    }
+
+    private static boolean isNullOrZero(Long value) {
+        return value == null || value == 0;
+    }
+
     @Override
     public boolean isNotEmpty() {
         return strValue != null || longValue != null || doubleValue != null || booleanValue != null;
@@ -15,14 +15,28 @@
  */
 package org.thingsboard.server.dao.nosql;
 
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.StatsCounter;
 import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
 import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.dao.util.AbstractBufferedRateExecutor;
 import org.thingsboard.server.dao.util.AsyncTaskContext;
@@ -30,6 +44,15 @@ import org.thingsboard.server.dao.util.NoSqlAnyDao;
 import org.thingsboard.server.dao.util.limits.RateLimitService;
 
 import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Created by ashvayka on 24.10.18.
@@ -41,6 +64,11 @@ public class CassandraBufferedRateWriteExecutor extends AbstractBufferedRateExec
 
     static final String BUFFER_NAME = "Write";
 
+    private final boolean batchEnabled;
+    private final StatsCounter totalBatches;
+    private final StatsCounter totalBatched;
+    private final ConcurrentMap<Node, AtomicInteger> inFlightPerHost = new ConcurrentHashMap<>();
+
     public CassandraBufferedRateWriteExecutor(
             @Value("${cassandra.query.buffer_size}") int queueLimit,
             @Value("${cassandra.query.concurrent_limit}") int concurrencyLimit,
@@ -50,17 +78,39 @@ public class CassandraBufferedRateWriteExecutor extends AbstractBufferedRateExec
             @Value("${cassandra.query.poll_ms:50}") long pollMs,
             @Value("${cassandra.query.tenant_rate_limits.print_tenant_names}") boolean printTenantNames,
             @Value("${cassandra.query.print_queries_freq:0}") int printQueriesFreq,
+            @Value("${cassandra.query.batch.enabled:false}") boolean batchEnabled,
+            @Value("${cassandra.query.batch.max_size:100}") int batchMaxSize,
             @Autowired StatsFactory statsFactory,
             @Autowired EntityService entityService,
             @Autowired RateLimitService rateLimitService) {
         super(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs, printQueriesFreq, statsFactory,
-                entityService, rateLimitService, printTenantNames);
+                entityService, rateLimitService, printTenantNames, batchEnabled ? batchMaxSize : 1);
+        this.batchEnabled = batchEnabled;
+        this.totalBatches = statsFactory.createStatsCounter(StatsType.RATE_EXECUTOR.getName(), "totalBatches");
+        this.totalBatched = statsFactory.createStatsCounter(StatsType.RATE_EXECUTOR.getName(), "totalBatched");
     }
 
     @Scheduled(fixedDelayString = "${cassandra.query.rate_limit_print_interval_ms}")
     @Override
     public void printStats() {
         super.printStats();
+        if (batchEnabled) {
+            int batches = totalBatches.get();
+            int batched = totalBatched.get();
+            totalBatches.clear();
+            totalBatched.clear();
+            if (batches > 0) {
+                log.info("[{}] Batches [{}], batched statements [{}], avg batch fill [{}]", getBufferName(), batches, batched,
+                        String.format("%.1f", (double) batched / batches));
+            }
+            String inFlight = inFlightPerHost.entrySet().stream()
+                    .filter(e -> e.getValue().get() > 0)
+                    .map(e -> e.getKey().getEndPoint() + "=" + e.getValue().get())
+                    .collect(Collectors.joining(", "));
+            if (!inFlight.isEmpty()) {
+                log.info("[{}] In-flight requests per host: {}", getBufferName(), inFlight);
+            }
+        }
     }
 
     @PreDestroy
@@ -92,4 +142,76 @@ public class CassandraBufferedRateWriteExecutor extends AbstractBufferedRateExec
         );
     }
 
+    /**
+     * Groups the inserts into the same partition, so they are sent as one unlogged batch to the replica of the partition.
+     * Other statements and the statements without routing information are executed one by one.
+     */
+    @Override
+    protected Object getBatchKey(CassandraStatementTask task) {
+        if (!(task.getStatement() instanceof BoundStatement)) {
+            return null;
+        }
+        BoundStatement statement = (BoundStatement) task.getStatement();
+        if (!statement.getPreparedStatement().getQuery().trim().regionMatches(true, 0, "INSERT", 0, 6)) {
+            return null;
+        }
+        ByteBuffer routingKey = statement.getRoutingKey();
+        if (routingKey == null) {
+            return null;
+        }
+        return new BatchKey(statement.getRoutingKeyspace(), routingKey, statement.getConsistencyLevel());
+    }
+
+    @Override
+    protected ListenableFuture<List<TbResultSet>> executeBatch(List<AsyncTaskContext<CassandraStatementTask, TbResultSet>> taskCtxs) {
+        CassandraStatementTask firstTask = taskCtxs.get(0).getTask();
+        List<BatchableStatement<?>> statements = new ArrayList<>(taskCtxs.size());
+        for (AsyncTaskContext<CassandraStatementTask, TbResultSet> taskCtx : taskCtxs) {
+            statements.add((BoundStatement) taskCtx.getTask().getStatement());
+        }
+        Statement<?> batch = BatchStatement.newInstance(BatchType.UNLOGGED, statements)
+                .setConsistencyLevel(firstTask.getStatement().getConsistencyLevel());
+        totalBatches.increment();
+        totalBatched.add(taskCtxs.size());
+
+        AtomicInteger hostInFlight = getHostInFlight(firstTask);
+        if (hostInFlight != null) {
+            hostInFlight.incrementAndGet();
+        }
+        CassandraStatementTask batchTask = new CassandraStatementTask(firstTask.getTenantId(), firstTask.getSession(), batch);
+        ListenableFuture<TbResultSet> result = batchTask.executeAsync(
+                statement -> this.submit(new CassandraStatementTask(firstTask.getTenantId(), firstTask.getSession(), statement))
+        );
+        if (hostInFlight != null) {
+            result.addListener(hostInFlight::decrementAndGet, MoreExecutors.directExecutor());
+        }
+        // all statements of the batch share its result
+        return Futures.transform(result, resultSet -> Collections.nCopies(taskCtxs.size(), resultSet), MoreExecutors.directExecutor());
+    }
+
+    private AtomicInteger getHostInFlight(CassandraStatementTask task) {
+        BoundStatement statement = (BoundStatement) task.getStatement();
+        CqlIdentifier keyspace = statement.getRoutingKeyspace();
+        if (keyspace == null) {
+            return null;
+        }
+        TokenMap tokenMap = task.getSession().getMetadata().getTokenMap().orElse(null);
+        if (tokenMap == null) {
+            return null;
+        }
+        Set<Node> replicas = tokenMap.getReplicas(keyspace, statement.getRoutingKey());
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        return inFlightPerHost.computeIfAbsent(replicas.iterator().next(), node -> new AtomicInteger());
+    }
+
+    @Data
+    private static class BatchKey {
+        private final CqlIdentifier keyspace;
+        private final ByteBuffer routingKey;
+        private final ConsistencyLevel consistencyLevel;
+    }
+
+
 }
@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import lombok.Getter;
+
+/**
+ * Adjusts the batch size of the {@link TbSqlBlockingQueue} based on the observed save time.
+ * The batch size grows additively while full packs are saved faster than the target save time
+ * and is halved as soon as the save time exceeds it. The batch size never exceeds the configured one.
+ */
+public class TbSqlBatchSizeController {
+
+    private static final int MIN_BATCH_SIZE_DIVIDER = 16;
+    private static final int INCREASE_STEP_DIVIDER = 10;
+
+    private final int maxBatchSize;
+    private final int minBatchSize;
+    private final int increaseStep;
+    private final long targetSaveTimeMs;
+
+    @Getter
+    private int batchSize;
+    @Getter
+    private long lastSaveTimeMs;
+
+    public TbSqlBatchSizeController(int maxBatchSize, long targetSaveTimeMs) {
+        this.maxBatchSize = maxBatchSize;
+        this.minBatchSize = Math.max(1, maxBatchSize / MIN_BATCH_SIZE_DIVIDER);
+        this.increaseStep = Math.max(1, maxBatchSize / INCREASE_STEP_DIVIDER);
+        this.targetSaveTimeMs = targetSaveTimeMs;
+        this.batchSize = maxBatchSize;
+    }
+
+    public int onBatchSaved(boolean fullPack, long saveTimeMs) {
+        lastSaveTimeMs = saveTimeMs;
+        if (saveTimeMs > targetSaveTimeMs) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+        } else if (fullPack && saveTimeMs <= targetSaveTimeMs / 2) {
+            batchSize = Math.min(maxBatchSize, batchSize + increaseStep);
+        }
+        return batchSize;
+    }
+
+}
@@ -17,9 +17,11 @@ package org.thingsboard.server.dao.sql;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.common.stats.StatsFactory;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -29,6 +31,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -36,15 +39,26 @@ import java.util.stream.Stream;
 @Slf4j
 public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
 
-    private final BlockingQueue<TbSqlQueueElement<E>> queue = new LinkedBlockingQueue<>();
+    public static final String QUEUE_SIZE = "queueSize";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final String SAVE_TIME = "saveTime";
+
+    private final BlockingQueue<TbSqlQueueElement<E>> queue;
     private final TbSqlBlockingQueueParams params;
 
     private ExecutorService executor;
     private final MessagesStats stats;
+    private final AtomicInteger queueSize;
+    private final AtomicInteger currentBatchSize;
+    private final Timer saveTimer;
 
-    public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
+    public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats, StatsFactory statsFactory, String statsKey) {
         this.params = params;
         this.stats = stats;
+        this.queue = params.getMaxQueueSize() > 0 ? new LinkedBlockingQueue<>(params.getMaxQueueSize()) : new LinkedBlockingQueue<>();
+        this.queueSize = statsFactory.createGauge(statsKey + "." + QUEUE_SIZE, new AtomicInteger(0));
+        this.currentBatchSize = statsFactory.createGauge(statsKey + "." + BATCH_SIZE, new AtomicInteger(params.getBatchSize()));
+        this.saveTimer = statsFactory.createTimer(statsKey + "." + SAVE_TIME);
     }
 
     @Override
@@ -52,9 +66,10 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
         executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
         executor.submit(() -> {
             String logName = params.getLogName();
-            int batchSize = params.getBatchSize();
+            int maxBatchSize = params.getBatchSize();
             long maxDelay = params.getMaxDelay();
-            List<TbSqlQueueElement<E>> entities = new ArrayList<>(batchSize);
+            TbSqlBatchSizeController batchSizeController = new TbSqlBatchSizeController(maxBatchSize, maxDelay);
+            List<TbSqlQueueElement<E>> entities = new ArrayList<>(maxBatchSize);
             while (!Thread.interrupted()) {
                 try {
                     long currentTs = System.currentTimeMillis();
@@ -64,21 +79,33 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     } else {
                         entities.add(attr);
                     }
+                    int batchSize = params.isBatchSizeAdaptive() ? batchSizeController.getBatchSize() : maxBatchSize;
                     queue.drainTo(entities, batchSize - 1);
+                    queueSize.set(queue.size());
                     boolean fullPack = entities.size() == batchSize;
                     if (log.isDebugEnabled()) {
                         log.debug("[{}] Going to save {} entities", logName, entities.size());
                         log.trace("[{}] Going to save entities: {}", logName, entities);
                     }
                     Stream<E> entitiesStream = entities.stream().map(TbSqlQueueElement::getEntity);
+                    long saveStartNs = System.nanoTime();
                     saveFunction.accept(
                             (params.isBatchSortEnabled() ? entitiesStream.sorted(batchUpdateComparator) : entitiesStream)
                                     .collect(Collectors.toList())
                     );
+                    long saveTimeNs = System.nanoTime() - saveStartNs;
+                    saveTimer.record(saveTimeNs, TimeUnit.NANOSECONDS);
                     entities.forEach(v -> v.getFuture().set(null));
                     stats.incrementSuccessful(entities.size());
+                    if (params.isBatchSizeAdaptive()) {
+                        currentBatchSize.set(batchSizeController.onBatchSaved(fullPack, TimeUnit.NANOSECONDS.toMillis(saveTimeNs)));
+                    }
                     if (!fullPack) {
                         long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
+                        if (params.isBatchSizeAdaptive()) {
+                            // no need to wait for a bigger pack while the database keeps up with small ones
+                            remainingDelay = Math.min(remainingDelay, batchSizeController.getLastSaveTimeMs());
+                        }
                         if (remainingDelay > 0) {
                             Thread.sleep(remainingDelay);
                         }
@@ -99,9 +126,10 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
         });
 
         logExecutor.scheduleAtFixedRate(() -> {
+            queueSize.set(queue.size());
             if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
-                log.info("Queue-{} [{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
-                        params.getLogName(), queue.size(), stats.getTotal(), stats.getSuccessful(), stats.getFailed());
+                log.info("Queue-{} [{}] queueSize [{}] batchSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
+                        params.getLogName(), queue.size(), currentBatchSize.get(), stats.getTotal(), stats.getSuccessful(), stats.getFailed());
                 stats.reset();
             }
         }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
@@ -117,8 +145,13 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
     @Override
     public ListenableFuture<Void> add(E element) {
         SettableFuture<Void> future = SettableFuture.create();
-        queue.add(new TbSqlQueueElement<>(future, element));
         stats.incrementTotal();
+        try {
+            queue.add(new TbSqlQueueElement<>(future, element));
+        } catch (IllegalStateException e) {
+            stats.incrementFailed();
+            future.setException(new IllegalStateException("[" + params.getLogName() + "] Queue is full, max size: " + params.getMaxQueueSize(), e));
+        }
         return future;
     }
 }
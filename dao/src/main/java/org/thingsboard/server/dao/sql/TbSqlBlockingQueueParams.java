@@ -30,4 +30,6 @@ public class TbSqlBlockingQueueParams {
     private final long statsPrintIntervalMs;
     private final String statsNamePrefix;
     private final boolean batchSortEnabled;
+    private final int maxQueueSize;
+    private final boolean batchSizeAdaptive;
 }
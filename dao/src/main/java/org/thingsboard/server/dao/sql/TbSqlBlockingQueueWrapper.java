@@ -47,8 +47,9 @@ public class TbSqlBlockingQueueWrapper<E> {
      */
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
         for (int i = 0; i < maxThreads; i++) {
-            MessagesStats stats = statsFactory.createMessagesStats(params.getStatsNamePrefix() + ".queue." + i);
-            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats);
+            String statsKey = params.getStatsNamePrefix() + ".queue." + i;
+            MessagesStats stats = statsFactory.createMessagesStats(statsKey);
+            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats, statsFactory, statsKey);
             queues.add(queue);
             queue.init(logExecutor, saveFunction, batchUpdateComparator, i);
         }
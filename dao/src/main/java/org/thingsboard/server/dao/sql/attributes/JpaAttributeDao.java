@@ -78,6 +78,12 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Value("${sql.attributes.batch_threads:4}")
     private int batchThreads;
 
+    @Value("${sql.attributes.max_queue_size:0}")
+    private int maxQueueSize;
+
+    @Value("${sql.attributes.batch_size_adaptive:false}")
+    private boolean batchSizeAdaptive;
+
     @Value("${sql.batch_sort:true}")
     private boolean batchSortEnabled;
 
@@ -92,6 +98,8 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                 .statsPrintIntervalMs(statsPrintIntervalMs)
                 .statsNamePrefix("attributes")
                 .batchSortEnabled(batchSortEnabled)
+                .maxQueueSize(maxQueueSize)
+                .batchSizeAdaptive(batchSizeAdaptive)
                 .build();
 
         Function<AttributeKvEntity, Integer> hashcodeFunction = entity -> entity.getId().getEntityId().hashCode();
@@ -46,6 +46,7 @@ import org.thingsboard.server.dao.util.SqlDao;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -144,6 +145,25 @@ public class JpaBaseEventDao implements EventDao {
     @Override
     public ListenableFuture<Void> saveAsync(Event event) {
         log.debug("Save event [{}] ", event);
+        prepareForSave(event);
+        return queue.add(event);
+    }
+
+    @Override
+    public void saveAll(List<? extends Event> events) {
+        log.debug("Save [{}] events", events.size());
+        List<Event> batch = new ArrayList<>(events.size());
+        for (Event event : events) {
+            prepareForSave(event);
+            batch.add(event);
+        }
+        if (batchSortEnabled) {
+            batch.sort(Comparator.comparing(Event::getCreatedTime));
+        }
+        eventInsertRepository.save(batch);
+    }
+
+    private void prepareForSave(Event event) {
         if (event.getId() == null) {
             UUID timeBased = Uuids.timeBased();
             event.setId(new EventId(timeBased));
@@ -158,7 +178,6 @@ public class JpaBaseEventDao implements EventDao {
         }
         partitioningRepository.createPartitionIfNotExists(event.getType().getTable(), event.getCreatedTime(),
                 partitionConfiguration.getPartitionSizeInMs(event.getType()));
-        return queue.add(event);
     }
 
     @Override
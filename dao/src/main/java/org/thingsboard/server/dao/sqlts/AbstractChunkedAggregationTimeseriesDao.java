@@ -19,6 +19,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort.Direction;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -35,6 +36,7 @@ import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository;
 import org.thingsboard.server.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
 
@@ -54,9 +56,15 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     protected TsKvRepository tsKvRepository;
 
+    @Autowired
+    protected TsKvAggregationRepository aggregationRepository;
+
     @Autowired
     protected InsertTsRepository<TsKvEntity> insertRepository;
 
+    @Value("${sql.ts.single_query_aggregation:true}")
+    protected boolean singleQueryAggregation;
+
     protected TbSqlBlockingQueueWrapper<TsKvEntity> tsQueue;
     @Autowired
     private StatsFactory statsFactory;
@@ -70,13 +78,22 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts")
                 .batchSortEnabled(batchSortEnabled)
+                .maxQueueSize(tsMaxQueueSize)
+                .batchSizeAdaptive(tsBatchSizeAdaptive)
                 .build();
 
         Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
         tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, hashcodeFunction, tsBatchThreads, statsFactory);
-        tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v),
+        tsQueue.init(logExecutor, v -> {
+                    resolveKeyIds(v);
+                    if (rollupRepository != null) {
+                        rollupRepository.saveOrUpdate(v, () -> insertRepository.saveOrUpdate(v));
+                    } else {
+                        insertRepository.saveOrUpdate(v);
+                    }
+                },
                 Comparator.comparing((Function<TsKvEntity, UUID>) AbstractTsKvEntity::getEntityId)
-                        .thenComparing(AbstractTsKvEntity::getKey)
+                        .thenComparing(AbstractTsKvEntity::getStrKey)
                         .thenComparing(AbstractTsKvEntity::getTs)
         );
     }
@@ -91,11 +108,17 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Override
     public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         return service.submit(() -> {
-            tsKvRepository.delete(
+            Integer keyId = getOrSaveKeyId(query.getKey());
+            Runnable removeFunction = () -> tsKvRepository.delete(
                     entityId.getId(),
-                    getOrSaveKeyId(query.getKey()),
+                    keyId,
                     query.getStartTs(),
                     query.getEndTs());
+            if (rollupRepository != null) {
+                rollupRepository.remove(entityId.getId(), keyId, query.getStartTs(), query.getEndTs(), removeFunction);
+            } else {
+                removeFunction.run();
+            }
             return null;
         });
     }
@@ -114,6 +137,18 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     public ListenableFuture<ReadTsKvQueryResult> findAllAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query) {
         if (query.getAggregation() == Aggregation.NONE) {
             return Futures.immediateFuture(findAllAsyncWithLimit(entityId, query));
+        }
+        long rollupGranularity = getRollupGranularity(query.getStartTs(), query.getInterval());
+        if (rollupGranularity > 0) {
+            long startTs = query.getStartTs();
+            long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
+            return getReadTsKvQueryResultFuture(query, service.submit(() ->
+                    findAllAndAggregateByRollups(entityId, query.getKey(), startTs, endTs, query.getInterval(), rollupGranularity, query.getAggregation())));
+        } else if (singleQueryAggregation) {
+            long startTs = query.getStartTs();
+            long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
+            return getReadTsKvQueryResultFuture(query, service.submit(() ->
+                    findAllAndAggregate(entityId, query.getKey(), startTs, endTs, query.getInterval(), query.getAggregation())));
         } else {
             List<ListenableFuture<Optional<TsKvEntity>>> futures = new ArrayList<>();
             long startPeriod = query.getStartTs();
@@ -159,6 +194,53 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         });
     }
 
+    @Override
+    protected List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(EntityId entityId, String key, long startTs, long endTs, long timeBucket, Aggregation aggregation) {
+        long interval = endTs - startTs;
+        long remainingPart = interval % timeBucket;
+        List<TsKvEntity> entities = new ArrayList<>();
+        if (remainingPart == 0) {
+            entities.addAll(switchBucketAggregation(entityId, key, startTs, endTs, timeBucket, aggregation));
+        } else {
+            interval = interval - remainingPart;
+            if (interval > 0) {
+                entities.addAll(switchBucketAggregation(entityId, key, startTs, startTs + interval, timeBucket, aggregation));
+            }
+            entities.addAll(switchBucketAggregation(entityId, key, startTs + interval, endTs, remainingPart, aggregation));
+        }
+        List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>();
+        for (TsKvEntity entity : entities) {
+            if (entity != null && entity.isNotEmpty()) {
+                entity.setEntityId(entityId.getId());
+                entity.setStrKey(key);
+                result.add(Optional.of(entity));
+            }
+        }
+        if (result.isEmpty()) {
+            // keep the empty result for the query, same as when none of the per-interval queries returned data
+            result.add(Optional.empty());
+        }
+        return result;
+    }
+
+    protected List<TsKvEntity> switchBucketAggregation(EntityId entityId, String key, long startTs, long endTs, long timeBucket, Aggregation aggregation) {
+        var keyId = getOrSaveKeyId(key);
+        switch (aggregation) {
+            case AVG:
+                return aggregationRepository.findAvg(entityId.getId(), keyId, timeBucket, startTs, endTs);
+            case MAX:
+                return aggregationRepository.findMax(entityId.getId(), keyId, timeBucket, startTs, endTs);
+            case MIN:
+                return aggregationRepository.findMin(entityId.getId(), keyId, timeBucket, startTs, endTs);
+            case SUM:
+                return aggregationRepository.findSum(entityId.getId(), keyId, timeBucket, startTs, endTs);
+            case COUNT:
+                return aggregationRepository.findCount(entityId.getId(), keyId, timeBucket, startTs, endTs);
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
     protected TsKvEntity switchAggregation(EntityId entityId, String key, long startTs, long endTs, Aggregation aggregation) {
         var keyId = getOrSaveKeyId(key);
         switch (aggregation) {
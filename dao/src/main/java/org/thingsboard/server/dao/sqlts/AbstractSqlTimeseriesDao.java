@@ -23,19 +23,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sqlts.rollup.TsKvRollupRepository;
 
 import javax.annotation.Nullable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -48,6 +54,9 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
     @Autowired
     protected ScheduledLogExecutorComponent logExecutor;
 
+    @Autowired(required = false)
+    protected TsKvRollupRepository rollupRepository;
+
     @Value("${sql.ts.batch_size:1000}")
     protected int tsBatchSize;
 
@@ -57,6 +66,12 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
     @Value("${sql.ts.stats_print_interval_ms:1000}")
     protected long tsStatsPrintIntervalMs;
 
+    @Value("${sql.ts.max_queue_size:0}")
+    protected int tsMaxQueueSize;
+
+    @Value("${sql.ts.batch_size_adaptive:false}")
+    protected boolean tsBatchSizeAdaptive;
+
     @Value("${sql.ts.batch_threads:4}")
     protected int tsBatchThreads;
 
@@ -86,6 +101,59 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
         } catch (SQLException e) {
             log.error("SQLException occurred during timeseries TTL task execution ", e);
         }
+        if (rollupRepository != null) {
+            try {
+                log.info("Total telemetry rollups removed by TTL: [{}]", rollupRepository.cleanup());
+            } catch (Exception e) {
+                log.error("Exception occurred during timeseries rollups TTL task execution ", e);
+            }
+        }
+    }
+
+    protected abstract List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(EntityId entityId, String key, long startTs, long endTs, long timeBucket, Aggregation aggregation);
+
+    protected long getRollupGranularity(long startTs, long timeBucket) {
+        return rollupRepository != null ? rollupRepository.getGranularity(startTs, timeBucket) : 0;
+    }
+
+    protected List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregateByRollups(EntityId entityId, String key, long startTs, long endTs,
+                                                                                       long timeBucket, long granularity, Aggregation aggregation) {
+        int keyId = getOrSaveKeyId(key);
+        Long coveredStartTs = rollupRepository.findCoveredStartTs(entityId.getId(), keyId);
+        long rollupEndTs = startTs + (endTs - startTs) / timeBucket * timeBucket;
+        long rollupStartTs = startTs;
+        if (coveredStartTs == null) {
+            rollupStartTs = rollupEndTs;
+        } else if (coveredStartTs > startTs) {
+            rollupStartTs = Math.min(rollupEndTs, startTs + (coveredStartTs - startTs + timeBucket - 1) / timeBucket * timeBucket);
+        }
+        List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>();
+        if (rollupStartTs > startTs) {
+            // the intervals before the rollups coverage, e.g. the data saved before the rollups were enabled
+            addPresent(result, findAllAndAggregate(entityId, key, startTs, rollupStartTs, timeBucket, aggregation));
+        }
+        if (rollupEndTs > rollupStartTs) {
+            List<TsKvEntity> entities = rollupRepository.findAllAndAggregate(entityId.getId(), keyId, granularity, timeBucket, rollupStartTs, rollupEndTs, aggregation);
+            for (TsKvEntity entity : entities) {
+                if (entity.isNotEmpty()) {
+                    entity.setEntityId(entityId.getId());
+                    entity.setStrKey(key);
+                    result.add(Optional.of(entity));
+                }
+            }
+        }
+        if (rollupEndTs < endTs) {
+            // the last interval is shorter than the time bucket and is not aligned to the rollups
+            addPresent(result, findAllAndAggregate(entityId, key, rollupEndTs, endTs, endTs - rollupEndTs, aggregation));
+        }
+        if (result.isEmpty()) {
+            result.add(Optional.empty());
+        }
+        return result;
+    }
+
+    private static void addPresent(List<Optional<? extends AbstractTsKvEntity>> result, List<Optional<? extends AbstractTsKvEntity>> data) {
+        data.stream().filter(Optional::isPresent).forEach(result::add);
     }
 
     protected ListenableFuture<List<ReadTsKvQueryResult>> processFindAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.util.SqlTsOrTsLatestAnyDao;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Timeseries key dictionary shared by all SQL timeseries DAOs.
+ * Key ids never change once created, so the local map is only filled and never invalidated:
+ * a node that misses a key created by another node loads it from the database.
+ * Missing keys are created with INSERT ... ON CONFLICT DO NOTHING, so concurrent creation of the same key
+ * by different threads or cluster nodes doesn't require any lock.
+ */
+@Slf4j
+@Component
+@SqlTsOrTsLatestAnyDao
+public class TsKvDictionaryCache {
+
+    private static final String SELECT_ALL = "SELECT key, key_id FROM ts_kv_dictionary";
+    private static final String SELECT_BY_KEYS = "SELECT key, key_id FROM ts_kv_dictionary WHERE key = ANY(?)";
+    private static final String INSERT_KEYS = "INSERT INTO ts_kv_dictionary (key) SELECT unnest(?) ON CONFLICT (key) DO NOTHING";
+
+    private final ConcurrentMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${sql.ts_key_dictionary.preload:true}")
+    private boolean preload;
+
+    @PostConstruct
+    private void init() {
+        if (preload) {
+            try {
+                long startTs = System.currentTimeMillis();
+                jdbcTemplate.query(SELECT_ALL, rs -> {
+                    keyIds.put(rs.getString(1), rs.getInt(2));
+                });
+                log.info("Loaded {} timeseries keys in {} ms", keyIds.size(), System.currentTimeMillis() - startTs);
+            } catch (Exception e) {
+                log.warn("Failed to preload timeseries keys dictionary, keys will be loaded on demand: {}", e.getMessage());
+            }
+        }
+    }
+
+    public Integer getOrSaveKeyId(String key) {
+        Integer keyId = keyIds.get(key);
+        if (keyId == null) {
+            keyId = getOrSaveKeyIds(Collections.singleton(key)).get(key);
+        }
+        return keyId;
+    }
+
+    public Map<String, Integer> getOrSaveKeyIds(Collection<String> keys) {
+        Map<String, Integer> result = new HashMap<>(keys.size());
+        List<String> missingKeys = null;
+        for (String key : keys) {
+            Integer keyId = keyIds.get(key);
+            if (keyId != null) {
+                result.put(key, keyId);
+            } else {
+                if (missingKeys == null) {
+                    missingKeys = new ArrayList<>();
+                }
+                missingKeys.add(key);
+            }
+        }
+        if (missingKeys != null) {
+            Map<String, Integer> found = findKeyIds(missingKeys);
+            if (found.size() < missingKeys.size()) {
+                List<String> newKeys = new ArrayList<>(missingKeys.size() - found.size());
+                for (String key : missingKeys) {
+                    if (!found.containsKey(key)) {
+                        newKeys.add(key);
+                    }
+                }
+                // sorted to acquire the unique index locks in the same order on all nodes
+                Collections.sort(newKeys);
+                jdbcTemplate.update(INSERT_KEYS, ps -> setKeysArray(ps, newKeys));
+                found.putAll(findKeyIds(newKeys));
+            }
+            for (String key : missingKeys) {
+                Integer keyId = found.get(key);
+                if (keyId == null) {
+                    throw new RuntimeException("Failed to get TsKvDictionary entity from DB!");
+                }
+                keyIds.putIfAbsent(key, keyId);
+                result.put(key, keyId);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Integer> findKeyIds(List<String> keys) {
+        Map<String, Integer> found = new HashMap<>(keys.size());
+        jdbcTemplate.query(SELECT_BY_KEYS, ps -> setKeysArray(ps, keys), rs -> {
+            found.put(rs.getString(1), rs.getInt(2));
+        });
+        return found;
+    }
+
+    private static void setKeysArray(PreparedStatement ps, List<String> keys) throws SQLException {
+        ps.setArray(1, ps.getConnection().createArrayOf("varchar", keys.toArray()));
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Streams a batch of timeseries entities with the PostgreSQL binary COPY protocol into a temporary staging table.
+ * The staging table is created once per physical connection and cleared on commit, so the batch must be copied and merged
+ * into the target table within the same transaction.
+ */
+public abstract class AbstractCopyInsertRepository extends AbstractInsertRepository {
+
+    private static final byte[] BINARY_COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short STAGING_TABLE_COLUMNS = 9;
+    private static final int ESTIMATED_ROW_SIZE = 80;
+
+    protected static final String STAGING_TABLE_COLUMNS_DEFINITION = "(seq int NOT NULL, entity_id uuid NOT NULL, key int NOT NULL, ts bigint NOT NULL, " +
+            "bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json) ON COMMIT DELETE ROWS";
+
+    // Physical connections that already have the staging table of this repository
+    private final Set<PGConnection> stagingTableConnections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    protected void copyToStagingTable(String stagingTable, List<? extends AbstractTsKvEntity> entities) {
+        byte[] data = toBinaryCopyData(entities);
+        String copyQuery = "COPY " + stagingTable + " FROM STDIN (FORMAT BINARY)";
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            createStagingTableIfNeeded(connection, pgConnection, stagingTable);
+            try {
+                return pgConnection.getCopyAPI().copyIn(copyQuery, new ByteArrayInputStream(data));
+            } catch (IOException e) {
+                throw new SQLException("Failed to copy entities to " + stagingTable, e);
+            }
+        });
+    }
+
+    private void createStagingTableIfNeeded(Connection connection, PGConnection pgConnection, String stagingTable) throws SQLException {
+        if (!stagingTableConnections.add(pgConnection)) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + stagingTable + " " + STAGING_TABLE_COLUMNS_DEFINITION);
+        } catch (SQLException e) {
+            stagingTableConnections.remove(pgConnection);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the table is dropped together with the transaction that created it on rollback
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stagingTableConnections.remove(pgConnection);
+                    }
+                }
+            });
+        }
+    }
+
+    private byte[] toBinaryCopyData(List<? extends AbstractTsKvEntity> entities) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BINARY_COPY_SIGNATURE.length + 10 + entities.size() * ESTIMATED_ROW_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(BINARY_COPY_SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+            for (int i = 0; i < entities.size(); i++) {
+                AbstractTsKvEntity entity = entities.get(i);
+                out.writeShort(STAGING_TABLE_COLUMNS);
+                writeInt(out, i);
+                writeUuid(out, entity.getEntityId());
+                writeInt(out, entity.getKey());
+                writeLong(out, entity.getTs());
+                writeBoolean(out, entity.getBooleanValue());
+                writeString(out, replaceNullChars(entity.getStrValue()));
+                writeLong(out, entity.getLongValue());
+                writeDouble(out, entity.getDoubleValue());
+                writeString(out, replaceNullChars(entity.getJsonValue()));
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize entities for copy", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(Integer.BYTES);
+        out.writeInt(value);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeInt(2 * Long.BYTES);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(Long.BYTES);
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(Double.BYTES);
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(1);
+            out.writeBoolean(value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+}
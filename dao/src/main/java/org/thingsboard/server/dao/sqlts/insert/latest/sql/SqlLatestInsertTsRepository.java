@@ -16,6 +16,7 @@
 package org.thingsboard.server.dao.sqlts.insert.latest.sql;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.TransactionStatus;
@@ -38,6 +39,7 @@ import java.util.List;
 @Repository
 @Transactional
 @SqlDao
+@ConditionalOnProperty(prefix = "sql.ts", value = "insert_strategy", havingValue = "batch", matchIfMissing = true)
 public class SqlLatestInsertTsRepository extends AbstractInsertRepository implements InsertLatestTsRepository {
 
     @Value("${sql.ts_latest.update_by_latest_ts:true}")
@@ -0,0 +1,465 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hourly and daily min/max/sum/count rollups of the ts_kv table.
+ * The aggregation queries with the interval aligned to the rollup granularity read one row per hour or day instead of all raw values.
+ * <p>
+ * Each saved batch is folded into the hourly and daily rollups it touches (the counts and sums are added, the min and max are merged)
+ * in the same transaction as the raw insert. Only the hours that already had a raw value at one of the saved timestamps are
+ * recalculated from the raw ts_kv values, and their days from the hourly rollups, so the overwritten values are not counted twice.
+ * <p>
+ * The saves and removals of the same entity key are serialized with a transaction-level advisory lock,
+ * so a removal never rebuilds the rollups in the middle of a concurrent fold.
+ * <p>
+ * The ts_kv_rollup_coverage table keeps the day-aligned start time of the rollups of each entity key. The coverage starts
+ * from the day of the first value saved after the rollups were enabled, the older data is aggregated from the raw values.
+ */
+@Slf4j
+@Repository
+@ConditionalOnExpression("('${database.ts.type}'=='sql' || '${database.ts.type}'=='timescale') && '${sql.ts.rollup.enabled:false}'=='true'")
+public class TsKvRollupRepository extends AbstractInsertRepository {
+
+    public static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    public static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // from the largest to the smallest, the first suitable granularity is used to answer the query
+    private static final long[] GRANULARITIES = {DAY, HOUR};
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS ts_kv_rollup (" +
+            "entity_id uuid NOT NULL, key int NOT NULL, granularity bigint NOT NULL, ts bigint NOT NULL, " +
+            "bool_count bigint NOT NULL DEFAULT 0, str_count bigint NOT NULL DEFAULT 0, long_count bigint NOT NULL DEFAULT 0, " +
+            "dbl_count bigint NOT NULL DEFAULT 0, json_count bigint NOT NULL DEFAULT 0, " +
+            "long_min bigint, long_max bigint, long_sum bigint NOT NULL DEFAULT 0, " +
+            "dbl_min double precision, dbl_max double precision, dbl_sum double precision NOT NULL DEFAULT 0, " +
+            "str_min varchar(10000000), str_max varchar(10000000), max_ts bigint NOT NULL, " +
+            "CONSTRAINT ts_kv_rollup_pkey PRIMARY KEY (entity_id, key, granularity, ts));";
+
+    private static final String CREATE_COVERAGE_TABLE = "CREATE TABLE IF NOT EXISTS ts_kv_rollup_coverage (" +
+            "entity_id uuid NOT NULL, key int NOT NULL, start_ts bigint NOT NULL, " +
+            "CONSTRAINT ts_kv_rollup_coverage_pkey PRIMARY KEY (entity_id, key));";
+
+    private static final String COLUMNS = "entity_id, key, granularity, ts, bool_count, str_count, long_count, dbl_count, json_count, " +
+            "long_min, long_max, long_sum, dbl_min, dbl_max, dbl_sum, str_min, str_max, max_ts";
+
+    private static final String ON_CONFLICT_DO_UPDATE = " ON CONFLICT (entity_id, key, granularity, ts) DO UPDATE SET " +
+            "bool_count = excluded.bool_count, str_count = excluded.str_count, long_count = excluded.long_count, " +
+            "dbl_count = excluded.dbl_count, json_count = excluded.json_count, " +
+            "long_min = excluded.long_min, long_max = excluded.long_max, long_sum = excluded.long_sum, " +
+            "dbl_min = excluded.dbl_min, dbl_max = excluded.dbl_max, dbl_sum = excluded.dbl_sum, " +
+            "str_min = excluded.str_min, str_max = excluded.str_max, max_ts = excluded.max_ts;";
+
+    private static final String ON_CONFLICT_DO_MERGE = " ON CONFLICT (entity_id, key, granularity, ts) DO UPDATE SET " +
+            "bool_count = ts_kv_rollup.bool_count + excluded.bool_count, str_count = ts_kv_rollup.str_count + excluded.str_count, " +
+            "long_count = ts_kv_rollup.long_count + excluded.long_count, dbl_count = ts_kv_rollup.dbl_count + excluded.dbl_count, " +
+            "json_count = ts_kv_rollup.json_count + excluded.json_count, " +
+            "long_min = LEAST(ts_kv_rollup.long_min, excluded.long_min), long_max = GREATEST(ts_kv_rollup.long_max, excluded.long_max), " +
+            "long_sum = ts_kv_rollup.long_sum + excluded.long_sum, " +
+            "dbl_min = LEAST(ts_kv_rollup.dbl_min, excluded.dbl_min), dbl_max = GREATEST(ts_kv_rollup.dbl_max, excluded.dbl_max), " +
+            "dbl_sum = ts_kv_rollup.dbl_sum + excluded.dbl_sum, " +
+            "str_min = LEAST(ts_kv_rollup.str_min, excluded.str_min), str_max = GREATEST(ts_kv_rollup.str_max, excluded.str_max), " +
+            "max_ts = GREATEST(ts_kv_rollup.max_ts, excluded.max_ts);";
+
+    private static final String FOLD_HOURS = foldQuery(HOUR);
+
+    private static final String FOLD_DAYS = foldQuery(DAY);
+
+    private static final String LOCK_KEYS = "SELECT pg_advisory_xact_lock(k) FROM unnest(?) AS k";
+
+    private static final String FIND_EXISTING_HOURS = "SELECT DISTINCT t.entity_id, t.key, t.ts - t.ts % " + HOUR + " FROM ts_kv t " +
+            "JOIN unnest(?, ?, ?) AS v(entity_id, key, ts) ON t.entity_id = v.entity_id AND t.key = v.key AND t.ts = v.ts";
+
+    private static final String UPDATE_HOURS_FROM_TS_KV = "INSERT INTO ts_kv_rollup (" + COLUMNS + ") " +
+            "SELECT entity_id, key, " + HOUR + ", ts - ts % " + HOUR + " AS bucket, count(bool_v), count(str_v), count(long_v), count(dbl_v), count(json_v), " +
+            "min(long_v), max(long_v), coalesce(sum(long_v), 0), min(dbl_v), max(dbl_v), coalesce(sum(dbl_v), 0), min(str_v), max(str_v), max(ts) " +
+            "FROM ts_kv WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ? GROUP BY entity_id, key, bucket" + ON_CONFLICT_DO_UPDATE;
+
+    private static final String UPDATE_DAYS_FROM_HOURS = "INSERT INTO ts_kv_rollup (" + COLUMNS + ") " +
+            "SELECT entity_id, key, " + DAY + ", ts - ts % " + DAY + " AS bucket, sum(bool_count), sum(str_count), sum(long_count), sum(dbl_count), sum(json_count), " +
+            "min(long_min), max(long_max), sum(long_sum), min(dbl_min), max(dbl_max), sum(dbl_sum), min(str_min), max(str_max), max(max_ts) " +
+            "FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND granularity = " + HOUR + " AND ts >= ? AND ts < ? " +
+            "GROUP BY entity_id, key, bucket" + ON_CONFLICT_DO_UPDATE;
+
+    private static final String DELETE_RANGE = "DELETE FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ?";
+
+    private static final String INSERT_COVERAGE = "INSERT INTO ts_kv_rollup_coverage (entity_id, key, start_ts) " +
+            "SELECT * FROM unnest(?, ?, ?) ON CONFLICT (entity_id, key) DO NOTHING RETURNING entity_id, key, start_ts";
+
+    private static final String FIND_COVERAGE = "SELECT start_ts FROM ts_kv_rollup_coverage WHERE entity_id = ? AND key = ?";
+
+    private static final String FIND_BY_BUCKETS = "SELECT ? + ((ts - ?) / ?) * ? AS bucket, " +
+            "sum(bool_count), sum(str_count), sum(long_count), sum(dbl_count), sum(json_count), " +
+            "min(long_min), max(long_max), sum(long_sum), min(dbl_min), max(dbl_max), sum(dbl_sum), " +
+            "min(str_min), max(str_max), max(max_ts) " +
+            "FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND granularity = ? AND ts >= ? AND ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    // the raw values older than the first remaining one were removed by TTL, so the coverage moves to the next day after it
+    private static final String UPDATE_COVERAGE_BY_TS_KV = "WITH bounds AS (SELECT c.entity_id, c.key, " +
+            "(SELECT min(t.ts) FROM ts_kv t WHERE t.entity_id = c.entity_id AND t.key = c.key) AS min_ts FROM ts_kv_rollup_coverage c) " +
+            "UPDATE ts_kv_rollup_coverage c SET start_ts = GREATEST(c.start_ts, (b.min_ts + " + (DAY - 1) + ") / " + DAY + " * " + DAY + ") " +
+            "FROM bounds b WHERE c.entity_id = b.entity_id AND c.key = b.key AND b.min_ts IS NOT NULL";
+
+    private static final String DELETE_EMPTY_COVERAGE = "DELETE FROM ts_kv_rollup_coverage c " +
+            "WHERE NOT EXISTS (SELECT 1 FROM ts_kv t WHERE t.entity_id = c.entity_id AND t.key = c.key)";
+
+    private static final String DELETE_NOT_COVERED = "DELETE FROM ts_kv_rollup r WHERE NOT EXISTS " +
+            "(SELECT 1 FROM ts_kv_rollup_coverage c WHERE c.entity_id = r.entity_id AND c.key = r.key AND c.start_ts <= r.ts)";
+
+    @PostConstruct
+    private void init() {
+        jdbcTemplate.execute(CREATE_TABLE);
+        jdbcTemplate.execute(CREATE_COVERAGE_TABLE);
+    }
+
+    /**
+     * Returns the largest rollup granularity that can answer the aggregation query
+     * with the given start time and interval, or 0 if there is none.
+     */
+    public long getGranularity(long startTs, long interval) {
+        for (long granularity : GRANULARITIES) {
+            if (interval % granularity == 0 && startTs % granularity == 0) {
+                return granularity;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Saves the raw values with the insert function and updates the affected rollups in the same transaction.
+     */
+    public void saveOrUpdate(List<? extends AbstractTsKvEntity> entities, Runnable insertFunction) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // the last value of the same timestamp in the batch is the one that stays in ts_kv
+            Map<PointKey, AbstractTsKvEntity> points = new LinkedHashMap<>();
+            Map<CoverageKey, Long> minTsByKey = new HashMap<>();
+            for (AbstractTsKvEntity entity : entities) {
+                points.put(new PointKey(entity.getEntityId(), entity.getKey(), entity.getTs()), entity);
+                minTsByKey.merge(new CoverageKey(entity.getEntityId(), entity.getKey()), entity.getTs(), Math::min);
+            }
+            lock(minTsByKey.keySet());
+            List<Map.Entry<CoverageKey, Long>> newCoverage = insertCoverage(minTsByKey);
+            Set<CoverageKey> newKeys = new HashSet<>();
+            newCoverage.forEach(coverage -> newKeys.add(coverage.getKey()));
+            List<AbstractTsKvEntity> folded = new ArrayList<>();
+            for (AbstractTsKvEntity entity : points.values()) {
+                if (!newKeys.contains(new CoverageKey(entity.getEntityId(), entity.getKey()))) {
+                    folded.add(entity);
+                }
+            }
+            Set<RollupKey> dirtyHours = folded.isEmpty() ? Collections.emptySet() : findExistingHours(folded);
+            insertFunction.run();
+            for (Map.Entry<CoverageKey, Long> coverage : newCoverage) {
+                // the first values of the key since the rollups are enabled, the older values of the same day are rolled up as well
+                rebuild(coverage.getKey().getEntityId(), coverage.getKey().getKey(), coverage.getValue(), Long.MAX_VALUE);
+            }
+            if (!folded.isEmpty()) {
+                update(folded, dirtyHours);
+            }
+        });
+    }
+
+    /**
+     * Removes the raw values with the remove function and rebuilds the rollups of the removed time range in the same transaction.
+     */
+    public void remove(UUID entityId, int keyId, long startTs, long endTs, Runnable removeFunction) {
+        transactionTemplate.executeWithoutResult(status -> {
+            lock(Collections.singleton(new CoverageKey(entityId, keyId)));
+            removeFunction.run();
+            rebuild(entityId, keyId, alignDown(startTs, DAY), alignUp(endTs, DAY));
+        });
+    }
+
+    /**
+     * Returns the start time of the rollups of the entity key or null if the key has no rollups.
+     */
+    public Long findCoveredStartTs(UUID entityId, int keyId) {
+        List<Long> startTs = jdbcTemplate.queryForList(FIND_COVERAGE, Long.class, entityId, keyId);
+        return startTs.isEmpty() ? null : startTs.get(0);
+    }
+
+    public List<TsKvEntity> findAllAndAggregate(UUID entityId, int keyId, long granularity, long timeBucket,
+                                                long startTs, long endTs, Aggregation aggregation) {
+        return jdbcTemplate.query(FIND_BY_BUCKETS, (rs, rowNum) -> toEntity(rs, timeBucket, aggregation),
+                startTs, startTs, timeBucket, timeBucket, entityId, keyId, granularity, startTs, endTs);
+    }
+
+    /**
+     * Moves the coverage of each key after its first remaining raw value and removes the rollups outside the coverage.
+     * The raw values are removed first by the system, tenant or customer TTL, so the rollups follow any of them.
+     */
+    public int cleanup() {
+        jdbcTemplate.update(UPDATE_COVERAGE_BY_TS_KV);
+        jdbcTemplate.update(DELETE_EMPTY_COVERAGE);
+        return jdbcTemplate.update(DELETE_NOT_COVERED);
+    }
+
+    /**
+     * Folds the values into the rollups of the hours and days that were not touched before
+     * and recalculates the hours that had a raw value overwritten, and their days.
+     */
+    private void update(List<AbstractTsKvEntity> entities, Set<RollupKey> dirtyHours) {
+        Set<RollupKey> dirtyDays = new LinkedHashSet<>();
+        for (RollupKey hour : dirtyHours) {
+            dirtyDays.add(new RollupKey(hour.getEntityId(), hour.getKey(), DAY, alignDown(hour.getTs(), DAY)));
+        }
+        List<AbstractTsKvEntity> hourValues = new ArrayList<>();
+        List<AbstractTsKvEntity> dayValues = new ArrayList<>();
+        for (AbstractTsKvEntity entity : entities) {
+            if (!dirtyHours.contains(new RollupKey(entity.getEntityId(), entity.getKey(), HOUR, alignDown(entity.getTs(), HOUR)))) {
+                hourValues.add(entity);
+            }
+            if (!dirtyDays.contains(new RollupKey(entity.getEntityId(), entity.getKey(), DAY, alignDown(entity.getTs(), DAY)))) {
+                dayValues.add(entity);
+            }
+        }
+        fold(FOLD_HOURS, hourValues);
+        if (!dirtyHours.isEmpty()) {
+            updateBuckets(UPDATE_HOURS_FROM_TS_KV, new ArrayList<>(dirtyHours));
+        }
+        fold(FOLD_DAYS, dayValues);
+        if (!dirtyDays.isEmpty()) {
+            updateBuckets(UPDATE_DAYS_FROM_HOURS, new ArrayList<>(dirtyDays));
+        }
+    }
+
+    /**
+     * Takes the transaction-level advisory locks of the entity keys in a stable order, so two transactions never wait for each other.
+     * A hash collision of two keys only serializes their updates.
+     */
+    private void lock(Set<CoverageKey> keys) {
+        Long[] lockIds = keys.stream().map(TsKvRollupRepository::toLockId).sorted().distinct().toArray(Long[]::new);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(LOCK_KEYS);
+            ps.setArray(1, connection.createArrayOf("int8", lockIds));
+            return ps;
+        }, rs -> {});
+    }
+
+    private Set<RollupKey> findExistingHours(List<AbstractTsKvEntity> entities) {
+        UUID[] entityIds = new UUID[entities.size()];
+        Integer[] keyIds = new Integer[entities.size()];
+        Long[] ts = new Long[entities.size()];
+        for (int i = 0; i < entities.size(); i++) {
+            AbstractTsKvEntity entity = entities.get(i);
+            entityIds[i] = entity.getEntityId();
+            keyIds[i] = entity.getKey();
+            ts[i] = entity.getTs();
+        }
+        return new LinkedHashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(FIND_EXISTING_HOURS);
+            ps.setArray(1, connection.createArrayOf("uuid", entityIds));
+            ps.setArray(2, connection.createArrayOf("int4", keyIds));
+            ps.setArray(3, connection.createArrayOf("int8", ts));
+            return ps;
+        }, (rs, rowNum) -> new RollupKey(rs.getObject(1, UUID.class), rs.getInt(2), HOUR, rs.getLong(3))));
+    }
+
+    private void fold(String query, List<AbstractTsKvEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        int size = entities.size();
+        UUID[] entityIds = new UUID[size];
+        Integer[] keyIds = new Integer[size];
+        Long[] ts = new Long[size];
+        Boolean[] boolValues = new Boolean[size];
+        String[] strValues = new String[size];
+        Long[] longValues = new Long[size];
+        Double[] doubleValues = new Double[size];
+        String[] jsonValues = new String[size];
+        for (int i = 0; i < size; i++) {
+            AbstractTsKvEntity entity = entities.get(i);
+            entityIds[i] = entity.getEntityId();
+            keyIds[i] = entity.getKey();
+            ts[i] = entity.getTs();
+            boolValues[i] = entity.getBooleanValue();
+            strValues[i] = replaceNullChars(entity.getStrValue());
+            longValues[i] = entity.getLongValue();
+            doubleValues[i] = entity.getDoubleValue();
+            // only counted, the value itself is not rolled up
+            jsonValues[i] = entity.getJsonValue() != null ? "" : null;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setArray(1, connection.createArrayOf("uuid", entityIds));
+            ps.setArray(2, connection.createArrayOf("int4", keyIds));
+            ps.setArray(3, connection.createArrayOf("int8", ts));
+            ps.setArray(4, connection.createArrayOf("bool", boolValues));
+            ps.setArray(5, connection.createArrayOf("varchar", strValues));
+            ps.setArray(6, connection.createArrayOf("int8", longValues));
+            ps.setArray(7, connection.createArrayOf("float8", doubleValues));
+            ps.setArray(8, connection.createArrayOf("varchar", jsonValues));
+            return ps;
+        });
+    }
+
+    private List<Map.Entry<CoverageKey, Long>> insertCoverage(Map<CoverageKey, Long> minTsByKey) {
+        List<Map.Entry<CoverageKey, Long>> keys = new ArrayList<>(minTsByKey.entrySet());
+        UUID[] entityIds = new UUID[keys.size()];
+        Integer[] keyIds = new Integer[keys.size()];
+        Long[] startTs = new Long[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            entityIds[i] = keys.get(i).getKey().getEntityId();
+            keyIds[i] = keys.get(i).getKey().getKey();
+            startTs[i] = alignDown(keys.get(i).getValue(), DAY);
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_COVERAGE);
+            ps.setArray(1, connection.createArrayOf("uuid", entityIds));
+            ps.setArray(2, connection.createArrayOf("int4", keyIds));
+            ps.setArray(3, connection.createArrayOf("int8", startTs));
+            return ps;
+        }, (rs, rowNum) -> Map.entry(new CoverageKey(rs.getObject(1, UUID.class), rs.getInt(2)), rs.getLong(3)));
+    }
+
+    private void updateBuckets(String query, List<RollupKey> buckets) {
+        jdbcTemplate.batchUpdate(query, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                RollupKey bucket = buckets.get(i);
+                ps.setObject(1, bucket.getEntityId());
+                ps.setInt(2, bucket.getKey());
+                ps.setLong(3, bucket.getTs());
+                ps.setLong(4, bucket.getTs() + bucket.getGranularity());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return buckets.size();
+            }
+        });
+    }
+
+    /**
+     * Recalculates the rollups of the day-aligned time range from the raw ts_kv values.
+     */
+    private void rebuild(UUID entityId, int keyId, long startTs, long endTs) {
+        jdbcTemplate.update(DELETE_RANGE, entityId, keyId, startTs, endTs);
+        jdbcTemplate.update(UPDATE_HOURS_FROM_TS_KV, entityId, keyId, startTs, endTs);
+        jdbcTemplate.update(UPDATE_DAYS_FROM_HOURS, entityId, keyId, startTs, endTs);
+    }
+
+    private static String foldQuery(long granularity) {
+        return "INSERT INTO ts_kv_rollup (" + COLUMNS + ") " +
+                "SELECT entity_id, key, " + granularity + ", ts - ts % " + granularity + " AS bucket, " +
+                "count(bool_v), count(str_v), count(long_v), count(dbl_v), count(json_v), " +
+                "min(long_v), max(long_v), coalesce(sum(long_v), 0), min(dbl_v), max(dbl_v), coalesce(sum(dbl_v), 0), min(str_v), max(str_v), max(ts) " +
+                "FROM unnest(?, ?, ?, ?, ?, ?, ?, ?) AS v(entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+                "GROUP BY entity_id, key, bucket" + ON_CONFLICT_DO_MERGE;
+    }
+
+    private static long toLockId(CoverageKey key) {
+        return 31 * (31 * key.getEntityId().getMostSignificantBits() + key.getEntityId().getLeastSignificantBits()) + key.getKey();
+    }
+
+    private static long alignDown(long ts, long granularity) {
+        return ts - ts % granularity;
+    }
+
+    private static long alignUp(long ts, long granularity) {
+        long aligned = alignDown(ts, granularity);
+        if (aligned == ts) {
+            return ts;
+        }
+        return aligned > Long.MAX_VALUE - granularity ? Long.MAX_VALUE : aligned + granularity;
+    }
+
+    private TsKvEntity toEntity(ResultSet rs, long timeBucket, Aggregation aggregation) throws SQLException {
+        long bucket = rs.getLong(1);
+        long boolCount = rs.getLong(2);
+        long strCount = rs.getLong(3);
+        long longCount = rs.getLong(4);
+        long doubleCount = rs.getLong(5);
+        long jsonCount = rs.getLong(6);
+        Long maxTs = rs.getLong(15);
+        switch (aggregation) {
+            case COUNT:
+                return new TsKvEntity(bucket, timeBucket, boolCount, strCount, longCount, doubleCount, jsonCount, maxTs);
+            case MIN:
+                return new TsKvEntity(bucket, timeBucket, getLong(rs, 7), getDouble(rs, 10), longCount, doubleCount,
+                        rs.getString(13), aggregation.name(), maxTs);
+            case MAX:
+                return new TsKvEntity(bucket, timeBucket, getLong(rs, 8), getDouble(rs, 11), longCount, doubleCount,
+                        rs.getString(14), aggregation.name(), maxTs);
+            case AVG:
+            case SUM:
+                return new TsKvEntity(bucket, timeBucket, longCount > 0 ? rs.getLong(9) : null, doubleCount > 0 ? rs.getDouble(12) : null,
+                        longCount, doubleCount, null, aggregation.name(), maxTs);
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static Long getLong(ResultSet rs, int columnIndex) throws SQLException {
+        long value = rs.getLong(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getDouble(ResultSet rs, int columnIndex) throws SQLException {
+        double value = rs.getDouble(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    @Data
+    private static class RollupKey {
+        private final UUID entityId;
+        private final int key;
+        private final long granularity;
+        private final long ts;
+    }
+
+    @Data
+    private static class PointKey {
+        private final UUID entityId;
+        private final int key;
+        private final long ts;
+    }
+
+    @Data
+    private static class CoverageKey {
+        private final UUID entityId;
+        private final int key;
+    }
+
+}
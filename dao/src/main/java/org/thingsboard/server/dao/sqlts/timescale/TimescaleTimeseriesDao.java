@@ -80,14 +80,23 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts.timescale")
                 .batchSortEnabled(batchSortEnabled)
+                .maxQueueSize(tsMaxQueueSize)
+                .batchSizeAdaptive(tsBatchSizeAdaptive)
                 .build();
 
         Function<TimescaleTsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
         tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, hashcodeFunction, timescaleBatchThreads, statsFactory);
 
-        tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v),
+        tsQueue.init(logExecutor, v -> {
+                    resolveKeyIds(v);
+                    if (rollupRepository != null) {
+                        rollupRepository.saveOrUpdate(v, () -> insertRepository.saveOrUpdate(v));
+                    } else {
+                        insertRepository.saveOrUpdate(v);
+                    }
+                },
                 Comparator.comparing((Function<TimescaleTsKvEntity, UUID>) AbstractTsKvEntity::getEntityId)
-                        .thenComparing(AbstractTsKvEntity::getKey)
+                        .thenComparing(AbstractTsKvEntity::getStrKey)
                         .thenComparing(AbstractTsKvEntity::getTs)
         );
     }
@@ -107,12 +116,10 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
     @Override
     public ListenableFuture<Integer> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         int dataPointDays = getDataPointDays(tsKvEntry, computeTtl(ttl));
-        String strKey = tsKvEntry.getKey();
-        Integer keyId = getOrSaveKeyId(strKey);
         TimescaleTsKvEntity entity = new TimescaleTsKvEntity();
         entity.setEntityId(entityId.getId());
         entity.setTs(tsKvEntry.getTs());
-        entity.setKey(keyId);
+        entity.setStrKey(tsKvEntry.getKey());
         entity.setStrValue(tsKvEntry.getStrValue().orElse(null));
         entity.setDoubleValue(tsKvEntry.getDoubleValue().orElse(null));
         entity.setLongValue(tsKvEntry.getLongValue().orElse(null));
@@ -132,11 +139,16 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         String strKey = query.getKey();
         Integer keyId = getOrSaveKeyId(strKey);
         return service.submit(() -> {
-            tsKvRepository.delete(
+            Runnable removeFunction = () -> tsKvRepository.delete(
                     entityId.getId(),
                     keyId,
                     query.getStartTs(),
                     query.getEndTs());
+            if (rollupRepository != null) {
+                rollupRepository.remove(entityId.getId(), keyId, query.getStartTs(), query.getEndTs(), removeFunction);
+            } else {
+                removeFunction.run();
+            }
             return null;
         });
     }
@@ -149,7 +161,13 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
             long startTs = query.getStartTs();
             long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
             long timeBucket = query.getInterval();
-            List<Optional<? extends AbstractTsKvEntity>> data = findAllAndAggregateAsync(entityId, query.getKey(), startTs, endTs, timeBucket, query.getAggregation());
+            long rollupGranularity = getRollupGranularity(startTs, timeBucket);
+            List<Optional<? extends AbstractTsKvEntity>> data;
+            if (rollupGranularity > 0) {
+                data = findAllAndAggregateByRollups(entityId, query.getKey(), startTs, endTs, timeBucket, rollupGranularity, query.getAggregation());
+            } else {
+                data = findAllAndAggregate(entityId, query.getKey(), startTs, endTs, timeBucket, query.getAggregation());
+            }
             return getReadTsKvQueryResultFuture(query, Futures.immediateFuture(data));
         }
     }
@@ -174,7 +192,8 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         return new ReadTsKvQueryResult(query.getId(), tsKvEntries, lastTs);
     }
 
-    private List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long timeBucket, Aggregation aggregation) {
+    @Override
+    protected List<Optional<? extends AbstractTsKvEntity>> findAllAndAggregate(EntityId entityId, String key, long startTs, long endTs, long timeBucket, Aggregation aggregation) {
         long interval = endTs - startTs;
         long remainingPart = interval % timeBucket;
         List<TimescaleTsKvEntity> timescaleTsKvEntities;
@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.ts;
+
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Computes all aggregation buckets of the requested interval with a single query instead of a query per bucket.
+ * Buckets are aligned to the start of the interval: bucket = startTs + floor((ts - startTs) / timeBucket) * timeBucket.
+ * */
+@Repository
+@SqlTsDao
+public class TsKvAggregationRepository {
+
+    public static final String FIND_AVG_BY_BUCKETS = "findAvgByBuckets";
+    public static final String FIND_MAX_BY_BUCKETS = "findMaxByBuckets";
+    public static final String FIND_MIN_BY_BUCKETS = "findMinByBuckets";
+    public static final String FIND_SUM_BY_BUCKETS = "findSumByBuckets";
+    public static final String FIND_COUNT_BY_BUCKETS = "findCountByBuckets";
+
+    public static final String TS_BUCKET = "(:startTs + ((tskv.ts - :startTs) / :timeBucket) * :timeBucket)";
+
+    public static final String FROM_WHERE_CLAUSE = "FROM ts_kv tskv WHERE " +
+            "tskv.entity_id = cast(:entityId AS uuid) " +
+            "AND tskv.key= cast(:entityKey AS int) " +
+            "AND tskv.ts >= :startTs AND tskv.ts < :endTs " +
+            "GROUP BY tsBucket " +
+            "ORDER BY tsBucket";
+
+    public static final String FIND_AVG_BY_BUCKETS_QUERY = "SELECT " +
+            TS_BUCKET + " AS tsBucket, :timeBucket AS interval, " +
+            "SUM(COALESCE(tskv.long_v, 0)) AS longValue, " +
+            "SUM(COALESCE(tskv.dbl_v, 0.0)) AS doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "null AS strValue, 'AVG' AS aggType, MAX(tskv.ts) AS maxAggTs ";
+
+    public static final String FIND_MAX_BY_BUCKETS_QUERY = "SELECT " +
+            TS_BUCKET + " AS tsBucket, :timeBucket AS interval, " +
+            "MAX(COALESCE(tskv.long_v, -9223372036854775807)) AS longValue, " +
+            "MAX(COALESCE(tskv.dbl_v, -1.79769E+308)) as doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "MAX(tskv.str_v) AS strValue, 'MAX' AS aggType, MAX(tskv.ts) AS maxAggTs ";
+
+    public static final String FIND_MIN_BY_BUCKETS_QUERY = "SELECT " +
+            TS_BUCKET + " AS tsBucket, :timeBucket AS interval, " +
+            "MIN(COALESCE(tskv.long_v, 9223372036854775807)) AS longValue, " +
+            "MIN(COALESCE(tskv.dbl_v, 1.79769E+308)) as doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "MIN(tskv.str_v) AS strValue, 'MIN' AS aggType, MAX(tskv.ts) AS maxAggTs ";
+
+    public static final String FIND_SUM_BY_BUCKETS_QUERY = "SELECT " +
+            TS_BUCKET + " AS tsBucket, :timeBucket AS interval, " +
+            "SUM(COALESCE(tskv.long_v, 0)) AS longValue, SUM(COALESCE(tskv.dbl_v, 0.0)) AS doubleValue, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, " +
+            "null AS strValue, 'SUM' AS aggType, MAX(tskv.ts) AS maxAggTs ";
+
+    public static final String FIND_COUNT_BY_BUCKETS_QUERY = "SELECT " +
+            TS_BUCKET + " AS tsBucket, :timeBucket AS interval, " +
+            "SUM(CASE WHEN tskv.bool_v IS NULL THEN 0 ELSE 1 END) AS booleanValueCount, " +
+            "SUM(CASE WHEN tskv.str_v IS NULL THEN 0 ELSE 1 END) AS strValueCount, " +
+            "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS longValueCount, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleValueCount, " +
+            "SUM(CASE WHEN tskv.json_v IS NULL THEN 0 ELSE 1 END) AS jsonValueCount, " +
+            "MAX(tskv.ts) AS maxAggTs ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public List<TsKvEntity> findAvg(UUID entityId, int entityKey, long timeBucket, long startTs, long endTs) {
+        return getResultList(entityId, entityKey, timeBucket, startTs, endTs, FIND_AVG_BY_BUCKETS);
+    }
+
+    public List<TsKvEntity> findMax(UUID entityId, int entityKey, long timeBucket, long startTs, long endTs) {
+        return getResultList(entityId, entityKey, timeBucket, startTs, endTs, FIND_MAX_BY_BUCKETS);
+    }
+
+    public List<TsKvEntity> findMin(UUID entityId, int entityKey, long timeBucket, long startTs, long endTs) {
+        return getResultList(entityId, entityKey, timeBucket, startTs, endTs, FIND_MIN_BY_BUCKETS);
+    }
+
+    public List<TsKvEntity> findSum(UUID entityId, int entityKey, long timeBucket, long startTs, long endTs) {
+        return getResultList(entityId, entityKey, timeBucket, startTs, endTs, FIND_SUM_BY_BUCKETS);
+    }
+
+    public List<TsKvEntity> findCount(UUID entityId, int entityKey, long timeBucket, long startTs, long endTs) {
+        return getResultList(entityId, entityKey, timeBucket, startTs, endTs, FIND_COUNT_BY_BUCKETS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TsKvEntity> getResultList(UUID entityId, int entityKey, long timeBucket, long startTs, long endTs, String query) {
+        return entityManager.createNamedQuery(query)
+                .setParameter("entityId", entityId)
+                .setParameter("entityKey", entityKey)
+                .setParameter("timeBucket", timeBucket)
+                .setParameter("startTs", startTs)
+                .setParameter("endTs", endTs)
+                .getResultList();
+    }
+
+}
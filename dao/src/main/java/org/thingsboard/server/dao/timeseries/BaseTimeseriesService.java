@@ -43,6 +43,8 @@ import org.thingsboard.server.dao.entityview.EntityViewService;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.service.Validator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -89,6 +91,9 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Autowired
     private EntityViewService entityViewService;
 
+    @Autowired(required = false)
+    private TsHotWindowCache hotWindowCache;
+
     @Override
     public ListenableFuture<List<ReadTsKvQueryResult>> findAllByQueries(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
         validate(entityId);
@@ -101,9 +106,40 @@ public class BaseTimeseriesService implements TimeseriesService {
                     queries.stream()
                             .filter(query -> keys.isEmpty() || keys.contains(query.getKey()))
                             .collect(Collectors.toList());
-            return timeseriesDao.findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
+            return findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
+        }
+        return findAllAsync(tenantId, entityId, queries);
+    }
+
+    private ListenableFuture<List<ReadTsKvQueryResult>> findAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        if (hotWindowCache == null) {
+            return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        }
+        // the results keep the order of the queries, the DAO results are merged back into the slots of their queries
+        ReadTsKvQueryResult[] results = new ReadTsKvQueryResult[queries.size()];
+        List<ReadTsKvQuery> daoQueries = new ArrayList<>(queries.size());
+        List<Integer> daoIndexes = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            ReadTsKvQuery query = queries.get(i);
+            ReadTsKvQueryResult result = hotWindowCache.find(entityId, query);
+            if (result != null) {
+                results[i] = result;
+            } else {
+                daoQueries.add(query);
+                daoIndexes.add(i);
+            }
+        }
+        if (daoQueries.isEmpty()) {
+            return Futures.immediateFuture(Arrays.asList(results));
+        } else if (daoQueries.size() == queries.size()) {
+            return timeseriesDao.findAllAsync(tenantId, entityId, daoQueries);
         }
-        return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        return Futures.transform(timeseriesDao.findAllAsync(tenantId, entityId, daoQueries), daoResults -> {
+            for (int i = 0; i < daoResults.size(); i++) {
+                results[daoIndexes.get(i)] = daoResults.get(i);
+            }
+            return Arrays.asList(results);
+        }, MoreExecutors.directExecutor());
     }
 
     @Override
@@ -216,7 +252,14 @@ public class BaseTimeseriesService implements TimeseriesService {
             throw new IncorrectParameterException("Telemetry data can't be stored for entity view. Read only");
         }
         futures.add(timeseriesDao.savePartition(tenantId, entityId, tsKvEntry.getTs(), tsKvEntry.getKey()));
-        futures.add(timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl));
+        ListenableFuture<Integer> saveFuture = timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl);
+        if (hotWindowCache != null) {
+            saveFuture = Futures.transform(saveFuture, dataPoints -> {
+                hotWindowCache.add(tenantId, entityId, tsKvEntry);
+                return dataPoints;
+            }, MoreExecutors.directExecutor());
+        }
+        futures.add(saveFuture);
     }
 
     private List<ReadTsKvQuery> updateQueriesForEntityView(EntityView entityView, List<ReadTsKvQuery> queries) {
@@ -274,7 +317,12 @@ public class BaseTimeseriesService implements TimeseriesService {
     }
 
     private void deleteAndRegisterFutures(TenantId tenantId, List<ListenableFuture<TsKvLatestRemovingResult>> futures, EntityId entityId, DeleteTsKvQuery query) {
-        futures.add(Futures.transform(timeseriesDao.remove(tenantId, entityId, query), v -> null, MoreExecutors.directExecutor()));
+        futures.add(Futures.transform(timeseriesDao.remove(tenantId, entityId, query), v -> {
+            if (hotWindowCache != null) {
+                hotWindowCache.remove(entityId, query.getKey());
+            }
+            return null;
+        }, MoreExecutors.directExecutor()));
         if (query.getDeleteLatest()) {
             futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
         }
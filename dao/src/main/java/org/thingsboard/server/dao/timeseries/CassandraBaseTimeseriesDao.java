@@ -106,6 +106,9 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
     @Value("${cassandra.query.set_null_values_enabled}")
     private boolean setNullValuesEnabled;
 
+    @Value("${cassandra.query.ts_key_value_parallel_partition_reads:1}")
+    private int parallelPartitionReads;
+
     private NoSqlTsPartitionDate tsFormat;
 
     private PreparedStatement partitionInsertStmt;
@@ -281,8 +284,13 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         Futures.addCallback(partitionsListFuture, new FutureCallback<>() {
             @Override
             public void onSuccess(@Nullable List<Long> partitions) {
-                TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
-                findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
+                if (parallelPartitionReads > 1 && partitions.size() > 1) {
+                    TsKvParallelQueryCursor cursor = new TsKvParallelQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions, parallelPartitionReads);
+                    findAllAsyncInParallelWithLimit(tenantId, cursor, resultFuture);
+                } else {
+                    TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
+                    findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
+                }
             }
 
             @Override
@@ -355,6 +363,45 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         }
     }
 
+    private void findAllAsyncInParallelWithLimit(TenantId tenantId, final TsKvParallelQueryCursor cursor, final SimpleListenableFuture<List<TsKvEntry>> resultFuture) {
+        int partitionIdx;
+        while ((partitionIdx = cursor.nextPartitionIdx()) >= 0) {
+            final int fetchedPartitionIdx = partitionIdx;
+            PreparedStatement proto = getFetchStmt(Aggregation.NONE, cursor.getOrderBy());
+            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
+
+            stmtBuilder.setString(0, cursor.getEntityType());
+            stmtBuilder.setUuid(1, cursor.getEntityId());
+            stmtBuilder.setString(2, cursor.getKey());
+            stmtBuilder.setLong(3, cursor.getPartition(fetchedPartitionIdx));
+            stmtBuilder.setLong(4, cursor.getStartTs());
+            stmtBuilder.setLong(5, cursor.getEndTs());
+            stmtBuilder.setInt(6, Math.max(1, cursor.getCurrentLimit()));
+
+            BoundStatement stmt = stmtBuilder.build();
+
+            ListenableFuture<List<Row>> rowsFuture = Futures.transformAsync(executeAsyncRead(tenantId, stmt),
+                    result -> result == null ? Futures.immediateFuture(Collections.emptyList()) : result.allRows(readResultsProcessingExecutor),
+                    readResultsProcessingExecutor);
+            Futures.addCallback(rowsFuture, new FutureCallback<>() {
+                @Override
+                public void onSuccess(@Nullable List<Row> result) {
+                    cursor.addData(fetchedPartitionIdx, convertResultToTsKvEntryList(result == null ? Collections.emptyList() : result));
+                    findAllAsyncInParallelWithLimit(tenantId, cursor, resultFuture);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.error("[{}] Failed to fetch data for query", stmt, t);
+                    resultFuture.setException(t);
+                }
+            }, readResultsProcessingExecutor);
+        }
+        if (cursor.isDone()) {
+            resultFuture.set(cursor.getData());
+        }
+    }
+
     private ListenableFuture<Optional<TsKvEntryAggWrapper>> findAndAggregateAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, long minPartition, long maxPartition) {
         final Aggregation aggregation = query.getAggregation();
         final String key = query.getKey();
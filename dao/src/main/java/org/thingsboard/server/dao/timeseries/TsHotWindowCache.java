@@ -0,0 +1,162 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory window of the most recent timeseries, fed by the successful saves of {@link BaseTimeseriesService}.
+ * Raw and aggregated reads that fall fully inside the window of a tracked (entity, key) are answered from memory.
+ * <p>
+ * The window sees the saves and removals of this node only, so it is used only while it is {@link #setEnabled enabled}
+ * by the application, i.e. while no other node writes the telemetry. A series is complete only from the moment it was created,
+ * so the queries that start before that moment are still read from the database.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "database.ts_hot_window", value = "enabled", havingValue = "true")
+public class TsHotWindowCache {
+
+    private static final String STATS_KEY = "tsHotWindow";
+
+    @Value("${database.ts_hot_window.window_sec:3600}")
+    private long windowSec;
+
+    @Value("${database.ts_hot_window.max_points_per_key:10000}")
+    private int maxPointsPerKey;
+
+    @Value("${database.ts_hot_window.max_keys:100000}")
+    private int maxKeys;
+
+    @Value("${database.ts_hot_window.stats_print_interval_ms:60000}")
+    private long statsPrintIntervalMs;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    private final ConcurrentMap<SeriesKey, TsHotWindowSeries> series = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    private ScheduledExecutorService scheduler;
+    private StatsCounter hits;
+    private StatsCounter misses;
+
+    @PostConstruct
+    private void init() {
+        hits = statsFactory.createStatsCounter(STATS_KEY, "hits");
+        misses = statsFactory.createStatsCounter(STATS_KEY, "misses");
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("ts-hot-window"));
+        scheduler.scheduleWithFixedDelay(this::trim, statsPrintIntervalMs, statsPrintIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the window. The tracked series are dropped on every change,
+     * since they may miss the saves of the other nodes made while the window was disabled.
+     */
+    public void setEnabled(boolean enabled) {
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            series.clear();
+        }
+    }
+
+    public void add(TenantId tenantId, EntityId entityId, TsKvEntry entry) {
+        long now = System.currentTimeMillis();
+        SeriesKey seriesKey = new SeriesKey(entityId, entry.getKey());
+        TsHotWindowSeries s = series.get(seriesKey);
+        if (s == null) {
+            if (!enabled || series.size() >= maxKeys) {
+                return;
+            }
+            s = series.computeIfAbsent(seriesKey, k -> new TsHotWindowSeries(tenantId, k.getKey(), now, maxPointsPerKey));
+        }
+        s.add(entry, now);
+    }
+
+    /**
+     * Returns the query result or null if the query can't be answered from the window.
+     */
+    public ReadTsKvQueryResult find(EntityId entityId, ReadTsKvQuery query) {
+        TsHotWindowSeries s = enabled ? series.get(new SeriesKey(entityId, query.getKey())) : null;
+        ReadTsKvQueryResult result = s != null ? s.find(query) : null;
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    public void remove(EntityId entityId, String key) {
+        series.remove(new SeriesKey(entityId, key));
+    }
+
+    private void trim() {
+        try {
+            long windowStartTs = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(windowSec);
+            series.entrySet().removeIf(e -> e.getValue().isIdle(windowStartTs));
+            series.values().forEach(s -> s.trim(windowStartTs));
+            int hitsCount = hits.get();
+            int missesCount = misses.get();
+            hits.clear();
+            misses.clear();
+            if (hitsCount > 0 || missesCount > 0) {
+                log.info("Timeseries hot window: keys [{}], hits [{}], misses [{}]", series.size(), hitsCount, missesCount);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to trim timeseries hot window", e);
+        }
+    }
+
+    @Data
+    private static class SeriesKey {
+        private final EntityId entityId;
+        private final String key;
+    }
+
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time ordered points of a single (entity, key) pair kept in the primitive ring buffers.
+ * Long and boolean values are kept in the long buffer, double values in the double buffer,
+ * the object buffer is allocated only for the string and json values.
+ * <p>
+ * The series is complete for the timestamps starting from {@link #coveredSinceTs}:
+ * the queries that start earlier are not served from the series.
+ */
+class TsHotWindowSeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_DOUBLE = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_JSON = 4;
+
+    final TenantId tenantId;
+    private final String key;
+    private final int maxPoints;
+
+    private long coveredSinceTs;
+    private long lastUpdateTs;
+
+    private long[] ts;
+    private byte[] types;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private int head;
+    private int size;
+    private int objectsCount;
+
+    TsHotWindowSeries(TenantId tenantId, String key, long coveredSinceTs, int maxPoints) {
+        this.tenantId = tenantId;
+        this.key = key;
+        this.coveredSinceTs = coveredSinceTs;
+        this.lastUpdateTs = coveredSinceTs;
+        this.maxPoints = maxPoints;
+        int capacity = Math.min(INITIAL_CAPACITY, maxPoints);
+        this.ts = new long[capacity];
+        this.types = new byte[capacity];
+        this.longs = new long[capacity];
+        this.doubles = new double[capacity];
+    }
+
+    synchronized void add(TsKvEntry entry, long now) {
+        lastUpdateTs = now;
+        long entryTs = entry.getTs();
+        if (entryTs < coveredSinceTs) {
+            return;
+        }
+        int pos = search(entryTs);
+        if (pos >= 0) {
+            set(index(pos), entry);
+            return;
+        }
+        pos = -pos - 1;
+        if (size == ts.length) {
+            if (ts.length < maxPoints) {
+                grow(Math.min(ts.length * 2, maxPoints));
+            } else {
+                evictOldest();
+                if (pos == 0) {
+                    return;
+                }
+                pos--;
+            }
+        }
+        for (int i = size; i > pos; i--) {
+            move(index(i - 1), index(i));
+        }
+        size++;
+        set(index(pos), entry);
+    }
+
+    /**
+     * Removes the points older than the window start and marks the series complete only from the window start.
+     */
+    synchronized void trim(long windowStartTs) {
+        while (size > 0 && ts[head] < windowStartTs) {
+            evictOldest();
+        }
+        coveredSinceTs = Math.max(coveredSinceTs, windowStartTs);
+    }
+
+    synchronized boolean isIdle(long windowStartTs) {
+        return lastUpdateTs < windowStartTs;
+    }
+
+    /**
+     * Returns the query result or null if the series can't answer the query.
+     */
+    synchronized ReadTsKvQueryResult find(ReadTsKvQuery query) {
+        if (query.getStartTs() < coveredSinceTs) {
+            return null;
+        }
+        if (query.getAggregation() == null || query.getAggregation() == Aggregation.NONE) {
+            return findRaw(query);
+        } else {
+            return findAggregated(query);
+        }
+    }
+
+    private ReadTsKvQueryResult findRaw(ReadTsKvQuery query) {
+        int from = lowerBound(query.getStartTs());
+        int to = lowerBound(query.getEndTs());
+        int count = Math.max(0, Math.min(to - from, query.getLimit()));
+        List<TsKvEntry> data = new ArrayList<>(count);
+        if ("DESC".equalsIgnoreCase(query.getOrder())) {
+            for (int i = to - 1; i >= to - count; i--) {
+                data.add(toEntry(index(i), ts[index(i)]));
+            }
+        } else {
+            for (int i = from; i < from + count; i++) {
+                data.add(toEntry(index(i), ts[index(i)]));
+            }
+        }
+        long lastTs = data.stream().mapToLong(TsKvEntry::getTs).max().orElse(query.getStartTs());
+        return new ReadTsKvQueryResult(query.getId(), data, lastTs);
+    }
+
+    private ReadTsKvQueryResult findAggregated(ReadTsKvQuery query) {
+        long startTs = query.getStartTs();
+        long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
+        long interval = Math.max(query.getInterval(), 1);
+        Aggregation aggregation = query.getAggregation();
+        int i = lowerBound(startTs);
+        int to = lowerBound(endTs);
+        for (int j = i; j < to; j++) {
+            byte type = types[index(j)];
+            if (type != TYPE_LONG && type != TYPE_DOUBLE) {
+                // aggregation of non-numeric values is left to the database
+                return null;
+            }
+        }
+        List<TsKvEntry> data = new ArrayList<>();
+        long lastTs = query.getStartTs();
+        for (long bucketStartTs = startTs; bucketStartTs < endTs && i < to; bucketStartTs += interval) {
+            long bucketEndTs = Math.min(bucketStartTs + interval, endTs);
+            long longCount = 0;
+            long doubleCount = 0;
+            long longResult = 0;
+            double doubleResult = 0.0;
+            for (; i < to && ts[index(i)] < bucketEndTs; i++) {
+                int idx = index(i);
+                lastTs = Math.max(lastTs, ts[idx]);
+                if (types[idx] == TYPE_LONG) {
+                    longResult = longCount++ == 0 ? longs[idx] : aggregate(aggregation, longResult, longs[idx]);
+                } else {
+                    doubleResult = doubleCount++ == 0 ? doubles[idx] : aggregate(aggregation, doubleResult, doubles[idx]);
+                }
+            }
+            if (longCount > 0 || doubleCount > 0) {
+                long bucketTs = bucketStartTs + (bucketEndTs - bucketStartTs) / 2;
+                data.add(toAggregatedEntry(aggregation, bucketTs, longCount, longResult, doubleCount, doubleResult));
+            }
+        }
+        return new ReadTsKvQueryResult(query.getId(), data, lastTs);
+    }
+
+    private TsKvEntry toAggregatedEntry(Aggregation aggregation, long bucketTs, long longCount, long longResult, long doubleCount, double doubleResult) {
+        switch (aggregation) {
+            case COUNT:
+                return new BasicTsKvEntry(bucketTs, new LongDataEntry(key, longCount + doubleCount));
+            case AVG:
+                double sum = (longCount > 0 ? longResult : 0) + (doubleCount > 0 ? doubleResult : 0.0);
+                return new BasicTsKvEntry(bucketTs, new DoubleDataEntry(key, sum / (longCount + doubleCount)));
+            case SUM:
+                if (doubleCount > 0) {
+                    return new BasicTsKvEntry(bucketTs, new DoubleDataEntry(key, doubleResult + (longCount > 0 ? longResult : 0)));
+                }
+                return new BasicTsKvEntry(bucketTs, new LongDataEntry(key, longResult));
+            case MIN:
+            case MAX:
+                if (doubleCount > 0 && longCount > 0) {
+                    double value = aggregation == Aggregation.MAX ? Math.max(doubleResult, longResult) : Math.min(doubleResult, longResult);
+                    return new BasicTsKvEntry(bucketTs, new DoubleDataEntry(key, value));
+                } else if (doubleCount > 0) {
+                    return new BasicTsKvEntry(bucketTs, new DoubleDataEntry(key, doubleResult));
+                }
+                return new BasicTsKvEntry(bucketTs, new LongDataEntry(key, longResult));
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static long aggregate(Aggregation aggregation, long result, long value) {
+        switch (aggregation) {
+            case MIN:
+                return Math.min(result, value);
+            case MAX:
+                return Math.max(result, value);
+            default:
+                return result + value;
+        }
+    }
+
+    private static double aggregate(Aggregation aggregation, double result, double value) {
+        switch (aggregation) {
+            case MIN:
+                return Math.min(result, value);
+            case MAX:
+                return Math.max(result, value);
+            default:
+                return result + value;
+        }
+    }
+
+    private TsKvEntry toEntry(int idx, long entryTs) {
+        switch (types[idx]) {
+            case TYPE_LONG:
+                return new BasicTsKvEntry(entryTs, new LongDataEntry(key, longs[idx]));
+            case TYPE_DOUBLE:
+                return new BasicTsKvEntry(entryTs, new DoubleDataEntry(key, doubles[idx]));
+            case TYPE_BOOLEAN:
+                return new BasicTsKvEntry(entryTs, new BooleanDataEntry(key, longs[idx] != 0));
+            case TYPE_STRING:
+                return new BasicTsKvEntry(entryTs, new StringDataEntry(key, (String) objects[idx]));
+            default:
+                return new BasicTsKvEntry(entryTs, new JsonDataEntry(key, (String) objects[idx]));
+        }
+    }
+
+    private void set(int idx, TsKvEntry entry) {
+        clearObject(idx);
+        ts[idx] = entry.getTs();
+        switch (entry.getDataType()) {
+            case LONG:
+                types[idx] = TYPE_LONG;
+                longs[idx] = entry.getLongValue().orElse(0L);
+                break;
+            case DOUBLE:
+                types[idx] = TYPE_DOUBLE;
+                doubles[idx] = entry.getDoubleValue().orElse(0.0);
+                break;
+            case BOOLEAN:
+                types[idx] = TYPE_BOOLEAN;
+                longs[idx] = entry.getBooleanValue().orElse(false) ? 1 : 0;
+                break;
+            case STRING:
+                types[idx] = TYPE_STRING;
+                setObject(idx, entry.getStrValue().orElse(null));
+                break;
+            case JSON:
+                types[idx] = TYPE_JSON;
+                setObject(idx, entry.getJsonValue().orElse(null));
+                break;
+        }
+    }
+
+    private void setObject(int idx, Object value) {
+        if (objects == null) {
+            objects = new Object[ts.length];
+        }
+        objects[idx] = value;
+        objectsCount++;
+    }
+
+    private void clearObject(int idx) {
+        if (objects != null && objects[idx] != null) {
+            objects[idx] = null;
+            if (--objectsCount == 0) {
+                objects = null;
+            }
+        }
+    }
+
+    private void move(int from, int to) {
+        ts[to] = ts[from];
+        types[to] = types[from];
+        longs[to] = longs[from];
+        doubles[to] = doubles[from];
+        if (objects != null) {
+            objects[to] = objects[from];
+            objects[from] = null;
+        }
+    }
+
+    private void evictOldest() {
+        clearObject(head);
+        coveredSinceTs = Math.max(coveredSinceTs, ts[head] + 1);
+        head = (head + 1) % ts.length;
+        size--;
+    }
+
+    private void grow(int capacity) {
+        long[] newTs = new long[capacity];
+        byte[] newTypes = new byte[capacity];
+        long[] newLongs = new long[capacity];
+        double[] newDoubles = new double[capacity];
+        Object[] newObjects = objects != null ? new Object[capacity] : null;
+        for (int i = 0; i < size; i++) {
+            int idx = index(i);
+            newTs[i] = ts[idx];
+            newTypes[i] = types[idx];
+            newLongs[i] = longs[idx];
+            newDoubles[i] = doubles[idx];
+            if (newObjects != null) {
+                newObjects[i] = objects[idx];
+            }
+        }
+        ts = newTs;
+        types = newTypes;
+        longs = newLongs;
+        doubles = newDoubles;
+        objects = newObjects;
+        head = 0;
+    }
+
+    private int index(int i) {
+        return (head + i) % ts.length;
+    }
+
+    /**
+     * Binary search by timestamp over the logical positions, same contract as {@link java.util.Arrays#binarySearch}.
+     */
+    private int search(long entryTs) {
+        if (size > 0 && ts[index(size - 1)] < entryTs) {
+            return -size - 1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midTs = ts[index(mid)];
+            if (midTs < entryTs) {
+                low = mid + 1;
+            } else if (midTs > entryTs) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the logical position of the first point with timestamp greater or equal to the given one.
+     */
+    private int lowerBound(long entryTs) {
+        int pos = search(entryTs);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.thingsboard.server.dao.timeseries.CassandraBaseTimeseriesDao.DESC_ORDER;
+
+/**
+ * Cursor that allows to fetch up to {@code maxInFlight} partitions at once.
+ * Partitions are issued in the query order and the fetched data is merged in the same order as it arrives,
+ * so no more partitions are issued once the limit is reached by the merged data.
+ */
+public class TsKvParallelQueryCursor extends QueryCursor {
+
+    @Getter
+    private final String orderBy;
+    private final int limit;
+    private final int maxInFlight;
+    private final List<TsKvEntry> data;
+    private final List<List<TsKvEntry>> fetched;
+
+    private int issuedCount;
+    private int mergedCount;
+    private int inFlight;
+
+    public TsKvParallelQueryCursor(String entityType, UUID entityId, ReadTsKvQuery baseQuery, List<Long> partitions, int maxInFlight) {
+        super(entityType, entityId, baseQuery, partitions);
+        this.orderBy = baseQuery.getOrder();
+        this.limit = baseQuery.getLimit();
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.data = new ArrayList<>();
+        this.fetched = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            fetched.add(null);
+        }
+    }
+
+    /**
+     * Returns the index of the next partition to fetch or -1 if the window is full or no more partitions are needed.
+     */
+    public synchronized int nextPartitionIdx() {
+        if (isDone() || inFlight >= maxInFlight || issuedCount >= partitions.size()) {
+            return -1;
+        }
+        inFlight++;
+        return issuedCount++;
+    }
+
+    public long getPartition(int partitionIdx) {
+        return partitions.get(isDesc() ? partitions.size() - 1 - partitionIdx : partitionIdx);
+    }
+
+    /**
+     * Limit for the partition that is about to be fetched. Data of the partitions that are still in flight is not known yet,
+     * so the limit may be higher than the number of entries that is finally taken from this partition.
+     */
+    public synchronized int getCurrentLimit() {
+        return limit - data.size();
+    }
+
+    public synchronized void addData(int partitionIdx, List<TsKvEntry> partitionData) {
+        inFlight--;
+        fetched.set(partitionIdx, partitionData);
+        while (mergedCount < issuedCount && fetched.get(mergedCount) != null && !isFull()) {
+            data.addAll(fetched.get(mergedCount));
+            fetched.set(mergedCount, null);
+            mergedCount++;
+        }
+    }
+
+    public synchronized boolean isDone() {
+        return isFull() || mergedCount >= partitions.size();
+    }
+
+    public synchronized List<TsKvEntry> getData() {
+        return data.size() > limit ? new ArrayList<>(data.subList(0, limit)) : new ArrayList<>(data);
+    }
+
+    private boolean isFull() {
+        return data.size() >= limit;
+    }
+
+    private boolean isDesc() {
+        return orderBy.equals(DESC_ORDER);
+    }
+
+}
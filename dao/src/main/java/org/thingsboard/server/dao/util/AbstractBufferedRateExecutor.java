@@ -26,6 +26,7 @@ import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardExecutors;
@@ -41,7 +42,13 @@ import org.thingsboard.server.common.data.limit.LimitedApi;
 import org.thingsboard.server.dao.util.limits.RateLimitService;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
@@ -70,6 +77,7 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
     private final ScheduledExecutorService timeoutExecutor;
     private final int concurrencyLimit;
     private final int printQueriesFreq;
+    private final int maxBatchSize;
 
     private final AtomicInteger printQueriesIdx = new AtomicInteger(0);
 
@@ -85,7 +93,21 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
     public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads,
                                         int callbackThreads, long pollMs, int printQueriesFreq, StatsFactory statsFactory,
                                         EntityService entityService, RateLimitService rateLimitService, boolean printTenantNames) {
+        this(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs, printQueriesFreq, statsFactory,
+                entityService, rateLimitService, printTenantNames, 1);
+    }
+
+    /**
+     * @param maxBatchSize max number of queued tasks taken by the dispatcher at once and grouped by {@link #getBatchKey}.
+     *                     Groups of more than one task are executed with {@link #executeBatch} and take one permit of the concurrency limit.
+     *                     1 disables batching
+     */
+    public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads,
+                                        int callbackThreads, long pollMs, int printQueriesFreq, StatsFactory statsFactory,
+                                        EntityService entityService, RateLimitService rateLimitService, boolean printTenantNames,
+                                        int maxBatchSize) {
         this.maxWaitTime = maxWaitTime;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
         this.pollMs = pollMs;
         this.concurrencyLimit = concurrencyLimit;
         this.printQueriesFreq = printQueriesFreq;
@@ -156,56 +178,45 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
 
     public abstract String getBufferName();
 
+    /**
+     * Returns the key of the tasks that may be executed together by {@link #executeBatch} or null if the task is executed alone.
+     * By default, all tasks are executed alone.
+     */
+    protected Object getBatchKey(T task) {
+        return null;
+    }
+
+    /**
+     * Executes the group of tasks with the same batch key and returns the results in the order of the tasks.
+     * By default, the tasks are executed one by one, so the group keeps a single statement in flight;
+     * the failure of a task fails the rest of the group.
+     */
+    protected ListenableFuture<List<V>> executeBatch(List<AsyncTaskContext<T, V>> taskCtxs) {
+        ListenableFuture<List<V>> result = Futures.immediateFuture(new ArrayList<>(taskCtxs.size()));
+        for (AsyncTaskContext<T, V> taskCtx : taskCtxs) {
+            result = Futures.transformAsync(result, results -> Futures.transform(execute(taskCtx), value -> {
+                results.add(value);
+                return results;
+            }, MoreExecutors.directExecutor()), MoreExecutors.directExecutor());
+        }
+        return result;
+    }
+
     private void dispatch() {
         log.info("[{}] Buffered rate executor thread started", getBufferName());
         while (!Thread.interrupted()) {
             int curLvl = concurrencyLevel.get();
-            AsyncTaskContext<T, V> taskCtx = null;
             try {
-                if (curLvl <= concurrencyLimit) {
-                    taskCtx = queue.take();
-                    final AsyncTaskContext<T, V> finalTaskCtx = taskCtx;
-                    if (printQueriesFreq > 0) {
-                        if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
-                            printQueriesIdx.set(0);
-                            String query = queryToString(finalTaskCtx);
-                            log.info("[{}][{}] Cassandra query: {}", getBufferName(), taskCtx.getId(), query);
-                        }
-                    }
-                    logTask("Processing", finalTaskCtx);
-                    concurrencyLevel.incrementAndGet();
-                    long timeout = finalTaskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
-                    if (timeout > 0) {
-                        stats.getTotalLaunched().increment();
-                        ListenableFuture<V> result = execute(finalTaskCtx);
-                        result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
-                        Futures.addCallback(result, new FutureCallback<V>() {
-                            @Override
-                            public void onSuccess(@Nullable V result) {
-                                logTask("Releasing", finalTaskCtx);
-                                stats.getTotalReleased().increment();
-                                concurrencyLevel.decrementAndGet();
-                                finalTaskCtx.getFuture().set(result);
-                            }
-
-                            @Override
-                            public void onFailure(Throwable t) {
-                                if (t instanceof TimeoutException) {
-                                    logTask("Expired During Execution", finalTaskCtx);
-                                } else {
-                                    logTask("Failed", finalTaskCtx);
-                                }
-                                stats.getTotalFailed().increment();
-                                concurrencyLevel.decrementAndGet();
-                                finalTaskCtx.getFuture().setException(t);
-                                log.debug("[{}] Failed to execute task: {}", finalTaskCtx.getId(), finalTaskCtx.getTask(), t);
-                            }
-                        }, callbackExecutor);
+                if (curLvl < concurrencyLimit) {
+                    AsyncTaskContext<T, V> taskCtx = queue.take();
+                    if (maxBatchSize > 1) {
+                        List<AsyncTaskContext<T, V>> taskCtxs = new ArrayList<>();
+                        taskCtxs.add(taskCtx);
+                        // the permits are taken per group of the same batch key by launchAll, not per drained task
+                        queue.drainTo(taskCtxs, maxBatchSize - 1);
+                        launchAll(groupByBatchKey(taskCtxs));
                     } else {
-                        logTask("Expired Before Execution", finalTaskCtx);
-                        stats.getTotalExpired().increment();
-                        concurrencyLevel.decrementAndGet();
-                        taskCtx.getFuture().setException(new TimeoutException());
+                        launchAll(Collections.singletonList(Collections.singletonList(taskCtx)));
                     }
                 } else {
                     Thread.sleep(pollMs);
@@ -213,16 +224,130 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             } catch (InterruptedException e) {
                 break;
             } catch (Throwable e) {
-                if (taskCtx != null) {
-                    log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx, e);
-                    stats.getTotalFailed().increment();
+                log.debug("Failed to queue task:", e);
+            }
+        }
+        log.info("[{}] Buffered rate executor thread stopped", getBufferName());
+    }
+
+    private Collection<List<AsyncTaskContext<T, V>>> groupByBatchKey(List<AsyncTaskContext<T, V>> taskCtxs) {
+        Map<Object, List<AsyncTaskContext<T, V>>> groups = new LinkedHashMap<>();
+        for (AsyncTaskContext<T, V> taskCtx : taskCtxs) {
+            Object batchKey = null;
+            try {
+                batchKey = getBatchKey(taskCtx.getTask());
+            } catch (Exception e) {
+                log.debug("[{}] Failed to get batch key of the task: {}", taskCtx.getId(), taskCtx.getTask(), e);
+            }
+            groups.computeIfAbsent(batchKey != null ? batchKey : taskCtx.getId(), k -> new ArrayList<>()).add(taskCtx);
+        }
+        return groups.values();
+    }
+
+    /**
+     * Launches the groups one by one, each after a permit of the concurrency limit is reserved,
+     * so the number of statements in flight never exceeds the limit.
+     */
+    private void launchAll(Collection<List<AsyncTaskContext<T, V>>> groups) throws InterruptedException {
+        Iterator<List<AsyncTaskContext<T, V>>> iterator = groups.iterator();
+        while (iterator.hasNext()) {
+            List<AsyncTaskContext<T, V>> group = iterator.next();
+            try {
+                while (!tryAcquirePermit()) {
+                    Thread.sleep(pollMs);
+                }
+            } catch (InterruptedException e) {
+                InterruptedException error = e;
+                group.forEach(taskCtx -> taskCtx.getFuture().setException(error));
+                iterator.forEachRemaining(remaining -> remaining.forEach(taskCtx -> taskCtx.getFuture().setException(error)));
+                throw e;
+            }
+            launch(group);
+        }
+    }
+
+    private boolean tryAcquirePermit() {
+        while (true) {
+            int curLvl = concurrencyLevel.get();
+            if (curLvl >= concurrencyLimit) {
+                return false;
+            }
+            if (concurrencyLevel.compareAndSet(curLvl, curLvl + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Executes the group of tasks with the permit reserved by {@link #launchAll}.
+     */
+    private void launch(List<AsyncTaskContext<T, V>> taskCtxs) {
+        List<AsyncTaskContext<T, V>> activeTaskCtxs = new ArrayList<>(taskCtxs.size());
+        long timeout = Long.MAX_VALUE;
+        for (AsyncTaskContext<T, V> taskCtx : taskCtxs) {
+            if (printQueriesFreq > 0) {
+                if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
+                    printQueriesIdx.set(0);
+                    String query = queryToString(taskCtx);
+                    log.info("[{}][{}] Cassandra query: {}", getBufferName(), taskCtx.getId(), query);
+                }
+            }
+            logTask("Processing", taskCtx);
+            long taskTimeout = taskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
+            if (taskTimeout > 0) {
+                activeTaskCtxs.add(taskCtx);
+                timeout = Math.min(timeout, taskTimeout);
+            } else {
+                logTask("Expired Before Execution", taskCtx);
+                stats.getTotalExpired().increment();
+                taskCtx.getFuture().setException(new TimeoutException());
+            }
+        }
+        if (activeTaskCtxs.isEmpty()) {
+            concurrencyLevel.decrementAndGet();
+            return;
+        }
+        try {
+            stats.getTotalLaunched().add(activeTaskCtxs.size());
+            ListenableFuture<List<V>> result = activeTaskCtxs.size() == 1 ?
+                    Futures.transform(execute(activeTaskCtxs.get(0)), Collections::singletonList, MoreExecutors.directExecutor()) :
+                    executeBatch(activeTaskCtxs);
+            result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
+            Futures.addCallback(result, new FutureCallback<List<V>>() {
+                @Override
+                public void onSuccess(@Nullable List<V> results) {
                     concurrencyLevel.decrementAndGet();
-                } else {
-                    log.debug("Failed to queue task:", e);
+                    for (int i = 0; i < activeTaskCtxs.size(); i++) {
+                        AsyncTaskContext<T, V> taskCtx = activeTaskCtxs.get(i);
+                        logTask("Releasing", taskCtx);
+                        stats.getTotalReleased().increment();
+                        taskCtx.getFuture().set(results != null ? results.get(i) : null);
+                    }
                 }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    concurrencyLevel.decrementAndGet();
+                    for (AsyncTaskContext<T, V> taskCtx : activeTaskCtxs) {
+                        if (t instanceof TimeoutException) {
+                            logTask("Expired During Execution", taskCtx);
+                        } else {
+                            logTask("Failed", taskCtx);
+                        }
+                        stats.getTotalFailed().increment();
+                        taskCtx.getFuture().setException(t);
+                        log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx.getTask(), t);
+                    }
+                }
+            }, callbackExecutor);
+        } catch (Throwable e) {
+            concurrencyLevel.decrementAndGet();
+            for (AsyncTaskContext<T, V> taskCtx : activeTaskCtxs) {
+                log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx, e);
+                stats.getTotalFailed().increment();
+                taskCtx.getFuture().setException(e);
             }
         }
-        log.info("[{}] Buffered rate executor thread stopped", getBufferName());
     }
 
     private void logTask(String action, AsyncTaskContext<T, V> taskCtx) {
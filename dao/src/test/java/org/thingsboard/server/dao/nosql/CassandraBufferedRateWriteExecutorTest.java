@@ -0,0 +1,195 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.nosql;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Counter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.cassandra.guava.GuavaSession;
+import org.thingsboard.server.dao.entity.EntityService;
+import org.thingsboard.server.dao.util.limits.RateLimitService;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CassandraBufferedRateWriteExecutorTest {
+
+    private static final int CONCURRENCY_LIMIT = 1;
+
+    private final BlockingQueue<Execution> executions = new LinkedBlockingQueue<>();
+    private GuavaSession session;
+    private CassandraBufferedRateWriteExecutor executor;
+
+    @Before
+    public void before() {
+        session = mock(GuavaSession.class);
+        when(session.getMetadata()).thenReturn(mock(Metadata.class));
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> {
+            Execution execution = new Execution(invocation.getArgument(0), SettableFuture.create());
+            executions.add(execution);
+            return execution.future;
+        });
+
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createStatsCounter(anyString(), anyString())).thenAnswer(invocation ->
+                new StatsCounter(new AtomicInteger(), mock(Counter.class), invocation.getArgument(1)));
+        when(statsFactory.createDefaultCounter(anyString(), any())).thenAnswer(invocation ->
+                new DefaultCounter(new AtomicInteger(), mock(Counter.class)));
+        when(statsFactory.createGauge(anyString(), any(AtomicInteger.class))).thenAnswer(invocation -> invocation.getArgument(1));
+
+        executor = new CassandraBufferedRateWriteExecutor(100, CONCURRENCY_LIMIT, 60000, 1, 1, 10, false, 0,
+                true, 100, statsFactory, mock(EntityService.class), mock(RateLimitService.class));
+    }
+
+    @After
+    public void after() {
+        executor.stop();
+    }
+
+    @Test
+    public void givenQueuedInsertsOfTwoPartitions_whenDispatched_thenOneBatchPerPartitionWithinConcurrencyLimit() throws Exception {
+        // keeps the only permit, so the inserts are queued and drained together
+        TbResultSetFuture blocker = executor.submit(newTask(mock(Statement.class)));
+        Execution blockerExecution = nextExecution();
+
+        List<TbResultSetFuture> partitionA = new ArrayList<>();
+        List<TbResultSetFuture> partitionB = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            partitionA.add(executor.submit(newTask(newInsert("A"))));
+        }
+        for (int i = 0; i < 2; i++) {
+            partitionB.add(executor.submit(newTask(newInsert("B"))));
+        }
+        assertThat(executions.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        blockerExecution.future.set(mock(AsyncResultSet.class));
+        blocker.get(5, TimeUnit.SECONDS);
+
+        Execution batchA = nextExecution();
+        assertThat(batchA.statement).isInstanceOf(BatchStatement.class);
+        assertThat(((BatchStatement) batchA.statement).size()).isEqualTo(3);
+        // the second group waits for the permit of the first one
+        assertThat(executions.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(getConcurrencyLevel()).isEqualTo(CONCURRENCY_LIMIT);
+
+        batchA.future.set(mock(AsyncResultSet.class));
+        for (TbResultSetFuture future : partitionA) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isNotNull();
+        }
+
+        Execution batchB = nextExecution();
+        assertThat(batchB.statement).isInstanceOf(BatchStatement.class);
+        assertThat(((BatchStatement) batchB.statement).size()).isEqualTo(2);
+        batchB.future.set(mock(AsyncResultSet.class));
+        for (TbResultSetFuture future : partitionB) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isNotNull();
+        }
+        assertThat(getConcurrencyLevel()).isZero();
+    }
+
+    @Test
+    public void givenBatchFailed_whenDispatched_thenEveryStatementFailedAndPermitReleased() throws Exception {
+        TbResultSetFuture blocker = executor.submit(newTask(mock(Statement.class)));
+        Execution blockerExecution = nextExecution();
+
+        List<TbResultSetFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(newTask(newInsert("A"))));
+        }
+        blockerExecution.future.set(mock(AsyncResultSet.class));
+        blocker.get(5, TimeUnit.SECONDS);
+
+        Execution batch = nextExecution();
+        assertThat(((BatchStatement) batch.statement).size()).isEqualTo(4);
+        RuntimeException error = new RuntimeException("write timeout");
+        batch.future.setException(error);
+
+        for (TbResultSetFuture future : futures) {
+            assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCause(error);
+        }
+        TbResultSetFuture next = executor.submit(newTask(newInsert("B")));
+        Execution nextExecution = nextExecution();
+        assertThat(nextExecution.statement).isInstanceOf(BoundStatement.class);
+        nextExecution.future.set(mock(AsyncResultSet.class));
+        assertThat(next.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    private int getConcurrencyLevel() {
+        return ((AtomicInteger) ReflectionTestUtils.getField(executor, "concurrencyLevel")).get();
+    }
+
+    private Execution nextExecution() throws InterruptedException {
+        Execution execution = executions.poll(5, TimeUnit.SECONDS);
+        assertThat(execution).as("statement executed").isNotNull();
+        return execution;
+    }
+
+    private CassandraStatementTask newTask(Statement<?> statement) {
+        return new CassandraStatementTask(TenantId.SYS_TENANT_ID, session, statement);
+    }
+
+    private BoundStatement newInsert(String partition) {
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(prepared.getQuery()).thenReturn("INSERT INTO ts_kv_cf (entity_type, entity_id, key, partition, ts, long_v) VALUES(?, ?, ?, ?, ?, ?)");
+        BoundStatement statement = mock(BoundStatement.class);
+        when(statement.getPreparedStatement()).thenReturn(prepared);
+        when(statement.getRoutingKeyspace()).thenReturn(CqlIdentifier.fromCql("thingsboard"));
+        when(statement.getRoutingKey()).thenReturn(ByteBuffer.wrap(partition.getBytes()));
+        when(statement.getConsistencyLevel()).thenReturn(ConsistencyLevel.ONE);
+        return statement;
+    }
+
+    private static class Execution {
+        private final Statement<?> statement;
+        private final SettableFuture<AsyncResultSet> future;
+
+        private Execution(Statement<?> statement, SettableFuture<AsyncResultSet> future) {
+            this.statement = statement;
+            this.future = future;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.Timer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TbSqlBlockingQueueTest {
+
+    private StatsFactory statsFactory;
+    private MessagesStats stats;
+    private TbSqlBlockingQueue<String> queue;
+
+    @Before
+    public void setUp() {
+        statsFactory = mock(StatsFactory.class);
+        stats = mock(MessagesStats.class);
+        willAnswer(invocation -> invocation.getArgument(1)).given(statsFactory).createGauge(anyString(), any());
+        willReturn(mock(Timer.class)).given(statsFactory).createTimer(anyString());
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    public void givenBoundedQueueIsFull_whenAdd_thenFutureFailed() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(10)
+                .maxDelay(100)
+                .statsPrintIntervalMs(1000)
+                .statsNamePrefix("test")
+                .maxQueueSize(2)
+                .build();
+        queue = new TbSqlBlockingQueue<>(params, stats, statsFactory, "test.queue.0");
+
+        assertThat(queue.add("1").isDone()).isFalse();
+        assertThat(queue.add("2").isDone()).isFalse();
+        ListenableFuture<Void> rejected = queue.add("3");
+
+        assertThat(rejected.isDone()).isTrue();
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+        verify(stats).incrementFailed();
+    }
+
+    @Test
+    public void givenSlowSave_whenBatchSaved_thenBatchSizeDecreasedAndRestoredWhenFast() {
+        TbSqlBatchSizeController controller = new TbSqlBatchSizeController(1000, 100);
+        assertThat(controller.getBatchSize()).isEqualTo(1000);
+
+        assertThat(controller.onBatchSaved(true, 250)).isEqualTo(500);
+        assertThat(controller.onBatchSaved(true, 250)).isEqualTo(250);
+        for (int i = 0; i < 10; i++) {
+            controller.onBatchSaved(true, 250);
+        }
+        assertThat(controller.getBatchSize()).isEqualTo(62);
+
+        assertThat(controller.onBatchSaved(false, 10)).isEqualTo(62);
+        assertThat(controller.onBatchSaved(true, 10)).isEqualTo(162);
+        for (int i = 0; i < 20; i++) {
+            controller.onBatchSaved(true, 10);
+        }
+        assertThat(controller.getBatchSize()).isEqualTo(1000);
+        assertThat(controller.getLastSaveTimeMs()).isEqualTo(10);
+    }
+
+}
@@ -106,6 +106,20 @@ public class JpaBaseEventDaoTest extends AbstractJpaDaoTest {
 
     }
 
+    @Test
+    public void saveAll() {
+        UUID entityId = Uuids.timeBased();
+        Event event1 = getStatsEvent(Uuids.timeBased(), tenantId, entityId);
+        Event event2 = getStatsEvent(Uuids.timeBased(), tenantId, entityId);
+        Event event3 = getStatsEvent(null, tenantId, entityId);
+
+        eventDao.saveAll(List.of(event1, event2, event3));
+
+        List<? extends Event> foundEvents = eventDao.findLatestEvents(tenantId, entityId, EventType.STATS, 10);
+        assertEquals(3, foundEvents.size());
+        assertNotNull(event3.getId());
+    }
+
     private Event getStatsEvent(UUID eventId, UUID tenantId, UUID entityId) {
         StatisticsEvent.StatisticsEventBuilder event = StatisticsEvent.builder();
         event.id(eventId);
@@ -22,21 +22,28 @@ import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.sqlts.rollup.TsKvRollupRepository;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.willCallRealMethod;
 import static org.mockito.BDDMockito.willReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.thingsboard.server.common.data.id.TenantId.SYS_TENANT_ID;
 import static org.thingsboard.server.common.data.kv.Aggregation.COUNT;
+import static org.thingsboard.server.dao.sqlts.rollup.TsKvRollupRepository.DAY;
+import static org.thingsboard.server.dao.sqlts.rollup.TsKvRollupRepository.HOUR;
 
 public class AbstractChunkedAggregationTimeseriesDaoTest {
 
@@ -51,6 +58,29 @@ public class AbstractChunkedAggregationTimeseriesDaoTest {
         Optional<TsKvEntry> optionalListenableFuture = Optional.of(mock(TsKvEntry.class));
         willReturn(Futures.immediateFuture(optionalListenableFuture)).given(tsDao).findAndAggregateAsync(any(), anyString(), anyLong(), anyLong(), anyLong(), any());
         willReturn(Futures.immediateFuture(mock(ReadTsKvQueryResult.class))).given(tsDao).getReadTsKvQueryResultFuture(any(), any());
+        willReturn(Collections.emptyList()).given(tsDao).switchBucketAggregation(any(), anyString(), anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    public void givenIntervalMultiplePeriod_whenAggregateCountBySingleQuery_thenOneBucketQuery() {
+        tsDao.findAllAndAggregate(SYS_TENANT_ID, TEMP, 1, 3001, 3, COUNT);
+        verify(tsDao, times(1)).switchBucketAggregation(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 1, 3001, 3, COUNT);
+    }
+
+    @Test
+    public void givenIntervalNotMultiplePeriod_whenAggregateCountBySingleQuery_thenLastBucketQueriedSeparately() {
+        tsDao.findAllAndAggregate(SYS_TENANT_ID, TEMP, 1, 3000, 2000, COUNT);
+        verify(tsDao, times(2)).switchBucketAggregation(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 1, 2001, 2000, COUNT);
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 2001, 3000, 999, COUNT);
+    }
+
+    @Test
+    public void givenIntervalBiggerThanPeriod_whenAggregateCountBySingleQuery_thenSingleBucket() {
+        assertThat(tsDao.findAllAndAggregate(SYS_TENANT_ID, TEMP, 1, 3000, 3001, COUNT)).containsExactly(Optional.empty());
+        verify(tsDao, times(1)).switchBucketAggregation(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(eq(SYS_TENANT_ID), eq(TEMP), eq(1L), eq(3000L), eq(2999L), eq(COUNT));
     }
 
     @Test
@@ -146,6 +176,57 @@ public class AbstractChunkedAggregationTimeseriesDaoTest {
         }
     }
 
+    @Test
+    public void givenRollupAlignedQuery_whenAggregateByRollups_thenLastIntervalAggregatedFromRawValues() {
+        TsKvRollupRepository rollupRepository = mock(TsKvRollupRepository.class);
+        willReturn(Collections.emptyList()).given(rollupRepository).findAllAndAggregate(any(), anyInt(), anyLong(), anyLong(), anyLong(), anyLong(), any());
+        willReturn(0L).given(rollupRepository).findCoveredStartTs(any(), anyInt());
+        tsDao.rollupRepository = rollupRepository;
+        willReturn(1).given(tsDao).getOrSaveKeyId(TEMP);
+
+        assertThat(tsDao.findAllAndAggregateByRollups(SYS_TENANT_ID, TEMP, 0, 5 * HOUR + 1, 2 * HOUR, HOUR, COUNT)).containsExactly(Optional.empty());
+        verify(rollupRepository, times(1)).findAllAndAggregate(SYS_TENANT_ID.getId(), 1, HOUR, 2 * HOUR, 0, 4 * HOUR, COUNT);
+        verify(tsDao, times(1)).switchBucketAggregation(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 4 * HOUR, 5 * HOUR + 1, HOUR + 1, COUNT);
+    }
+
+    @Test
+    public void givenRollupsCoverPartOfQuery_whenAggregateByRollups_thenIntervalsBeforeCoverageAggregatedFromRawValues() {
+        TsKvRollupRepository rollupRepository = mock(TsKvRollupRepository.class);
+        willReturn(Collections.emptyList()).given(rollupRepository).findAllAndAggregate(any(), anyInt(), anyLong(), anyLong(), anyLong(), anyLong(), any());
+        willReturn(DAY).given(rollupRepository).findCoveredStartTs(any(), anyInt());
+        tsDao.rollupRepository = rollupRepository;
+        willReturn(1).given(tsDao).getOrSaveKeyId(TEMP);
+
+        tsDao.findAllAndAggregateByRollups(SYS_TENANT_ID, TEMP, 0, 2 * DAY, 5 * HOUR, HOUR, COUNT);
+        verify(tsDao, times(2)).switchBucketAggregation(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 0, 25 * HOUR, 5 * HOUR, COUNT);
+        verify(rollupRepository, times(1)).findAllAndAggregate(SYS_TENANT_ID.getId(), 1, HOUR, 5 * HOUR, 25 * HOUR, 45 * HOUR, COUNT);
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 45 * HOUR, 2 * DAY, 3 * HOUR, COUNT);
+    }
+
+    @Test
+    public void givenNoRollupsCoverage_whenAggregateByRollups_thenAggregatedFromRawValues() {
+        TsKvRollupRepository rollupRepository = mock(TsKvRollupRepository.class);
+        willReturn(null).given(rollupRepository).findCoveredStartTs(any(), anyInt());
+        tsDao.rollupRepository = rollupRepository;
+        willReturn(1).given(tsDao).getOrSaveKeyId(TEMP);
+
+        tsDao.findAllAndAggregateByRollups(SYS_TENANT_ID, TEMP, 0, 2 * DAY, DAY, DAY, COUNT);
+        verify(rollupRepository, never()).findAllAndAggregate(any(), anyInt(), anyLong(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(tsDao, times(1)).switchBucketAggregation(SYS_TENANT_ID, TEMP, 0, 2 * DAY, DAY, COUNT);
+    }
+
+    @Test
+    public void givenStartTsAndInterval_whenGetRollupGranularity_thenLargestAlignedGranularity() {
+        TsKvRollupRepository rollupRepository = new TsKvRollupRepository();
+        assertThat(rollupRepository.getGranularity(0, 2 * DAY)).isEqualTo(DAY);
+        assertThat(rollupRepository.getGranularity(HOUR, DAY)).isEqualTo(HOUR);
+        assertThat(rollupRepository.getGranularity(0, 30 * 60 * 1000)).isEqualTo(0);
+        assertThat(rollupRepository.getGranularity(1, HOUR)).isEqualTo(0);
+    }
+
     long getTsForReadTsKvQuery(long startTs, long endTs) {
         return startTs + (endTs - startTs) / 2L;
     }
@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DaoSqlTest
+public class TsKvDictionaryCacheTest extends AbstractServiceTest {
+
+    @Autowired
+    private TsKvDictionaryCache dictionaryCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenKnownAndNewKeys_whenGetOrSaveKeyIds_thenAllKeysResolvedToDatabaseIds() {
+        String knownKey = newKey();
+        String otherNodeKey = newKey();
+        String newKey = newKey();
+        int knownKeyId = dictionaryCache.getOrSaveKeyId(knownKey);
+        // created by another node, so not in the local map yet
+        jdbcTemplate.update("INSERT INTO ts_kv_dictionary (key) VALUES (?)", otherNodeKey);
+
+        Map<String, Integer> keyIds = dictionaryCache.getOrSaveKeyIds(List.of(knownKey, otherNodeKey, newKey, newKey));
+
+        assertThat(keyIds).containsOnlyKeys(knownKey, otherNodeKey, newKey);
+        assertThat(keyIds.get(knownKey)).isEqualTo(knownKeyId);
+        assertThat(keyIds.get(otherNodeKey)).isEqualTo(findKeyId(otherNodeKey));
+        assertThat(keyIds.get(newKey)).isEqualTo(findKeyId(newKey));
+        assertThat(keyIds.values()).doesNotHaveDuplicates();
+        assertThat(dictionaryCache.getOrSaveKeyIds(List.of(knownKey, otherNodeKey, newKey))).isEqualTo(keyIds);
+    }
+
+    @Test
+    public void givenTwoNodesCreatingSameKeys_whenGetOrSaveKeyIds_thenSameIdsReturned() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            List<String> keys = List.of(newKey(), newKey(), newKey());
+            TsKvDictionaryCache node1 = newCache();
+            TsKvDictionaryCache node2 = newCache();
+            CountDownLatch start = new CountDownLatch(1);
+            Future<Map<String, Integer>> result1 = executor.submit(() -> {
+                start.await();
+                return node1.getOrSaveKeyIds(keys);
+            });
+            Future<Map<String, Integer>> result2 = executor.submit(() -> {
+                start.await();
+                return node2.getOrSaveKeyIds(new ArrayList<>(keys));
+            });
+            start.countDown();
+
+            Map<String, Integer> keyIds = result1.get(30, TimeUnit.SECONDS);
+            assertThat(result2.get(30, TimeUnit.SECONDS)).isEqualTo(keyIds);
+            for (String key : keys) {
+                assertThat(keyIds.get(key)).isEqualTo(findKeyId(key));
+            }
+        }
+    }
+
+    @Test
+    public void givenPreloadedDictionary_whenKeyMissing_thenLoadedFromDatabase() {
+        String preloadedKey = newKey();
+        int preloadedKeyId = dictionaryCache.getOrSaveKeyId(preloadedKey);
+        TsKvDictionaryCache node = newCache();
+        ReflectionTestUtils.setField(node, "preload", true);
+        ReflectionTestUtils.invokeMethod(node, "init");
+        assertThat(getLocalKeyIds(node)).containsEntry(preloadedKey, preloadedKeyId);
+
+        String otherNodeKey = newKey();
+        jdbcTemplate.update("INSERT INTO ts_kv_dictionary (key) VALUES (?)", otherNodeKey);
+        assertThat(getLocalKeyIds(node)).doesNotContainKey(otherNodeKey);
+
+        assertThat(node.getOrSaveKeyId(otherNodeKey)).isEqualTo(findKeyId(otherNodeKey));
+        assertThat(getLocalKeyIds(node)).containsEntry(otherNodeKey, findKeyId(otherNodeKey));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM ts_kv_dictionary WHERE key = ?", Integer.class, otherNodeKey)).isEqualTo(1);
+    }
+
+    private TsKvDictionaryCache newCache() {
+        TsKvDictionaryCache cache = new TsKvDictionaryCache();
+        ReflectionTestUtils.setField(cache, "jdbcTemplate", jdbcTemplate);
+        return cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer> getLocalKeyIds(TsKvDictionaryCache cache) {
+        return (Map<String, Integer>) ReflectionTestUtils.getField(cache, "keyIds");
+    }
+
+    private int findKeyId(String key) {
+        return jdbcTemplate.queryForObject("SELECT key_id FROM ts_kv_dictionary WHERE key = ?", Integer.class, key);
+    }
+
+    private static String newKey() {
+        return "key_" + UUID.randomUUID();
+    }
+
+}
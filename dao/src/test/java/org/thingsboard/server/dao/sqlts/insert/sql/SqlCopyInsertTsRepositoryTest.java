@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
+import org.thingsboard.server.dao.timeseries.SqlPartition;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Checks that the copy insert strategy persists the same data as the batch one
+ * and prints the throughput of both strategies to the log.
+ * */
+@Slf4j
+@DaoSqlTest
+@TestPropertySource(properties = {
+        "sql.ts.insert_strategy=copy"
+})
+public class SqlCopyInsertTsRepositoryTest extends AbstractServiceTest {
+
+    private static final long START_TS = 1_000_000_000_000L;
+    private static final int BATCH_SIZE = 1000;
+    private static final int BATCHES = 20;
+
+    @Autowired
+    private InsertTsRepository<TsKvEntity> insertRepository;
+
+    @Autowired
+    private InsertLatestTsRepository insertLatestRepository;
+
+    @Autowired
+    private SqlPartitioningRepository partitioningRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void givenCopyInsertStrategy_whenSaveOrUpdate_thenSameDataAsBatchInsertStrategy() {
+        assertThat(insertRepository).isInstanceOf(SqlCopyInsertTsRepository.class);
+        partitioningRepository.save(new SqlPartition(SqlPartition.TS_KV, START_TS, START_TS + TimeUnit.DAYS.toMillis(1), "copy_test"));
+
+        SqlInsertTsRepository batchRepository = new SqlInsertTsRepository();
+        ReflectionTestUtils.setField(batchRepository, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(batchRepository, "transactionTemplate", transactionTemplate);
+
+        UUID copyEntityId = UUID.randomUUID();
+        UUID batchEntityId = UUID.randomUUID();
+        long copyTimeMs = saveBatches(copyEntityId, insertRepository::saveOrUpdate);
+        long batchTimeMs = saveBatches(batchEntityId, batch -> transactionTemplate.executeWithoutResult(status -> batchRepository.saveOrUpdate(batch)));
+        log.info("Saved {} entities. Copy: {} ms, {} entities/s; batch: {} ms, {} entities/s", BATCH_SIZE * BATCHES,
+                copyTimeMs, BATCH_SIZE * BATCHES * 1000L / Math.max(1, copyTimeMs),
+                batchTimeMs, BATCH_SIZE * BATCHES * 1000L / Math.max(1, batchTimeMs));
+
+        String selectQuery = "SELECT key, ts, bool_v, str_v, long_v, dbl_v, json_v::text FROM ts_kv WHERE entity_id = ? ORDER BY key, ts";
+        List<List<Object>> copied = jdbcTemplate.query(selectQuery, (rs, i) -> toRow(rs), copyEntityId);
+        List<List<Object>> inserted = jdbcTemplate.query(selectQuery, (rs, i) -> toRow(rs), batchEntityId);
+        assertThat(copied).hasSize(BATCH_SIZE * BATCHES / 2);
+        assertThat(copied).isEqualTo(inserted);
+
+        saveBatches(copyEntityId, batch -> insertLatestRepository.saveOrUpdate(toLatest(batch)));
+        List<Long> latestTs = jdbcTemplate.queryForList("SELECT ts FROM ts_kv_latest WHERE entity_id = ? ORDER BY key", Long.class, copyEntityId);
+        assertThat(latestTs).hasSize(2).allMatch(ts -> ts == START_TS + BATCH_SIZE * BATCHES / 4 - 1);
+    }
+
+    @Test
+    public void givenUpdateByLatestTsDisabled_whenSaveOrUpdateLatest_thenLastWrittenValueWins() {
+        ReflectionTestUtils.setField(insertLatestRepository, "updateByLatestTs", false);
+        try {
+            UUID entityId = UUID.randomUUID();
+            List<TsKvLatestEntity> batch = new ArrayList<>();
+            for (long ts : new long[]{START_TS + 1, START_TS}) {
+                TsKvLatestEntity entity = new TsKvLatestEntity();
+                entity.setEntityId(entityId);
+                entity.setKey(0);
+                entity.setTs(ts);
+                entity.setLongValue(ts);
+                batch.add(entity);
+            }
+            insertLatestRepository.saveOrUpdate(batch);
+
+            Long latestTs = jdbcTemplate.queryForObject("SELECT ts FROM ts_kv_latest WHERE entity_id = ?", Long.class, entityId);
+            assertThat(latestTs).isEqualTo(START_TS);
+        } finally {
+            ReflectionTestUtils.setField(insertLatestRepository, "updateByLatestTs", true);
+        }
+    }
+
+    private long saveBatches(UUID entityId, Consumer<List<TsKvEntity>> saveFunction) {
+        long startTs = System.currentTimeMillis();
+        for (int b = 0; b < BATCHES; b++) {
+            List<TsKvEntity> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                int idx = b * BATCH_SIZE + i;
+                TsKvEntity entity = new TsKvEntity();
+                entity.setEntityId(entityId);
+                entity.setKey(idx % 2);
+                // every point is written twice, the second write has to override the first one
+                entity.setTs(START_TS + (idx / 2) % (BATCH_SIZE * BATCHES / 4));
+                switch (idx % 4) {
+                    case 0:
+                        entity.setLongValue((long) idx);
+                        break;
+                    case 1:
+                        entity.setDoubleValue(idx + 0.1);
+                        break;
+                    case 2:
+                        entity.setStrValue("str" + idx);
+                        break;
+                    default:
+                        entity.setJsonValue("{\"value\":" + idx + "}");
+                        entity.setBooleanValue(idx % 3 == 0);
+                }
+                batch.add(entity);
+            }
+            saveFunction.accept(batch);
+        }
+        return System.currentTimeMillis() - startTs;
+    }
+
+    private List<TsKvLatestEntity> toLatest(List<TsKvEntity> batch) {
+        List<TsKvLatestEntity> result = new ArrayList<>(batch.size());
+        for (TsKvEntity entity : batch) {
+            TsKvLatestEntity latest = new TsKvLatestEntity();
+            latest.setEntityId(entity.getEntityId());
+            latest.setKey(entity.getKey());
+            latest.setTs(entity.getTs());
+            latest.setLongValue(entity.getLongValue());
+            latest.setDoubleValue(entity.getDoubleValue());
+            latest.setStrValue(entity.getStrValue());
+            latest.setJsonValue(entity.getJsonValue());
+            latest.setBooleanValue(entity.getBooleanValue());
+            result.add(latest);
+        }
+        return result;
+    }
+
+    private List<Object> toRow(ResultSet rs) throws SQLException {
+        List<Object> row = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            row.add(rs.getObject(i));
+        }
+        return row;
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseDeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.sqlts.sql.JpaSqlTimeseriesDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.thingsboard.server.dao.sqlts.rollup.TsKvRollupRepository.DAY;
+import static org.thingsboard.server.dao.sqlts.rollup.TsKvRollupRepository.HOUR;
+
+/*
+ * Checks that the aggregation answered from the rollups equals the aggregation of the raw values
+ * for the data saved before the rollups were enabled, overwritten values, removed and expired values.
+ * */
+@DaoSqlTest
+@TestPropertySource(properties = {
+        "sql.ts.rollup.enabled=true"
+})
+public class TsKvRollupRepositoryTest extends AbstractServiceTest {
+
+    private static final String KEY = "temperature";
+    // 2023-11-14T00:00:00Z
+    private static final long START_TS = 1_699_920_000_000L;
+    private static final long POINT_STEP = TimeUnit.MINUTES.toMillis(10);
+
+    @Autowired
+    private JpaSqlTimeseriesDao tsDao;
+
+    @Autowired
+    private TsKvRollupRepository rollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private DeviceId deviceId;
+
+    @Before
+    public void before() {
+        deviceId = new DeviceId(Uuids.timeBased());
+    }
+
+    @After
+    public void after() {
+        ReflectionTestUtils.setField(tsDao, "rollupRepository", rollupRepository);
+    }
+
+    @Test
+    public void givenDataSavedBeforeRollupsEnabled_whenAggregate_thenSameResultAsRawValues() throws Exception {
+        ReflectionTestUtils.setField(tsDao, "rollupRepository", null);
+        save(START_TS, START_TS + DAY, 1);
+        ReflectionTestUtils.setField(tsDao, "rollupRepository", rollupRepository);
+        save(START_TS + DAY, START_TS + 3 * DAY, 1);
+
+        assertThat(rollupRepository.findCoveredStartTs(deviceId.getId(), getKeyId())).isEqualTo(START_TS + DAY);
+        assertSameAsRawValues();
+    }
+
+    @Test
+    public void givenOverwrittenAndDuplicatedValues_whenAggregate_thenValuesCountedOnce() throws Exception {
+        save(START_TS, START_TS + 2 * DAY, 1);
+        save(START_TS + HOUR, START_TS + 5 * HOUR, 7);
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(START_TS + DAY, new LongDataEntry(KEY, (long) i)), 0));
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+
+        assertThat(rollupRepository.findCoveredStartTs(deviceId.getId(), getKeyId())).isEqualTo(START_TS);
+        assertSameAsRawValues();
+        assertThat(aggregate(START_TS, START_TS + 2 * DAY, DAY, Aggregation.COUNT)).containsExactly("144", "144");
+    }
+
+    @Test
+    public void givenRemovedAndExpiredValues_whenAggregate_thenSameResultAsRawValues() throws Exception {
+        save(START_TS, START_TS + 3 * DAY, 1);
+
+        tsDao.remove(tenantId, deviceId, new BaseDeleteTsKvQuery(KEY, START_TS + 2 * DAY + HOUR, START_TS + 2 * DAY + 3 * HOUR, false)).get(30, TimeUnit.SECONDS);
+        assertSameAsRawValues();
+
+        // the same as the tenant TTL removes the raw values
+        jdbcTemplate.update("DELETE FROM ts_kv WHERE entity_id = ? AND ts < ?", deviceId.getId(), START_TS + DAY + 3 * HOUR);
+        rollupRepository.cleanup();
+        assertThat(rollupRepository.findCoveredStartTs(deviceId.getId(), getKeyId())).isEqualTo(START_TS + 2 * DAY);
+        assertSameAsRawValues();
+    }
+
+    @Test
+    public void givenOverwrittenMinAndMaxValues_whenAggregate_thenTouchedHoursRecalculated() throws Exception {
+        save(START_TS, START_TS + DAY, 1);
+        // the folded min and max would keep the overwritten values if the hour was not recalculated
+        tsDao.save(tenantId, deviceId, new BasicTsKvEntry(START_TS, new LongDataEntry(KEY, 1000L)), 0).get(30, TimeUnit.SECONDS);
+        tsDao.save(tenantId, deviceId, new BasicTsKvEntry(START_TS + DAY - POINT_STEP, new LongDataEntry(KEY, -1L)), 0).get(30, TimeUnit.SECONDS);
+
+        assertSameAsRawValues();
+        assertThat(aggregate(START_TS, START_TS + DAY, DAY, Aggregation.MIN)).singleElement().asString().endsWith(":-1");
+        assertThat(aggregate(START_TS, START_TS + DAY, DAY, Aggregation.MAX)).singleElement().asString().endsWith(":1000");
+    }
+
+    @Test
+    public void givenMixedTypesSavedInSeparateBatches_whenAggregate_thenFoldedRollupsSameAsRawValues() throws Exception {
+        save(START_TS, START_TS + DAY, 1);
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (long ts = START_TS + DAY; ts < START_TS + 2 * DAY; ts += POINT_STEP) {
+            double value = (ts - START_TS) / (double) POINT_STEP / 3;
+            futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(ts, new DoubleDataEntry(KEY, value)), 0));
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+        save(START_TS + 2 * DAY, START_TS + 3 * DAY, 2);
+
+        assertSameAsRawValues();
+    }
+
+    @Test
+    public void givenConcurrentSaveAndRemove_whenAggregate_thenSameResultAsRawValues() throws Exception {
+        save(START_TS, START_TS + 3 * DAY, 1);
+        List<ListenableFuture<?>> futures = new ArrayList<>();
+        for (long ts = START_TS; ts < START_TS + 3 * DAY; ts += POINT_STEP) {
+            futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(ts + 1, new LongDataEntry(KEY, ts % 97)), 0));
+            if ((ts - START_TS) % (6 * HOUR) == 0) {
+                futures.add(tsDao.remove(tenantId, deviceId, new BaseDeleteTsKvQuery(KEY, ts, ts + 2 * HOUR, false)));
+            }
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+
+        assertSameAsRawValues();
+    }
+
+    private void save(long startTs, long endTs, long multiplier) throws Exception {
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (long ts = startTs; ts < endTs; ts += POINT_STEP) {
+            long value = (ts - START_TS) / POINT_STEP * multiplier;
+            futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(ts, new LongDataEntry(KEY, value)), 0));
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+    }
+
+    private void assertSameAsRawValues() throws Exception {
+        for (Aggregation aggregation : Aggregation.values()) {
+            if (aggregation == Aggregation.NONE) {
+                continue;
+            }
+            for (long interval : new long[]{HOUR, 6 * HOUR, DAY}) {
+                long endTs = START_TS + 3 * DAY + HOUR / 2;
+                List<String> rollups = aggregate(START_TS, endTs, interval, aggregation);
+                ReflectionTestUtils.setField(tsDao, "rollupRepository", null);
+                List<String> raw = aggregate(START_TS, endTs, interval, aggregation);
+                ReflectionTestUtils.setField(tsDao, "rollupRepository", rollupRepository);
+                assertThat(rollups).as("%s by %s ms", aggregation, interval).isEqualTo(raw);
+            }
+        }
+    }
+
+    private List<String> aggregate(long startTs, long endTs, long interval, Aggregation aggregation) throws Exception {
+        List<TsKvEntry> data = tsDao.findAllAsync(tenantId, deviceId, new BaseReadTsKvQuery(KEY, startTs, endTs, interval, 10000, aggregation, "ASC"))
+                .get(30, TimeUnit.SECONDS).getData();
+        return data.stream().map(entry -> aggregation == Aggregation.COUNT ? entry.getValueAsString() : entry.getTs() + ":" + entry.getValueAsString())
+                .collect(Collectors.toList());
+    }
+
+    private int getKeyId() {
+        return jdbcTemplate.queryForObject("SELECT key_id FROM ts_kv_dictionary WHERE key = ?", Integer.class, KEY);
+    }
+
+}
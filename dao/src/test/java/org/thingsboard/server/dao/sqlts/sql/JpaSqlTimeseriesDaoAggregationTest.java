@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.sql;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Compares the single query bucket aggregation with the per-interval aggregation.
+ * Results must be equal, elapsed time of both approaches is printed to the log.
+ * */
+@Slf4j
+@DaoSqlTest
+public class JpaSqlTimeseriesDaoAggregationTest extends AbstractServiceTest {
+
+    private static final String NUMERIC_KEY = "numeric";
+    private static final String STRING_KEY = "string";
+    private static final long START_TS = 1_000_000L;
+    private static final int POINTS = 2_000;
+    private static final long POINT_STEP = 1_000L;
+    private static final long INTERVAL = 60_000L;
+
+    @Autowired
+    private JpaSqlTimeseriesDao tsDao;
+
+    @Test
+    public void givenNumericAndStringData_whenAggregate_thenSingleQueryResultEqualsPerIntervalResult() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < POINTS; i++) {
+            long ts = START_TS + i * POINT_STEP;
+            TsKvEntry numeric = i % 2 == 0 ? new BasicTsKvEntry(ts, new LongDataEntry(NUMERIC_KEY, (long) i)) :
+                    new BasicTsKvEntry(ts, new DoubleDataEntry(NUMERIC_KEY, i + 0.5));
+            futures.add(tsDao.save(tenantId, deviceId, numeric, 0));
+            futures.add(tsDao.save(tenantId, deviceId, new BasicTsKvEntry(ts, new StringDataEntry(STRING_KEY, "v" + i)), 0));
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+
+        long endTs = START_TS + POINTS * POINT_STEP + INTERVAL / 3;
+        for (Aggregation aggregation : Aggregation.values()) {
+            if (aggregation == Aggregation.NONE) {
+                continue;
+            }
+            for (String key : List.of(NUMERIC_KEY, STRING_KEY)) {
+                ReadTsKvQuery query = new BaseReadTsKvQuery(key, START_TS, endTs, INTERVAL, POINTS, aggregation, "ASC");
+
+                ReflectionTestUtils.setField(tsDao, "singleQueryAggregation", false);
+                long startNs = System.nanoTime();
+                ReadTsKvQueryResult perInterval = tsDao.findAllAsync(tenantId, deviceId, query).get(30, TimeUnit.SECONDS);
+                long perIntervalNs = System.nanoTime() - startNs;
+
+                ReflectionTestUtils.setField(tsDao, "singleQueryAggregation", true);
+                startNs = System.nanoTime();
+                ReadTsKvQueryResult singleQuery = tsDao.findAllAsync(tenantId, deviceId, query).get(30, TimeUnit.SECONDS);
+                long singleQueryNs = System.nanoTime() - startNs;
+
+                log.info("[{}][{}] per interval: {} ms, single query: {} ms", aggregation, key,
+                        TimeUnit.NANOSECONDS.toMillis(perIntervalNs), TimeUnit.NANOSECONDS.toMillis(singleQueryNs));
+                assertThat(singleQuery.getData()).as(aggregation + " " + key).isEqualTo(perInterval.getData());
+            }
+        }
+    }
+
+}
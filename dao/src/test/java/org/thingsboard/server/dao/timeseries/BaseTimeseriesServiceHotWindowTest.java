@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.thingsboard.server.common.data.id.TenantId.SYS_TENANT_ID;
+
+public class BaseTimeseriesServiceHotWindowTest {
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private TimeseriesDao timeseriesDao;
+    private TsHotWindowCache hotWindowCache;
+    private BaseTimeseriesService service;
+
+    @Before
+    public void before() {
+        timeseriesDao = mock(TimeseriesDao.class);
+        hotWindowCache = mock(TsHotWindowCache.class);
+        service = new BaseTimeseriesService();
+        ReflectionTestUtils.setField(service, "timeseriesDao", timeseriesDao);
+        ReflectionTestUtils.setField(service, "hotWindowCache", hotWindowCache);
+    }
+
+    @Test
+    public void givenHotWindowAndDaoResultsInterleaved_whenFindAllByQueries_thenResultsInQueriesOrder() throws Exception {
+        List<ReadTsKvQuery> queries = List.of(query("a"), query("b"), query("c"), query("d"));
+        ReadTsKvQueryResult resultA = result(0);
+        ReadTsKvQueryResult resultB = result(1);
+        ReadTsKvQueryResult resultC = result(2);
+        ReadTsKvQueryResult resultD = result(3);
+        when(hotWindowCache.find(any(), any())).thenReturn(null);
+        when(hotWindowCache.find(deviceId, queries.get(1))).thenReturn(resultB);
+        when(hotWindowCache.find(deviceId, queries.get(3))).thenReturn(resultD);
+        when(timeseriesDao.findAllAsync(eq(SYS_TENANT_ID), eq(deviceId), eq(List.of(queries.get(0), queries.get(2)))))
+                .thenReturn(Futures.immediateFuture(List.of(resultA, resultC)));
+
+        List<ReadTsKvQueryResult> results = service.findAllByQueries(SYS_TENANT_ID, deviceId, queries).get(5, TimeUnit.SECONDS);
+
+        assertThat(results).containsExactly(resultA, resultB, resultC, resultD);
+    }
+
+    @Test
+    public void givenAllQueriesInHotWindow_whenFindAllByQueries_thenDaoNotQueried() throws Exception {
+        List<ReadTsKvQuery> queries = List.of(query("a"), query("b"));
+        ReadTsKvQueryResult resultA = result(0);
+        ReadTsKvQueryResult resultB = result(1);
+        when(hotWindowCache.find(deviceId, queries.get(0))).thenReturn(resultA);
+        when(hotWindowCache.find(deviceId, queries.get(1))).thenReturn(resultB);
+
+        List<ReadTsKvQueryResult> results = service.findAllByQueries(SYS_TENANT_ID, deviceId, queries).get(5, TimeUnit.SECONDS);
+
+        assertThat(results).containsExactly(resultA, resultB);
+        verifyNoInteractions(timeseriesDao);
+    }
+
+    private static ReadTsKvQuery query(String key) {
+        return new BaseReadTsKvQuery(key, 0, 1000, 0, 100, Aggregation.NONE, "DESC");
+    }
+
+    private static ReadTsKvQueryResult result(int queryId) {
+        return new ReadTsKvQueryResult(queryId, Collections.emptyList(), 0);
+    }
+
+}
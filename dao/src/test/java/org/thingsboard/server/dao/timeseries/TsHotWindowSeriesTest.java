@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.thingsboard.server.common.data.id.TenantId.SYS_TENANT_ID;
+
+public class TsHotWindowSeriesTest {
+
+    private static final String KEY = "temperature";
+
+    @Test
+    public void givenOutOfOrderPoints_whenFindRaw_thenPointsOrderedAndLimited() {
+        TsHotWindowSeries series = new TsHotWindowSeries(SYS_TENANT_ID, KEY, 0, 100);
+        for (long ts : new long[]{50, 10, 30, 20, 40}) {
+            series.add(longEntry(ts, ts), 0);
+        }
+        series.add(longEntry(30, 33), 0);
+
+        ReadTsKvQueryResult asc = series.find(new BaseReadTsKvQuery(KEY, 10, 50, 0, 10, Aggregation.NONE, "ASC"));
+        assertThat(asc.getData().stream().map(TsKvEntry::getTs).collect(Collectors.toList())).containsExactly(10L, 20L, 30L, 40L);
+        assertThat(asc.getData().get(2).getLongValue()).hasValue(33L);
+        assertThat(asc.getLastEntryTs()).isEqualTo(40L);
+
+        ReadTsKvQueryResult desc = series.find(new BaseReadTsKvQuery(KEY, 0, 100, 0, 2, Aggregation.NONE, "DESC"));
+        assertThat(desc.getData().stream().map(TsKvEntry::getTs).collect(Collectors.toList())).containsExactly(50L, 40L);
+    }
+
+    @Test
+    public void givenQueryBeforeCoveredTs_whenFind_thenNotAnswered() {
+        TsHotWindowSeries series = new TsHotWindowSeries(SYS_TENANT_ID, KEY, 100, 100);
+        series.add(longEntry(150, 1), 150);
+        assertThat(series.find(new BaseReadTsKvQuery(KEY, 50, 200, 0, 10, Aggregation.NONE, "ASC"))).isNull();
+        assertThat(series.find(new BaseReadTsKvQuery(KEY, 100, 200, 0, 10, Aggregation.NONE, "ASC")).getData()).hasSize(1);
+    }
+
+    @Test
+    public void givenFullSeries_whenAddPoint_thenOldestEvictedAndCoverageMoved() {
+        TsHotWindowSeries series = new TsHotWindowSeries(SYS_TENANT_ID, KEY, 0, 3);
+        for (long ts = 1; ts <= 4; ts++) {
+            series.add(longEntry(ts, ts), 0);
+        }
+        assertThat(series.find(new BaseReadTsKvQuery(KEY, 1, 10, 0, 10, Aggregation.NONE, "ASC"))).isNull();
+        ReadTsKvQueryResult result = series.find(new BaseReadTsKvQuery(KEY, 2, 10, 0, 10, Aggregation.NONE, "ASC"));
+        assertThat(result.getData().stream().map(TsKvEntry::getTs).collect(Collectors.toList())).containsExactly(2L, 3L, 4L);
+
+        series.trim(4);
+        result = series.find(new BaseReadTsKvQuery(KEY, 4, 10, 0, 10, Aggregation.NONE, "ASC"));
+        assertThat(result.getData().stream().map(TsKvEntry::getTs).collect(Collectors.toList())).containsExactly(4L);
+    }
+
+    @Test
+    public void givenNumericPoints_whenFindAggregated_thenBucketsSameAsDatabase() {
+        TsHotWindowSeries series = new TsHotWindowSeries(SYS_TENANT_ID, KEY, 0, 100);
+        series.add(longEntry(1, 2), 0);
+        series.add(doubleEntry(2, 3.5), 0);
+        series.add(longEntry(11, 4), 0);
+        series.add(longEntry(12, 6), 0);
+
+        ReadTsKvQueryResult avg = series.find(new BaseReadTsKvQuery(KEY, 0, 25, 10, 10, Aggregation.AVG, "ASC"));
+        assertThat(avg.getData()).hasSize(2);
+        assertThat(avg.getData().get(0).getTs()).isEqualTo(5L);
+        assertThat(avg.getData().get(0).getDoubleValue()).hasValue(2.75);
+        assertThat(avg.getData().get(1).getDoubleValue()).hasValue(5.0);
+        assertThat(avg.getLastEntryTs()).isEqualTo(12L);
+
+        ReadTsKvQueryResult sum = series.find(new BaseReadTsKvQuery(KEY, 0, 25, 10, 10, Aggregation.SUM, "ASC"));
+        assertThat(sum.getData().get(0).getDoubleValue()).hasValue(5.5);
+        assertThat(sum.getData().get(1).getLongValue()).hasValue(10L);
+
+        ReadTsKvQueryResult max = series.find(new BaseReadTsKvQuery(KEY, 0, 25, 10, 10, Aggregation.MAX, "ASC"));
+        assertThat(max.getData().get(0).getDoubleValue()).hasValue(3.5);
+        assertThat(max.getData().get(1).getLongValue()).hasValue(6L);
+
+        ReadTsKvQueryResult count = series.find(new BaseReadTsKvQuery(KEY, 0, 25, 10, 10, Aggregation.COUNT, "ASC"));
+        assertThat(count.getData().get(0).getLongValue()).hasValue(2L);
+        assertThat(count.getData().get(1).getTs()).isEqualTo(15L);
+    }
+
+    @Test
+    public void givenStringPoints_whenFindAggregated_thenNotAnswered() {
+        TsHotWindowSeries series = new TsHotWindowSeries(SYS_TENANT_ID, KEY, 0, 100);
+        series.add(new BasicTsKvEntry(1, new StringDataEntry(KEY, "on")), 0);
+        assertThat(series.find(new BaseReadTsKvQuery(KEY, 0, 10, 10, 10, Aggregation.COUNT, "ASC"))).isNull();
+        assertThat(series.find(new BaseReadTsKvQuery(KEY, 0, 10, 0, 10, Aggregation.NONE, "ASC")).getData().get(0).getStrValue()).hasValue("on");
+    }
+
+    private static TsKvEntry longEntry(long ts, long value) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(KEY, value));
+    }
+
+    private static TsKvEntry doubleEntry(long ts, double value) {
+        return new BasicTsKvEntry(ts, new DoubleDataEntry(KEY, value));
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsKvParallelQueryCursorTest {
+
+    private static final String KEY = "temperature";
+
+    @Test
+    public void givenPartitionsFetchedOutOfOrder_whenAddData_thenMergedInQueryOrder() {
+        TsKvParallelQueryCursor cursor = newCursor("DESC", 10, 2, List.of(100L, 200L, 300L));
+
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(0);
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(1);
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(-1);
+        assertThat(cursor.getPartition(0)).isEqualTo(300L);
+        assertThat(cursor.getPartition(1)).isEqualTo(200L);
+
+        cursor.addData(1, entries(250, 210));
+        assertThat(cursor.getData()).isEmpty();
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(2);
+
+        cursor.addData(0, entries(350, 310));
+        cursor.addData(2, entries(150));
+        assertThat(cursor.isDone()).isTrue();
+        assertThat(timestamps(cursor)).containsExactly(350L, 310L, 250L, 210L, 150L);
+    }
+
+    @Test
+    public void givenLimitReached_whenNextPartitionIdx_thenNoMorePartitionsIssuedAndDataTruncated() {
+        TsKvParallelQueryCursor cursor = newCursor("ASC", 3, 2, List.of(100L, 200L, 300L, 400L));
+
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(0);
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(1);
+        cursor.addData(0, entries(110, 120));
+        cursor.addData(1, entries(210, 220));
+
+        assertThat(cursor.isDone()).isTrue();
+        assertThat(cursor.nextPartitionIdx()).isEqualTo(-1);
+        assertThat(timestamps(cursor)).containsExactly(110L, 120L, 210L);
+    }
+
+    private static TsKvParallelQueryCursor newCursor(String order, int limit, int maxInFlight, List<Long> partitions) {
+        return new TsKvParallelQueryCursor("DEVICE", UUID.randomUUID(),
+                new BaseReadTsKvQuery(KEY, 0, 1000, 0, limit, Aggregation.NONE, order), partitions, maxInFlight);
+    }
+
+    private static List<TsKvEntry> entries(long... timestamps) {
+        return Arrays.stream(timestamps).mapToObj(ts -> (TsKvEntry) new BasicTsKvEntry(ts, new LongDataEntry(KEY, ts))).collect(Collectors.toList());
+    }
+
+    private static List<Long> timestamps(TsKvParallelQueryCursor cursor) {
+        return cursor.getData().stream().map(TsKvEntry::getTs).collect(Collectors.toList());
+    }
+
+}
@@ -15,17 +15,29 @@
  */
 package org.thingsboard.rule.engine.deduplication;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Data;
-import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Data
 public class DeduplicationData {
 
-    private final List<TbMsg> msgList;
+    private final List<DeduplicationMsg> msgList;
     private boolean tickScheduled;
+    private long size;
+
+    // Used only if the state is persisted
+    private RuleNodeState state;
+    private boolean stateChanged;
 
     public DeduplicationData() {
         msgList = new LinkedList<>();
@@ -35,11 +47,47 @@ public class DeduplicationData {
         return msgList.size();
     }
 
-    public void add(TbMsg msg) {
+    public void add(DeduplicationMsg msg) {
         msgList.add(msg);
+        size += msg.getSize();
+        stateChanged = true;
+    }
+
+    public void onRemoved(DeduplicationMsg msg) {
+        size -= msg.getSize();
+        stateChanged = true;
     }
 
     public boolean isEmpty() {
         return msgList.isEmpty();
     }
+
+    /**
+     * Adds the messages of the other data that are not pending here yet and takes over its persisted state,
+     * so the messages saved by the previous owner of the entity are not lost or overwritten.
+     */
+    public void merge(DeduplicationData other) {
+        Set<UUID> ids = msgList.stream().map(DeduplicationMsg::getId).collect(Collectors.toSet());
+        other.getMsgList().stream().filter(msg -> !ids.contains(msg.getId())).forEach(this::add);
+        state = other.getState();
+    }
+
+    public String toStateData() {
+        ObjectNode stateData = JacksonUtil.newObjectNode();
+        ArrayNode msgs = stateData.putArray("msgs");
+        msgList.forEach(msg -> msgs.add(msg.toJson()));
+        return JacksonUtil.toString(stateData);
+    }
+
+    public static DeduplicationData fromState(RuleNodeState state) {
+        DeduplicationData data = new DeduplicationData();
+        JsonNode msgs = JacksonUtil.toJsonNode(state.getStateData()).get("msgs");
+        if (msgs != null) {
+            msgs.forEach(msg -> data.add(DeduplicationMsg.fromJson(msg)));
+        }
+        data.setState(state);
+        data.setStateChanged(false);
+        return data;
+    }
+
 }
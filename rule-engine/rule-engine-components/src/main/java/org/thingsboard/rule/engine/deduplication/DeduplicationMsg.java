@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.deduplication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The fields of a pending message that are needed to produce the deduplication result.
+ * The queue name, type and customer id are not kept for the {@link DeduplicationStrategy#ALL} strategy,
+ * since it produces a new message.
+ */
+@Data
+public class DeduplicationMsg {
+
+    private final UUID id;
+    private final long ts;
+    private final String queueName;
+    private final String type;
+    private final CustomerId customerId;
+    private final TbMsgMetaData metaData;
+    private final String data;
+
+    public static DeduplicationMsg of(TbMsg msg, DeduplicationStrategy strategy) {
+        if (DeduplicationStrategy.ALL.equals(strategy)) {
+            return new DeduplicationMsg(msg.getId(), msg.getMetaDataTs(), null, null, null, msg.getMetaData().copy(), msg.getData());
+        }
+        return new DeduplicationMsg(msg.getId(), msg.getMetaDataTs(), msg.getQueueName(), msg.getType(), msg.getCustomerId(), msg.getMetaData().copy(), msg.getData());
+    }
+
+    /**
+     * Approximate heap footprint of the message in bytes.
+     */
+    public long getSize() {
+        long[] size = {64 + (data != null ? 2L * data.length() : 0)};
+        metaData.forEach((key, value) -> size[0] += 2L * (key.length() + value.length()));
+        return size[0];
+    }
+
+    ObjectNode toJson() {
+        ObjectNode node = JacksonUtil.newObjectNode();
+        node.put("id", id.toString());
+        node.put("ts", ts);
+        if (queueName != null) {
+            node.put("queueName", queueName);
+        }
+        if (type != null) {
+            node.put("type", type);
+        }
+        if (customerId != null) {
+            node.put("customerId", customerId.getId().toString());
+        }
+        ObjectNode metaDataNode = node.putObject("metaData");
+        metaData.forEach(metaDataNode::put);
+        node.put("data", data);
+        return node;
+    }
+
+    static DeduplicationMsg fromJson(JsonNode node) {
+        Map<String, String> metaData = new HashMap<>();
+        node.get("metaData").fields().forEachRemaining(e -> metaData.put(e.getKey(), e.getValue().asText()));
+        return new DeduplicationMsg(
+                node.has("id") ? UUID.fromString(node.get("id").asText()) : UUID.randomUUID(),
+                node.get("ts").asLong(),
+                node.has("queueName") ? node.get("queueName").asText() : null,
+                node.has("type") ? node.get("type").asText() : null,
+                node.has("customerId") ? new CustomerId(UUID.fromString(node.get("customerId").asText())) : null,
+                new TbMsgMetaData(metaData),
+                node.get("data").isNull() ? null : node.get("data").asText());
+    }
+
+}
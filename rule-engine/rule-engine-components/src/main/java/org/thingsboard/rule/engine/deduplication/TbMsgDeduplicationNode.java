@@ -26,12 +26,16 @@ import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
 import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.PageLink;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
 import org.thingsboard.server.common.data.msg.TbMsgType;
 import org.thingsboard.server.common.data.msg.TbNodeConnectionType;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.data.util.TbPair;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -64,9 +68,12 @@ public class TbMsgDeduplicationNode implements TbNode {
     public static final int TB_MSG_DEDUPLICATION_RETRY_DELAY = 10;
 
     private TbMsgDeduplicationNodeConfiguration config;
+    private TbContext ctx;
 
     private final Map<EntityId, DeduplicationData> deduplicationMap;
     private long deduplicationInterval;
+    private long pendingMsgsCount;
+    private long pendingMsgsSize;
 
     public TbMsgDeduplicationNode() {
         this.deduplicationMap = new HashMap<>();
@@ -76,34 +83,171 @@ public class TbMsgDeduplicationNode implements TbNode {
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbMsgDeduplicationNodeConfiguration.class);
         this.deduplicationInterval = TimeUnit.SECONDS.toMillis(config.getInterval());
+        this.ctx = ctx;
+        if (config.isPersistState()) {
+            fetchStates(ctx);
+        } else if (ctx.isLocalEntity(ctx.getSelfId())) {
+            ctx.clearRuleNodeStates();
+        }
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         if (msg.isTypeOf(TbMsgType.DEDUPLICATION_TIMEOUT_SELF_MSG)) {
-            processDeduplication(ctx, msg.getOriginator());
+            if (ctx.getSelfId().equals(msg.getOriginator())) {
+                fetchStates(ctx);
+            } else {
+                processDeduplication(ctx, msg.getOriginator());
+            }
         } else {
             processOnRegularMsg(ctx, msg);
         }
     }
 
+    @Override
+    public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
+        if (config.isPersistState()) {
+            // The pending messages of the entities that are no longer assigned to the current server are fetched by the new owner
+            deduplicationMap.entrySet().removeIf(entry -> {
+                if (ctx.isLocalEntity(entry.getKey())) {
+                    return false;
+                }
+                persistState(ctx, entry.getKey(), entry.getValue());
+                onRemoved(entry.getValue());
+                return true;
+            });
+            fetchStates(ctx);
+            // The previous owner may save the messages it has acknowledged before it has processed the partition change,
+            // so the states are fetched once more after the deduplication interval
+            ctx.tellSelf(ctx.newMsg(null, TbMsgType.DEDUPLICATION_TIMEOUT_SELF_MSG, ctx.getSelfId(), TbMsgMetaData.EMPTY, TbMsg.EMPTY_STRING), deduplicationInterval + 1);
+        }
+    }
+
     @Override
     public void destroy() {
+        if (config != null && config.isPersistState()) {
+            deduplicationMap.forEach((id, data) -> persistState(ctx, id, data));
+        }
         deduplicationMap.clear();
+        pendingMsgsCount = 0;
+        pendingMsgsSize = 0;
+    }
+
+    private void fetchStates(TbContext ctx) {
+        int fetchCount = 0;
+        PageLink pageLink = new PageLink(1024);
+        while (true) {
+            PageData<RuleNodeState> states = ctx.findRuleNodeStates(pageLink);
+            for (RuleNodeState state : states.getData()) {
+                EntityId id = state.getEntityId();
+                if (ctx.isLocalEntity(id)) {
+                    DeduplicationData data = deduplicationMap.computeIfAbsent(id, k -> new DeduplicationData());
+                    merge(data, state);
+                    fetchCount++;
+                    if (!data.isEmpty()) {
+                        scheduleTickMsg(ctx, id, data);
+                    }
+                }
+            }
+            if (!states.hasNext()) {
+                break;
+            }
+            pageLink = pageLink.nextPageLink();
+        }
+        if (fetchCount > 0) {
+            log.debug("[{}] Fetched pending msgs of {} entities", ctx.getSelfId(), fetchCount);
+        }
+    }
+
+    /**
+     * Adds the pending messages of the stored state that are missing in the data, e.g. saved by the previous owner of the entity.
+     */
+    private void reloadState(TbContext ctx, EntityId id, DeduplicationData data) {
+        RuleNodeState state = ctx.findRuleNodeStateForEntity(id);
+        if (state != null) {
+            merge(data, state);
+        }
+    }
+
+    private void merge(DeduplicationData data, RuleNodeState state) {
+        long sizeBefore = data.getSize();
+        int countBefore = data.size();
+        data.merge(DeduplicationData.fromState(state));
+        pendingMsgsCount += data.size() - countBefore;
+        pendingMsgsSize += data.getSize() - sizeBefore;
+    }
+
+    private boolean persistState(TbContext ctx, EntityId id, DeduplicationData data) {
+        if (!data.isStateChanged()) {
+            return true;
+        }
+        try {
+            if (data.isEmpty()) {
+                if (data.getState() != null) {
+                    ctx.removeRuleNodeStateForEntity(id);
+                    data.setState(null);
+                }
+            } else {
+                RuleNodeState state = data.getState();
+                if (state == null) {
+                    state = new RuleNodeState();
+                    state.setRuleNodeId(ctx.getSelfId());
+                    state.setEntityId(id);
+                }
+                state.setStateData(data.toStateData());
+                data.setState(ctx.saveRuleNodeState(state));
+            }
+            data.setStateChanged(false);
+            return true;
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to persist pending msgs", ctx.getSelfId(), id, e);
+            return false;
+        }
+    }
+
+    private void onRemoved(DeduplicationData data) {
+        pendingMsgsCount -= data.size();
+        pendingMsgsSize -= data.getSize();
     }
 
     private void processOnRegularMsg(TbContext ctx, TbMsg msg) {
         EntityId id = msg.getOriginator();
         DeduplicationData deduplicationMsgs = deduplicationMap.computeIfAbsent(id, k -> new DeduplicationData());
+        boolean localEntity = !config.isPersistState() || ctx.isLocalEntity(id);
+        if (config.isPersistState() && (deduplicationMsgs.getState() == null || !localEntity)) {
+            // The state may be saved by the other owner of the entity around the partition change
+            reloadState(ctx, id, deduplicationMsgs);
+        }
         if (deduplicationMsgs.size() < config.getMaxPendingMsgs()) {
             log.trace("[{}][{}] Adding msg: [{}][{}] to the pending msgs map ...", ctx.getSelfId(), id, msg.getId(), msg.getMetaDataTs());
-            deduplicationMsgs.add(msg);
-            ctx.ack(msg);
-            scheduleTickMsg(ctx, id, deduplicationMsgs);
+            DeduplicationMsg deduplicationMsg = DeduplicationMsg.of(msg, config.getStrategy());
+            deduplicationMsgs.add(deduplicationMsg);
+            pendingMsgsCount++;
+            pendingMsgsSize += deduplicationMsg.getSize();
+            // The msg is acknowledged only after it is persisted, so it is not lost if the server stops
+            if (!config.isPersistState() || persistState(ctx, id, deduplicationMsgs)) {
+                ctx.ack(msg);
+                if (localEntity) {
+                    scheduleTickMsg(ctx, id, deduplicationMsgs);
+                }
+            } else {
+                deduplicationMsgs.getMsgList().remove(deduplicationMsg);
+                deduplicationMsgs.onRemoved(deduplicationMsg);
+                pendingMsgsCount--;
+                pendingMsgsSize -= deduplicationMsg.getSize();
+                ctx.tellFailure(msg, new RuntimeException("[" + ctx.getSelfId() + "] Failed to persist pending msgs for deduplication id: [" + id + "]"));
+            }
         } else {
             log.trace("[{}] Max limit of pending messages reached for deduplication id: [{}]", ctx.getSelfId(), id);
             ctx.tellFailure(msg, new RuntimeException("[" + ctx.getSelfId() + "] Max limit of pending messages reached for deduplication id: [" + id + "]"));
         }
+        if (!localEntity) {
+            // The pending messages are processed by the new owner of the entity
+            deduplicationMap.remove(id);
+            onRemoved(deduplicationMsgs);
+        } else if (deduplicationMsgs.isEmpty() && !deduplicationMsgs.isTickScheduled()) {
+            deduplicationMap.remove(id);
+        }
     }
 
     private void processDeduplication(TbContext ctx, EntityId deduplicationId) {
@@ -115,21 +259,27 @@ public class TbMsgDeduplicationNode implements TbNode {
         if (data.isEmpty()) {
             return;
         }
+        if (config.isPersistState()) {
+            reloadState(ctx, deduplicationId, data);
+        }
         long deduplicationTimeoutMs = System.currentTimeMillis();
+        long sizeBefore = data.getSize();
+        int countBefore = data.size();
         try {
             List<TbMsg> deduplicationResults = new ArrayList<>();
-            List<TbMsg> msgList = data.getMsgList();
+            List<DeduplicationMsg> msgList = data.getMsgList();
             Optional<TbPair<Long, Long>> packBoundsOpt = findValidPack(msgList, deduplicationTimeoutMs);
             while (packBoundsOpt.isPresent()) {
                 TbPair<Long, Long> packBounds = packBoundsOpt.get();
                 if (DeduplicationStrategy.ALL.equals(config.getStrategy())) {
-                    List<TbMsg> pack = new ArrayList<>();
-                    for (Iterator<TbMsg> iterator = msgList.iterator(); iterator.hasNext(); ) {
-                        TbMsg msg = iterator.next();
-                        long msgTs = msg.getMetaDataTs();
+                    List<DeduplicationMsg> pack = new ArrayList<>();
+                    for (Iterator<DeduplicationMsg> iterator = msgList.iterator(); iterator.hasNext(); ) {
+                        DeduplicationMsg msg = iterator.next();
+                        long msgTs = msg.getTs();
                         if (msgTs >= packBounds.getFirst() && msgTs < packBounds.getSecond()) {
                             pack.add(msg);
                             iterator.remove();
+                            data.onRemoved(msg);
                         }
                     }
                     deduplicationResults.add(TbMsg.newMsg(
@@ -139,16 +289,17 @@ public class TbMsgDeduplicationNode implements TbNode {
                             getMetadata(),
                             getMergedData(pack)));
                 } else {
-                    TbMsg resultMsg = null;
+                    DeduplicationMsg resultMsg = null;
                     boolean searchMin = DeduplicationStrategy.FIRST.equals(config.getStrategy());
-                    for (Iterator<TbMsg> iterator = msgList.iterator(); iterator.hasNext(); ) {
-                        TbMsg msg = iterator.next();
-                        long msgTs = msg.getMetaDataTs();
+                    for (Iterator<DeduplicationMsg> iterator = msgList.iterator(); iterator.hasNext(); ) {
+                        DeduplicationMsg msg = iterator.next();
+                        long msgTs = msg.getTs();
                         if (msgTs >= packBounds.getFirst() && msgTs < packBounds.getSecond()) {
                             iterator.remove();
+                            data.onRemoved(msg);
                             if (resultMsg == null
-                                    || (searchMin && msg.getMetaDataTs() < resultMsg.getMetaDataTs())
-                                    || (!searchMin && msg.getMetaDataTs() > resultMsg.getMetaDataTs())) {
+                                    || (searchMin && msg.getTs() < resultMsg.getTs())
+                                    || (!searchMin && msg.getTs() > resultMsg.getTs())) {
                                 resultMsg = msg;
                             }
                         }
@@ -157,7 +308,7 @@ public class TbMsgDeduplicationNode implements TbNode {
                         deduplicationResults.add(TbMsg.newMsg(
                                 resultMsg.getQueueName(),
                                 resultMsg.getType(),
-                                resultMsg.getOriginator(),
+                                deduplicationId,
                                 resultMsg.getCustomerId(),
                                 resultMsg.getMetaData(),
                                 resultMsg.getData()));
@@ -167,9 +318,18 @@ public class TbMsgDeduplicationNode implements TbNode {
             }
             deduplicationResults.forEach(outMsg -> enqueueForTellNextWithRetry(ctx, outMsg, 0));
         } finally {
+            pendingMsgsCount -= countBefore - data.size();
+            pendingMsgsSize -= sizeBefore - data.getSize();
+            if (config.isPersistState()) {
+                persistState(ctx, deduplicationId, data);
+            }
             if (!data.isEmpty()) {
                 scheduleTickMsg(ctx, deduplicationId, data);
+            } else {
+                deduplicationMap.remove(deduplicationId);
             }
+            log.debug("[{}] Pending msgs: {} of {} entities, approximate size: {} bytes", ctx.getSelfId(),
+                    pendingMsgsCount, deduplicationMap.size(), pendingMsgsSize);
         }
     }
 
@@ -180,10 +340,10 @@ public class TbMsgDeduplicationNode implements TbNode {
         }
     }
 
-    private Optional<TbPair<Long, Long>> findValidPack(List<TbMsg> msgs, long deduplicationTimeoutMs) {
-        Optional<TbMsg> min = msgs.stream().min(Comparator.comparing(TbMsg::getMetaDataTs));
+    private Optional<TbPair<Long, Long>> findValidPack(List<DeduplicationMsg> msgs, long deduplicationTimeoutMs) {
+        Optional<DeduplicationMsg> min = msgs.stream().min(Comparator.comparingLong(DeduplicationMsg::getTs));
         return min.map(minTsMsg -> {
-            long packStartTs = minTsMsg.getMetaDataTs();
+            long packStartTs = minTsMsg.getTs();
             long packEndTs = packStartTs + deduplicationInterval;
             if (packEndTs <= deduplicationTimeoutMs) {
                 return new TbPair<>(packStartTs, packEndTs);
@@ -211,7 +371,7 @@ public class TbMsgDeduplicationNode implements TbNode {
         ctx.tellSelf(ctx.newMsg(null, TbMsgType.DEDUPLICATION_TIMEOUT_SELF_MSG, deduplicationId, TbMsgMetaData.EMPTY, TbMsg.EMPTY_STRING), deduplicationInterval + 1);
     }
 
-    private String getMergedData(List<TbMsg> msgs) {
+    private String getMergedData(List<DeduplicationMsg> msgs) {
         ArrayNode mergedData = JacksonUtil.newArrayNode();
         msgs.forEach(msg -> {
             ObjectNode msgNode = JacksonUtil.newObjectNode();
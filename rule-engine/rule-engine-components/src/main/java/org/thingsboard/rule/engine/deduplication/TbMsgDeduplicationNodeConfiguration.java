@@ -31,6 +31,8 @@ public class TbMsgDeduplicationNodeConfiguration implements NodeConfiguration<Tb
     // Advanced settings:
     private int maxPendingMsgs;
     private int maxRetries;
+    // Persist the pending messages to survive restarts and to move them with the entity to the new server on partition change
+    private boolean persistState;
 
     @Override
     public TbMsgDeduplicationNodeConfiguration defaultConfiguration() {
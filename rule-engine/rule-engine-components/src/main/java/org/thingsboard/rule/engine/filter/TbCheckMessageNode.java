@@ -29,6 +29,7 @@ import org.thingsboard.server.common.msg.TbMsg;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RuleNode(
@@ -71,61 +72,64 @@ public class TbCheckMessageNode implements TbNode {
 
     private boolean allKeysData(TbMsg msg) {
         if (!messageNamesList.isEmpty()) {
-            Map<String, String> dataMap = dataToMap(msg);
-            return processAllKeys(messageNamesList, dataMap);
+            Set<String> dataKeys = dataKeys(msg);
+            return processAllKeys(messageNamesList, dataKeys);
         }
         return true;
     }
 
     private boolean allKeysMetadata(TbMsg msg) {
         if (!metadataNamesList.isEmpty()) {
-            Map<String, String> metadataMap = metadataToMap(msg);
-            return processAllKeys(metadataNamesList, metadataMap);
+            Set<String> metadataKeys = metadataKeys(msg);
+            return processAllKeys(metadataNamesList, metadataKeys);
         }
         return true;
     }
 
     private boolean atLeastOneData(TbMsg msg) {
         if (!messageNamesList.isEmpty()) {
-            Map<String, String> dataMap = dataToMap(msg);
-            return processAtLeastOne(messageNamesList, dataMap);
+            Set<String> dataKeys = dataKeys(msg);
+            return processAtLeastOne(messageNamesList, dataKeys);
         }
         return false;
     }
 
     private boolean atLeastOneMetadata(TbMsg msg) {
         if (!metadataNamesList.isEmpty()) {
-            Map<String, String> metadataMap = metadataToMap(msg);
-            return processAtLeastOne(metadataNamesList, metadataMap);
+            Set<String> metadataKeys = metadataKeys(msg);
+            return processAtLeastOne(metadataNamesList, metadataKeys);
         }
         return false;
     }
 
-    private boolean processAllKeys(List<String> data, Map<String, String> map) {
+    private boolean processAllKeys(List<String> data, Set<String> keys) {
         for (String field : data) {
-            if (!map.containsKey(field)) {
+            if (!keys.contains(field)) {
                 return false;
             }
         }
         return true;
     }
 
-    private boolean processAtLeastOne(List<String> data, Map<String, String> map) {
+    private boolean processAtLeastOne(List<String> data, Set<String> keys) {
         for (String field : data) {
-            if (map.containsKey(field)) {
+            if (keys.contains(field)) {
                 return true;
             }
         }
         return false;
     }
 
-    private Map<String, String> metadataToMap(TbMsg msg) {
-        return msg.getMetaData().getData();
+    private Set<String> metadataKeys(TbMsg msg) {
+        return msg.getMetaData().getData().keySet();
     }
 
     @SuppressWarnings("unchecked")
-    private Map<String, String> dataToMap(TbMsg msg) {
-        return (Map<String, String>) gson.fromJson(msg.getData(), Map.class);
+    private Set<String> dataKeys(TbMsg msg) {
+        if (msg.getKvPayload() != null) {
+            return msg.getKvPayload().getKeys();
+        }
+        return ((Map<String, Object>) gson.fromJson(msg.getData(), Map.class)).keySet();
     }
 
 }
\ No newline at end of file
@@ -15,9 +15,14 @@
  */
 package org.thingsboard.rule.engine.geo;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
 import org.thingsboard.common.util.JacksonUtil;
@@ -34,15 +39,22 @@ import java.util.List;
 
 public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNodeConfiguration> implements TbNode {
 
+    private static final int POLYGONS_CACHE_SIZE = 1000;
+
     protected T config;
     protected JtsSpatialContext jtsCtx;
 
+    private LoadingCache<String, PreparedGeometry> polygonsCache;
+
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, getConfigClazz());
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
         jtsCtx = factory.newSpatialContext();
+        polygonsCache = CacheBuilder.newBuilder()
+                .maximumSize(POLYGONS_CACHE_SIZE)
+                .build(CacheLoader.from(GeoUtil::preparePolygons));
     }
 
     abstract protected Class<T> getConfigClazz();
@@ -72,12 +84,23 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
             Coordinates perimeterCoordinates = new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude());
             return perimeter.getRange() > GeoUtil.distance(entityCoordinates, perimeterCoordinates, perimeter.getRangeUnit());
         } else if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
-            return GeoUtil.contains(perimeter.getPolygonsDefinition(), new Coordinates(latitude, longitude));
+            return GeoUtil.contains(getPreparedPolygons(perimeter.getPolygonsDefinition()), new Coordinates(latitude, longitude));
         } else {
             throw new TbNodeException("Unsupported perimeter type: " + perimeter.getPerimeterType()  + "!");
         }
     }
 
+    private PreparedGeometry getPreparedPolygons(String polygonsDefinition) {
+        try {
+            return polygonsCache.getUnchecked(polygonsDefinition);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     protected List<Perimeter> getPerimeters(TbMsg msg) throws TbNodeException {
         if (config.isFetchPerimeterInfoFromMessageMetadata()) {
             if (StringUtils.isEmpty(config.getPerimeterKeyName())) {
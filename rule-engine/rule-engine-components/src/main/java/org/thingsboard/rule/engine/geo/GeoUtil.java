@@ -22,6 +22,8 @@ import lombok.NonNull;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.geom.util.GeometryFixer;
 import org.locationtech.spatial4j.context.SpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContext;
@@ -51,13 +53,26 @@ public class GeoUtil {
         jtsCtx = factory.newSpatialContext();
     }
 
-    public static synchronized double distance(Coordinates x, Coordinates y, RangeUnit unit) {
+    public static double distance(Coordinates x, Coordinates y, RangeUnit unit) {
         Point xLL = distCtx.getShapeFactory().pointXY(x.getLongitude(), x.getLatitude());
         Point yLL = distCtx.getShapeFactory().pointXY(y.getLongitude(), y.getLatitude());
         return unit.fromKm(distCtx.getDistCalc().distance(xLL, yLL) * DistanceUtils.DEG_TO_KM);
     }
 
-    public static synchronized boolean contains(@NonNull String polygonInString, @NonNull Coordinates coordinates) {
+    public static boolean contains(@NonNull String polygonInString, @NonNull Coordinates coordinates) {
+        return contains(preparePolygons(polygonInString), coordinates);
+    }
+
+    /**
+     * Thread safe, so the prepared geometry may be cached and shared between the threads.
+     */
+    public static boolean contains(@NonNull PreparedGeometry polygons, @NonNull Coordinates coordinates) {
+        var point = jtsCtx.getShapeFactory().getGeometryFactory()
+                .createPoint(new Coordinate(coordinates.getLatitude(), coordinates.getLongitude()));
+        return polygons.contains(point);
+    }
+
+    public static synchronized PreparedGeometry preparePolygons(@NonNull String polygonInString) {
         if (polygonInString.isEmpty() || polygonInString.isBlank()) {
             throw new RuntimeException("Polygon string can't be empty or null!");
         }
@@ -67,11 +82,7 @@ public class GeoUtil {
         Set<Geometry> holes = extractHolesFrom(polygons);
         polygons.removeIf(holes::contains);
 
-        Geometry globalGeometry = unionToGlobalGeometry(polygons, holes);
-        var point = jtsCtx.getShapeFactory().getGeometryFactory()
-                .createPoint(new Coordinate(coordinates.getLatitude(), coordinates.getLongitude()));
-
-        return globalGeometry.contains(point);
+        return PreparedGeometryFactory.prepare(unionToGlobalGeometry(polygons, holes));
     }
 
     private static Geometry unionToGlobalGeometry(List<Geometry> polygons, Set<Geometry> holes) {
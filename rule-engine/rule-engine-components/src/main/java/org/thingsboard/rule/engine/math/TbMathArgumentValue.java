@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 
 import java.util.Optional;
@@ -76,6 +77,28 @@ public class TbMathArgumentValue {
         return new TbMathArgumentValue(value);
     }
 
+    public static TbMathArgumentValue fromKvEntry(TbMathArgument arg, String argKey, Optional<KvEntry> kvEntryOpt) {
+        Double defaultValue = arg.getDefaultValue();
+        if (kvEntryOpt.isEmpty()) {
+            return defaultOrThrow(defaultValue, "Message body has no '" + argKey + "'!");
+        }
+        KvEntry kvEntry = kvEntryOpt.get();
+        switch (kvEntry.getDataType()) {
+            case LONG:
+                return fromLong(kvEntry.getLongValue().get());
+            case DOUBLE:
+                return fromDouble(kvEntry.getDoubleValue().get());
+            case STRING:
+                String valueText = kvEntry.getStrValue().get();
+                if (StringUtils.isBlank(valueText)) {
+                    return defaultOrThrow(defaultValue, "Message value is empty for '" + argKey + "'!");
+                }
+                return fromString(valueText);
+            default:
+                throw new RuntimeException("Can't convert value '" + kvEntry.getValueAsString() + "' to double!");
+        }
+    }
+
     public static TbMathArgumentValue fromMessageMetadata(TbMathArgument arg, String argKey, TbMsgMetaData metaData) {
         Double defaultValue = arg.getDefaultValue();
         if (metaData == null) {
@@ -87,7 +87,8 @@ public class TbMathNode implements TbNode {
     private static final ConcurrentMap<EntityId, SemaphoreWithQueue<TbMsgTbContextBiFunction>> locks = new ConcurrentReferenceHashMap<>(16, ConcurrentReferenceHashMap.ReferenceType.WEAK);
     private final ThreadLocal<Expression> customExpression = new ThreadLocal<>();
     private TbMathNodeConfiguration config;
-    private boolean msgBodyToJsonConversionRequired;
+    private boolean argumentsFromMsgBody;
+    private boolean resultToMsgBody;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
@@ -104,8 +105,8 @@ public class TbMathNode implements TbNode {
                 throw new RuntimeException("Custom function is too complex (length > 256)!");
             }
         }
-        msgBodyToJsonConversionRequired = config.getArguments().stream().anyMatch(arg -> TbMathArgumentType.MESSAGE_BODY.equals(arg.getType()));
-        msgBodyToJsonConversionRequired = msgBodyToJsonConversionRequired || TbMathArgumentType.MESSAGE_BODY.equals(config.getResult().getType());
+        argumentsFromMsgBody = config.getArguments().stream().anyMatch(arg -> TbMathArgumentType.MESSAGE_BODY.equals(arg.getType()));
+        resultToMsgBody = TbMathArgumentType.MESSAGE_BODY.equals(config.getResult().getType()) || config.getResult().isAddToBody();
     }
 
     @Override
@@ -234,7 +235,8 @@ public class TbMathNode implements TbNode {
 
     private Optional<ObjectNode> convertMsgBodyIfRequired(TbMsg msg) {
         Optional<ObjectNode> msgBodyOpt;
-        if (msgBodyToJsonConversionRequired) {
+        // the arguments are taken from the typed key-values of the message, if present, so the body is parsed only to add the result
+        if (resultToMsgBody || (argumentsFromMsgBody && msg.getKvPayload() == null)) {
             var jsonNode = JacksonUtil.toJsonNode(msg.getData());
             if (jsonNode.isObject()) {
                 msgBodyOpt = Optional.of((ObjectNode) jsonNode);
@@ -380,6 +382,9 @@ public class TbMathNode implements TbNode {
             case CONSTANT:
                 return Futures.immediateFuture(TbMathArgumentValue.constant(arg));
             case MESSAGE_BODY:
+                if (msg.getKvPayload() != null) {
+                    return Futures.immediateFuture(TbMathArgumentValue.fromKvEntry(arg, argKey, msg.getKvPayload().get(argKey)));
+                }
                 return Futures.immediateFuture(TbMathArgumentValue.fromMessageBody(arg, argKey, msgBodyOpt));
             case MESSAGE_METADATA:
                 return Futures.immediateFuture(TbMathArgumentValue.fromMessageMetadata(arg, argKey, msg.getMetaData()));
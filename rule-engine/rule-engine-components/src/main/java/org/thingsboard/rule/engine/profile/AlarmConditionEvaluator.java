@@ -0,0 +1,546 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.profile;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.device.profile.AlarmCondition;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilter;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilterKey;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionKeyType;
+import org.thingsboard.server.common.data.query.BooleanFilterPredicate;
+import org.thingsboard.server.common.data.query.ComplexFilterPredicate;
+import org.thingsboard.server.common.data.query.DynamicValue;
+import org.thingsboard.server.common.data.query.DynamicValueSourceType;
+import org.thingsboard.server.common.data.query.KeyFilterPredicate;
+import org.thingsboard.server.common.data.query.NumericFilterPredicate;
+import org.thingsboard.server.common.data.query.StringFilterPredicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The alarm condition compiled once per device profile version.
+ * <p>
+ * The distinct keys of the condition are indexed in slots, so the value of a key is read from the snapshot and converted
+ * at most once per evaluation, even if the key is used by several filters. The static predicate values and the constant
+ * key values are parsed at compile time, and the numeric and boolean values are compared as primitives.
+ */
+@Slf4j
+class AlarmConditionEvaluator {
+
+    private static final KeyPredicate FALSE = (value, data, ctx) -> false;
+
+    private final AlarmCondition condition;
+    private final AlarmConditionFilterKey[] slotKeys;
+    private final int[] filterSlots;
+    private final EntityKeyValue[] constantValues;
+    private final KeyPredicate[] predicates;
+    /**
+     * The keys of the snapshot the condition depends on: the filter keys and the attributes of the dynamic values.
+     */
+    @Getter
+    private final Set<AlarmConditionFilterKey> keys;
+
+    private AlarmConditionEvaluator(AlarmCondition condition, AlarmConditionFilterKey[] slotKeys, int[] filterSlots,
+                                    EntityKeyValue[] constantValues, KeyPredicate[] predicates, Set<AlarmConditionFilterKey> keys) {
+        this.condition = condition;
+        this.slotKeys = slotKeys;
+        this.filterSlots = filterSlots;
+        this.constantValues = constantValues;
+        this.predicates = predicates;
+        this.keys = keys;
+    }
+
+    static AlarmConditionEvaluator compile(AlarmCondition condition) {
+        List<AlarmConditionFilter> filters = condition != null && condition.getCondition() != null ? condition.getCondition() : Collections.emptyList();
+        Map<AlarmConditionFilterKey, Integer> slots = new LinkedHashMap<>();
+        Set<AlarmConditionFilterKey> keys = new HashSet<>();
+        int[] filterSlots = new int[filters.size()];
+        EntityKeyValue[] constantValues = new EntityKeyValue[filters.size()];
+        KeyPredicate[] predicates = new KeyPredicate[filters.size()];
+        for (int i = 0; i < filters.size(); i++) {
+            AlarmConditionFilter filter = filters.get(i);
+            keys.add(filter.getKey());
+            boolean constant = filter.getKey().getType() == AlarmConditionKeyType.CONSTANT;
+            if (constant) {
+                filterSlots[i] = -1;
+                try {
+                    constantValues[i] = getConstantValue(filter);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to parse constant value from filter: {}", filter, e);
+                }
+            } else {
+                filterSlots[i] = slots.computeIfAbsent(filter.getKey(), k -> slots.size());
+            }
+            predicates[i] = compile(filter.getPredicate(), constant, keys);
+        }
+        return new AlarmConditionEvaluator(condition, slots.keySet().toArray(new AlarmConditionFilterKey[0]),
+                filterSlots, constantValues, predicates, Collections.unmodifiableSet(keys));
+    }
+
+    boolean isCompiledFrom(AlarmCondition condition) {
+        return this.condition == condition;
+    }
+
+    boolean eval(DataSnapshot data, DynamicPredicateValueCtx ctx) {
+        KeyValue[] values = null;
+        for (int i = 0; i < predicates.length; i++) {
+            KeyValue value;
+            int slot = filterSlots[i];
+            if (slot < 0) {
+                value = constantValues[i] != null ? new KeyValue(constantValues[i]) : null;
+            } else {
+                if (values == null) {
+                    values = new KeyValue[slotKeys.length];
+                }
+                value = values[slot];
+                if (value == null) {
+                    EntityKeyValue ekv = data.getValue(slotKeys[slot]);
+                    if (ekv != null) {
+                        value = new KeyValue(ekv);
+                        values[slot] = value;
+                    }
+                }
+            }
+            if (value == null || !predicates[i].eval(value, data, ctx)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static KeyPredicate compile(KeyFilterPredicate predicate, boolean constant, Set<AlarmConditionFilterKey> keys) {
+        if (predicate == null) {
+            return FALSE;
+        }
+        switch (predicate.getType()) {
+            case STRING:
+                StringFilterPredicate strPredicate = (StringFilterPredicate) predicate;
+                addDynamicValueKey(strPredicate.getValue().getDynamicValue(), keys);
+                return new StringPredicate(strPredicate, constant);
+            case NUMERIC:
+                NumericFilterPredicate numPredicate = (NumericFilterPredicate) predicate;
+                addDynamicValueKey(numPredicate.getValue().getDynamicValue(), keys);
+                return new NumericPredicate(numPredicate, constant);
+            case BOOLEAN:
+                BooleanFilterPredicate boolPredicate = (BooleanFilterPredicate) predicate;
+                addDynamicValueKey(boolPredicate.getValue().getDynamicValue(), keys);
+                return new BooleanPredicate(boolPredicate, constant);
+            case COMPLEX:
+                ComplexFilterPredicate complexPredicate = (ComplexFilterPredicate) predicate;
+                List<KeyPredicate> children = new ArrayList<>(complexPredicate.getPredicates().size());
+                for (KeyFilterPredicate child : complexPredicate.getPredicates()) {
+                    children.add(compile(child, constant, keys));
+                }
+                return new ComplexPredicate(complexPredicate, children.toArray(new KeyPredicate[0]));
+            default:
+                return FALSE;
+        }
+    }
+
+    private static void addDynamicValueKey(DynamicValue<?> value, Set<AlarmConditionFilterKey> keys) {
+        if (value != null && (value.getSourceType() == DynamicValueSourceType.CURRENT_TENANT ||
+                value.getSourceType() == DynamicValueSourceType.CURRENT_CUSTOMER ||
+                value.getSourceType() == DynamicValueSourceType.CURRENT_DEVICE)) {
+            keys.add(new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, value.getSourceAttribute()));
+        }
+    }
+
+    private static EntityKeyValue getConstantValue(AlarmConditionFilter filter) {
+        EntityKeyValue value = new EntityKeyValue();
+        String valueStr = filter.getValue().toString();
+        switch (filter.getValueType()) {
+            case STRING:
+                value.setStrValue(valueStr);
+                break;
+            case DATE_TIME:
+                value.setLngValue(Long.valueOf(valueStr));
+                break;
+            case NUMERIC:
+                value.setDblValue(Double.valueOf(valueStr));
+                break;
+            case BOOLEAN:
+                value.setBoolValue(Boolean.valueOf(valueStr));
+                break;
+        }
+        return value;
+    }
+
+    static EntityKeyValue getDynamicValue(DataSnapshot data, DynamicValue<?> value, AlarmConditionFilterKey deviceKey, DynamicPredicateValueCtx ctx) {
+        EntityKeyValue ekv = null;
+        if (value != null) {
+            switch (value.getSourceType()) {
+                case CURRENT_DEVICE:
+                    ekv = data.getValue(deviceKey != null ? deviceKey : new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, value.getSourceAttribute()));
+                    if (ekv != null || !value.isInherit()) {
+                        break;
+                    }
+                case CURRENT_CUSTOMER:
+                    ekv = ctx.getCustomerValue(value.getSourceAttribute());
+                    if (ekv != null || !value.isInherit()) {
+                        break;
+                    }
+                case CURRENT_TENANT:
+                    ekv = ctx.getTenantValue(value.getSourceAttribute());
+            }
+        }
+        return ekv;
+    }
+
+    private static AlarmConditionFilterKey toDeviceKey(DynamicValue<?> value) {
+        return value != null ? new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, value.getSourceAttribute()) : null;
+    }
+
+    private interface KeyPredicate {
+
+        boolean eval(KeyValue value, DataSnapshot data, DynamicPredicateValueCtx ctx);
+
+    }
+
+    /**
+     * The value of the key with the conversions used by the predicates, computed on the first use.
+     */
+    private static final class KeyValue {
+
+        private final EntityKeyValue ekv;
+        private boolean dblResolved;
+        private boolean dblPresent;
+        private double dbl;
+        private boolean strResolved;
+        private String str;
+        private String lowerCaseStr;
+        private boolean boolResolved;
+        private Boolean bool;
+
+        private KeyValue(EntityKeyValue ekv) {
+            this.ekv = ekv;
+        }
+
+        private boolean hasDouble() {
+            if (!dblResolved) {
+                Double value = getDblValue(ekv);
+                dblPresent = value != null;
+                dbl = dblPresent ? value : 0.0;
+                dblResolved = true;
+            }
+            return dblPresent;
+        }
+
+        private String getStr() {
+            if (!strResolved) {
+                str = getStrValue(ekv);
+                strResolved = true;
+            }
+            return str;
+        }
+
+        private String getLowerCaseStr() {
+            if (lowerCaseStr == null) {
+                String value = getStr();
+                lowerCaseStr = value != null ? value.toLowerCase() : null;
+            }
+            return lowerCaseStr;
+        }
+
+        private Boolean getBool() {
+            if (!boolResolved) {
+                bool = getBoolValue(ekv);
+                boolResolved = true;
+            }
+            return bool;
+        }
+
+    }
+
+    private static final class NumericPredicate implements KeyPredicate {
+
+        private final NumericFilterPredicate.NumericOperation operation;
+        private final DynamicValue<Double> dynamicValue;
+        private final AlarmConditionFilterKey dynamicDeviceKey;
+        private final boolean hasDefaultValue;
+        private final double defaultValue;
+
+        private NumericPredicate(NumericFilterPredicate predicate, boolean constant) {
+            this.operation = predicate.getOperation();
+            this.dynamicValue = predicate.getValue().getDynamicValue();
+            this.dynamicDeviceKey = toDeviceKey(dynamicValue);
+            Double defaultValue = predicate.getValue().getDefaultValue();
+            this.hasDefaultValue = !constant && defaultValue != null;
+            this.defaultValue = hasDefaultValue ? defaultValue : 0.0;
+        }
+
+        @Override
+        public boolean eval(KeyValue value, DataSnapshot data, DynamicPredicateValueCtx ctx) {
+            if (!value.hasDouble()) {
+                return false;
+            }
+            double val = value.dbl;
+            double predicateValue;
+            EntityKeyValue ekv = getDynamicValue(data, dynamicValue, dynamicDeviceKey, ctx);
+            Double dynamicPredicateValue = ekv != null ? getDblValue(ekv) : null;
+            if (dynamicPredicateValue != null) {
+                predicateValue = dynamicPredicateValue;
+            } else if (hasDefaultValue) {
+                predicateValue = defaultValue;
+            } else {
+                return false;
+            }
+            switch (operation) {
+                case NOT_EQUAL:
+                    return Double.compare(val, predicateValue) != 0;
+                case EQUAL:
+                    return Double.compare(val, predicateValue) == 0;
+                case GREATER:
+                    return val > predicateValue;
+                case GREATER_OR_EQUAL:
+                    return val >= predicateValue;
+                case LESS:
+                    return val < predicateValue;
+                case LESS_OR_EQUAL:
+                    return val <= predicateValue;
+                default:
+                    throw new RuntimeException("Operation not supported: " + operation);
+            }
+        }
+
+    }
+
+    private static final class StringPredicate implements KeyPredicate {
+
+        private final StringFilterPredicate.StringOperation operation;
+        private final boolean ignoreCase;
+        private final DynamicValue<String> dynamicValue;
+        private final AlarmConditionFilterKey dynamicDeviceKey;
+        private final String defaultValue;
+
+        private StringPredicate(StringFilterPredicate predicate, boolean constant) {
+            this.operation = predicate.getOperation();
+            this.ignoreCase = predicate.isIgnoreCase();
+            this.dynamicValue = predicate.getValue().getDynamicValue();
+            this.dynamicDeviceKey = toDeviceKey(dynamicValue);
+            String defaultValue = constant ? null : predicate.getValue().getDefaultValue();
+            this.defaultValue = ignoreCase && defaultValue != null ? defaultValue.toLowerCase() : defaultValue;
+        }
+
+        @Override
+        public boolean eval(KeyValue value, DataSnapshot data, DynamicPredicateValueCtx ctx) {
+            String val = ignoreCase ? value.getLowerCaseStr() : value.getStr();
+            if (val == null) {
+                return false;
+            }
+            String predicateValue;
+            EntityKeyValue ekv = getDynamicValue(data, dynamicValue, dynamicDeviceKey, ctx);
+            String dynamicPredicateValue = ekv != null ? getStrValue(ekv) : null;
+            if (dynamicPredicateValue != null) {
+                predicateValue = ignoreCase ? dynamicPredicateValue.toLowerCase() : dynamicPredicateValue;
+            } else if (defaultValue != null) {
+                predicateValue = defaultValue;
+            } else {
+                return false;
+            }
+            switch (operation) {
+                case CONTAINS:
+                    return val.contains(predicateValue);
+                case EQUAL:
+                    return val.equals(predicateValue);
+                case STARTS_WITH:
+                    return val.startsWith(predicateValue);
+                case ENDS_WITH:
+                    return val.endsWith(predicateValue);
+                case NOT_EQUAL:
+                    return !val.equals(predicateValue);
+                case NOT_CONTAINS:
+                    return !val.contains(predicateValue);
+                default:
+                    throw new RuntimeException("Operation not supported: " + operation);
+            }
+        }
+
+    }
+
+    private static final class BooleanPredicate implements KeyPredicate {
+
+        private final BooleanFilterPredicate.BooleanOperation operation;
+        private final DynamicValue<Boolean> dynamicValue;
+        private final AlarmConditionFilterKey dynamicDeviceKey;
+        private final Boolean defaultValue;
+
+        private BooleanPredicate(BooleanFilterPredicate predicate, boolean constant) {
+            this.operation = predicate.getOperation();
+            this.dynamicValue = predicate.getValue().getDynamicValue();
+            this.dynamicDeviceKey = toDeviceKey(dynamicValue);
+            this.defaultValue = constant ? null : predicate.getValue().getDefaultValue();
+        }
+
+        @Override
+        public boolean eval(KeyValue value, DataSnapshot data, DynamicPredicateValueCtx ctx) {
+            Boolean val = value.getBool();
+            if (val == null) {
+                return false;
+            }
+            EntityKeyValue ekv = getDynamicValue(data, dynamicValue, dynamicDeviceKey, ctx);
+            Boolean predicateValue = ekv != null ? getBoolValue(ekv) : null;
+            if (predicateValue == null) {
+                predicateValue = defaultValue;
+            }
+            if (predicateValue == null) {
+                return false;
+            }
+            switch (operation) {
+                case EQUAL:
+                    return val.booleanValue() == predicateValue.booleanValue();
+                case NOT_EQUAL:
+                    return val.booleanValue() != predicateValue.booleanValue();
+                default:
+                    throw new RuntimeException("Operation not supported: " + operation);
+            }
+        }
+
+    }
+
+    private static final class ComplexPredicate implements KeyPredicate {
+
+        private final ComplexFilterPredicate.ComplexOperation operation;
+        private final KeyPredicate[] predicates;
+
+        private ComplexPredicate(ComplexFilterPredicate predicate, KeyPredicate[] predicates) {
+            this.operation = predicate.getOperation();
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean eval(KeyValue value, DataSnapshot data, DynamicPredicateValueCtx ctx) {
+            switch (operation) {
+                case OR:
+                    for (KeyPredicate predicate : predicates) {
+                        if (predicate.eval(value, data, ctx)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case AND:
+                    for (KeyPredicate predicate : predicates) {
+                        if (!predicate.eval(value, data, ctx)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                default:
+                    throw new RuntimeException("Operation not supported: " + operation);
+            }
+        }
+
+    }
+
+    static String getStrValue(EntityKeyValue ekv) {
+        switch (ekv.getDataType()) {
+            case LONG:
+                return ekv.getLngValue() != null ? ekv.getLngValue().toString() : null;
+            case DOUBLE:
+                return ekv.getDblValue() != null ? ekv.getDblValue().toString() : null;
+            case BOOLEAN:
+                return ekv.getBoolValue() != null ? ekv.getBoolValue().toString() : null;
+            case STRING:
+                return ekv.getStrValue();
+            case JSON:
+                return ekv.getJsonValue();
+            default:
+                return null;
+        }
+    }
+
+    static Double getDblValue(EntityKeyValue ekv) {
+        switch (ekv.getDataType()) {
+            case LONG:
+                return ekv.getLngValue() != null ? ekv.getLngValue().doubleValue() : null;
+            case DOUBLE:
+                return ekv.getDblValue() != null ? ekv.getDblValue() : null;
+            case BOOLEAN:
+                return ekv.getBoolValue() != null ? (ekv.getBoolValue() ? 1.0 : 0.0) : null;
+            case STRING:
+                try {
+                    return Double.parseDouble(ekv.getStrValue());
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            case JSON:
+                try {
+                    return Double.parseDouble(ekv.getJsonValue());
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    static Boolean getBoolValue(EntityKeyValue ekv) {
+        switch (ekv.getDataType()) {
+            case LONG:
+                return ekv.getLngValue() != null ? ekv.getLngValue() > 0 : null;
+            case DOUBLE:
+                return ekv.getDblValue() != null ? ekv.getDblValue() > 0 : null;
+            case BOOLEAN:
+                return ekv.getBoolValue();
+            case STRING:
+                try {
+                    return Boolean.parseBoolean(ekv.getStrValue());
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            case JSON:
+                try {
+                    return Boolean.parseBoolean(ekv.getJsonValue());
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    static Long getLongValue(EntityKeyValue ekv) {
+        switch (ekv.getDataType()) {
+            case LONG:
+                return ekv.getLngValue();
+            case DOUBLE:
+                return ekv.getDblValue() != null ? ekv.getDblValue().longValue() : null;
+            case BOOLEAN:
+                return ekv.getBoolValue() != null ? (ekv.getBoolValue() ? 1 : 0L) : null;
+            case STRING:
+                try {
+                    return Long.parseLong(ekv.getStrValue());
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            case JSON:
+                try {
+                    return Long.parseLong(ekv.getJsonValue());
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+}
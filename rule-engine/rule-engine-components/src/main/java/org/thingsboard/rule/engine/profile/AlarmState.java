@@ -31,6 +31,7 @@ import org.thingsboard.server.common.data.alarm.AlarmApiCallResult;
 import org.thingsboard.server.common.data.alarm.AlarmCreateOrUpdateActiveRequest;
 import org.thingsboard.server.common.data.alarm.AlarmSeverity;
 import org.thingsboard.server.common.data.alarm.AlarmUpdateRequest;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilterKey;
 import org.thingsboard.server.common.data.device.profile.AlarmConditionKeyType;
 import org.thingsboard.server.common.data.device.profile.AlarmConditionSpecType;
 import org.thingsboard.server.common.data.device.profile.DeviceProfileAlarm;
@@ -43,6 +44,7 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.function.BiFunction;
 
@@ -75,6 +77,10 @@ class AlarmState {
         lastMsgMetaData = msg.getMetaData();
         lastMsgQueueName = msg.getQueueName();
         this.dataSnapshot = data;
+        if (!isAffectedBy(update)) {
+            log.debug("[{}] Update does not affect any rule of the alarm", alarmDefinition.getId());
+            return false;
+        }
         try {
             return createOrClearAlarms(ctx, msg, data, update, AlarmRuleState::eval);
         } catch (NumericParseException e) {
@@ -140,6 +146,19 @@ class AlarmState {
         return stateUpdate;
     }
 
+    private boolean isAffectedBy(SnapshotUpdate update) {
+        if (update == null || deviceProfile == null) {
+            return true;
+        }
+        Set<AlarmConditionFilterKey> alarmKeys = deviceProfile.getAlarmKeys(alarmDefinition.getId());
+        for (AlarmConditionFilterKey key : update.getKeys()) {
+            if (alarmKeys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean clearAlarmState(boolean stateUpdate, AlarmRuleState state) {
         if (state != null) {
             state.clear();
@@ -217,12 +236,14 @@ class AlarmState {
                 }
             }
             createRulesSortedBySeverityDesc.add(new AlarmRuleState(severity, rule,
-                    deviceProfile.getCreateAlarmKeys(alarm.getId(), severity), ruleState, dynamicPredicateValueCtx));
+                    deviceProfile.getCreateAlarmKeys(alarm.getId(), severity), ruleState, dynamicPredicateValueCtx,
+                    deviceProfile.getCreateAlarmEvaluator(alarm.getId(), severity)));
         });
         createRulesSortedBySeverityDesc.sort(Comparator.comparingInt(state -> state.getSeverity().ordinal()));
         PersistedAlarmRuleState ruleState = alarmState == null ? null : alarmState.getClearRuleState();
         if (alarmDefinition.getClearRule() != null) {
-            clearState = new AlarmRuleState(null, alarmDefinition.getClearRule(), deviceProfile.getClearAlarmKeys(alarm.getId()), ruleState, dynamicPredicateValueCtx);
+            clearState = new AlarmRuleState(null, alarmDefinition.getClearRule(), deviceProfile.getClearAlarmKeys(alarm.getId()), ruleState,
+                    dynamicPredicateValueCtx, deviceProfile.getClearAlarmEvaluator(alarm.getId()));
         }
     }
 
@@ -29,11 +29,7 @@ import org.thingsboard.server.common.data.device.profile.DeviceProfileAlarm;
 import org.thingsboard.server.common.data.device.profile.DurationAlarmConditionSpec;
 import org.thingsboard.server.common.data.device.profile.RepeatingAlarmConditionSpec;
 import org.thingsboard.server.common.data.id.DeviceProfileId;
-import org.thingsboard.server.common.data.query.ComplexFilterPredicate;
 import org.thingsboard.server.common.data.query.DynamicValue;
-import org.thingsboard.server.common.data.query.DynamicValueSourceType;
-import org.thingsboard.server.common.data.query.KeyFilterPredicate;
-import org.thingsboard.server.common.data.query.SimpleKeyFilterPredicate;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -55,6 +51,9 @@ class ProfileState {
 
     private final Map<String, Map<AlarmSeverity, Set<AlarmConditionFilterKey>>> alarmCreateKeys = new HashMap<>();
     private final Map<String, Set<AlarmConditionFilterKey>> alarmClearKeys = new HashMap<>();
+    private final Map<String, Set<AlarmConditionFilterKey>> alarmKeys = new HashMap<>();
+    private final Map<String, Map<AlarmSeverity, AlarmConditionEvaluator>> alarmCreateEvaluators = new HashMap<>();
+    private final Map<String, AlarmConditionEvaluator> alarmClearEvaluators = new HashMap<>();
 
     ProfileState(DeviceProfile deviceProfile) {
         updateDeviceProfile(deviceProfile);
@@ -65,18 +64,23 @@ class ProfileState {
         alarmSettings.clear();
         alarmCreateKeys.clear();
         alarmClearKeys.clear();
+        alarmKeys.clear();
+        alarmCreateEvaluators.clear();
+        alarmClearEvaluators.clear();
         entityKeys.clear();
         if (deviceProfile.getProfileData().getAlarms() != null) {
             alarmSettings.addAll(deviceProfile.getProfileData().getAlarms());
             for (DeviceProfileAlarm alarm : deviceProfile.getProfileData().getAlarms()) {
                 Map<AlarmSeverity, Set<AlarmConditionFilterKey>> createAlarmKeys = alarmCreateKeys.computeIfAbsent(alarm.getId(), id -> new HashMap<>());
+                Map<AlarmSeverity, AlarmConditionEvaluator> createEvaluators = alarmCreateEvaluators.computeIfAbsent(alarm.getId(), id -> new HashMap<>());
+                var allAlarmKeys = alarmKeys.computeIfAbsent(alarm.getId(), id -> new HashSet<>());
                 alarm.getCreateRules().forEach(((severity, alarmRule) -> {
                     var ruleKeys = createAlarmKeys.computeIfAbsent(severity, id -> new HashSet<>());
-                    for (var keyFilter : alarmRule.getCondition().getCondition()) {
-                        entityKeys.add(keyFilter.getKey());
-                        ruleKeys.add(keyFilter.getKey());
-                        addDynamicValuesRecursively(keyFilter.getPredicate(), entityKeys, ruleKeys);
-                    }
+                    AlarmConditionEvaluator evaluator = AlarmConditionEvaluator.compile(alarmRule.getCondition());
+                    createEvaluators.put(severity, evaluator);
+                    entityKeys.addAll(evaluator.getKeys());
+                    ruleKeys.addAll(evaluator.getKeys());
+                    allAlarmKeys.addAll(evaluator.getKeys());
                     addEntityKeysFromAlarmConditionSpec(alarmRule);
                     AlarmSchedule schedule = alarmRule.getSchedule();
                     if (schedule != null) {
@@ -85,11 +89,11 @@ class ProfileState {
                 }));
                 if (alarm.getClearRule() != null) {
                     var clearAlarmKeys = alarmClearKeys.computeIfAbsent(alarm.getId(), id -> new HashSet<>());
-                    for (var keyFilter : alarm.getClearRule().getCondition().getCondition()) {
-                        entityKeys.add(keyFilter.getKey());
-                        clearAlarmKeys.add(keyFilter.getKey());
-                        addDynamicValuesRecursively(keyFilter.getPredicate(), entityKeys, clearAlarmKeys);
-                    }
+                    AlarmConditionEvaluator evaluator = AlarmConditionEvaluator.compile(alarm.getClearRule().getCondition());
+                    alarmClearEvaluators.put(alarm.getId(), evaluator);
+                    entityKeys.addAll(evaluator.getKeys());
+                    clearAlarmKeys.addAll(evaluator.getKeys());
+                    allAlarmKeys.addAll(evaluator.getKeys());
                     addEntityKeysFromAlarmConditionSpec(alarm.getClearRule());
                 }
             }
@@ -137,28 +141,6 @@ class ProfileState {
 
     }
 
-    private void addDynamicValuesRecursively(KeyFilterPredicate predicate, Set<AlarmConditionFilterKey> entityKeys, Set<AlarmConditionFilterKey> ruleKeys) {
-        switch (predicate.getType()) {
-            case STRING:
-            case NUMERIC:
-            case BOOLEAN:
-                DynamicValue value = ((SimpleKeyFilterPredicate) predicate).getValue().getDynamicValue();
-                if (value != null && (value.getSourceType() == DynamicValueSourceType.CURRENT_TENANT ||
-                        value.getSourceType() == DynamicValueSourceType.CURRENT_CUSTOMER ||
-                        value.getSourceType() == DynamicValueSourceType.CURRENT_DEVICE)) {
-                    AlarmConditionFilterKey entityKey = new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, value.getSourceAttribute());
-                    entityKeys.add(entityKey);
-                    ruleKeys.add(entityKey);
-                }
-                break;
-            case COMPLEX:
-                for (KeyFilterPredicate child : ((ComplexFilterPredicate) predicate).getPredicates()) {
-                    addDynamicValuesRecursively(child, entityKeys, ruleKeys);
-                }
-                break;
-        }
-    }
-
     DeviceProfileId getProfileId() {
         return deviceProfile.getId();
     }
@@ -177,6 +159,23 @@ class ProfileState {
         }
     }
 
+    AlarmConditionEvaluator getCreateAlarmEvaluator(String id, AlarmSeverity severity) {
+        Map<AlarmSeverity, AlarmConditionEvaluator> evaluators = alarmCreateEvaluators.get(id);
+        return evaluators != null ? evaluators.get(severity) : null;
+    }
+
+    AlarmConditionEvaluator getClearAlarmEvaluator(String id) {
+        return alarmClearEvaluators.get(id);
+    }
+
+    /**
+     * Returns the keys of all create and clear rules of the alarm, so the updates of the other keys skip the alarm.
+     */
+    Set<AlarmConditionFilterKey> getAlarmKeys(String id) {
+        Set<AlarmConditionFilterKey> keys = alarmKeys.get(id);
+        return keys != null ? keys : Collections.emptySet();
+    }
+
     Set<AlarmConditionFilterKey> getClearAlarmKeys(String id) {
         Set<AlarmConditionFilterKey> keys = alarmClearKeys.get(id);
         if (keys == null) {
@@ -31,7 +31,6 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 
@@ -69,14 +68,13 @@ public class TbDeleteKeysNode implements TbNode {
         String msgData = msg.getData();
         List<String> keysToDelete = new ArrayList<>();
         if (fromMetadata) {
-            Map<String, String> metaDataMap = metaData.getData();
-            metaDataMap.forEach((keyMetaData, valueMetaData) -> {
+            metaData.forEach((keyMetaData, valueMetaData) -> {
                 if (checkKey(keyMetaData)) {
                     keysToDelete.add(keyMetaData);
                 }
             });
-            keysToDelete.forEach(metaDataMap::remove);
-            metaData = new TbMsgMetaData(metaDataMap);
+            metaData = metaData.copy();
+            keysToDelete.forEach(metaData::removeValue);
         } else {
             JsonNode dataNode = JacksonUtil.toJsonNode(msgData);
             if (dataNode.isObject()) {
@@ -63,16 +63,16 @@ public class TbRenameKeysNode implements TbNode {
         String data = msg.getData();
         boolean msgChanged = false;
         if (fromMetadata) {
-            Map<String, String> metaDataMap = metaData.getData();
+            metaData = metaData.copy();
             for (Map.Entry<String, String> entry : renameKeysMapping.entrySet()) {
                 String nameKey = entry.getKey();
-                if (metaDataMap.containsKey(nameKey)) {
+                String value = metaData.getValue(nameKey);
+                if (value != null) {
                     msgChanged = true;
-                    metaDataMap.put(entry.getValue(), metaDataMap.get(nameKey));
-                    metaDataMap.remove(nameKey);
+                    metaData.putValue(entry.getValue(), value);
+                    metaData.removeValue(nameKey);
                 }
             }
-            metaData = new TbMsgMetaData(metaDataMap);
         } else {
             JsonNode dataNode = JacksonUtil.toJsonNode(data);
             if (dataNode.isObject()) {
@@ -18,8 +18,16 @@ package org.thingsboard.rule.engine.geo;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 @RunWith(MockitoJUnitRunner.class)
 public class GeoUtilTest {
 
@@ -160,4 +168,23 @@ public class GeoUtilTest {
         );
     }
 
+    @Test
+    public void testPreparedPolygonsSharedBetweenThreads() throws Exception {
+        PreparedGeometry sandClockWithHole = GeoUtil.preparePolygons(SAND_CLOCK_WITH_HOLE_IN_CENTER);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> GeoUtil.contains(sandClockWithHole, POINT_INSIDE_SAND_CLOCK_NEAR_BORDER)
+                        && !GeoUtil.contains(sandClockWithHole, POINT_INSIDE_SAND_CLOCK_CENTER)
+                        && !GeoUtil.contains(sandClockWithHole, POINT_OUTSIDE_SAND_CLOCK_2)));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
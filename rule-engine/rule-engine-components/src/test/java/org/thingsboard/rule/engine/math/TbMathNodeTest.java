@@ -47,9 +47,11 @@ import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.DoubleDataEntry;
 import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.common.data.msg.TbMsgType;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgKvPayload;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
@@ -355,6 +357,28 @@ public class TbMathNodeTest {
         assertEquals("4", result);
     }
 
+    @Test
+    public void test_2_plus_2_kv_payload_meta() {
+        var node = initNode(TbRuleNodeMathFunctionType.ADD,
+                new TbMathResult(TbMathArgumentType.MESSAGE_METADATA, "result", 0, false, false, null),
+                new TbMathArgument(TbMathArgumentType.MESSAGE_BODY, "a"),
+                new TbMathArgument(TbMathArgumentType.MESSAGE_BODY, "b")
+        );
+
+        TbMsgKvPayload kvPayload = TbMsgKvPayload.of(List.of(new LongDataEntry("a", 2L), new StringDataEntry("b", "2")));
+        TbMsg msg = TbMsg.newMsgWithKvPayload(null, TbMsgType.POST_TELEMETRY_REQUEST, originator, null, TbMsgMetaData.EMPTY, kvPayload, null, null);
+
+        node.onMsg(ctx, msg);
+
+        ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, timeout(TIMEOUT)).tellSuccess(msgCaptor.capture());
+
+        TbMsg resultMsg = msgCaptor.getValue();
+        assertNotNull(resultMsg);
+        assertEquals(kvPayload, resultMsg.getKvPayload());
+        assertEquals("4", resultMsg.getMetaData().getValue("result"));
+    }
+
     @Test
     public void test_2_plus_2_attr_and_ts() {
         var node = initNode(TbRuleNodeMathFunctionType.ADD,
@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.profile;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.thingsboard.server.common.data.device.profile.AlarmCondition;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilter;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilterKey;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionKeyType;
+import org.thingsboard.server.common.data.query.FilterPredicateValue;
+import org.thingsboard.server.common.data.query.KeyFilterPredicate;
+import org.thingsboard.server.common.data.query.NumericFilterPredicate;
+import org.thingsboard.server.common.data.query.StringFilterPredicate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Timed harness for the alarm rule evaluation of a device profile with many rules. The class name does not match the surefire includes,
+ * so it is not part of the build. Run it manually, e.g. 'mvn test -Dtest=AlarmConditionEvaluatorBenchmark'.
+ * The evaluators compiled once per profile are compared with compiling the conditions for every message,
+ * which is the upper bound of the work done when the conditions were interpreted per message.
+ */
+@Slf4j
+public class AlarmConditionEvaluatorBenchmark {
+
+    private static final int RULES = 50;
+    private static final int KEYS = 10;
+    private static final int MSGS = 200_000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private final DynamicPredicateValueCtx ctx = mock(DynamicPredicateValueCtx.class);
+
+    @Test
+    public void benchmarkCompiledEvaluators() {
+        List<AlarmCondition> conditions = newConditions();
+        AlarmConditionEvaluator[] evaluators = conditions.stream().map(AlarmConditionEvaluator::compile).toArray(AlarmConditionEvaluator[]::new);
+        DataSnapshot[] snapshots = newSnapshots();
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            long matched = 0;
+            for (int i = 0; i < MSGS; i++) {
+                DataSnapshot data = snapshots[i % snapshots.length];
+                for (AlarmConditionEvaluator evaluator : evaluators) {
+                    if (evaluator.eval(data, ctx)) {
+                        matched++;
+                    }
+                }
+            }
+            report("compiled once", round, MSGS, matched, System.nanoTime() - start);
+        }
+    }
+
+    @Test
+    public void benchmarkEvaluatorsCompiledPerMsg() {
+        List<AlarmCondition> conditions = newConditions();
+        DataSnapshot[] snapshots = newSnapshots();
+        int msgs = MSGS / 10;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            long matched = 0;
+            for (int i = 0; i < msgs; i++) {
+                DataSnapshot data = snapshots[i % snapshots.length];
+                for (AlarmCondition condition : conditions) {
+                    if (AlarmConditionEvaluator.compile(condition).eval(data, ctx)) {
+                        matched++;
+                    }
+                }
+            }
+            report("compiled per msg", round, msgs, matched, System.nanoTime() - start);
+        }
+    }
+
+    private void report(String name, int round, int msgs, long matched, long durationNs) {
+        assertThat(matched).isPositive();
+        if (round < WARMUP_ROUNDS) {
+            return;
+        }
+        log.info("[{}] round {}: {} messages x {} rules in {} ms, {} ns per message, {} matched", name, round - WARMUP_ROUNDS + 1, msgs, RULES,
+                TimeUnit.NANOSECONDS.toMillis(durationNs), durationNs / msgs, matched);
+    }
+
+    /**
+     * Each rule checks a numeric range of one of the time series keys and the mode attribute, the same as a typical threshold profile.
+     */
+    private static List<AlarmCondition> newConditions() {
+        AlarmConditionFilterKey mode = new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, "mode");
+        AlarmCondition[] conditions = new AlarmCondition[RULES];
+        for (int i = 0; i < RULES; i++) {
+            AlarmConditionFilterKey key = tsKey(i % KEYS);
+            AlarmCondition condition = new AlarmCondition();
+            condition.setCondition(List.of(
+                    filter(key, numeric(NumericFilterPredicate.NumericOperation.GREATER_OR_EQUAL, i)),
+                    filter(key, numeric(NumericFilterPredicate.NumericOperation.LESS, i + 10)),
+                    filter(mode, string(i % 2 == 0 ? "auto" : "manual"))));
+            conditions[i] = condition;
+        }
+        return List.of(conditions);
+    }
+
+    private static DataSnapshot[] newSnapshots() {
+        Set<AlarmConditionFilterKey> keys = new HashSet<>();
+        for (int k = 0; k < KEYS; k++) {
+            keys.add(tsKey(k));
+        }
+        AlarmConditionFilterKey mode = new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, "mode");
+        keys.add(mode);
+        DataSnapshot[] snapshots = new DataSnapshot[100];
+        for (int s = 0; s < snapshots.length; s++) {
+            DataSnapshot data = new DataSnapshot(keys);
+            for (int k = 0; k < KEYS; k++) {
+                data.putValue(tsKey(k), s, (s + k) % 3 == 0 ? EntityKeyValue.fromDouble(s % 60 + 0.5) : EntityKeyValue.fromLong(s % 60));
+            }
+            data.putValue(mode, s, EntityKeyValue.fromString(s % 2 == 0 ? "auto" : "manual"));
+            snapshots[s] = data;
+        }
+        return snapshots;
+    }
+
+    private static AlarmConditionFilterKey tsKey(int idx) {
+        return new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "key" + idx);
+    }
+
+    private static AlarmConditionFilter filter(AlarmConditionFilterKey key, KeyFilterPredicate predicate) {
+        AlarmConditionFilter filter = new AlarmConditionFilter();
+        filter.setKey(key);
+        filter.setPredicate(predicate);
+        return filter;
+    }
+
+    private static NumericFilterPredicate numeric(NumericFilterPredicate.NumericOperation operation, double value) {
+        NumericFilterPredicate predicate = new NumericFilterPredicate();
+        predicate.setOperation(operation);
+        predicate.setValue(new FilterPredicateValue<>(value));
+        return predicate;
+    }
+
+    private static StringFilterPredicate string(String value) {
+        StringFilterPredicate predicate = new StringFilterPredicate();
+        predicate.setOperation(StringFilterPredicate.StringOperation.EQUAL);
+        predicate.setValue(new FilterPredicateValue<>(value));
+        return predicate;
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2023 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.profile;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.device.profile.AlarmCondition;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilter;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionFilterKey;
+import org.thingsboard.server.common.data.device.profile.AlarmConditionKeyType;
+import org.thingsboard.server.common.data.query.ComplexFilterPredicate;
+import org.thingsboard.server.common.data.query.DynamicValue;
+import org.thingsboard.server.common.data.query.DynamicValueSourceType;
+import org.thingsboard.server.common.data.query.EntityKeyValueType;
+import org.thingsboard.server.common.data.query.FilterPredicateValue;
+import org.thingsboard.server.common.data.query.KeyFilterPredicate;
+import org.thingsboard.server.common.data.query.NumericFilterPredicate;
+import org.thingsboard.server.common.data.query.StringFilterPredicate;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AlarmConditionEvaluatorTest {
+
+    private static final AlarmConditionFilterKey TEMPERATURE = new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "temperature");
+    private static final AlarmConditionFilterKey MODE = new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, "mode");
+    private static final AlarmConditionFilterKey THRESHOLD = new AlarmConditionFilterKey(AlarmConditionKeyType.ATTRIBUTE, "threshold");
+
+    private final DynamicPredicateValueCtx ctx = mock(DynamicPredicateValueCtx.class);
+
+    @Test
+    public void givenRangeOnSameKey_whenEval_thenBothFiltersApplied() {
+        AlarmConditionEvaluator evaluator = AlarmConditionEvaluator.compile(condition(
+                filter(TEMPERATURE, numeric(NumericFilterPredicate.NumericOperation.GREATER, 20.0)),
+                filter(TEMPERATURE, numeric(NumericFilterPredicate.NumericOperation.LESS_OR_EQUAL, 30.0))));
+
+        assertThat(evaluator.getKeys()).containsExactly(TEMPERATURE);
+        assertThat(evaluator.eval(snapshot(TEMPERATURE, EntityKeyValue.fromLong(25)), ctx)).isTrue();
+        assertThat(evaluator.eval(snapshot(TEMPERATURE, EntityKeyValue.fromDouble(30.0)), ctx)).isTrue();
+        assertThat(evaluator.eval(snapshot(TEMPERATURE, EntityKeyValue.fromString("31")), ctx)).isFalse();
+        assertThat(evaluator.eval(snapshot(TEMPERATURE, EntityKeyValue.fromString("hot")), ctx)).isFalse();
+        assertThat(evaluator.eval(snapshot(MODE, EntityKeyValue.fromString("auto")), ctx)).isFalse();
+    }
+
+    @Test
+    public void givenComplexStringPredicateIgnoringCase_whenEval_thenAnyChildMatches() {
+        StringFilterPredicate auto = string(StringFilterPredicate.StringOperation.EQUAL, "AUTO");
+        auto.setIgnoreCase(true);
+        ComplexFilterPredicate complex = new ComplexFilterPredicate();
+        complex.setOperation(ComplexFilterPredicate.ComplexOperation.OR);
+        complex.setPredicates(Arrays.asList(auto, string(StringFilterPredicate.StringOperation.STARTS_WITH, "eco")));
+        AlarmConditionEvaluator evaluator = AlarmConditionEvaluator.compile(condition(filter(MODE, complex)));
+
+        assertThat(evaluator.eval(snapshot(MODE, EntityKeyValue.fromString("Auto")), ctx)).isTrue();
+        assertThat(evaluator.eval(snapshot(MODE, EntityKeyValue.fromString("eco-2")), ctx)).isTrue();
+        assertThat(evaluator.eval(snapshot(MODE, EntityKeyValue.fromString("Eco-2")), ctx)).isFalse();
+    }
+
+    @Test
+    public void givenDynamicThreshold_whenEval_thenDeviceAttributeOrDefaultUsed() {
+        NumericFilterPredicate predicate = new NumericFilterPredicate();
+        predicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        predicate.setValue(new FilterPredicateValue<>(50.0, null, new DynamicValue<>(DynamicValueSourceType.CURRENT_DEVICE, "threshold")));
+        AlarmConditionEvaluator evaluator = AlarmConditionEvaluator.compile(condition(filter(TEMPERATURE, predicate)));
+
+        assertThat(evaluator.getKeys()).containsExactlyInAnyOrder(TEMPERATURE, THRESHOLD);
+        DataSnapshot data = snapshot(TEMPERATURE, EntityKeyValue.fromLong(40));
+        assertThat(evaluator.eval(data, ctx)).isFalse();
+        data.putValue(THRESHOLD, 0, EntityKeyValue.fromLong(30));
+        assertThat(evaluator.eval(data, ctx)).isTrue();
+        verify(ctx, never()).getTenantValue(anyString());
+    }
+
+    @Test
+    public void givenConstantFilter_whenEval_thenConstantParsedOnceAndDefaultValueIgnored() {
+        AlarmConditionFilter constant = filter(new AlarmConditionFilterKey(AlarmConditionKeyType.CONSTANT, "limit"),
+                numeric(NumericFilterPredicate.NumericOperation.GREATER, 5.0));
+        constant.setValueType(EntityKeyValueType.NUMERIC);
+        constant.setValue(10);
+        AlarmConditionEvaluator evaluator = AlarmConditionEvaluator.compile(condition(constant));
+        assertThat(evaluator.eval(snapshot(TEMPERATURE, EntityKeyValue.fromLong(1)), ctx)).isFalse();
+
+        NumericFilterPredicate predicate = new NumericFilterPredicate();
+        predicate.setOperation(NumericFilterPredicate.NumericOperation.GREATER);
+        predicate.setValue(new FilterPredicateValue<>(5.0, null, new DynamicValue<>(DynamicValueSourceType.CURRENT_TENANT, "limit")));
+        constant.setPredicate(predicate);
+        when(ctx.getTenantValue("limit")).thenReturn(EntityKeyValue.fromLong(7));
+        assertThat(AlarmConditionEvaluator.compile(condition(constant)).eval(snapshot(TEMPERATURE, EntityKeyValue.fromLong(1)), ctx)).isTrue();
+    }
+
+    @Test
+    public void givenProfileWithManyRules_whenEval_thenOnlyMatchingRulesAreTrue() {
+        int rules = 50;
+        AlarmConditionEvaluator[] evaluators = new AlarmConditionEvaluator[rules];
+        for (int i = 0; i < rules; i++) {
+            AlarmConditionFilterKey key = new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "key" + (i % 10));
+            evaluators[i] = AlarmConditionEvaluator.compile(condition(
+                    filter(key, numeric(NumericFilterPredicate.NumericOperation.GREATER_OR_EQUAL, (double) i)),
+                    filter(key, numeric(NumericFilterPredicate.NumericOperation.LESS, (double) i + 10))));
+        }
+        DataSnapshot data = snapshot(new AlarmConditionFilterKey(AlarmConditionKeyType.TIME_SERIES, "key3"), EntityKeyValue.fromLong(25));
+        int matched = 0;
+        for (AlarmConditionEvaluator evaluator : evaluators) {
+            if (evaluator.eval(data, ctx)) {
+                matched++;
+            }
+        }
+        assertThat(matched).isEqualTo(1);
+    }
+
+    private static DataSnapshot snapshot(AlarmConditionFilterKey key, EntityKeyValue value) {
+        Set<AlarmConditionFilterKey> keys = new HashSet<>(Arrays.asList(TEMPERATURE, MODE, THRESHOLD, key));
+        DataSnapshot data = new DataSnapshot(keys);
+        data.putValue(key, 0, value);
+        return data;
+    }
+
+    private static AlarmCondition condition(AlarmConditionFilter... filters) {
+        AlarmCondition condition = new AlarmCondition();
+        condition.setCondition(List.of(filters));
+        return condition;
+    }
+
+    private static AlarmConditionFilter filter(AlarmConditionFilterKey key, KeyFilterPredicate predicate) {
+        AlarmConditionFilter filter = new AlarmConditionFilter();
+        filter.setKey(key);
+        filter.setPredicate(predicate);
+        return filter;
+    }
+
+    private static NumericFilterPredicate numeric(NumericFilterPredicate.NumericOperation operation, double value) {
+        NumericFilterPredicate predicate = new NumericFilterPredicate();
+        predicate.setOperation(operation);
+        predicate.setValue(new FilterPredicateValue<>(value));
+        return predicate;
+    }
+
+    private static StringFilterPredicate string(StringFilterPredicate.StringOperation operation, String value) {
+        StringFilterPredicate predicate = new StringFilterPredicate();
+        predicate.setOperation(operation);
+        predicate.setValue(new FilterPredicateValue<>(value));
+        return predicate;
+    }
+
+}
@@ -24,6 +24,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.mockito.stubbing.Answer;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
@@ -40,6 +41,8 @@ import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.msg.TbMsgType;
 import org.thingsboard.server.common.data.msg.TbNodeConnectionType;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.rule.RuleNodeState;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 
@@ -57,11 +60,14 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -385,6 +391,128 @@ public class TbMsgDeduplicationNodeTest {
         Assertions.assertEquals(msgWithLatestTsInSecondPack.getType(), actualMsg.getType());
     }
 
+    @Test
+    public void given_persisted_state_when_node_restarted_then_verifyOutput() throws TbNodeException, ExecutionException, InterruptedException {
+        int msgCount = 10;
+        config.setInterval(deduplicationInterval);
+        config.setPersistState(true);
+        nodeConfiguration = new TbNodeConfiguration(JacksonUtil.valueToTree(config));
+        when(ctx.isLocalEntity(any())).thenReturn(true);
+        when(ctx.findRuleNodeStates(any())).thenReturn(PageData.emptyPageData());
+        when(ctx.saveRuleNodeState(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        node.init(ctx, nodeConfiguration);
+
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        long startTs = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(deduplicationInterval) * 2;
+        List<TbMsg> inputMsgs = getTbMsgs(deviceId, msgCount, startTs, 0);
+        for (TbMsg msg : inputMsgs) {
+            node.onMsg(ctx, msg);
+        }
+        node.destroy();
+
+        ArgumentCaptor<RuleNodeState> stateCaptor = ArgumentCaptor.forClass(RuleNodeState.class);
+        verify(ctx, times(msgCount)).saveRuleNodeState(stateCaptor.capture());
+        RuleNodeState state = stateCaptor.getValue();
+        Assertions.assertEquals(deviceId, state.getEntityId());
+
+        awaitTellSelfLatch = new CountDownLatch(1);
+        node = spy(new TbMsgDeduplicationNode());
+        invokeTellSelf(1);
+        when(ctx.findRuleNodeStates(any())).thenReturn(new PageData<>(List.of(state), 1, 1, false));
+        node.init(ctx, nodeConfiguration);
+
+        awaitTellSelfLatch.await();
+
+        ArgumentCaptor<TbMsg> newMsgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, times(1)).enqueueForTellNext(newMsgCaptor.capture(), eq(TbNodeConnectionType.SUCCESS), any(), any());
+        verify(ctx).removeRuleNodeStateForEntity(eq(deviceId));
+
+        TbMsg firstMsg = inputMsgs.get(0);
+        TbMsg actualMsg = newMsgCaptor.getValue();
+        Assertions.assertEquals(firstMsg.getOriginator(), actualMsg.getOriginator());
+        Assertions.assertEquals(firstMsg.getCustomerId(), actualMsg.getCustomerId());
+        Assertions.assertEquals(firstMsg.getData(), actualMsg.getData());
+        Assertions.assertEquals(firstMsg.getMetaData(), actualMsg.getMetaData());
+        Assertions.assertEquals(firstMsg.getType(), actualMsg.getType());
+        Assertions.assertEquals(firstMsg.getQueueName(), actualMsg.getQueueName());
+    }
+
+    @Test
+    public void given_persisted_state_then_msg_acked_after_persist() throws TbNodeException, ExecutionException, InterruptedException {
+        config.setInterval(deduplicationInterval);
+        config.setPersistState(true);
+        nodeConfiguration = new TbNodeConfiguration(JacksonUtil.valueToTree(config));
+        when(ctx.isLocalEntity(any())).thenReturn(true);
+        when(ctx.findRuleNodeStates(any())).thenReturn(PageData.emptyPageData());
+        when(ctx.saveRuleNodeState(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        node.init(ctx, nodeConfiguration);
+
+        TbMsg msg = createMsg(new DeviceId(UUID.randomUUID()), System.currentTimeMillis());
+        node.onMsg(ctx, msg);
+
+        InOrder inOrder = inOrder(ctx);
+        inOrder.verify(ctx).saveRuleNodeState(any());
+        inOrder.verify(ctx).ack(msg);
+    }
+
+    @Test
+    public void given_persist_failure_then_msg_is_failed_and_not_acked() throws TbNodeException, ExecutionException, InterruptedException {
+        config.setInterval(deduplicationInterval);
+        config.setPersistState(true);
+        nodeConfiguration = new TbNodeConfiguration(JacksonUtil.valueToTree(config));
+        when(ctx.isLocalEntity(any())).thenReturn(true);
+        when(ctx.findRuleNodeStates(any())).thenReturn(PageData.emptyPageData());
+        when(ctx.saveRuleNodeState(any())).thenThrow(new RuntimeException("Failed to save state"));
+        node.init(ctx, nodeConfiguration);
+
+        TbMsg msg = createMsg(new DeviceId(UUID.randomUUID()), System.currentTimeMillis());
+        node.onMsg(ctx, msg);
+
+        verify(ctx).tellFailure(eq(msg), any(RuntimeException.class));
+        verify(ctx, never()).ack(any());
+        verify(ctx, never()).tellSelf(any(), anyLong());
+    }
+
+    @Test
+    public void given_state_saved_by_previous_owner_then_msgs_merged_on_tick() throws TbNodeException, ExecutionException, InterruptedException {
+        config.setInterval(deduplicationInterval);
+        config.setStrategy(DeduplicationStrategy.ALL);
+        config.setOutMsgType(TbMsgType.POST_ATTRIBUTES_REQUEST.name());
+        config.setQueueName(DataConstants.HP_QUEUE_NAME);
+        config.setPersistState(true);
+        nodeConfiguration = new TbNodeConfiguration(JacksonUtil.valueToTree(config));
+        when(ctx.isLocalEntity(any())).thenReturn(true);
+        when(ctx.findRuleNodeStates(any())).thenReturn(PageData.emptyPageData());
+        when(ctx.saveRuleNodeState(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        long startTs = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(deduplicationInterval) * 2;
+        List<TbMsg> inputMsgs = getTbMsgs(deviceId, 2, startTs, 0);
+
+        // the previous owner saves its pending msg after the new owner has fetched the states
+        TbMsgDeduplicationNode previousOwner = new TbMsgDeduplicationNode();
+        previousOwner.init(ctx, nodeConfiguration);
+        previousOwner.onMsg(ctx, inputMsgs.get(0));
+        ArgumentCaptor<RuleNodeState> stateCaptor = ArgumentCaptor.forClass(RuleNodeState.class);
+        verify(ctx).saveRuleNodeState(stateCaptor.capture());
+        RuleNodeState state = new RuleNodeState();
+        state.setRuleNodeId(ctx.getSelfId());
+        state.setEntityId(deviceId);
+        state.setStateData(stateCaptor.getValue().getStateData());
+
+        awaitTellSelfLatch = new CountDownLatch(1);
+        invokeTellSelf(1);
+        node.init(ctx, nodeConfiguration);
+        when(ctx.findRuleNodeStateForEntity(deviceId)).thenReturn(state);
+        node.onMsg(ctx, inputMsgs.get(1));
+
+        awaitTellSelfLatch.await();
+
+        ArgumentCaptor<TbMsg> newMsgCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, times(1)).enqueueForTellNext(newMsgCaptor.capture(), eq(TbNodeConnectionType.SUCCESS), any(), any());
+        Assertions.assertEquals(getMergedData(inputMsgs), newMsgCaptor.getValue().getData());
+    }
+
     private TbMsg getMsgWithLatestTs(List<TbMsg> firstMsgPack) {
         int indexOfLastMsgInArray = firstMsgPack.size() - 1;
         int indexToSetMaxTs = new Random().nextInt(indexOfLastMsgInArray) + 1;